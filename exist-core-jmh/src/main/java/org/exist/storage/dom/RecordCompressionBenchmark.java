@@ -0,0 +1,137 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.dom;
+
+import org.exist.storage.Signatures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Benchmarks the compression of the records of text nodes in dom.dbx.
+ *
+ * {@link #decompress(StoredBytes)} measures the CPU time spent on reading a page worth of
+ * compressed text records, the counters of {@link StoredBytes} report the bytes which are
+ * stored for them. The ratio between uncompressedBytes and storedBytes is the factor by
+ * which the I/O, and the page buffer memory, for the records is reduced. Compression pays off
+ * when the time to decompress a page is below the time to read the pages saved from disk.
+ */
+@State(Scope.Benchmark)
+public class RecordCompressionBenchmark {
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "in", "a", "that", "his", "with", "he", "was", "which", "as", "for",
+            "it", "by", "be", "this", "not", "is", "had", "from", "on", "but", "all", "him", "at", "were",
+            "king", "lord", "house", "church", "letter", "manuscript", "edition", "chapter", "verse",
+            "whereof", "thereupon", "aforesaid", "hereafter", "witnesseth", "parish", "county", "year"
+    };
+
+    /**
+     * The number of records which fill a page.
+     */
+    private static final int RECORDS = 64;
+
+    @Param({ "NONE", "LZ4", "DEFLATE" })
+    private RecordCompression compression;
+
+    @Param({ "64", "256", "1024" })
+    private int textLength;
+
+    private byte[][] nodes;
+    private byte[][] records;
+    private long storedLength;
+    private long uncompressedLength;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StoredBytes {
+        public long storedBytes;
+        public long uncompressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            storedBytes = 0;
+            uncompressedBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        nodes = new byte[RECORDS][];
+        records = new byte[RECORDS][];
+        storedLength = 0;
+        uncompressedLength = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            nodes[i] = textNode(random);
+            records[i] = compression.compress(nodes[i]);
+            storedLength += records[i].length;
+            uncompressedLength += nodes[i].length;
+        }
+    }
+
+    @Benchmark
+    public long decompress(final StoredBytes storedBytes) throws IOException {
+        long len = 0;
+        for (final byte[] record : records) {
+            if (RecordCompression.isCompressed(record[0])) {
+                len += RecordCompression.decompress(record, 0, record.length).length;
+            } else {
+                len += record.length;
+            }
+        }
+        storedBytes.storedBytes += storedLength;
+        storedBytes.uncompressedBytes += uncompressedLength;
+        return len;
+    }
+
+    @Benchmark
+    public long compress() {
+        long len = 0;
+        for (final byte[] node : nodes) {
+            len += compression.compress(node).length;
+        }
+        return len;
+    }
+
+    /**
+     * Create a serialized text node: signature, node id and the UTF-8 encoded text.
+     */
+    private byte[] textNode(final Random random) {
+        final StringBuilder text = new StringBuilder(textLength + 16);
+        while (text.length() < textLength) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        final byte[] data = text.substring(0, textLength).getBytes(StandardCharsets.UTF_8);
+        final byte[] node = new byte[1 + 2 + 4 + data.length];
+        node[0] = (byte) (Signatures.Char << 0x5);
+        // the node id
+        node[2] = 4;
+        final byte[] nodeId = new byte[4];
+        random.nextBytes(nodeId);
+        System.arraycopy(nodeId, 0, node, 3, nodeId.length);
+        System.arraycopy(data, 0, node, 7, data.length);
+        return node;
+    }
+}
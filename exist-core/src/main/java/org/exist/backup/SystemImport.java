@@ -27,10 +27,13 @@ import org.exist.Database;
 import org.exist.backup.restore.SystemImportHandler;
 import org.exist.backup.restore.listener.RestoreListener;
 import org.exist.config.ConfigurationException;
+import org.exist.indexing.Index;
+import org.exist.indexing.StructuralIndex;
 import org.exist.security.AuthenticationException;
 import org.exist.security.PermissionDeniedException;
 import org.exist.security.Subject;
 import org.exist.storage.DBBroker;
+import org.exist.storage.structural.NativeStructuralIndex;
 import org.exist.storage.txn.TransactionException;
 import org.exist.storage.txn.Txn;
 import org.exist.util.EXistInputSource;
@@ -80,8 +83,12 @@ public class SystemImport {
 	        final Deque<BackupDescriptor> descriptors = getBackupDescriptors(f);
 
             final XMLReaderPool parserPool = broker.getBrokerPool().getParserPool();
+            final Index structuralIndex = broker.getBrokerPool().getIndexManager().getIndexByName(StructuralIndex.STRUCTURAL_INDEX_ID);
 	        XMLReader reader = null;
 	        try {
+                if (structuralIndex instanceof NativeStructuralIndex) {
+                    ((NativeStructuralIndex) structuralIndex).beginBulkLoad(false);
+                }
                 reader = parserPool.borrowXMLReader();
 
                 listener.started(0);
@@ -97,6 +104,9 @@ public class SystemImport {
 	                reader.parse(is);
 	            }
 	        } finally {
+                if (structuralIndex instanceof NativeStructuralIndex) {
+                    ((NativeStructuralIndex) structuralIndex).endBulkLoad();
+                }
 	            listener.finished();
 
                 if (reader != null) {
@@ -38,6 +38,7 @@ import org.exist.config.annotation.ConfigurationClass;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.DBBroker;
 import org.exist.storage.IndexSpec;
+import org.exist.storage.dom.RecordCompression;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.ParametersExtractor;
 import org.exist.util.XMLReaderObjectFactory;
@@ -47,6 +48,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import javax.annotation.Nullable;
+
 @ConfigurationClass("collection")
 public class CollectionConfiguration {
 
@@ -78,6 +81,9 @@ public class CollectionConfiguration {
     private static final String VALIDATION_ELEMENT = "validation";
     private static final String VALIDATION_MODE_ATTR = "mode";
 
+    private static final String STORAGE_ELEMENT = "storage";
+    private static final String STORAGE_COMPRESSION_ATTR = "compression";
+
     private static final Logger LOG = LogManager.getLogger(CollectionConfiguration.class);
 
     private final List<TriggerProxy<? extends CollectionTrigger>> colTriggers = new ArrayList<>();
@@ -90,6 +96,8 @@ public class CollectionConfiguration {
 
     private XMLReaderObjectFactory.VALIDATION_SETTING validationMode = XMLReaderObjectFactory.VALIDATION_SETTING.UNKNOWN;
 
+    @Nullable private RecordCompression domCompression = null;
+
     private final BrokerPool pool;
 
     public CollectionConfiguration(final BrokerPool pool) {
@@ -168,6 +176,14 @@ public class CollectionConfiguration {
                         validationMode = XMLReaderObjectFactory.VALIDATION_SETTING.fromOption(mode);
                     }
 
+                } else if (STORAGE_ELEMENT.equals(node.getLocalName())) {
+                    final Element elem = (Element) node;
+                    final String compression = elem.getAttribute(STORAGE_COMPRESSION_ATTR);
+                    domCompression = RecordCompression.fromString(compression);
+                    if (domCompression == null) {
+                        throwOrLog("Unknown compression '" + compression + "' in configuration document", checkOnly);
+                    }
+
                 } else {
                     throwOrLog("Ignored node '" + node.getLocalName() +
                             "' in configuration document", checkOnly);
@@ -205,6 +221,16 @@ public class CollectionConfiguration {
         return validationMode;
     }
 
+    /**
+     * Get the compression of the nodes of the documents stored into the collection.
+     *
+     * @return the compression, or null to use the compression configured for the database
+     */
+    @Nullable
+    public RecordCompression getDOMCompression() {
+        return domCompression;
+    }
+
     public IndexSpec getIndexConfiguration() {
         return indexSpec;
     }
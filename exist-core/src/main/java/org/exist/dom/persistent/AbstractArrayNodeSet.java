@@ -130,7 +130,7 @@ public abstract class AbstractArrayNodeSet extends AbstractNodeSet implements Do
         return itemType;
     }
 
-    private void checkItemType(final int type) {
+    protected void checkItemType(final int type) {
         if(itemType == Type.NODE || itemType == type) {
             return;
         }
@@ -142,7 +142,7 @@ public abstract class AbstractArrayNodeSet extends AbstractNodeSet implements Do
         }
     }
 
-    private void setHasChanged() {
+    protected void setHasChanged() {
         this.state = (state == Integer.MAX_VALUE ? 0 : state + 1);
     }
 
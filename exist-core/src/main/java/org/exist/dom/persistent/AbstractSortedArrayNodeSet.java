@@ -0,0 +1,914 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import org.exist.collections.Collection;
+import org.exist.collections.ManagedLocks;
+import org.exist.dom.INode;
+import org.exist.numbering.NodeId;
+import org.exist.storage.DBBroker;
+import org.exist.storage.lock.LockManager;
+import org.exist.storage.lock.ManagedDocumentLock;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.Constants;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Removes duplication between {@link NewArrayNodeSet} and {@link ColumnarNodeSet},
+ * which both keep all of their nodes in a single sequence. Once the set is sorted,
+ * the nodes are ordered by document and the range of the nodes of each document
+ * is kept in {@link #documentIds}, {@link #documentNodesOffset} and {@link #documentNodesCount}.
+ *
+ * The operations on the nodes as {@link NodeProxy} are implemented here,
+ * the subclasses differ in how they store the nodes.
+ */
+public abstract class AbstractSortedArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet, DocumentSet {
+
+    private Set<Collection> cachedCollections = null;
+
+    protected int documentCount = 0;
+
+    /**
+     * An array of Document IDs of length {@link #documentCount}
+     */
+    protected int[] documentIds = new int[16];
+
+    /**
+     * An array of offsets into the nodes of the set,
+     * the index is the index from {@link #documentIds}.
+     */
+    protected int[] documentNodesOffset = new int[16];
+
+    /**
+     * An array of the node count for each document,
+     * each value is a count of the nodes for a specific document,
+     * the index is the index from {@link #documentIds}.
+     */
+    protected int[] documentNodesCount = new int[16];
+
+    /**
+     * Get a node of the set.
+     *
+     * @param pos the index of the node, which must be less than {@link #size}
+     * @return the node
+     */
+    protected abstract NodeProxy nodeAt(int pos);
+
+    /**
+     * Get a node of the set, if a context or matches may have been added to it.
+     *
+     * @param pos the index of the node, which must be less than {@link #size}
+     * @return the node, or null if it has neither a context nor matches
+     */
+    protected @Nullable NodeProxy nodeWithContextAt(final int pos) {
+        return nodeAt(pos);
+    }
+
+    /**
+     * Get the id of the document of a node of the set.
+     *
+     * @param pos the index of the node, which must be less than {@link #size}
+     * @return the document id
+     */
+    protected abstract int docIdAt(int pos);
+
+    /**
+     * Get a document of the sorted set.
+     *
+     * @param docIdx the index of the document in {@link #documentIds}
+     * @return the document
+     */
+    protected abstract DocumentImpl documentAt(int docIdx);
+
+    /**
+     * Find a node of a document in the sorted set.
+     *
+     * @param docIdx the index of the document in {@link #documentIds}
+     * @param nodeId the id of the node
+     * @return the index of the node, or -1 if the node is not in the set
+     */
+    protected abstract int findNode(int docIdx, NodeId nodeId);
+
+    /**
+     * Create an empty set of the same kind, for the results of the operations on this set.
+     *
+     * @return the new set
+     */
+    protected abstract AbstractSortedArrayNodeSet newInstance();
+
+    protected int findDoc(final int docId) {
+        int low = 0;
+        int high = documentCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midVal = documentIds[mid];
+            if (midVal < docId) {
+                low = mid + 1;
+            } else if (midVal > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            } // key found
+        }
+        return -(low + 1);  // key not found.
+    }
+
+    protected int findDoc(final DocumentImpl doc) {
+        return findDoc(doc.getDocId());
+    }
+
+    /**
+     * Rebuild the index of the documents of the set, once the nodes have been sorted.
+     */
+    protected void updateDocs() {
+        cachedCollections = null;
+        documentCount = 0;
+        for (int i = 0; i < size; i++) {
+            final int docId = docIdAt(i);
+            if (documentCount > 0 && documentIds[documentCount - 1] == docId) {
+                // node belongs to same document as previous node
+                ++documentNodesCount[documentCount - 1];
+            } else {
+                // new document
+                ensureDocCapacity();
+                documentIds[documentCount] = docId;
+                documentNodesOffset[documentCount] = i;
+                documentNodesCount[documentCount++] = 1;
+            }
+        }
+    }
+
+    private void ensureDocCapacity() {
+        if (documentCount == documentIds.length) {
+            final int nlen = documentCount << 1;
+            documentIds = Arrays.copyOf(documentIds, nlen);
+            documentNodesOffset = Arrays.copyOf(documentNodesOffset, nlen);
+            documentNodesCount = Arrays.copyOf(documentNodesCount, nlen);
+        }
+    }
+
+    /**
+     * Copy the index of the documents of another set.
+     *
+     * @param other the set to copy from
+     */
+    protected void copyDocs(final AbstractSortedArrayNodeSet other) {
+        documentCount = other.documentCount;
+        documentIds = other.documentIds.clone();
+        documentNodesOffset = other.documentNodesOffset.clone();
+        documentNodesCount = other.documentNodesCount.clone();
+    }
+
+    @Override
+    public int getSizeHint(final DocumentImpl doc) {
+        if (!isSorted()) {
+            sort();
+        }
+        final int idx = findDoc(doc);
+        return idx < 0 ? Constants.NO_SIZE_HINT : documentNodesCount[idx];
+    }
+
+    @Override
+    public NodeSetIterator iterator() {
+        if (!isSorted()) {
+            sort();
+        }
+        return new ArrayIterator();
+    }
+
+    @Override
+    public SequenceIterator iterate() {
+        sortInDocumentOrder();
+        return new ArrayIterator();
+    }
+
+    @Override
+    public SequenceIterator unorderedIterator() {
+        if (!isSorted()) {
+            sort();
+        }
+        return new ArrayIterator();
+    }
+
+    @Override
+    public boolean contains(final NodeProxy proxy) {
+        sort();
+        final int idx = findDoc(proxy.getOwnerDocument());
+        if (idx < 0) {
+            return false;
+        }
+        return get(idx, proxy.getNodeId()) != null;
+    }
+
+    @Override
+    public NodeProxy get(final int pos) {
+        if (pos < 0 || pos >= size) {
+            return null;
+        }
+        return nodeAt(pos);
+    }
+
+    @Override
+    public NodeProxy get(final NodeProxy proxy) {
+        sort();
+        final int idx = findDoc(proxy.getOwnerDocument());
+        if (idx < 0) {
+            return null;
+        }
+        return get(idx, proxy.getNodeId());
+    }
+
+    @Override
+    public NodeProxy get(final DocumentImpl doc, final NodeId nodeId) {
+        sort();
+        final int idx = findDoc(doc);
+        if (idx < 0) {
+            return null;
+        }
+        return get(idx, nodeId);
+    }
+
+    protected NodeProxy get(final int docIdx, final NodeId nodeId) {
+        if (!isSorted()) {
+            sort();
+        }
+        final int pos = findNode(docIdx, nodeId);
+        return pos < 0 ? null : nodeAt(pos);
+    }
+
+    @Override
+    public void setSelfAsContext(final int contextId) throws XPathException {
+        for (int i = 0; i < size; i++) {
+            final NodeProxy node = nodeAt(i);
+            node.addContextNode(contextId, node);
+        }
+    }
+
+    @Override
+    public NodeSet selectPrecedingSiblings(final NodeSet contextSet, final int contextId) {
+        sort();
+        final NodeSet result = newInstance();
+        for (final NodeProxy reference : contextSet) {
+            final NodeId parentId = reference.getNodeId().getParentId();
+            final int docIdx = findDoc(reference.getOwnerDocument());
+            if (docIdx < 0) {
+                continue;
+            }
+            // do a binary search to pick some node in the range of valid
+            // child ids
+            int low = documentNodesOffset[docIdx];
+            int high = low + (documentNodesCount[docIdx] - 1);
+            final int end = low + documentNodesCount[docIdx];
+            int mid = low;
+            int cmp;
+            NodeProxy p = null;
+            while (low <= high) {
+                mid = (low + high) / 2;
+                p = nodeAt(mid);
+                if (p.getNodeId().isDescendantOf(parentId)
+                        || (parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1)) {
+                    break;    // found a child node, break out.
+                }
+                cmp = p.getNodeId().compareTo(parentId);
+                if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            if (low > high) {
+                continue; // no node found
+            }
+            // find the first child node in the range
+            while (mid < end && nodeAt(mid).getNodeId().isDescendantOf(parentId)) {
+                ++mid;
+            }
+
+            if (mid == 0 && parentId.equals(NodeId.DOCUMENT_NODE)) {
+                mid = getLength();
+            }
+
+            --mid;
+
+            final NodeId refId = reference.getNodeId();
+            for (int i = mid; i >= documentNodesOffset[docIdx]; i--) {
+                final NodeProxy node = nodeAt(i);
+                final NodeId currentId = node.getNodeId();
+                if (!(currentId.isDescendantOf(parentId) || (p != null && parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1))) {
+                    break;
+                }
+                if (currentId.getTreeLevel() == refId.getTreeLevel() && currentId.compareTo(refId) < 0) {
+                    addWithContext(result, node, reference, contextId);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeSet selectFollowingSiblings(final NodeSet contextSet, final int contextId) {
+        sort();
+        final NodeSet result = newInstance();
+        for (final NodeProxy reference : contextSet) {
+            final NodeId parentId = reference.getNodeId().getParentId();
+            final int docIdx = findDoc(reference.getOwnerDocument());
+            if (docIdx < 0) {
+                continue;
+            } //BUG: can't be null, make trouble @LocationStep line 388 -shabanovd
+            // do a binary search to pick some node in the range of valid
+            // child ids
+            int low = documentNodesOffset[docIdx];
+            int high = low + (documentNodesCount[docIdx] - 1);
+            final int end = low + documentNodesCount[docIdx];
+            int mid = low;
+            int cmp;
+            NodeProxy p = null;
+            while (low <= high) {
+                mid = (low + high) / 2;
+                p = nodeAt(mid);
+                if (p.getNodeId().isDescendantOf(parentId)
+                        || (parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1)) {
+                    break;    // found a child node, break out.
+                }
+                cmp = p.getNodeId().compareTo(parentId);
+                if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            if (low > high) {
+                continue; // no node found
+            }
+            // find the first child node in the range
+            while (mid > documentNodesOffset[docIdx] && nodeAt(mid - 1).getNodeId().compareTo(parentId) > -1) {
+                --mid;
+            }
+            final NodeId refId = reference.getNodeId();
+            for (int i = mid; i < end; i++) {
+                final NodeProxy node = nodeAt(i);
+                final NodeId currentId = node.getNodeId();
+                if (!(currentId.isDescendantOf(parentId) || (p != null && parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1))) {
+                    continue;
+                }
+                if (currentId.getTreeLevel() == refId.getTreeLevel() && currentId.compareTo(refId) > 0) {
+                    addWithContext(result, node, reference, contextId);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeSet selectFollowing(final NodeSet fl, final int contextId) throws XPathException {
+        return selectFollowing(fl, -1, contextId);
+    }
+
+    @Override
+    public NodeSet selectFollowing(final NodeSet pl, final int position, final int contextId) throws XPathException, UnsupportedOperationException {
+        sort();
+        final NodeSet result = newInstance();
+        for (final NodeProxy reference : pl) {
+            final int idx = findDoc(reference.getOwnerDocument());
+            if (idx < 0) {
+                continue;
+            }
+            final int docId = reference.getOwnerDocument().getDocId();
+            int i = documentNodesOffset[idx];
+            for (; i < size; i++) {
+                if (docIdAt(i) != docId ||
+                    (nodeAt(i).compareTo(reference) > 0 &&
+                        !nodeAt(i).getNodeId().isDescendantOf(reference.getNodeId()))) {
+                    break;
+                }
+            }
+            int n = 0;
+            for (int j = i; j < size; j++) {
+                if (docIdAt(j) != docId) {
+                    break;
+                }
+                final NodeProxy node = nodeAt(j);
+                if (!reference.getNodeId().isDescendantOf(node.getNodeId())) {
+                    if (position < 0 || ++n == position) {
+                        addWithContext(result, node, reference, contextId);
+                    }
+                    if (n == position) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeSet selectPreceding(final NodeSet pl, final int contextId) throws XPathException {
+        return selectPreceding(pl, -1, contextId);
+    }
+
+    @Override
+    public NodeSet selectPreceding(final NodeSet pl, final int position, final int contextId)
+            throws XPathException, UnsupportedOperationException {
+        sort();
+        final NodeSet result = newInstance();
+        for (final NodeProxy reference : pl) {
+            final int idx = findDoc(reference.getOwnerDocument());
+            if (idx < 0) {
+                continue;
+            }
+            int i = documentNodesOffset[idx];
+            // TODO: check document id
+            for (; i < size; i++) {
+                if (nodeAt(i).compareTo(reference) >= 0) {
+                    break;
+                }
+            }
+            --i;
+            int n = 0;
+            for (int j = i; j >= documentNodesOffset[idx]; j--) {
+                final NodeProxy node = nodeAt(j);
+                if (!reference.getNodeId().isDescendantOf(node.getNodeId())) {
+                    if (position < 0 || ++n == position) {
+                        addWithContext(result, node, reference, contextId);
+                    }
+                    if (n == position) {
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add a node selected for a reference node to the result of a
+     * selection on an axis, unless it already has the context of the reference node.
+     */
+    private static void addWithContext(final NodeSet result, final NodeProxy node, final NodeProxy reference,
+            final int contextId) {
+        if (contextId != Expression.IGNORE_CONTEXT
+                && node.getContext() != null
+                && reference.getContext() != null
+                && node.getContext().getContextId() == reference.getContext().getContextId()) {
+            return;
+        }
+
+        if (Expression.IGNORE_CONTEXT != contextId) {
+            if (Expression.NO_CONTEXT_ID == contextId) {
+                node.copyContext(reference);
+            } else {
+                node.addContextNode(contextId, reference);
+            }
+        }
+        result.add(node);
+    }
+
+    @Override
+    public NodeProxy parentWithChild(final DocumentImpl doc, final NodeId nodeId, final boolean directParent, final boolean includeSelf) {
+        sort();
+        final int docIdx = findDoc(doc);
+        if (docIdx < 0) {
+            return null;
+        }
+        return parentWithChild(docIdx, nodeId, directParent, includeSelf);
+    }
+
+    /**
+     * Check if the node identified by its node id has an ancestor
+     * contained in this node set and return the ancestor found.
+     *
+     * If directParent is true, only immediate ancestors (parents) are
+     * considered. Otherwise the method will call itself recursively for
+     * all the node's parents.
+     *
+     * If includeSelf is true, the method returns also true if the node
+     * itself is contained in the node set.
+     *
+     * @param nodeId       a <code>NodeId</code> value
+     * @param directParent a <code>boolean</code> value
+     * @param includeSelf  a <code>boolean</code> value
+     * @return a <code>NodeProxy</code> value
+     */
+    private NodeProxy parentWithChild(final int docIdx, final NodeId nodeId, final boolean directParent, final boolean includeSelf) {
+        NodeProxy temp;
+        if (includeSelf && (temp = get(docIdx, nodeId)) != null) {
+            return temp;
+        }
+        NodeId parentNodeId = nodeId.getParentId();
+        while (parentNodeId != null) {
+            if ((temp = get(docIdx, parentNodeId)) != null) {
+                return temp;
+            } else if (directParent) {
+                return null;
+            }
+            parentNodeId = parentNodeId.getParentId();
+        }
+        return null;
+    }
+
+    @Override
+    public NodeSet except(final NodeSet other) {
+        final NodeSet result = newInstance();
+        for (int i = 0; i < size; i++) {
+            final NodeProxy node = nodeAt(i);
+            if (!other.contains(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeSet getContextNodes(final int contextId) {
+        final NodeSet result = newInstance();
+        DocumentImpl lastDoc = null;
+        for (int i = 0; i < size; i++) {
+            final NodeProxy current = nodeWithContextAt(i);
+            if (current == null) {
+                continue;
+            }
+            ContextItem contextNode = current.getContext();
+            while (contextNode != null) {
+                if (contextNode.getContextId() == contextId) {
+                    final NodeProxy context = contextNode.getNode();
+                    context.addMatches(current);
+                    if (Expression.NO_CONTEXT_ID != contextId) {
+                        context.addContextNode(contextId, context);
+                    }
+                    if (lastDoc != null && lastDoc.getDocId() != context.getOwnerDocument().getDocId()) {
+                        lastDoc = context.getOwnerDocument();
+                        result.add(context, getSizeHint(lastDoc));
+                    } else {
+                        result.add(context);
+                    }
+                }
+                contextNode = contextNode.getNextDirect();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The method <code>debugParts</code>
+     *
+     * @return a <code>String</code> value
+     */
+    public String debugParts() {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < documentCount; i++) {
+            buf.append(documentIds[i]);
+            buf.append(' ');
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public int getIndexType() {
+        //Is the index type initialized ?
+        if (indexType == Type.ANY_TYPE) {
+            for (int i = 0; i < size; i++) {
+                final NodeProxy node = nodeAt(i);
+                if (node.getOwnerDocument().getCollection().isTempCollection()) {
+                    //Temporary nodes return default values
+                    indexType = Type.ITEM;
+                    break;
+                }
+                final int nodeIndexType = node.getIndexType();
+                //Refine type
+                //TODO : use common subtype
+                if (indexType == Type.ANY_TYPE) {
+                    indexType = nodeIndexType;
+                } else {
+                    //Broaden type
+                    //TODO : use common supertype
+                    if (indexType != nodeIndexType) {
+                        indexType = Type.ITEM;
+                    }
+                }
+            }
+        }
+        return indexType;
+    }
+
+    @Override
+    public boolean equalDocs(final DocumentSet other) {
+        if (this == other) {
+            return true;
+        }
+
+        sort();
+        if (documentCount != other.getDocumentCount()) {
+            return false;
+        } else {
+            for (int i = 0; i < documentCount; i++) {
+                if (!other.contains(documentIds[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public Iterator<Collection> getCollectionIterator() {
+        sort();
+        if (cachedCollections == null) {
+            cachedCollections = new HashSet<>();
+            for (int i = 0; i < documentCount; i++) {
+                cachedCollections.add(documentAt(i).getCollection());
+            }
+        }
+        return cachedCollections.iterator();
+    }
+
+    @Override
+    public Iterator<DocumentImpl> getDocumentIterator() {
+        sort();
+        return new DocumentIterator();
+    }
+
+    @Override
+    public int getDocumentCount() {
+        sort();
+        return documentCount;
+    }
+
+    @Override
+    public DocumentImpl getDoc(final int docId) {
+        sort();
+        final int idx = findDoc(docId);
+        if (idx < 0) {
+            return null;
+        }
+        return documentAt(idx);
+    }
+
+    @Override
+    public XmldbURI[] getNames() {
+        sort();
+        final XmldbURI[] uris = new XmldbURI[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            uris[i] = documentAt(i).getURI();
+        }
+        return uris;
+    }
+
+    @Override
+    public DocumentSet intersection(final DocumentSet other) {
+        sort();
+        final DefaultDocumentSet set = new DefaultDocumentSet();
+
+        //left
+        for (int i = 0; i < documentCount; i++) {
+            if (other.contains(documentIds[i])) {
+                set.add(documentAt(i));
+            }
+        }
+
+        //right
+        for (final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            final DocumentImpl doc = i.next();
+            if (contains(doc.getDocId()) && (!set.contains(doc.getDocId()))) {
+                set.add(doc);
+            }
+        }
+
+        return set;
+    }
+
+    @Override
+    public boolean contains(final DocumentSet other) {
+        sort();
+        if (other.getDocumentCount() > documentCount) {
+            return false;
+        }
+
+        for (final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            final DocumentImpl doc = i.next();
+            if (!contains(doc.getDocId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final int docId) {
+        sort();
+        return findDoc(docId) > -1;
+    }
+
+    @Override
+    public boolean containsReference(final Item item) {
+        final NodeProxy node = findItem(item);
+        return node != null && node == item;
+    }
+
+    @Override
+    public boolean contains(final Item item) {
+        final NodeProxy node = findItem(item);
+        return node != null && node.equals(item);
+    }
+
+    private @Nullable NodeProxy findItem(final Item item) {
+        sort();
+        if (item instanceof Node) {
+            @Nullable final Document doc;
+            if (item instanceof Document) {
+                doc = (Document) item;
+            } else {
+                doc = ((Node) item).getOwnerDocument();
+            }
+
+            if (doc == null || !(doc instanceof DocumentImpl || doc instanceof org.exist.dom.memtree.DocumentImpl)) {
+                return null;
+            }
+
+            final int docId;
+            if (doc instanceof DocumentImpl) {
+                docId = ((DocumentImpl) doc).getDocId();
+            } else {
+                docId = (int) ((org.exist.dom.memtree.DocumentImpl) doc).getDocId();
+            }
+
+            final int idx = findDoc(docId);
+            if (idx < 0) {
+                return null;
+            }
+
+            return get(idx, ((INode) item).getNodeId());
+        }
+
+        return null;
+    }
+
+    @Override
+    public NodeSet docsToNodeSet() {
+        sort();
+        final NodeSet result = newInstance();
+        for (int i = 0; i < documentCount; i++) {
+            final DocumentImpl doc = documentAt(i);
+            if (doc.getResourceType() == DocumentImpl.XML_FILE) { // skip binary resources
+                result.add(new NodeProxy(null, doc, NodeId.DOCUMENT_NODE));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ManagedLocks<ManagedDocumentLock> lock(final DBBroker broker, final boolean exclusive) throws LockException {
+        sort();
+        final LockManager lockManager = broker.getBrokerPool().getLockManager();
+        final ManagedDocumentLock[] managedDocumentLocks = new ManagedDocumentLock[documentCount];
+        try {
+            for (int idx = 0; idx < documentCount; idx++) {
+                final DocumentImpl doc = documentAt(idx);
+                final ManagedDocumentLock managedDocumentLock;
+                if (exclusive) {
+                    managedDocumentLock = lockManager.acquireDocumentWriteLock(doc.getURI());
+                } else {
+                    managedDocumentLock = lockManager.acquireDocumentReadLock(doc.getURI());
+                }
+                managedDocumentLocks[idx] = managedDocumentLock;
+            }
+            return new ManagedLocks<>(managedDocumentLocks);
+        } catch (final LockException e) {
+            // unlock any previously locked documents
+            new ManagedLocks<>(managedDocumentLocks).close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void clearContext(final int contextId) throws XPathException {
+        for (int i = 0; i < size; i++) {
+            final NodeProxy node = nodeWithContextAt(i);
+            if (node != null) {
+                node.clearContext(contextId);
+            }
+        }
+    }
+
+    private class DocumentIterator implements Iterator<DocumentImpl> {
+
+        private int currentDoc = 0;
+
+        @Override
+        public final boolean hasNext() {
+            return currentDoc < documentCount;
+        }
+
+        @Override
+        public final DocumentImpl next() {
+            if (currentDoc == documentCount) {
+                throw new NoSuchElementException();
+            } else {
+                return documentAt(currentDoc++);
+            }
+        }
+
+        @Override
+        public final void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected class ArrayIterator implements NodeSetIterator, SequenceIterator {
+        private int pos = 0;
+
+        @Override
+        public final boolean hasNext() {
+            return pos < size && pos > -1;
+        }
+
+        @Override
+        public final NodeProxy next() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                throw new NoSuchElementException();
+            }
+            return nodeAt(pos++);
+        }
+
+        @Override
+        public long skippable() {
+            if (pos == -1) {
+                return 0;
+            }
+            return size - pos;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skip = Math.min(n, pos == -1 ? 0 : size - pos);
+            pos += skip;
+            return skip;
+        }
+
+        @Override
+        public final void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public final NodeProxy peekNode() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return nodeAt(pos);
+        }
+
+        @Override
+        public final Item nextItem() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return nodeAt(pos++);
+        }
+
+        @Override
+        public void setPosition(final NodeProxy proxy) {
+            final int docIdx = findDoc(proxy.getOwnerDocument());
+            if (docIdx > -1) {
+                pos = findNode(docIdx, proxy.getNodeId());
+                return;
+            }
+            pos = -1;
+        }
+    }
+}
@@ -0,0 +1,739 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.jcip.annotations.NotThreadSafe;
+import org.exist.dom.QName;
+import org.exist.numbering.DLN;
+import org.exist.numbering.NodeId;
+import org.exist.xquery.Constants;
+import org.exist.xquery.Expression;
+import org.exist.xquery.value.Type;
+import org.w3c.dom.Node;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A node set which stores its nodes column-wise in primitive arrays,
+ * instead of as an array of {@link NodeProxy} objects.
+ *
+ * For each node, the document id, the address and the node type are held in
+ * parallel int[], long[] and short[] columns. The node ids are held in their
+ * serialized form (see {@link NodeId#serialize(byte[], int)}) in a single byte[]
+ * which is shared by all of the nodes of the set, and the column for each node
+ * holds the offset and the number of bits of its node id.
+ *
+ * A {@link NodeProxy} is only created for a node when it is first requested,
+ * e.g. by {@link #get(int)} or an iterator, and is then kept, so that the context
+ * and matches which are added to it by the caller are not lost. Nodes which are
+ * added as a {@link NodeProxy} are kept as well.
+ *
+ * The structural joins ({@link #selectParentChild(NodeSet, int, int)} and
+ * {@link #selectAncestorDescendant(NodeSet, int, boolean, int, boolean)}) compare the
+ * serialized node ids directly, see
+ * {@link NodeSetHelper#selectDescendants(ColumnarNodeSet, ColumnarNodeSet, boolean, boolean, int, int, boolean)}.
+ *
+ * Like {@link NewArrayNodeSet}, nodes may be added in any order; the set is sorted and
+ * duplicates are removed when it is first read. The operations which work on the nodes
+ * as {@link NodeProxy} are shared with it, see {@link AbstractSortedArrayNodeSet}.
+ */
+@NotThreadSafe
+public class ColumnarNodeSet extends AbstractSortedArrayNodeSet {
+
+    private static final int INITIAL_ID_BYTES = 8;
+
+    /**
+     * The documents of the nodes in the set, by document id
+     */
+    private final Int2ObjectMap<DocumentImpl> documents = new Int2ObjectOpenHashMap<>();
+
+    // the columns, one entry for each node
+    private int[] docIds;
+    private int[] idOffsets;
+    private short[] idUnits;
+    private long[] addresses;
+    private short[] nodeTypes;
+    @Nullable private QName[] qnames = null;
+    @Nullable private NodeProxy[] proxies = null;
+
+    /**
+     * The serialized node ids of all of the nodes
+     */
+    private byte[] ids;
+    private int idsLength = 0;
+
+    /**
+     * Used to serialize a node id which is to be looked up in the set
+     */
+    private byte[] key = new byte[INITIAL_ID_BYTES];
+
+    public ColumnarNodeSet() {
+        this(INITIAL_SIZE);
+    }
+
+    public ColumnarNodeSet(final int initialSize) {
+        final int capacity = Math.max(initialSize, 1);
+        docIds = new int[capacity];
+        idOffsets = new int[capacity];
+        idUnits = new short[capacity];
+        addresses = new long[capacity];
+        nodeTypes = new short[capacity];
+        ids = new byte[capacity * INITIAL_ID_BYTES];
+    }
+
+    public ColumnarNodeSet(final ColumnarNodeSet other) {
+        size = other.size;
+        isSorted = other.isSorted;
+        hasOne = other.hasOne;
+        itemType = other.itemType;
+        documents.putAll(other.documents);
+        copyDocs(other);
+        docIds = other.docIds.clone();
+        idOffsets = other.idOffsets.clone();
+        idUnits = other.idUnits.clone();
+        addresses = other.addresses.clone();
+        nodeTypes = other.nodeTypes.clone();
+        qnames = other.qnames == null ? null : other.qnames.clone();
+        proxies = other.proxies == null ? null : other.proxies.clone();
+        ids = other.ids.clone();
+        idsLength = other.idsLength;
+    }
+
+    private void ensureCapacity(final int idBytes) {
+        if (size == docIds.length) {
+            final int nsize = size << 1;
+            docIds = Arrays.copyOf(docIds, nsize);
+            idOffsets = Arrays.copyOf(idOffsets, nsize);
+            idUnits = Arrays.copyOf(idUnits, nsize);
+            addresses = Arrays.copyOf(addresses, nsize);
+            nodeTypes = Arrays.copyOf(nodeTypes, nsize);
+            if (qnames != null) {
+                qnames = Arrays.copyOf(qnames, nsize);
+            }
+            if (proxies != null) {
+                proxies = Arrays.copyOf(proxies, nsize);
+            }
+        }
+        if (idsLength + idBytes > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(ids.length << 1, idsLength + idBytes));
+        }
+    }
+
+    @Override
+    public NodeSet copy() {
+        return new ColumnarNodeSet(this);
+    }
+
+    @Override
+    public void reset() {
+        documents.clear();
+        if (qnames != null) {
+            Arrays.fill(qnames, null);
+        }
+        proxies = null;
+        documentCount = 0;
+        idsLength = 0;
+        size = 0;
+        isSorted = false;
+        state = 0;
+    }
+
+    @Override
+    public void add(final NodeProxy proxy, final int sizeHint) {
+        final NodeId nodeId = proxy.getNodeId();
+        toKey(nodeId);
+        final int row = addRow(proxy.getOwnerDocument(), key, 0, nodeId.units(), proxy.getNodeType(),
+                proxy.getInternalAddress(), null);
+        if (proxies == null) {
+            proxies = new NodeProxy[docIds.length];
+        }
+        proxies[row] = proxy;
+        checkItemType(proxy.getType());
+    }
+
+    @Override
+    protected final void addInternal(final NodeProxy proxy, final int sizeHint) {
+        add(proxy, sizeHint);
+    }
+
+    /**
+     * Add a node to the set without creating a {@link NodeProxy} for it.
+     *
+     * @param doc the document of the node
+     * @param nodeId the id of the node
+     * @param nodeType the DOM type of the node, or {@link NodeProxy#UNKNOWN_NODE_TYPE}
+     * @param address the internal address of the node, or {@link StoredNode#UNKNOWN_NODE_IMPL_ADDRESS}
+     */
+    public void add(final DocumentImpl doc, final NodeId nodeId, final short nodeType, final long address) {
+        toKey(nodeId);
+        add(doc, key, 0, nodeId.units(), nodeType, address, null);
+    }
+
+    /**
+     * Add a node to the set without creating a {@link NodeProxy} or a {@link NodeId} for it.
+     *
+     * @param doc the document of the node
+     * @param data the byte[] holding the serialized node id
+     * @param offset the offset of the node id within data
+     * @param units the number of bits used by the node id, see {@link NodeId#units()}
+     * @param nodeType the DOM type of the node, or {@link NodeProxy#UNKNOWN_NODE_TYPE}
+     * @param address the internal address of the node, or {@link StoredNode#UNKNOWN_NODE_IMPL_ADDRESS}
+     * @param qname the name of the node, or null if it is not known
+     */
+    public void add(final DocumentImpl doc, final byte[] data, final int offset, final int units,
+            final short nodeType, final long address, @Nullable final QName qname) {
+        addRow(doc, data, offset, units, nodeType, address, qname);
+        checkItemType(nodeType == NodeProxy.UNKNOWN_NODE_TYPE ? Type.NODE : Type.fromDomNodeType(nodeType));
+    }
+
+    @Override
+    public void addAll(final NodeSet other) {
+        if (other instanceof ColumnarNodeSet otherSet) {
+            for (int i = 0; i < otherSet.size; i++) {
+                add(otherSet, i);
+            }
+        } else {
+            super.addAll(other);
+        }
+    }
+
+    /**
+     * Add a node of another set, keeping its {@link NodeProxy} if one has been created.
+     *
+     * @param other the set holding the node
+     * @param row the index of the node in the other set
+     */
+    void add(final ColumnarNodeSet other, final int row) {
+        if (other.proxies != null && other.proxies[row] != null) {
+            add(other.proxies[row]);
+        } else {
+            add(other.documents.get(other.docIds[row]), other.ids, other.idOffsets[row], other.idUnits[row],
+                    other.nodeTypes[row], other.addresses[row], other.qnames == null ? null : other.qnames[row]);
+        }
+    }
+
+    private int addRow(final DocumentImpl doc, final byte[] data, final int offset, final int units,
+            final short nodeType, final long address, @Nullable final QName qname) {
+        final int len = length(units);
+        final int docId = doc.getDocId();
+        if (size > 0) {
+            if (hasOne) {
+                final int last = size - 1;
+                hasOne = docIds[last] == docId && idUnits[last] == units
+                        && DLN.compare(ids, idOffsets[last], len, data, offset, len) == 0;
+            }
+        } else {
+            hasOne = true;
+        }
+
+        ensureCapacity(len);
+        if (documents.get(docId) == null) {
+            documents.put(docId, doc);
+        }
+        final int row = size++;
+        docIds[row] = docId;
+        idOffsets[row] = idsLength;
+        idUnits[row] = (short) units;
+        addresses[row] = address;
+        nodeTypes[row] = nodeType;
+        if (qname != null) {
+            if (qnames == null) {
+                qnames = new QName[docIds.length];
+            }
+            qnames[row] = qname;
+        } else if (qnames != null) {
+            qnames[row] = null;
+        }
+        if (proxies != null) {
+            proxies[row] = null;
+        }
+        System.arraycopy(data, offset, ids, idsLength, len);
+        idsLength += len;
+
+        isSorted = false;
+        setHasChanged();
+        return row;
+    }
+
+    private static int length(final int units) {
+        return (units + 7) >>> 3;
+    }
+
+    /**
+     * Get the {@link NodeProxy} for a node of the set, creating it if required.
+     *
+     * @param row the index of the node
+     * @return the node
+     */
+    NodeProxy proxy(final int row) {
+        allocateProxies();
+        NodeProxy proxy = proxies[row];
+        if (proxy == null) {
+            proxy = new NodeProxy(null, documents.get(docIds[row]), nodeIdAt(row), nodeTypes[row], addresses[row]);
+            if (qnames != null && qnames[row] != null) {
+                proxy.setQName(qnames[row]);
+            }
+            proxies[row] = proxy;
+        }
+        return proxy;
+    }
+
+    @Override
+    protected NodeProxy nodeAt(final int pos) {
+        return proxy(pos);
+    }
+
+    @Override
+    protected @Nullable NodeProxy nodeWithContextAt(final int pos) {
+        // a node without a proxy has neither a context nor matches
+        return proxies == null ? null : proxies[pos];
+    }
+
+    @Override
+    protected int docIdAt(final int pos) {
+        return docIds[pos];
+    }
+
+    @Override
+    protected DocumentImpl documentAt(final int docIdx) {
+        return documents.get(documentIds[docIdx]);
+    }
+
+    @Override
+    protected ColumnarNodeSet newInstance() {
+        return new ColumnarNodeSet();
+    }
+
+    private NodeId nodeIdAt(final int row) {
+        if (proxies != null && proxies[row] != null) {
+            return proxies[row].getNodeId();
+        }
+        if (DLN.isDocumentNode(ids, idOffsets[row], idUnits[row])) {
+            return NodeId.DOCUMENT_NODE;
+        }
+        return new DLN(idUnits[row], ids, idOffsets[row]);
+    }
+
+    /**
+     * Allocate the column of {@link NodeProxy}, so that {@link #proxy(int)}
+     * may be called for different rows concurrently.
+     */
+    void allocateProxies() {
+        if (proxies == null) {
+            proxies = new NodeProxy[docIds.length];
+        }
+    }
+
+    boolean hasProxies() {
+        return proxies != null;
+    }
+
+    /**
+     * Checks if the caller may have added a context or matches to a node.
+     *
+     * @param row the index of the node
+     * @return true if the node has neither a context nor matches
+     */
+    boolean isPlain(final int row) {
+        if (proxies == null) {
+            return true;
+        }
+        final NodeProxy proxy = proxies[row];
+        return proxy == null || isPlain(proxy);
+    }
+
+    static boolean isPlain(final NodeProxy proxy) {
+        return proxy.getContext() == null && proxy.getMatches() == null;
+    }
+
+    boolean isDocumentNode(final int row) {
+        return DLN.isDocumentNode(ids, idOffsets[row], idUnits[row]);
+    }
+
+    /**
+     * Compares the node ids of two nodes in document order.
+     */
+    static int compareIds(final ColumnarNodeSet set, final int row, final ColumnarNodeSet otherSet, final int otherRow) {
+        return DLN.compare(set.ids, set.idOffsets[row], length(set.idUnits[row]),
+                otherSet.ids, otherSet.idOffsets[otherRow], length(otherSet.idUnits[otherRow]));
+    }
+
+    /**
+     * Computes the relationship of a node to a potential ancestor, see {@link NodeId#computeRelation(NodeId)}.
+     */
+    static int computeRelation(final ColumnarNodeSet set, final int row, final ColumnarNodeSet ancestorSet, final int ancestorRow) {
+        return DLN.computeRelation(set.ids, set.idOffsets[row], set.idUnits[row],
+                ancestorSet.ids, ancestorSet.idOffsets[ancestorRow], ancestorSet.idUnits[ancestorRow]);
+    }
+
+    private int compareRows(final int row1, final int row2) {
+        final int diff = Integer.compare(docIds[row1], docIds[row2]);
+        if (diff != Constants.EQUAL) {
+            return diff;
+        }
+        return DLN.compare(ids, idOffsets[row1], length(idUnits[row1]), ids, idOffsets[row2], length(idUnits[row2]));
+    }
+
+    private int compareRow(final int row, final byte[] data, final int len) {
+        return DLN.compare(ids, idOffsets[row], length(idUnits[row]), data, 0, len);
+    }
+
+    /**
+     * Serializes a node id into {@link #key}.
+     *
+     * @return the length of the serialized node id
+     */
+    private int toKey(final NodeId nodeId) {
+        final int len = nodeId.size();
+        if (key.length < len) {
+            key = new byte[len];
+        }
+        nodeId.serialize(key, 0);
+        return len;
+    }
+
+    /**
+     * Find the first node of a document, which does not precede the given node id.
+     *
+     * @param from the index of the first node of the range to search
+     * @param to the index after the last node of the range to search
+     */
+    int lowerBound(final int from, final int to, final ColumnarNodeSet other, final int otherRow) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (compareIds(this, mid, other, otherRow) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    int getDocumentId(final int docIdx) {
+        return documentIds[docIdx];
+    }
+
+    int getDocumentNodesOffset(final int docIdx) {
+        return documentNodesOffset[docIdx];
+    }
+
+    int getDocumentNodesCount(final int docIdx) {
+        return documentNodesCount[docIdx];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Find the index of a node by binary search, comparing the serialized node ids.
+     *
+     * @return the index of the node, or -1 if the node is not in the set
+     */
+    @Override
+    protected int findNode(final int docIdx, final NodeId nodeId) {
+        if (!isSorted()) {
+            sort();
+        }
+        final int len = toKey(nodeId);
+        int low = documentNodesOffset[docIdx];
+        int high = low + (documentNodesCount[docIdx] - 1);
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareRow(mid, key, len);
+            if (cmp == 0) {
+                return mid;
+            }
+            if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected final NodeSet getDescendantsInSet(final NodeSet al, final boolean childOnly,
+            final boolean includeSelf, final int mode, final int contextId, final boolean copyMatches) {
+        sort();
+        if (al instanceof ColumnarNodeSet) {
+            return NodeSetHelper.selectDescendants(this, (ColumnarNodeSet) al, childOnly, includeSelf,
+                    mode, contextId, copyMatches);
+        }
+        final ColumnarNodeSet result = new ColumnarNodeSet();
+        for (final NodeProxy node : al) {
+            final int docIdx = findDoc(node.getOwnerDocument());
+            if (docIdx > -1) {
+                getDescendantsInSet(docIdx, result, node, childOnly, includeSelf, mode, contextId, copyMatches);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find all nodes in the current set being children or descendants of
+     * the given parent node.
+     *
+     * @param result      the node set to which matching nodes will be appended.
+     * @param parent      the parent node to search for.
+     * @param childOnly   only include child nodes, not descendant nodes
+     * @param includeSelf include the self:: axis
+     * @param mode the selection mode
+     * @param contextId the context id
+     */
+    private void getDescendantsInSet(final int docIdx, final ColumnarNodeSet result, final NodeProxy parent,
+            final boolean childOnly, final boolean includeSelf, final int mode, final int contextId, final boolean copyMatches) {
+        final NodeId parentId = parent.getNodeId();
+        final int start = documentNodesOffset[docIdx];
+        final int end = start + documentNodesCount[docIdx];
+        // document nodes are treated specially
+        if (parentId == NodeId.DOCUMENT_NODE) {
+            for (int i = start; i < end; i++) {
+                final boolean add;
+                if (childOnly) {
+                    add = DLN.getLevelCount(ids, idOffsets[i], idUnits[i], 0) == 1;
+                } else if (includeSelf) {
+                    add = true;
+                } else {
+                    add = !isDocumentNode(i);
+                }
+                if (add) {
+                    addDescendant(result, i, parent, mode, contextId, copyMatches);
+                }
+            }
+        } else {
+            final int len = toKey(parentId);
+            final int units = parentId.units();
+            // the descendants of the parent directly follow it in document order
+            int low = start;
+            int high = end - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (compareRow(mid, key, len) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            for (int i = low; i < end; i++) {
+                final int cmp = DLN.computeRelation(ids, idOffsets[i], idUnits[i], key, 0, units);
+                if (cmp < 0) {
+                    break;
+                }
+                boolean add = true;
+                if (childOnly) {
+                    add = cmp == NodeId.IS_CHILD;
+                } else if (cmp == NodeId.IS_SELF) {
+                    add = includeSelf;
+                }
+                if (add) {
+                    addDescendant(result, i, parent, mode, contextId, copyMatches);
+                }
+            }
+        }
+    }
+
+    private void addDescendant(final ColumnarNodeSet result, final int row, final NodeProxy parent,
+            final int mode, final int contextId, final boolean copyMatches) {
+        final boolean plain = Expression.NO_CONTEXT_ID == contextId && isPlain(row) && isPlain(parent);
+        switch (mode) {
+            case NodeSet.DESCENDANT:
+                if (plain) {
+                    // copying the context and matches would not change the node
+                    result.add(this, row);
+                    break;
+                }
+                final NodeProxy child = proxy(row);
+                if (Expression.NO_CONTEXT_ID != contextId) {
+                    child.deepCopyContext(parent, contextId);
+                } else {
+                    child.copyContext(parent);
+                }
+                if (copyMatches) {
+                    child.addMatches(parent);
+                }
+                result.add(child);
+                break;
+
+            case NodeSet.ANCESTOR:
+                if (!plain) {
+                    final NodeProxy node = proxy(row);
+                    if (Expression.NO_CONTEXT_ID != contextId) {
+                        parent.deepCopyContext(node, contextId);
+                    } else {
+                        parent.copyContext(node);
+                    }
+                    if (copyMatches) {
+                        parent.addMatches(node);
+                    }
+                }
+                result.add(parent, 1);
+                break;
+        }
+    }
+
+    @Override
+    public NodeProxy hasDescendantsInSet(final DocumentImpl doc, final NodeId ancestorId,
+            final boolean includeSelf, final int contextId, final boolean copyMatches) {
+        sort();
+        final int docIdx = findDoc(doc);
+        if (docIdx < 0) {
+            return null;
+        }
+        final int len = toKey(ancestorId);
+        final int units = ancestorId.units();
+        final int start = documentNodesOffset[docIdx];
+        final int end = start + documentNodesCount[docIdx];
+        int low = start;
+        int high = end - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (compareRow(mid, key, len) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        NodeProxy ancestor = null;
+        for (int i = low; i < end; i++) {
+            final int cmp = DLN.computeRelation(ids, idOffsets[i], idUnits[i], key, 0, units);
+            if (cmp < 0) {
+                break;
+            }
+            if (cmp == NodeId.IS_SELF && !includeSelf) {
+                continue;
+            }
+            if (ancestor == null) {
+                ancestor = new NodeProxy(null, documents.get(docIds[start]), ancestorId, Node.ELEMENT_NODE);
+            }
+            if (Expression.NO_CONTEXT_ID != contextId) {
+                ancestor.deepCopyContext(proxy(i), contextId);
+            } else if (!isPlain(i) || ancestor.getContext() != null) {
+                ancestor.copyContext(proxy(i));
+            }
+            if (copyMatches && !isPlain(i)) {
+                ancestor.addMatches(proxy(i));
+            }
+        }
+        return ancestor;
+    }
+
+    @Override
+    public void sort(final boolean mergeContexts) {
+        if (isSorted) {
+            return;
+        }
+        if (size > 1) {
+            // nodes are often added in document order, e.g. from an index scan or a structural join
+            boolean ordered = true;
+            for (int i = 1; i < size; i++) {
+                if (compareRows(i - 1, i) >= 0) {
+                    ordered = false;
+                    break;
+                }
+            }
+            if (!ordered) {
+                final int[] order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                IntArrays.quickSort(order, 0, size, this::compareRows);
+                reorder(order, mergeContexts);
+            }
+        }
+        updateDocs();
+        isSorted = true;
+    }
+
+    /**
+     * Rewrite the columns in the given order, removing duplicate nodes.
+     *
+     * @param order the indexes of the nodes in document order
+     * @param mergeContexts true if the contexts of duplicate nodes should be merged
+     */
+    private void reorder(final int[] order, final boolean mergeContexts) {
+        final int capacity = docIds.length;
+        final int[] nDocIds = new int[capacity];
+        final int[] nIdOffsets = new int[capacity];
+        final short[] nIdUnits = new short[capacity];
+        final long[] nAddresses = new long[capacity];
+        final short[] nNodeTypes = new short[capacity];
+        final QName[] nQNames = qnames == null ? null : new QName[capacity];
+        final NodeProxy[] nProxies = proxies == null ? null : new NodeProxy[capacity];
+        final byte[] nIds = new byte[ids.length];
+        int nIdsLength = 0;
+
+        int j = -1;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            final int row = order[i];
+            if (last > -1 && compareRows(last, row) == 0) {
+                // a duplicate of the last node
+                if (proxies != null && proxies[row] != null) {
+                    final NodeProxy kept = proxy(last);
+                    if (mergeContexts) {
+                        kept.addContext(proxies[row]);
+                    }
+                    kept.addMatches(proxies[row]);
+                    nProxies[j] = kept;
+                }
+                continue;
+            }
+            last = row;
+            j++;
+            final int len = length(idUnits[row]);
+            nDocIds[j] = docIds[row];
+            nIdOffsets[j] = nIdsLength;
+            nIdUnits[j] = idUnits[row];
+            nAddresses[j] = addresses[row];
+            nNodeTypes[j] = nodeTypes[row];
+            if (nQNames != null) {
+                nQNames[j] = qnames[row];
+            }
+            if (nProxies != null) {
+                nProxies[j] = proxies[row];
+            }
+            System.arraycopy(ids, idOffsets[row], nIds, nIdsLength, len);
+            nIdsLength += len;
+        }
+
+        docIds = nDocIds;
+        idOffsets = nIdOffsets;
+        idUnits = nIdUnits;
+        addresses = nAddresses;
+        nodeTypes = nNodeTypes;
+        qnames = nQNames;
+        proxies = nProxies;
+        ids = nIds;
+        idsLength = nIdsLength;
+        size = j + 1;
+    }
+}
@@ -34,11 +34,13 @@ import org.exist.numbering.NodeId;
 import org.exist.security.SecurityManager;
 import org.exist.security.*;
 import org.exist.storage.*;
+import org.exist.storage.dom.DOMFile;
 import org.exist.storage.io.VariableByteInput;
 import org.exist.storage.io.VariableByteOutputStream;
 import org.exist.storage.lock.EnsureContainerLocked;
 import org.exist.storage.lock.EnsureLocked;
 import org.exist.storage.txn.Txn;
+import org.exist.util.Configuration;
 import org.exist.util.MimeType;
 import org.exist.util.XMLString;
 import org.exist.xmldb.XmldbURI;
@@ -736,16 +738,32 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Resource, Do
      * Returns the estimated size of the data in this document.
      *
      * As an estimation, the number of pages occupied by the document
-     * is multiplied with the current page size.
+     * is multiplied with the page size of dom.dbx.
      * @return the estimated size of the data in this document.
      *
      */
     @EnsureContainerLocked(mode=READ_LOCK)
     public long getContentLength() {
-        final long length = pageCount * pool.getPageSize();
+        final long length = pageCount * getDomPageSize();
         return (length < 0) ? 0 : length;
     }
 
+    /**
+     * The page size of dom.dbx as recorded in the header of the open file,
+     * which may differ from the configured page size if the file was created
+     * with another one.
+     *
+     * @return the page size of dom.dbx
+     */
+    private int getDomPageSize() {
+        final Configuration config = pool.getConfiguration();
+        final DOMFile domFile = config == null ? null : (DOMFile) config.getProperty(DOMFile.getConfigKeyForFile());
+        if (domFile != null) {
+            return domFile.getFileHeader().getPageSize();
+        }
+        return pool.getPageSize(DOMFile.FILE_NAME);
+    }
+
     /**
      * The method <code>triggerDefrag</code>
      */
@@ -21,26 +21,11 @@
  */
 package org.exist.dom.persistent;
 
-import org.exist.collections.Collection;
-import org.exist.collections.ManagedLocks;
-import org.exist.dom.INode;
 import org.exist.numbering.NodeId;
-import org.exist.storage.DBBroker;
-import org.exist.storage.lock.LockManager;
-import org.exist.storage.lock.ManagedDocumentLock;
 import org.exist.util.FastQSort;
-import org.exist.util.LockException;
-import org.exist.xmldb.XmldbURI;
-import org.exist.xquery.Constants;
 import org.exist.xquery.Expression;
-import org.exist.xquery.XPathException;
-import org.exist.xquery.value.Item;
-import org.exist.xquery.value.SequenceIterator;
-import org.exist.xquery.value.Type;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
-import javax.annotation.Nullable;
 import java.util.*;
 
 /**
@@ -65,29 +50,7 @@ import java.util.*;
  * @author <a href="mailto:wolfgang@exist-db.org">Wolfgang</a>
  * @since 0.9.3
  */
-public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet, DocumentSet {
-
-    private Set<Collection> cachedCollections = null;
-
-    private int documentCount = 0;
-
-    /**
-     * An array of Document IDs of length {@link #documentCount}
-     */
-    private int documentIds[] = new int[16];
-
-    /**
-     * An array of offsets into {@link #nodes},
-     * the index is the index from {@link #documentNodesOffset}.
-     */
-    private int documentNodesOffset[] = new int[16];
-
-    /**
-     * An array of the node count for each document,
-     * each value is a count of the nodes for a specific document,
-     * the index is the index from {@link #documentNodesOffset}.
-     */
-    private int documentNodesCount[] = new int[16];
+public class NewArrayNodeSet extends AbstractSortedArrayNodeSet {
 
     /**
      * An array of nodes from documents,
@@ -121,13 +84,7 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
         itemType = other.itemType;
         nodes = new NodeProxy[other.nodes.length];
         System.arraycopy(other.nodes, 0, nodes, 0, nodes.length);
-        documentCount = other.documentCount;
-        documentIds = new int[other.documentIds.length];
-        System.arraycopy(other.documentIds, 0, documentIds, 0, documentIds.length);
-        documentNodesOffset = new int[other.documentNodesOffset.length];
-        System.arraycopy(other.documentNodesOffset, 0, documentNodesOffset, 0, documentNodesOffset.length);
-        documentNodesCount = new int[other.documentNodesCount.length];
-        System.arraycopy(other.documentNodesCount, 0, documentNodesCount, 0, documentNodesCount.length);
+        copyDocs(other);
     }
 
     private void ensureCapacity() {
@@ -139,27 +96,6 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
         }
     }
 
-    private int findDoc(DocumentImpl doc) {
-        return findDoc(doc.getDocId());
-    }
-
-    private int findDoc(int docId) {
-        int low = 0;
-        int high = documentCount - 1;
-        while(low <= high) {
-            final int mid = (low + high) >>> 1;
-            final int midVal = documentIds[mid];
-            if(midVal < docId) {
-                low = mid + 1;
-            } else if(midVal > docId) {
-                high = mid - 1;
-            } else {
-                return mid;
-            } // key found
-        }
-        return -(low + 1);  // key not found.
-    }
-
     @Override
     public NodeSet copy() {
         return new NewArrayNodeSet(this);
@@ -181,78 +117,22 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
     }
 
     @Override
-    public int getSizeHint(final DocumentImpl doc) {
-        if(!isSorted()) {
-            sort();
-        }
-        final int idx = findDoc(doc);
-        return idx < 0 ? Constants.NO_SIZE_HINT : documentNodesCount[idx];
-    }
-
-    @Override
-    public NodeSetIterator iterator() {
-        if(!isSorted()) {
-            sort();
-        }
-        return new NewArrayIterator();
-    }
-
-    @Override
-    public SequenceIterator iterate() {
-        sortInDocumentOrder();
-        return new NewArrayIterator();
-    }
-
-    @Override
-    public SequenceIterator unorderedIterator() {
-        if(!isSorted()) {
-            sort();
-        }
-        return new NewArrayIterator();
-    }
-
-    @Override
-    public boolean contains(final NodeProxy proxy) {
-        sort();
-        final int idx = findDoc(proxy.getOwnerDocument());
-        if(idx < 0) {
-            return false;
-        }
-        return get(idx, proxy.getNodeId()) != null;
-    }
-
-    @Override
-    public NodeProxy get(final int pos) {
-        if(pos < 0 || pos >= size) {
-            return null;
-        }
+    protected NodeProxy nodeAt(final int pos) {
         return nodes[pos];
     }
 
     @Override
-    public NodeProxy get(final NodeProxy proxy) {
-        sort();
-        final int idx = findDoc(proxy.getOwnerDocument());
-        if(idx < 0) {
-            return null;
-        }
-        return get(idx, proxy.getNodeId());
+    protected int docIdAt(final int pos) {
+        return nodes[pos].getOwnerDocument().getDocId();
     }
 
     @Override
-    public NodeProxy get(final DocumentImpl doc, final NodeId nodeId) {
-        sort();
-        final int idx = findDoc(doc);
-        if(idx < 0) {
-            return null;
-        }
-        return get(idx, nodeId);
+    protected DocumentImpl documentAt(final int docIdx) {
+        return nodes[documentNodesOffset[docIdx]].getOwnerDocument();
     }
 
-    private NodeProxy get(final int docIdx, final NodeId nodeId) {
-        if(!isSorted()) {
-            sort();
-        }
+    @Override
+    protected int findNode(final int docIdx, final NodeId nodeId) {
         int low = documentNodesOffset[docIdx];
         int high = low + (documentNodesCount[docIdx] - 1);
         int mid;
@@ -263,7 +143,7 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
             p = nodes[mid];
             cmp = p.getNodeId().compareTo(nodeId);
             if(cmp == 0) {
-                return p;
+                return mid;
             }
             if(cmp > 0) {
                 high = mid - 1;
@@ -271,7 +151,12 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
                 low = mid + 1;
             }
         }
-        return null;
+        return -1;
+    }
+
+    @Override
+    protected NewArrayNodeSet newInstance() {
+        return new NewArrayNodeSet();
     }
 
     @Override
@@ -539,50 +424,6 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
         return false;
     }
 
-    private void updateDocs() {
-        if(size == 1) {
-            documentIds[0] = nodes[0].getOwnerDocument().getDocId();
-            documentNodesOffset[0] = 0;
-            documentNodesCount[0] = 1;
-            documentCount = 1;
-        } else {
-            documentCount = 0;
-            for(int i = 0; i < size; i++) {
-                if(i == 0) {
-                    // first document in the set
-                    documentIds[0] = nodes[0].getOwnerDocument().getDocId();
-                    documentNodesOffset[0] = 0;
-                    documentNodesCount[0] = 1;
-                    ++documentCount;
-                } else if(documentIds[documentCount - 1] == nodes[i].getOwnerDocument().getDocId()) {
-                    // node belongs to same document as previous node
-                    ++documentNodesCount[documentCount - 1];
-                } else {
-                    // new document
-                    ensureDocCapacity();
-                    documentIds[documentCount] = nodes[i].getOwnerDocument().getDocId();
-                    documentNodesOffset[documentCount] = i;
-                    documentNodesCount[documentCount++] = 1;
-                }
-            }
-        }
-    }
-
-    private void ensureDocCapacity() {
-        if(documentCount == documentIds.length) {
-            final int nlen = documentCount << 1;
-            int[] temp = new int[nlen];
-            System.arraycopy(documentIds, 0, temp, 0, documentCount);
-            documentIds = temp;
-            temp = new int[nlen];
-            System.arraycopy(documentNodesOffset, 0, temp, 0, documentCount);
-            documentNodesOffset = temp;
-            temp = new int[nlen];
-            System.arraycopy(documentNodesCount, 0, temp, 0, documentCount);
-            documentNodesCount = temp;
-        }
-    }
-
     /**
      * Remove all duplicate nodes from this set.
      *
@@ -607,718 +448,6 @@ public class NewArrayNodeSet extends AbstractArrayNodeSet implements ExtNodeSet,
         return size;
     }
 
-    @Override
-    public void setSelfAsContext(final int contextId) throws XPathException {
-        for(int i = 0; i < size; i++) {
-            nodes[i].addContextNode(contextId, nodes[i]);
-        }
-    }
-
-    @Override
-    public NodeSet selectPrecedingSiblings(final NodeSet contextSet, final int contextId) {
-        sort();
-        final NodeSet result = new NewArrayNodeSet();
-        for(final NodeProxy reference : contextSet) {
-            final NodeId parentId = reference.getNodeId().getParentId();
-            final int docIdx = findDoc(reference.getOwnerDocument());
-            if(docIdx < 0) {
-                continue;
-            }
-            // do a binary search to pick some node in the range of valid
-            // child ids
-            int low = documentNodesOffset[docIdx];
-            int high = low + (documentNodesCount[docIdx] - 1);
-            final int end = low + documentNodesCount[docIdx];
-            int mid = low;
-            int cmp;
-            NodeProxy p = null;
-            while(low <= high) {
-                mid = (low + high) / 2;
-                p = nodes[mid];
-                if(p.getNodeId().isDescendantOf(parentId)
-                        || (parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1)) {
-                    break;    // found a child node, break out.
-                }
-                cmp = p.getNodeId().compareTo(parentId);
-                if(cmp > 0) {
-                    high = mid - 1;
-                } else {
-                    low = mid + 1;
-                }
-            }
-            if(low > high) {
-                continue; // no node found
-            }
-            // find the first child node in the range
-            while(mid < end && nodes[mid].getNodeId().isDescendantOf(parentId)) {
-                ++mid;
-            }
-
-            if (mid == 0 && parentId.equals(NodeId.DOCUMENT_NODE)) {
-                mid = getLength();
-            }
-
-            --mid;
-
-            final NodeId refId = reference.getNodeId();
-            for(int i = mid; i >= documentNodesOffset[docIdx]; i--) {
-                final NodeId currentId = nodes[i].getNodeId();
-                if(!(currentId.isDescendantOf(parentId) || (p != null && parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1))) {
-                    break;
-                }
-                if(currentId.getTreeLevel() == refId.getTreeLevel() && currentId.compareTo(refId) < 0) {
-                    if (contextId != Expression.IGNORE_CONTEXT
-                            && nodes[i].getContext() != null
-                            && reference.getContext() != null
-                            && nodes[i].getContext().getContextId() == reference.getContext().getContextId()) {
-                        continue;
-                    }
-
-                    if(Expression.IGNORE_CONTEXT != contextId) {
-                        if(Expression.NO_CONTEXT_ID == contextId) {
-                            nodes[i].copyContext(reference);
-                        } else {
-                            nodes[i].addContextNode(contextId, reference);
-                        }
-                    }
-                    result.add(nodes[i]);
-                }
-            }
-        }
-        return result;
-    }
-
-    /**
-     * The method <code>selectFollowingSiblings</code>
-     *
-     * @param contextSet a <code>NodeSet</code> value
-     * @param contextId  an <code>int</code> value
-     * @return a <code>NodeSet</code> value
-     */
-    @Override
-    public NodeSet selectFollowingSiblings(final NodeSet contextSet, final int contextId) {
-        sort();
-        final NodeSet result = new NewArrayNodeSet();
-        for(final NodeProxy reference : contextSet) {
-            final NodeId parentId = reference.getNodeId().getParentId();
-            final int docIdx = findDoc(reference.getOwnerDocument());
-            if(docIdx < 0) {
-                continue;
-            } //BUG: can't be null, make trouble @LocationStep line 388 -shabanovd
-            // do a binary search to pick some node in the range of valid
-            // child ids
-            int low = documentNodesOffset[docIdx];
-            int high = low + (documentNodesCount[docIdx] - 1);
-            final int end = low + documentNodesCount[docIdx];
-            int mid = low;
-            int cmp;
-            NodeProxy p = null;
-            while(low <= high) {
-                mid = (low + high) / 2;
-                p = nodes[mid];
-                if(p.getNodeId().isDescendantOf(parentId)
-                        || (parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1)) {
-                    break;    // found a child node, break out.
-                }
-                cmp = p.getNodeId().compareTo(parentId);
-                if(cmp > 0) {
-                    high = mid - 1;
-                } else {
-                    low = mid + 1;
-                }
-            }
-            if(low > high) {
-                continue; // no node found
-            }
-            // find the first child node in the range
-            while(mid > documentNodesOffset[docIdx] && nodes[mid - 1].getNodeId().compareTo(parentId) > -1) {
-                --mid;
-            }
-            final NodeId refId = reference.getNodeId();
-            for(int i = mid; i < end; i++) {
-                final NodeId currentId = nodes[i].getNodeId();
-                if(!(currentId.isDescendantOf(parentId) || (p != null && parentId.equals(NodeId.DOCUMENT_NODE) && p.getNodeId().getTreeLevel() == 1))) {
-                    continue;
-                }
-                if(currentId.getTreeLevel() == refId.getTreeLevel() && currentId.compareTo(refId) > 0) {
-                    if (contextId != Expression.IGNORE_CONTEXT
-                            && nodes[i].getContext() != null
-                            && reference.getContext() != null
-                            && nodes[i].getContext().getContextId() == reference.getContext().getContextId()) {
-                        continue;
-                    }
-
-                    if(Expression.IGNORE_CONTEXT != contextId) {
-                        if(Expression.NO_CONTEXT_ID == contextId) {
-                            nodes[i].copyContext(reference);
-                        } else {
-                            nodes[i].addContextNode(contextId, reference);
-                        }
-                    }
-                    result.add(nodes[i]);
-                }
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public NodeSet selectFollowing(final NodeSet fl, final int contextId) throws XPathException {
-        return selectFollowing(fl, -1, contextId);
-    }
-
-    @Override
-    public NodeSet selectFollowing(final NodeSet pl, final int position, final int contextId) throws XPathException, UnsupportedOperationException {
-        sort();
-        final NodeSet result = new NewArrayNodeSet();
-        for(final NodeProxy reference : pl) {
-            final int idx = findDoc(reference.getOwnerDocument());
-            if(idx < 0) {
-                continue;
-            }
-            int i = documentNodesOffset[idx];
-            for(; i < size; i++) {
-                if(nodes[i].getOwnerDocument().getDocId() != reference.getOwnerDocument().getDocId() ||
-                    (nodes[i].compareTo(reference) > 0 &&
-                        !nodes[i].getNodeId().isDescendantOf(reference.getNodeId()))) {
-                    break;
-                }
-            }
-            int n = 0;
-            for(int j = i; j < size; j++) {
-                if(nodes[j].getOwnerDocument().getDocId() != reference.getOwnerDocument().getDocId()) {
-                    break;
-                }
-                if(!reference.getNodeId().isDescendantOf(nodes[j].getNodeId())) {
-                    if(position < 0 || ++n == position) {
-                        if (contextId != Expression.IGNORE_CONTEXT
-                                && nodes[j].getContext() != null
-                                && reference.getContext() != null
-                                && nodes[j].getContext().getContextId() == reference.getContext().getContextId()) {
-                            continue;
-                        }
-
-                        if(Expression.IGNORE_CONTEXT != contextId) {
-                            if(Expression.NO_CONTEXT_ID == contextId) {
-                                nodes[j].copyContext(reference);
-                            } else {
-                                nodes[j].addContextNode(contextId, reference);
-                            }
-                        }
-                        result.add(nodes[j]);
-                    }
-                    if(n == position) {
-                        break;
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public NodeSet selectPreceding(final NodeSet pl, final int contextId)
-            throws XPathException {
-        return selectPreceding(pl, -1, contextId);
-    }
-
-    @Override
-    public NodeSet selectPreceding(final NodeSet pl, final int position,
-            final int contextId) throws XPathException,
-            UnsupportedOperationException {
-        sort();
-        final NodeSet result = new NewArrayNodeSet();
-        for(final NodeProxy reference : pl) {
-            final int idx = findDoc(reference.getOwnerDocument());
-            if(idx < 0) {
-                continue;
-            }
-            int i = documentNodesOffset[idx];
-            // TODO: check document id
-            for(; i < size; i++) {
-                if(nodes[i].compareTo(reference) >= 0) {
-                    break;
-                }
-            }
-            --i;
-            int n = 0;
-            for(int j = i; j >= documentNodesOffset[idx]; j--) {
-                if(!reference.getNodeId().isDescendantOf(nodes[j].getNodeId())) {
-                    if(position < 0 || ++n == position) {
-                        if (contextId != Expression.IGNORE_CONTEXT
-                                && nodes[j].getContext() != null
-                                && reference.getContext() != null
-                                && nodes[j].getContext().getContextId() == reference.getContext().getContextId()) {
-                            continue;
-                        }
-
-                        if(Expression.IGNORE_CONTEXT != contextId) {
-                            if(Expression.NO_CONTEXT_ID == contextId) {
-                                nodes[j].copyContext(reference);
-                            } else {
-                                nodes[j].addContextNode(contextId, reference);
-                            }
-                        }
-                        result.add(nodes[j]);
-                    }
-                    if(n == position) {
-                        break;
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public NodeProxy parentWithChild(final DocumentImpl doc, final NodeId nodeId, final boolean directParent, final boolean includeSelf) {
-        sort();
-        final int docIdx = findDoc(doc);
-        if(docIdx < 0) {
-            return null;
-        }
-        return parentWithChild(docIdx, nodeId, directParent, includeSelf);
-    }
-
-    /**
-     * Check if the node identified by its node id has an ancestor
-     * contained in this node set and return the ancestor found.
-     *
-     * If directParent is true, only immediate ancestors (parents) are
-     * considered. Otherwise the method will call itself recursively for
-     * all the node's parents.
-     *
-     * If includeSelf is true, the method returns also true if the node
-     * itself is contained in the node set.
-     *
-     * @param nodeId       a <code>NodeId</code> value
-     * @param directParent a <code>boolean</code> value
-     * @param includeSelf  a <code>boolean</code> value
-     * @return a <code>NodeProxy</code> value
-     */
-    private NodeProxy parentWithChild(final int docIdx, final NodeId nodeId, final boolean directParent, final boolean includeSelf) {
-        NodeProxy temp;
-        if(includeSelf && (temp = get(docIdx, nodeId)) != null) {
-            return temp;
-        }
-        NodeId parentNodeId = nodeId.getParentId();
-        while(parentNodeId != null) {
-            if((temp = get(docIdx, parentNodeId)) != null) {
-                return temp;
-            } else if(directParent) {
-                return null;
-            }
-            parentNodeId = parentNodeId.getParentId();
-        }
-        return null;
-    }
-
-    @Override
-    public NodeSet except(final NodeSet other) {
-        final NewArrayNodeSet result = new NewArrayNodeSet();
-        for(int i = 0; i < size; i++) {
-            if(!other.contains(nodes[i])) {
-                result.add(nodes[i]);
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public NodeSet getContextNodes(final int contextId) {
-        final NewArrayNodeSet result = new NewArrayNodeSet();
-        DocumentImpl lastDoc = null;
-        for(int i = 0; i < size; i++) {
-            final NodeProxy current = nodes[i];
-            ContextItem contextNode = current.getContext();
-            while(contextNode != null) {
-                if(contextNode.getContextId() == contextId) {
-                    final NodeProxy context = contextNode.getNode();
-                    context.addMatches(current);
-                    if(Expression.NO_CONTEXT_ID != contextId) {
-                        context.addContextNode(contextId, context);
-                    }
-                    if(lastDoc != null && lastDoc.getDocId() != context.getOwnerDocument().getDocId()) {
-                        lastDoc = context.getOwnerDocument();
-                        result.add(context, getSizeHint(lastDoc));
-                    } else {
-                        result.add(context);
-                    }
-                }
-                contextNode = contextNode.getNextDirect();
-            }
-        }
-        return result;
-    }
-
-    /**
-     * The method <code>debugParts</code>
-     *
-     * @return a <code>String</code> value
-     */
-    public String debugParts() {
-        final StringBuilder buf = new StringBuilder();
-        for(int i = 0; i < documentCount; i++) {
-            buf.append(documentIds[i]);
-            buf.append(' ');
-        }
-        return buf.toString();
-    }
-
-    @Override
-    public int getIndexType() {
-        //Is the index type initialized ?
-        if(indexType == Type.ANY_TYPE) {
-            for(int i = 0; i < size; i++) {
-                final NodeProxy node = nodes[i];
-                if(node.getOwnerDocument().getCollection().isTempCollection()) {
-                    //Temporary nodes return default values
-                    indexType = Type.ITEM;
-                    break;
-                }
-                int nodeIndexType = node.getIndexType();
-                //Refine type
-                //TODO : use common subtype
-                if(indexType == Type.ANY_TYPE) {
-                    indexType = nodeIndexType;
-                } else {
-                    //Broaden type
-                    //TODO : use common supertype
-                    if(indexType != nodeIndexType) {
-                        indexType = Type.ITEM;
-                    }
-                }
-            }
-        }
-        return indexType;
-    }
-
-    @Override
-    public boolean equalDocs(final DocumentSet other) {
-        if(this == other) {
-            return true;
-        }
-
-        sort();
-        if(documentCount != other.getDocumentCount()) {
-            return false;
-        } else {
-            for(int i = 0; i < documentCount; i++) {
-                if(!other.contains(documentIds[i])) {
-                    return false;
-                }
-            }
-            return true;
-        }
-    }
-
-    @Override
-    public Iterator<Collection> getCollectionIterator() {
-        sort();
-        if(cachedCollections == null) {
-            cachedCollections = new HashSet<>();
-            for(int i = 0; i < documentCount; i++) {
-                final DocumentImpl doc = nodes[documentNodesOffset[i]].getOwnerDocument();
-                if(!cachedCollections.contains(doc.getCollection())) {
-                    cachedCollections.add(doc.getCollection());
-                }
-            }
-        }
-        return cachedCollections.iterator();
-    }
-
-    @Override
-    public Iterator<DocumentImpl> getDocumentIterator() {
-        sort();
-        return new DocumentIterator();
-    }
-
-    @Override
-    public int getDocumentCount() {
-        sort();
-        return documentCount;
-    }
-
-    @Override
-    public DocumentImpl getDoc(final int docId) {
-        sort();
-        final int idx = findDoc(docId);
-        if(idx < 0) {
-            return null;
-        }
-        return nodes[documentNodesOffset[idx]].getOwnerDocument();
-    }
-
-    @Override
-    public XmldbURI[] getNames() {
-        sort();
-        final XmldbURI[] uris = new XmldbURI[documentCount];
-        for(int i = 0; i < documentCount; i++) {
-            uris[i] = nodes[documentNodesOffset[i]].getOwnerDocument().getURI();
-        }
-        return uris;
-    }
-
-    @Override
-    public DocumentSet intersection(final DocumentSet other) {
-        sort();
-        final DefaultDocumentSet set = new DefaultDocumentSet();
-
-        //left
-        for(int i = 0; i < documentCount; i++) {
-            final DocumentImpl doc = nodes[documentNodesOffset[i]].getOwnerDocument();
-            if(other.contains(doc.getDocId())) {
-                set.add(doc);
-            }
-        }
-
-        //right
-        for(final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
-            final DocumentImpl doc = i.next();
-            if(contains(doc.getDocId()) && (!set.contains(doc.getDocId()))) {
-                set.add(doc);
-            }
-        }
-
-        return set;
-    }
-
-    @Override
-    public boolean contains(final DocumentSet other) {
-        sort();
-        if(other.getDocumentCount() > documentCount) {
-            return false;
-        }
-
-        for(final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
-            final DocumentImpl doc = i.next();
-            if(!contains(doc.getDocId())) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    @Override
-    public boolean contains(final int docId) {
-        sort();
-        return findDoc(docId) > -1;
-    }
-
-    @Override
-    public boolean containsReference(final Item item) {
-        sort();
-        if (item instanceof Node) {
-            @Nullable final Document doc;
-            if (item instanceof Document) {
-                doc = (Document) item;
-            } else {
-                doc = ((Node) item).getOwnerDocument();
-            }
-
-            if (doc == null || !(doc instanceof DocumentImpl || doc instanceof org.exist.dom.memtree.DocumentImpl)) {
-                return false;
-            }
-
-            final int docId;
-            if (doc instanceof DocumentImpl) {
-                docId = ((DocumentImpl) doc).getDocId();
-            } else {
-                docId = (int) ((org.exist.dom.memtree.DocumentImpl) doc).getDocId();
-            }
-
-            final int idx = findDoc(docId);
-            if (idx < 0) {
-                return false;
-            }
-
-            return get(idx, ((INode) item).getNodeId()) == item;
-        }
-
-        return false;
-    }
-
-    @Override
-    public boolean contains(final Item item) {
-        sort();
-        if (item instanceof Node) {
-            @Nullable final Document doc;
-            if (item instanceof Document) {
-                doc = (Document) item;
-            } else {
-                doc = ((Node) item).getOwnerDocument();
-            }
-
-            if (doc == null || !(doc instanceof DocumentImpl || doc instanceof org.exist.dom.memtree.DocumentImpl)) {
-                return false;
-            }
-
-            final int docId;
-            if (doc instanceof DocumentImpl) {
-                docId = ((DocumentImpl) doc).getDocId();
-            } else {
-                docId = (int) ((org.exist.dom.memtree.DocumentImpl) doc).getDocId();
-            }
-
-            final int idx = findDoc(docId);
-            if (idx < 0) {
-                return false;
-            }
-
-            return get(idx, ((INode) item).getNodeId()).equals(item);
-        }
-
-        return false;
-    }
-
-    @Override
-    public NodeSet docsToNodeSet() {
-        sort();
-        final NodeSet result = new NewArrayNodeSet();
-        DocumentImpl doc;
-        for(int i = 0; i < documentCount; i++) {
-            doc = nodes[documentNodesOffset[i]].getOwnerDocument();
-            if(doc.getResourceType() == DocumentImpl.XML_FILE) { // skip binary resources
-                result.add(new NodeProxy(null, doc, NodeId.DOCUMENT_NODE));
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public ManagedLocks<ManagedDocumentLock> lock(final DBBroker broker, final boolean exclusive) throws LockException {
-        sort();
-        final LockManager lockManager = broker.getBrokerPool().getLockManager();
-        final ManagedDocumentLock[] managedDocumentLocks = new ManagedDocumentLock[documentCount];
-        try {
-            for (int idx = 0; idx < documentCount; idx++) {
-                final DocumentImpl doc = nodes[documentNodesOffset[idx]].getOwnerDocument();
-                final ManagedDocumentLock managedDocumentLock;
-                if (exclusive) {
-                    managedDocumentLock = lockManager.acquireDocumentWriteLock(doc.getURI());
-                } else {
-                    managedDocumentLock = lockManager.acquireDocumentReadLock(doc.getURI());
-                }
-                managedDocumentLocks[idx] = managedDocumentLock;
-            }
-            return new ManagedLocks<>(managedDocumentLocks);
-        } catch (final LockException e) {
-            // unlock any previously locked documents
-            new ManagedLocks<>(managedDocumentLocks).close();
-            throw e;
-        }
-    }
-
-    private class DocumentIterator implements Iterator<DocumentImpl> {
-
-        private int currentDoc = 0;
-
-        @Override
-        public final boolean hasNext() {
-            return currentDoc < documentCount;
-        }
-
-        @Override
-        public final DocumentImpl next() {
-            if(currentDoc == documentCount) {
-                throw new NoSuchElementException();
-            } else {
-                return nodes[documentNodesOffset[currentDoc++]].getOwnerDocument();
-            }
-        }
-
-        @Override
-        public final void remove() {
-            throw new UnsupportedOperationException();
-        }
-    }
-
-    @Override
-    public void clearContext(final int contextId) throws XPathException {
-        for(int i = 0; i < size; i++) {
-            nodes[i].clearContext(contextId);
-        }
-    }
-
-    protected class NewArrayIterator implements NodeSetIterator, SequenceIterator {
-        private int pos = 0;
-
-        @Override
-        public final boolean hasNext() {
-            return pos < size && pos > -1;
-        }
-
-        @Override
-        public final NodeProxy next() {
-            if(pos == size || pos < 0) {
-                pos = -1;
-                throw new NoSuchElementException();
-            }
-            return nodes[pos++];
-        }
-
-        @Override
-        public long skippable() {
-            if (pos == -1) {
-                return 0;
-            }
-            return size - pos;
-        }
-
-        @Override
-        public long skip(final long n) {
-            final long skip = Math.min(n, pos == -1 ? 0 : size - pos);
-            pos += skip;
-            return skip;
-        }
-
-        @Override
-        public final void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public final NodeProxy peekNode() {
-            if(pos == size || pos < 0) {
-                pos = -1;
-                return null;
-            }
-            return nodes[pos];
-        }
-
-        @Override
-        public final Item nextItem() {
-            if(pos == size || pos < 0) {
-                pos = -1;
-                return null;
-            }
-            return nodes[pos++];
-        }
-
-        @Override
-        public void setPosition(final NodeProxy proxy) {
-            final int docIdx = findDoc(proxy.getOwnerDocument());
-            if(docIdx > -1) {
-                int low = documentNodesOffset[docIdx];
-                int high = low + (documentNodesCount[docIdx] - 1);
-                int mid, cmp;
-                NodeProxy p;
-                while(low <= high) {
-                    mid = (low + high) / 2;
-                    p = nodes[mid];
-                    cmp = p.getNodeId().compareTo(proxy.getNodeId());
-                    if(cmp == 0) {
-                        pos = mid;
-                        return;
-                    }
-                    if(cmp > 0) {
-                        high = mid - 1;
-                    } else {
-                        low = mid + 1;
-                    }
-                }
-            }
-            pos = -1;
-        }
+    protected class NewArrayIterator extends ArrayIterator {
     }
 }
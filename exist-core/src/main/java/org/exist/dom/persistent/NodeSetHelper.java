@@ -26,9 +26,17 @@ import org.exist.storage.DBBroker;
 import org.exist.xquery.Constants;
 import org.exist.xquery.Expression;
 import org.exist.xquery.NodeTest;
+import org.exist.xquery.TerminatedException;
 import org.exist.xquery.XPathException;
+import org.exist.xquery.XQueryWatchDog;
 import org.w3c.dom.*;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * Collection of static methods operating on node sets.
  *
@@ -231,6 +239,285 @@ public final class NodeSetHelper {
         return result;
     }
 
+    /**
+     * For two given sets of potential ancestor and descendant nodes, both held
+     * column-wise, find the pairs of nodes for which the ancestor-descendant
+     * (or parent-child) relationship is true.
+     *
+     * This is a merge join of the two sets in document order, which keeps a stack
+     * of the ancestors enclosing the current descendant, and compares the serialized
+     * node ids of the sets, so each set is read only once and no {@link NodeId} is created.
+     * A {@link NodeProxy} is only created for a node when a context or matches have to be
+     * copied between the pair of nodes.
+     *
+     * The semantics are those of {@link NewArrayNodeSet#selectParentChild(NodeSet, int, int)}
+     * and {@link NewArrayNodeSet#selectAncestorDescendant(NodeSet, int, boolean, int, boolean)}.
+     *
+     * @param dl          A node set containing potential descendant nodes
+     * @param al          A node set containing potential ancestor nodes
+     * @param childOnly   Only select the pairs in a parent-child relationship
+     * @param includeSelf If true, a node is paired with itself (descendant-or-self axis)
+     * @param mode        Selection mode, either {@link NodeSet#DESCENDANT} or {@link NodeSet#ANCESTOR}
+     * @param contextId   Used to track context nodes when evaluating predicate
+     *                    expressions. If contextId != {@link Expression#NO_CONTEXT_ID}, the current
+     *                    context will be added to each result of the selection.
+     * @param copyMatches If true, the matches are copied between the pairs of nodes
+     * @return the matching descendant or ancestor nodes, depending on the mode
+     */
+    static NodeSet selectDescendants(final ColumnarNodeSet dl, final ColumnarNodeSet al,
+            final boolean childOnly, final boolean includeSelf, final int mode, final int contextId,
+            final boolean copyMatches) {
+        if (mode != NodeSet.DESCENDANT && mode != NodeSet.ANCESTOR) {
+            throw new IllegalArgumentException("Bad 'mode' argument");
+        }
+        dl.sort();
+        al.sort();
+        final ColumnarNodeSet result = new ColumnarNodeSet();
+        final boolean[] found = mode == NodeSet.ANCESTOR ? new boolean[al.size()] : null;
+        selectDescendants(dl, al, 0, al.getDocumentCount(), childOnly, includeSelf, mode, contextId, copyMatches,
+                found, result);
+        return result;
+    }
+
+    /**
+     * For two given sets of potential ancestor and descendant nodes, both held
+     * column-wise, find the pairs of nodes for which the ancestor-descendant
+     * (or parent-child) relationship is true, by partitioning the documents of the
+     * ancestor set and joining the partitions on a fork-join pool.
+     *
+     * Only the calling thread accesses the database: both sets must have been read
+     * from the indexes already, and the workers only read their columns. As every
+     * partition holds different documents, the nodes which are modified
+     * while copying contexts and matches are never shared between the workers.
+     * The results of the partitions are concatenated in document order.
+     *
+     * The watchdog of the query is checked before each partition is joined, so a
+     * query which is killed or times out stops all the workers.
+     *
+     * @param dl            A node set containing potential descendant nodes
+     * @param al            A node set containing potential ancestor nodes
+     * @param childOnly     Only select the pairs in a parent-child relationship
+     * @param includeSelf   If true, a node is paired with itself (descendant-or-self axis)
+     * @param pool          The pool to run the partitions on
+     * @param partitionSize The least number of documents in a partition
+     * @param watchDog      The watchdog of the query
+     * @param expr          The expression being evaluated, for reporting a termination
+     * @return the matching descendant nodes
+     * @throws TerminatedException if the query was killed or timed out
+     */
+    public static NodeSet selectDescendants(final NodeSet dl, final NodeSet al, final boolean childOnly,
+            final boolean includeSelf, final ForkJoinPool pool, final int partitionSize,
+            final XQueryWatchDog watchDog, final Expression expr) throws TerminatedException {
+        final ColumnarNodeSet descendants = toColumnar(dl);
+        final ColumnarNodeSet ancestors = toColumnar(al);
+        descendants.sort();
+        ancestors.sort();
+        if (descendants.hasProxies() || ancestors.hasProxies()) {
+            // a node may have to be created while copying the context or matches of the other node of a pair
+            descendants.allocateProxies();
+            ancestors.allocateProxies();
+        }
+        try {
+            return pool.invoke(new SelectDescendantsTask(descendants, ancestors, 0, ancestors.getDocumentCount(),
+                    childOnly, includeSelf, Math.max(1, partitionSize), watchDog, expr));
+        } catch (final RuntimeException e) {
+            // the pool may rethrow a copy of the exception thrown by a worker
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof TerminatedException terminatedException) {
+                    throw terminatedException;
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static ColumnarNodeSet toColumnar(final NodeSet set) {
+        if (set instanceof ColumnarNodeSet columnarSet) {
+            return columnarSet;
+        }
+        final ColumnarNodeSet columnarSet = new ColumnarNodeSet();
+        columnarSet.addAll(set);
+        return columnarSet;
+    }
+
+    /**
+     * Joins a range of the documents of the ancestor set, splitting the range in two
+     * while it holds more than twice the partition size.
+     */
+    private static class SelectDescendantsTask extends RecursiveTask<ColumnarNodeSet> {
+        private final ColumnarNodeSet dl;
+        private final ColumnarNodeSet al;
+        private final int fromDoc;
+        private final int toDoc;
+        private final boolean childOnly;
+        private final boolean includeSelf;
+        private final int partitionSize;
+        private final XQueryWatchDog watchDog;
+        private final Expression expr;
+
+        SelectDescendantsTask(final ColumnarNodeSet dl, final ColumnarNodeSet al, final int fromDoc,
+                final int toDoc, final boolean childOnly, final boolean includeSelf, final int partitionSize,
+                final XQueryWatchDog watchDog, final Expression expr) {
+            this.dl = dl;
+            this.al = al;
+            this.fromDoc = fromDoc;
+            this.toDoc = toDoc;
+            this.childOnly = childOnly;
+            this.includeSelf = includeSelf;
+            this.partitionSize = partitionSize;
+            this.watchDog = watchDog;
+            this.expr = expr;
+        }
+
+        @Override
+        protected ColumnarNodeSet compute() {
+            if (toDoc - fromDoc >= partitionSize << 1) {
+                final int middle = (fromDoc + toDoc) >>> 1;
+                final SelectDescendantsTask right = new SelectDescendantsTask(dl, al, middle, toDoc, childOnly,
+                        includeSelf, partitionSize, watchDog, expr);
+                right.fork();
+                final ColumnarNodeSet result = new SelectDescendantsTask(dl, al, fromDoc, middle, childOnly,
+                        includeSelf, partitionSize, watchDog, expr).compute();
+                result.addAll(right.join());
+                return result;
+            }
+
+            try {
+                watchDog.proceed(expr);
+            } catch (final TerminatedException e) {
+                throw new CompletionException(e);
+            }
+            final ColumnarNodeSet result = new ColumnarNodeSet();
+            selectDescendants(dl, al, fromDoc, toDoc, childOnly, includeSelf, NodeSet.DESCENDANT,
+                    Expression.NO_CONTEXT_ID, true, null, result);
+            return result;
+        }
+    }
+
+    /**
+     * Joins the documents of the ancestor set from fromDoc (inclusive) to toDoc (exclusive),
+     * adding the selected nodes to the result. Both sets must be sorted.
+     */
+    private static void selectDescendants(final ColumnarNodeSet dl, final ColumnarNodeSet al, final int fromDoc,
+            final int toDoc, final boolean childOnly, final boolean includeSelf, final int mode, final int contextId,
+            final boolean copyMatches, @Nullable final boolean[] found, final ColumnarNodeSet result) {
+        int[] stack = new int[16];
+
+        for (int docIdx = fromDoc; docIdx < toDoc; docIdx++) {
+            final int dlDocIdx = dl.findDoc(al.getDocumentId(docIdx));
+            if (dlDocIdx < 0) {
+                continue;
+            }
+            final int aStart = al.getDocumentNodesOffset(docIdx);
+            final int aEnd = aStart + al.getDocumentNodesCount(docIdx);
+            final int dEnd = dl.getDocumentNodesOffset(dlDocIdx) + dl.getDocumentNodesCount(dlDocIdx);
+            int a = aStart;
+            int d = dl.getDocumentNodesOffset(dlDocIdx);
+            int top = 0;
+
+            while (d < dEnd) {
+                // push the ancestors which start before the descendant, keeping only those which enclose each other
+                while (a < aEnd && ColumnarNodeSet.compareIds(al, a, dl, d) <= 0) {
+                    while (top > 0 && ColumnarNodeSet.computeRelation(al, a, al, stack[top - 1]) < 0) {
+                        --top;
+                    }
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top << 1);
+                    }
+                    stack[top++] = a++;
+                }
+                while (top > 0 && ColumnarNodeSet.computeRelation(dl, d, al, stack[top - 1]) < 0) {
+                    --top;
+                }
+                if (top == 0) {
+                    if (a == aEnd) {
+                        break;
+                    }
+                    // skip the descendants which precede the next ancestor
+                    d = dl.lowerBound(d, dEnd, al, a);
+                    continue;
+                }
+
+                boolean selected = false;
+                boolean materialized = false;
+                for (int i = 0; i < top; i++) {
+                    final int ancestor = stack[i];
+                    if (!isSelected(ColumnarNodeSet.computeRelation(dl, d, al, ancestor), al.isDocumentNode(ancestor),
+                            dl.isDocumentNode(d), childOnly, includeSelf)) {
+                        continue;
+                    }
+                    selected = true;
+                    if (mode == NodeSet.ANCESTOR) {
+                        found[ancestor] = true;
+                    }
+                    if (Expression.NO_CONTEXT_ID == contextId && dl.isPlain(d) && al.isPlain(ancestor)) {
+                        // copying the context and matches would not change either node
+                        continue;
+                    }
+                    materialized = true;
+                    final NodeProxy descendant = dl.proxy(d);
+                    final NodeProxy parent = al.proxy(ancestor);
+                    if (mode == NodeSet.DESCENDANT) {
+                        if (Expression.NO_CONTEXT_ID != contextId) {
+                            descendant.deepCopyContext(parent, contextId);
+                        } else {
+                            descendant.copyContext(parent);
+                        }
+                        if (copyMatches) {
+                            descendant.addMatches(parent);
+                        }
+                    } else {
+                        if (Expression.NO_CONTEXT_ID != contextId) {
+                            parent.deepCopyContext(descendant, contextId);
+                        } else {
+                            parent.copyContext(descendant);
+                        }
+                        if (copyMatches) {
+                            parent.addMatches(descendant);
+                        }
+                    }
+                }
+                if (selected && mode == NodeSet.DESCENDANT) {
+                    if (materialized) {
+                        result.add(dl.proxy(d));
+                    } else {
+                        result.add(dl, d);
+                    }
+                }
+                d++;
+            }
+
+            if (mode == NodeSet.ANCESTOR) {
+                for (int i = aStart; i < aEnd; i++) {
+                    if (found[i]) {
+                        result.add(al, i);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isSelected(final int relation, final boolean ancestorIsDocument,
+            final boolean descendantIsDocument, final boolean childOnly, final boolean includeSelf) {
+        if (relation < 0) {
+            return false;
+        }
+        // document nodes are treated specially
+        if (ancestorIsDocument) {
+            if (childOnly) {
+                return relation == NodeId.IS_CHILD;
+            }
+            return includeSelf || !descendantIsDocument;
+        }
+        if (childOnly) {
+            return relation == NodeId.IS_CHILD;
+        }
+        if (relation == NodeId.IS_SELF) {
+            return includeSelf;
+        }
+        return true;
+    }
+
     public static boolean matchAncestorDescendant(final NodeSet dl,
             final NodeSet al, final int mode, final boolean includeSelf, final int contextId) {
         final ExtArrayNodeSet result = new ExtArrayNodeSet();
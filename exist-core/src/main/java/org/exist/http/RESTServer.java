@@ -47,7 +47,9 @@ import org.exist.source.Source;
 import org.exist.source.StringSource;
 import org.exist.source.URLSource;
 import org.exist.storage.BrokerPool;
+import org.exist.storage.CursorManager;
 import org.exist.storage.DBBroker;
+import org.exist.storage.ResultCursor;
 import org.exist.storage.XQueryPool;
 import org.exist.storage.lock.Lock.LockMode;
 import org.exist.storage.lock.ManagedCollectionLock;
@@ -59,6 +61,7 @@ import org.exist.util.io.CachingFilterInputStream;
 import org.exist.util.io.FilterInputStreamCache;
 import org.exist.util.io.FilterInputStreamCacheFactory;
 import org.exist.util.io.FilterInputStreamCacheFactory.FilterInputStreamCacheConfiguration;
+import org.exist.util.io.UTF8Writer;
 import org.exist.util.serializer.SAXSerializer;
 import org.exist.util.serializer.SerializerPool;
 import org.exist.util.serializer.XQuerySerializer;
@@ -86,6 +89,7 @@ import org.xml.sax.helpers.XMLFilterImpl;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
@@ -153,7 +157,7 @@ public class RESTServer {
     private final String containerEncoding;
     private final boolean useDynamicContentType;
     private final boolean safeMode;
-    private final SessionManager sessionManager;
+    private final CursorManager cursorManager;
     private final EXistServlet.FeatureEnabled xquerySubmission;
     private final EXistServlet.FeatureEnabled xupdateSubmission;
 
@@ -168,7 +172,7 @@ public class RESTServer {
         this.containerEncoding = containerEncoding;
         this.useDynamicContentType = useDynamicContentType;
         this.safeMode = safeMode;
-        this.sessionManager = new SessionManager();
+        this.cursorManager = pool.getCursorManager();
         this.xquerySubmission = xquerySubmission;
         this.xupdateSubmission = xupdateSubmission;
 
@@ -232,6 +236,10 @@ public class RESTServer {
      *
      * <li>_start: a start offset into the result set.</li>
      *
+     * <li>_flush: if set to a number n, the serialized results are sent to
+     * the client after every n items, so that large results are transferred
+     * in chunks while they are serialized.</li>
+     *
      * <li>_wrap: if set to "yes", the query results will be wrapped into a
      * exist:result element.</li>
      *
@@ -281,10 +289,9 @@ public class RESTServer {
 
         String option;
         if ((option = getParameter(request, Release)) != null) {
-            final int sessionId = Integer.parseInt(option);
-            sessionManager.release(sessionId);
+            cursorManager.close(option);
             if (LOG.isDebugEnabled()) {
-                LOG.debug("Released session {}", sessionId);
+                LOG.debug("Released session {}", option);
             }
             response.setStatus(HttpServletResponse.SC_OK);
             return;
@@ -337,6 +344,15 @@ public class RESTServer {
                         "Parameter _start should be an int");
             }
         }
+        if ((option = getParameter(request, Flush)) != null) {
+            try {
+                Integer.parseInt(option);
+            } catch (final NumberFormatException nfe) {
+                throw new BadRequestException(
+                        "Parameter _flush should be an int");
+            }
+            outputProperties.setProperty(Flush.queryStringKey(), option);
+        }
         if ((option = getParameter(request, Typed)) != null) {
             if ("yes".equals(option.toLowerCase())) {
                 typed = true;
@@ -826,6 +842,11 @@ public class RESTServer {
                             cache = "yes".equals(option);
                         }
 
+                        option = root.getAttribute(Flush.xmlKey());
+                        if ((option != null) && (!option.isEmpty())) {
+                            outputProperties.setProperty(Flush.queryStringKey(), option);
+                        }
+
                         if ((option = root.getAttribute(Session.xmlKey())) != null
                                 && option.length() > 0) {
                             outputProperties.setProperty(
@@ -1337,24 +1358,18 @@ public class RESTServer {
             }
         }
 
-        final String sessionIdParam = outputProperties.getProperty(Serializer.PROPERTY_SESSION_ID);
-        if (sessionIdParam != null) {
-            try {
-                final int sessionId = Integer.parseInt(sessionIdParam);
-                if (sessionId > -1) {
-                    final Sequence cached = sessionManager.get(query, sessionId);
-                    if (cached != null) {
-                        LOG.debug("Returning cached query result");
-                        writeResults(response, broker, transaction, cached, howmany, start, typed, outputProperties, wrap, 0, 0);
-
-                    } else {
-                        LOG.debug("Cached query result not found. Probably timed out. Repeating query.");
-                    }
-                }
-
-            } catch (final NumberFormatException e) {
-                throw new BadRequestException("Invalid session id passed in query request: " + sessionIdParam);
+        final String sessionId = outputProperties.getProperty(Serializer.PROPERTY_SESSION_ID);
+        if (sessionId != null) {
+            final ResultCursor cursor = cursorManager.get(sessionId);
+            final Sequence cached = cursor != null && query.equals(cursor.getQuery())
+                    && cursor.getOwner().equals(broker.getCurrentSubject().getName()) ? cursor.getSequence() : null;
+            if (cached != null) {
+                LOG.debug("Returning cached query result");
+                writeResults(response, broker, transaction, cached, howmany, start, typed, outputProperties, wrap, 0, 0, null);
+                return;
             }
+            LOG.debug("Cached query result not found. Probably timed out. Repeating query.");
+            outputProperties.remove(Serializer.PROPERTY_SESSION_ID);
         }
 
         final XmldbURI pathUri = XmldbURI.create(path);
@@ -1400,14 +1415,14 @@ public class RESTServer {
                 }
 
                 if (cache) {
-                    final int sessionId = sessionManager.add(query, resultSequence);
-                    outputProperties.setProperty(Serializer.PROPERTY_SESSION_ID, Integer.toString(sessionId));
+                    final ResultCursor cursor = cursorManager.open(broker.getCurrentSubject(), query, resultSequence, true);
+                    outputProperties.setProperty(Serializer.PROPERTY_SESSION_ID, cursor.getId());
                     if (!response.isCommitted()) {
-                        response.setIntHeader("X-Session-Id", sessionId);
+                        response.setHeader("X-Session-Id", cursor.getId());
                     }
                 }
 
-                writeResults(response, broker, transaction, resultSequence, howmany, start, typed, outputProperties, wrap, compilationTime, executionTime);
+                writeResults(response, broker, transaction, resultSequence, howmany, start, typed, outputProperties, wrap, compilationTime, executionTime, context.getWatchDog());
 
             } finally {
                 context.runCleanupTasks();
@@ -1592,7 +1607,7 @@ public class RESTServer {
             try {
                 final long executeStart = System.currentTimeMillis();
                 final Sequence result = xquery.execute(broker, compiled, null, outputProperties);
-                writeResults(response, broker, transaction, result, -1, 1, false, outputProperties, wrap, compilationTime, System.currentTimeMillis() - executeStart);
+                writeResults(response, broker, transaction, result, -1, 1, false, outputProperties, wrap, compilationTime, System.currentTimeMillis() - executeStart, context.getWatchDog());
 
             } finally {
                 context.runCleanupTasks();
@@ -1676,7 +1691,7 @@ public class RESTServer {
             try {
                 final long executeStart = System.currentTimeMillis();
                 final Sequence result = xquery.execute(broker, compiled, null, outputProperties);
-                writeResults(response, broker, transaction, result, -1, 1, false, outputProperties, false, compilationTime, System.currentTimeMillis() - executeStart);
+                writeResults(response, broker, transaction, result, -1, 1, false, outputProperties, false, compilationTime, System.currentTimeMillis() - executeStart, context.getWatchDog());
             } finally {
                 context.runCleanupTasks();
 
@@ -1832,7 +1847,7 @@ public class RESTServer {
                     outputProperties.setProperty("omit-xml-declaration", "no");
                 }
 
-                final OutputStreamWriter writer = new OutputStreamWriter(response.getOutputStream(), encoding);
+                final Writer writer = newResponseWriter(response, encoding);
                 sax.setOutput(writer, outputProperties);
                 serializer.setSAXHandlers(sax, sax);
 
@@ -2108,9 +2123,30 @@ public class RESTServer {
         attrs.addAttribute("", "permissions", "permissions", "CDATA", perm.toString());
     }
 
+    /**
+     * Write the selected items of the results of a query to the http response.
+     *
+     * @param response the http response to write the results to
+     * @param broker the database broker
+     * @param transaction the database transaction
+     * @param results the results of the query
+     * @param howmany the number of items to write
+     * @param start the position of the first item to write
+     * @param typed true to annotate the items with their type
+     * @param outputProperties the serialization properties
+     * @param wrap true to wrap the results in an exist:result element
+     * @param compilationTime the time taken to compile the query
+     * @param executionTime the time taken to execute the query
+     * @param watchDog the watchdog of the query, which terminates the query if the
+     *     client disconnects while the results are flushed, or null if there is no
+     *     running query
+     *
+     * @throws BadRequestException if the results cannot be serialized
+     */
     protected void writeResults(final HttpServletResponse response, final DBBroker broker, final Txn transaction,
             final Sequence results, int howmany, final int start, final boolean typed,
-            final Properties outputProperties, final boolean wrap, final long compilationTime, final long executionTime)
+            final Properties outputProperties, final boolean wrap, final long compilationTime, final long executionTime,
+            @Nullable final XQueryWatchDog watchDog)
             throws BadRequestException {
 
         // some xquery functions can write directly to the output stream
@@ -2138,7 +2174,7 @@ public class RESTServer {
         if ("json".equals(method)) {
             writeResultJSON(response, broker, transaction, results, howmany, start, outputProperties, wrap, compilationTime, executionTime);
         } else {
-            writeResultXML(response, broker, results, howmany, start, typed, outputProperties, wrap, compilationTime, executionTime);
+            writeResultXML(response, broker, results, howmany, start, typed, outputProperties, wrap, compilationTime, executionTime, watchDog);
         }
 
     }
@@ -2150,7 +2186,8 @@ public class RESTServer {
     private void writeResultXML(final HttpServletResponse response,
         final DBBroker broker, final Sequence results, final int howmany,
         final int start, final boolean typed, final Properties outputProperties,
-        final boolean wrap, final long compilationTime, final long executionTime) throws BadRequestException {
+        final boolean wrap, final long compilationTime, final long executionTime,
+        @Nullable final XQueryWatchDog watchDog) throws BadRequestException {
 
         // serialize the results to the response output stream
         outputProperties.setProperty(Serializer.GENERATE_DOC_EVENTS, "false");
@@ -2174,9 +2211,19 @@ public class RESTServer {
             if (wrap) {
                 outputProperties.setProperty("method", "xml");
             }
-            final Writer writer = new OutputStreamWriter(response.getOutputStream(), encoding);
+            final Writer writer = newResponseWriter(response, encoding);
             final XQuerySerializer serializer = new XQuerySerializer(broker, outputProperties, writer);
 
+            final int flushInterval = getFlushInterval(outputProperties);
+            if (flushInterval > 0) {
+                // send the output to the client in chunks, instead of when the response buffer is full
+                serializer.setItemListener(count -> {
+                    if (count % flushInterval == 0) {
+                        flush(writer, watchDog);
+                    }
+                });
+            }
+
             //Marshaller.marshall(broker, results, start, howmany, serializer.getContentHandler());
             serializer.serialize(results, start, howmany, wrap, typed, compilationTime, executionTime);
 
@@ -2194,6 +2241,61 @@ public class RESTServer {
         }
     }
 
+    /**
+     * Create a writer for the serialized body of a response. UTF-8 is written by a
+     * {@link UTF8Writer}, which is cheaper than an {@link OutputStreamWriter} for the
+     * small writes of the serializers.
+     *
+     * @param response the response
+     * @param encoding the character encoding of the response
+     *
+     * @return the writer
+     *
+     * @throws IOException if the output stream of the response cannot be obtained
+     */
+    private static Writer newResponseWriter(final HttpServletResponse response, final String encoding) throws IOException {
+        if (UTF_8.name().equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding)) {
+            return new UTF8Writer(response.getOutputStream());
+        }
+        return new OutputStreamWriter(response.getOutputStream(), encoding);
+    }
+
+    private static int getFlushInterval(final Properties outputProperties) {
+        final String flush = outputProperties.getProperty(Flush.queryStringKey());
+        if (flush == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(flush);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Flush the results serialized so far to the client. If the client
+     * has disconnected, the query is terminated.
+     *
+     * @param writer the writer of the http response
+     * @param watchDog the watchdog of the query, or null
+     *
+     * @throws SAXException if the query has been terminated, or the
+     *     client has disconnected
+     */
+    private static void flush(final Writer writer, @Nullable final XQueryWatchDog watchDog) throws SAXException {
+        if (watchDog != null && watchDog.isTerminating()) {
+            throw new SAXException("The query has been killed by the server.");
+        }
+        try {
+            writer.flush();
+        } catch (final IOException e) {
+            if (watchDog != null) {
+                watchDog.kill(0);
+            }
+            throw new SAXException("The client has disconnected: " + e.getMessage(), e);
+        }
+    }
+
     private void writeResultJSON(final HttpServletResponse response,
         final DBBroker broker, final Txn transaction, final Sequence results, int howmany,
         int start, final Properties outputProperties, final boolean wrap, final long compilationTime, final long executionTime)
@@ -2217,7 +2319,7 @@ public class RESTServer {
         outputProperties.setProperty(Serializer.GENERATE_DOC_EVENTS, "false");
         try {
             serializer.setProperties(outputProperties);
-            try (Writer writer = new OutputStreamWriter(response.getOutputStream(), getEncoding(outputProperties))) {
+            try (Writer writer = newResponseWriter(response, getEncoding(outputProperties))) {
                 final JSONObject root = new JSONObject();
                 root.addObject(new JSONSimpleProperty("start", Integer.toString(start), true));
                 root.addObject(new JSONSimpleProperty("count", Integer.toString(howmany), true));
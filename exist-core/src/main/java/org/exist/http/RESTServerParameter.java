@@ -218,12 +218,33 @@ enum RESTServerParameter {
      * exist:result/@session attribute if you have used the Wrap parameter,
      * and also in the HTTP Response Header X-Session-Id
      * 
+     * The Session ID is an opaque string, a UUID. Earlier versions used a number,
+     * so clients must not parse it as an integer.
+     * 
+     * The results are held by a cursor of the {@link org.exist.storage.CursorManager},
+     * which may spill them to disk or close the cursor when it is idle.
+     * 
      * Contexts: GET, POST
      * 
      * The value of the parameter should be either "yes" or "no".
      */
     Cache,
 
+    /**
+     * Can be used in either the Query String of a GET request
+     * or in the body of a POST request when supplying an XPath or XQuery,
+     * it causes the serialized results to be sent to the client after
+     * every given number of items, instead of when the output buffer of
+     * the servlet container is full. The response is then transferred in
+     * chunks while it is being serialized. If the client disconnects,
+     * the query is terminated.
+     * 
+     * Contexts: GET, POST
+     * 
+     * The value of the parameter should be a number greater than zero.
+     */
+    Flush,
+
     /**
      * Can be used in the Query String of a GET request
      * to indicate that an XML result should be indented.
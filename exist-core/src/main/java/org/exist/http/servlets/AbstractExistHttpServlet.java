@@ -21,6 +21,8 @@
  */
 package org.exist.http.servlets;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.annotation.MultipartConfig;
 import org.apache.logging.log4j.Logger;
 import org.exist.EXistException;
@@ -33,6 +35,7 @@ import org.exist.security.internal.web.HttpAccount;
 import org.exist.storage.BrokerPool;
 import org.exist.util.Configuration;
 import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.NamedThreadFactory;
 import org.xmldb.api.DatabaseManager;
 import org.xmldb.api.base.Database;
 import org.xmldb.api.base.XMLDBException;
@@ -42,12 +45,17 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.Principal;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -61,6 +69,25 @@ public abstract class AbstractExistHttpServlet extends HttpServlet {
 	private static final long serialVersionUID = 804071766041263220L;
 
 	public final static String DEFAULT_ENCODING = UTF_8.name();
+
+    /**
+     * Init parameter for the number of threads on which requests are served
+     * asynchronously, see {@link #service(HttpServletRequest, HttpServletResponse)}.
+     * 0, the default, serves all requests on the threads of the servlet container.
+     */
+    public final static String ASYNC_THREADS_PARAM = "async-threads";
+
+    /**
+     * Init parameter for the number of asynchronous requests which may wait for a thread.
+     */
+    public final static String ASYNC_QUEUE_SIZE_PARAM = "async-queue-size";
+
+    public final static int DEFAULT_ASYNC_QUEUE_SIZE = 256;
+
+    /**
+     * Seconds to wait for the asynchronous requests in progress when the servlet is destroyed.
+     */
+    private final static long ASYNC_SHUTDOWN_TIMEOUT = 30;
     
     private BrokerPool pool;
     private String formEncoding = DEFAULT_ENCODING;
@@ -70,6 +97,7 @@ public abstract class AbstractExistHttpServlet extends HttpServlet {
     private Authenticator authenticator;
     private Subject defaultUser = null;
     private boolean internalOnly = false;
+    @Nullable private ThreadPoolExecutor asyncExecutor = null;
     
     @Override
     public void init(ServletConfig config) throws ServletException {
@@ -86,13 +114,93 @@ public abstract class AbstractExistHttpServlet extends HttpServlet {
         
         //general eXist Servlet config
         doGeneralExistServletConfig(config);
+
+        doAsyncConfig(config);
     }
     
     @Override
     public void destroy() {
         super.destroy();
+        if (asyncExecutor != null) {
+            // let the requests in progress finish before the database is stopped
+            asyncExecutor.shutdown();
+            try {
+                if (!asyncExecutor.awaitTermination(ASYNC_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                    final int dropped = asyncExecutor.shutdownNow().size();
+                    getLog().warn("Asynchronous requests did not finish within {} seconds, interrupted them and dropped {} queued requests", ASYNC_SHUTDOWN_TIMEOUT, dropped);
+                }
+            } catch (final InterruptedException e) {
+                asyncExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
         BrokerPool.stopAll(false);
     }
+
+    /**
+     * Serves a request. If {@link #ASYNC_THREADS_PARAM} is set, requests which are dispatched
+     * to the servlet directly by the container are served asynchronously on a thread of this
+     * servlet, so that slow queries do not hold on to the threads of the servlet container.
+     * The whole request, from acquiring a broker to releasing it, runs on that one thread.
+     *
+     * Forwarded and included requests, e.g. from the URL rewriting, are served synchronously,
+     * as the dispatching servlet expects the response when the dispatch returns. So are
+     * requests which pass through a filter that does not support asynchronous processing,
+     * and requests for which no thread is available within the queue size.
+     */
+    @Override
+    protected void service(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        if (asyncExecutor == null || request.getDispatcherType() != DispatcherType.REQUEST || !request.isAsyncSupported()) {
+            super.service(request, response);
+            return;
+        }
+
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        // queries are limited by their watchdog instead
+        asyncContext.setTimeout(0);
+        try {
+            asyncExecutor.execute(() -> serviceAsync(asyncContext, request, response));
+        } catch (final RejectedExecutionException e) {
+            serviceAsync(asyncContext, request, response);
+        }
+    }
+
+    private void serviceAsync(final AsyncContext asyncContext, final HttpServletRequest request, final HttpServletResponse response) {
+        try {
+            super.service(request, response);
+        } catch (final ServletException | IOException | RuntimeException e) {
+            getLog().error(e.getMessage(), e);
+            if (!response.isCommitted()) {
+                try {
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+                } catch (final IOException ioe) {
+                    getLog().error(ioe.getMessage(), ioe);
+                }
+            }
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    private void doAsyncConfig(final ServletConfig config) throws ServletException {
+        final int threads;
+        final int queueSize;
+        try {
+            threads = Optional.ofNullable(config.getInitParameter(ASYNC_THREADS_PARAM)).map(String::trim).map(Integer::parseInt).orElse(0);
+            queueSize = Optional.ofNullable(config.getInitParameter(ASYNC_QUEUE_SIZE_PARAM)).map(String::trim).map(Integer::parseInt).orElse(DEFAULT_ASYNC_QUEUE_SIZE);
+        } catch (final NumberFormatException e) {
+            throw new ServletException("Invalid value for parameter '" + ASYNC_THREADS_PARAM + "' or '" + ASYNC_QUEUE_SIZE_PARAM + "': " + e.getMessage(), e);
+        }
+        if (threads <= 0) {
+            return;
+        }
+
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                new NamedThreadFactory(null, getPool().getId(), "http." + config.getServletName()));
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        getLog().info("Serving requests asynchronously on {} threads, queue size {}", threads, queueSize);
+    }
     
     public abstract Logger getLog();
     
@@ -37,6 +37,8 @@ public interface Agent {
 
     void addMBean(PerInstanceMBean mbean) throws DatabaseConfigurationException;
 
+    void removeMBean(PerInstanceMBean mbean);
+
     void changeStatus(BrokerPool instance, TaskStatus actualStatus);
 
     void updateStatus(BrokerPool instance, int percentage);
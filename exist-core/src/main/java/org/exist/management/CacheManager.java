@@ -65,4 +65,24 @@ public class CacheManager implements CacheManagerMXBean {
     public long getCurrentSize() {
         return manager.getCurrentSize();
     }
+
+    @Override
+    public long getOffHeapMaxTotal() {
+        return manager.getOffHeapMaxTotal();
+    }
+
+    @Override
+    public long getOffHeapCurrentSize() {
+        return manager.getOffHeapCurrentSize();
+    }
+
+    @Override
+    public long getOffHeapHits() {
+        return manager.getOffHeapHits();
+    }
+
+    @Override
+    public long getOffHeapFails() {
+        return manager.getOffHeapFails();
+    }
 }
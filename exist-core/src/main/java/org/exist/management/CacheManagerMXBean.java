@@ -30,4 +30,12 @@ public interface CacheManagerMXBean extends PerInstanceMBean {
     long getMaxSingle();
 
     long getCurrentSize();
+
+    long getOffHeapMaxTotal();
+
+    long getOffHeapCurrentSize();
+
+    long getOffHeapHits();
+
+    long getOffHeapFails();
 }
@@ -0,0 +1,104 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+import org.exist.storage.BrokerPool;
+import org.exist.storage.ResultCursor;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JMX MXBean for examining the server side cursors
+ */
+public class Cursors implements CursorsMXBean {
+
+    private final BrokerPool instance;
+
+    public Cursors(final BrokerPool instance) {
+        this.instance = instance;
+    }
+
+    public static String getAllInstancesQuery() {
+        return getName("*");
+    }
+
+    private static String getName(final String instanceId) {
+        return "org.exist.management." + instanceId + ":type=Cursors";
+    }
+
+    @Override
+    public ObjectName getName() throws MalformedObjectNameException {
+        return new ObjectName(getName(instance.getId()));
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instance.getId();
+    }
+
+    @Override
+    public int getOpenCursorCount() {
+        return instance.getCursorManager().getCursors().size();
+    }
+
+    @Override
+    public long getItemsInMemory() {
+        return instance.getCursorManager().getItemsInMemory();
+    }
+
+    @Override
+    public long getBudget() {
+        return instance.getCursorManager().getBudget();
+    }
+
+    @Override
+    public long getSpillCount() {
+        return instance.getCursorManager().getSpillCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return instance.getCursorManager().getEvictionCount();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return instance.getCursorManager().getTimeoutCount();
+    }
+
+    @Override
+    public Map<String, OpenCursor> getCursors() {
+        final Map<String, OpenCursor> cursors = new TreeMap<>();
+        for (final ResultCursor cursor : instance.getCursorManager().getCursors()) {
+            cursors.put(cursor.getId(), new OpenCursor(cursor));
+        }
+        return cursors;
+    }
+
+    @Override
+    public void closeCursor(final String id) {
+        instance.getCursorManager().close(id);
+    }
+}
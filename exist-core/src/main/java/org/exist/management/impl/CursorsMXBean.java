@@ -0,0 +1,72 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+import java.util.Map;
+
+/**
+ * JMX MXBean interface for examining the server side cursors
+ */
+public interface CursorsMXBean extends PerInstanceMBean {
+
+    /**
+     * @return the number of open cursors
+     */
+    int getOpenCursorCount();
+
+    /**
+     * @return the number of items which the open cursors keep in memory
+     */
+    long getItemsInMemory();
+
+    /**
+     * @return the maximum number of items which the cursors may keep in memory
+     */
+    long getBudget();
+
+    /**
+     * @return the number of cursors which have been spilled to disk
+     */
+    long getSpillCount();
+
+    /**
+     * @return the number of cursors which have been closed because they exceeded the budget
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of cursors which have been closed because they were not accessed
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return the open cursors by id
+     */
+    Map<String, OpenCursor> getCursors();
+
+    /**
+     * Close a cursor.
+     *
+     * @param id the id of the cursor
+     */
+    void closeCursor(String id);
+}
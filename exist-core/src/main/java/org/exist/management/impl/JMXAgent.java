@@ -86,7 +86,9 @@ public final class JMXAgent implements Agent {
                 new DiskUsage(instance),
                 new ProcessReport(instance),
                 new BinaryValues(instance),
-                new CollectionCache(instance)
+                new CollectionCache(instance),
+                new XQueryResultCache(instance),
+                new Cursors(instance)
         );
 
         for (final PerInstanceMBean perInstanceMBean : perInstanceMBeans) {
@@ -130,6 +132,23 @@ public final class JMXAgent implements Agent {
         }
     }
 
+    @Override
+    public synchronized void removeMBean(final PerInstanceMBean mbean) {
+        try {
+            final ObjectName name = mbean.getName();
+            if (mbean.getInstanceId() != null) {
+                final Deque<ObjectName> stack = registeredMBeans.get(mbean.getInstanceId());
+                if (stack != null) {
+                    stack.remove(name);
+                }
+            }
+            beanInstances.remove(name);
+            removeMBean(name);
+        } catch (final MalformedObjectNameException e) {
+            LOG.warn("Problem unregistering JMX MBean: {}", e.getMessage(), e);
+        }
+    }
+
     private void addMBean(final ObjectName name, final Object mbean) throws DatabaseConfigurationException {
         try {
             if (!server.isRegistered(name)) {
@@ -0,0 +1,76 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+import org.exist.storage.ResultCursor;
+
+/**
+ * Detail information about an open cursor
+ */
+public class OpenCursor {
+
+    private final String id;
+    private final String owner;
+    private final String query;
+    private final int itemCount;
+    private final boolean spilled;
+    private final long created;
+    private final long lastAccess;
+
+    public OpenCursor(final ResultCursor cursor) {
+        this.id = cursor.getId();
+        this.owner = cursor.getOwner();
+        this.query = cursor.getQuery();
+        this.itemCount = cursor.getItemCount();
+        this.spilled = cursor.isSpilled();
+        this.created = cursor.getCreated();
+        this.lastAccess = cursor.getLastAccess();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+}
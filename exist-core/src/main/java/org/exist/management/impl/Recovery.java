@@ -0,0 +1,103 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+import org.exist.storage.BrokerPool;
+import org.exist.storage.recovery.RecoveryProgress;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.Date;
+
+public class Recovery implements RecoveryMXBean {
+    private final String instanceId;
+    private final RecoveryProgress progress;
+
+    public Recovery(final BrokerPool pool, final RecoveryProgress progress) {
+        this.instanceId = pool.getId();
+        this.progress = progress;
+    }
+
+    public static String getAllInstancesQuery() {
+        return getName("*");
+    }
+
+    private static String getName(final String instanceId) {
+        return "org.exist.management." + instanceId + ":type=Recovery";
+    }
+
+    @Override
+    public ObjectName getName() throws MalformedObjectNameException {
+        return new ObjectName(getName(instanceId));
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public String getPhase() {
+        return progress.getPhase().name();
+    }
+
+    @Override
+    public Date getStartTime() {
+        return new Date(progress.getStartTime());
+    }
+
+    @Override
+    public Date getEndTime() {
+        final long endTime = progress.getEndTime();
+        return endTime == -1 ? null : new Date(endTime);
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return progress.getElapsedTime();
+    }
+
+    @Override
+    public int getPhasePercentage() {
+        return progress.getPhasePercentage();
+    }
+
+    @Override
+    public long getEstimatedRemainingTime() {
+        return progress.getEstimatedRemainingTime();
+    }
+
+    @Override
+    public long getRedoneEntries() {
+        return progress.getRedoneEntries();
+    }
+
+    @Override
+    public long getUndoneEntries() {
+        return progress.getUndoneEntries();
+    }
+
+    @Override
+    public int getRedoThreads() {
+        return progress.getRedoThreads();
+    }
+}
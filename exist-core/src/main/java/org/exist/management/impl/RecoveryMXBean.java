@@ -0,0 +1,57 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+import java.util.Date;
+
+/**
+ * Reports the progress of a crash recovery of the database.
+ */
+public interface RecoveryMXBean extends PerInstanceMBean {
+
+    /**
+     * @return the current pass of the recovery: SCAN, REDO, UNDO, COMPLETED or ABORTED
+     */
+    String getPhase();
+
+    Date getStartTime();
+
+    /**
+     * @return the time at which recovery completed or was aborted, or null if it is running
+     */
+    Date getEndTime();
+
+    long getElapsedTime();
+
+    int getPhasePercentage();
+
+    /**
+     * @return the estimated remaining time of the current pass in milliseconds, or -1 if unknown
+     */
+    long getEstimatedRemainingTime();
+
+    long getRedoneEntries();
+
+    long getUndoneEntries();
+
+    int getRedoThreads();
+}
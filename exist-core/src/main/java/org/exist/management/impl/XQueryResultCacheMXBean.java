@@ -0,0 +1,63 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.management.impl;
+
+/**
+ * JMX MXBean interface for examining the XQueryResultCache
+ */
+public interface XQueryResultCacheMXBean extends PerInstanceMBean {
+
+    /**
+     * @return the number of cached results
+     */
+    long getSize();
+
+    /**
+     * @return the number of function calls answered from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of function calls which were evaluated
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of the function calls answered from the cache
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of results removed because of the size or age of the cache
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of results removed because of changes to the database
+     */
+    long getInvalidationCount();
+
+    /**
+     * Remove all results from the cache.
+     */
+    void clear();
+}
@@ -299,6 +299,54 @@ public class DLN extends DLNBase implements NodeId {
         return -1;
     }
 
+    /**
+     * Computes the relationship of a serialized id to a serialized ancestor id,
+     * without having to create a DLN for either of them.
+     *
+     * @see #computeRelation(NodeId)
+     *
+     * @param data the byte[] holding the id
+     * @param offset the offset of the id within data
+     * @param units the number of bits used by the id, see {@link #units()}
+     * @param ancestorData the byte[] holding the ancestor id
+     * @param ancestorOffset the offset of the ancestor id within ancestorData
+     * @param ancestorUnits the number of bits used by the ancestor id
+     * @return one of {@link NodeId#IS_CHILD}, {@link NodeId#IS_DESCENDANT}, {@link NodeId#IS_SELF},
+     *     or -1 if the id is not a descendant-or-self of the ancestor id
+     */
+    public static int computeRelation(final byte[] data, final int offset, final int units,
+            final byte[] ancestorData, final int ancestorOffset, final int ancestorUnits) {
+        if (isDocumentNode(ancestorData, ancestorOffset, ancestorUnits)) {
+            return getLevelCount(data, offset, units, 0) == 1 ? IS_CHILD : IS_DESCENDANT;
+        }
+
+        if (startsWith(data, offset, units, ancestorData, ancestorOffset, ancestorUnits)) {
+            if (units == ancestorUnits) {
+                return IS_SELF;
+            }
+            if (units > ancestorUnits && isLevelSeparator(data, offset, ancestorUnits)) {
+                if (getLevelCount(data, offset, units, ancestorUnits + 1) == 1) {
+                    return IS_CHILD;
+                }
+                return IS_DESCENDANT;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a serialized id is the id of the document node,
+     * see {@link NodeId#DOCUMENT_NODE}.
+     *
+     * @param data the byte[] holding the id
+     * @param offset the offset of the id within data
+     * @param units the number of bits used by the id
+     * @return true if the id is the id of the document node
+     */
+    public static boolean isDocumentNode(final byte[] data, final int offset, final int units) {
+        return units == NodeId.DOCUMENT_NODE.units() && data[offset] == 0;
+    }
+
     @Override
     public boolean isSiblingOf(final NodeId sibling) {
         final NodeId parent = getParentId();
@@ -320,19 +368,7 @@ public class DLN extends DLNBase implements NodeId {
             return 1;
         }
         final DLN other = (DLN) otherId;
-        final int a1len = bits.length;
-        final int a2len = other.bits.length;
-        final int limit = a1len <= a2len ? a1len : a2len;
-        final byte[] obits = other.bits;
-        
-        for(int i = 0; i < limit; i++) {
-            final byte b1 = bits[i];
-            final byte b2 = obits[i];
-            if(b1 != b2) {
-                return (b1 & 0xFF) - (b2 & 0xFF);
-            }
-        }
-        return (a1len - a2len);
+        return compare(bits, 0, bits.length, other.bits, 0, other.bits.length);
     }
 
     @Override
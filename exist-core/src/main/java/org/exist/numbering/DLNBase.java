@@ -291,16 +291,33 @@ public class DLNBase {
         return bits.length;
     }
 
-    private static int unitsUsed(int startBit, final byte[] bits) {
+    private static int unitsUsed(final int startBit, final byte[] bits) {
+        return unitsUsed(startBit, bits, 0);
+    }
+
+    private static int unitsUsed(int startBit, final byte[] data, final int offset) {
         int units = 1;
-        while ((bits[startBit >> UNIT_SHIFT] & (1 << ((7 - startBit++) & 7))) != 0) {
+        while ((data[offset + (startBit >> UNIT_SHIFT)] & (1 << ((7 - startBit++) & 7))) != 0) {
             ++units;
         }
         return units;
     }
 
     public boolean isLevelSeparator(final int index) {
-        return (bits[index >> UNIT_SHIFT] & (1 << ((7 - index) & 7))) == 0;
+        return isLevelSeparator(bits, 0, index);
+    }
+
+    /**
+     * Checks if the bit at the given index of a serialized id
+     * starts a new level.
+     *
+     * @param data the byte[] holding the serialized id
+     * @param offset the offset of the id within data
+     * @param index the index of the bit
+     * @return true if the bit is a level separator
+     */
+    public static boolean isLevelSeparator(final byte[] data, final int offset, final int index) {
+        return (data[offset + (index >> UNIT_SHIFT)] & (1 << ((7 - index) & 7))) == 0;
     }
     
     /**
@@ -311,14 +328,28 @@ public class DLNBase {
      * @return the number of levels in this id
      */
     public int getLevelCount(final int startOffset) {
+        return getLevelCount(bits, 0, bitIndex + 1, startOffset);
+    }
+
+    /**
+     * Returns the number of levels in a serialized id.
+     *
+     * @param data the byte[] holding the serialized id
+     * @param offset the offset of the id within data
+     * @param units the number of bits used by the id, see {@link #units()}
+     * @param startOffset the offset (in number of bits) to start counting
+     * @return the number of levels in the id
+     */
+    public static int getLevelCount(final byte[] data, final int offset, final int units, final int startOffset) {
+        final int lastBit = units - 1;
         int bit = startOffset;
         int count = 0;
-        while (bit > -1 && bit <= bitIndex) {
-            final int units = unitsUsed(bit, bits);
-            bit += units;
-            bit += bitWidth(units);
-            if (bit < bitIndex) {
-                if ((bits[bit >> UNIT_SHIFT] & (1 << ((7 - bit++) & 7))) == LEVEL_SEPARATOR) {
+        while (bit > -1 && bit <= lastBit) {
+            final int unitsUsed = unitsUsed(bit, data, offset);
+            bit += unitsUsed;
+            bit += bitWidth(unitsUsed);
+            if (bit < lastBit) {
+                if ((data[offset + (bit >> UNIT_SHIFT)] & (1 << ((7 - bit++) & 7))) == LEVEL_SEPARATOR) {
                     ++count;
                 }
             } else {
@@ -537,17 +568,59 @@ public class DLNBase {
      * @return true if this DLN starts with the same bit sequence as the other
      */
     public boolean startsWith(final DLNBase other) {
-        if (other.bitIndex > bitIndex) {
+        return startsWith(bits, 0, bitIndex + 1, other.bits, 0, other.bitIndex + 1);
+    }
+
+    /**
+     * Checks if a serialized id starts with the same bit sequence
+     * as another serialized id.
+     *
+     * @param data the byte[] holding the id
+     * @param offset the offset of the id within data
+     * @param units the number of bits used by the id
+     * @param prefix the byte[] holding the other id
+     * @param prefixOffset the offset of the other id within prefix
+     * @param prefixUnits the number of bits used by the other id
+     * @return true if the id starts with the same bit sequence as the other id
+     */
+    public static boolean startsWith(final byte[] data, final int offset, final int units,
+            final byte[] prefix, final int prefixOffset, final int prefixUnits) {
+        if (prefixUnits > units) {
             return false;
         }
-        final int bytes = other.bitIndex / 8;
-        final int remaining = other.bitIndex % 8;
+        final int bytes = (prefixUnits - 1) / 8;
+        final int remaining = (prefixUnits - 1) % 8;
         for (int i = 0; i < bytes; i++) {
-            if (bits[i] != other.bits[i]) {
+            if (data[offset + i] != prefix[prefixOffset + i]) {
                 return false;
             }
         }
-        return (bits[bytes] & BIT_MASK[remaining]) == (other.bits[bytes] & BIT_MASK[remaining]);
+        return (data[offset + bytes] & BIT_MASK[remaining]) == (prefix[prefixOffset + bytes] & BIT_MASK[remaining]);
+    }
+
+    /**
+     * Compares two serialized ids in document order.
+     *
+     * @param data the byte[] holding the first id
+     * @param offset the offset of the first id within data
+     * @param length the length of the first id in bytes
+     * @param otherData the byte[] holding the second id
+     * @param otherOffset the offset of the second id within otherData
+     * @param otherLength the length of the second id in bytes
+     * @return a negative value, zero, or a positive value if the first id
+     *     precedes, is equal to, or follows the second id
+     */
+    public static int compare(final byte[] data, final int offset, final int length,
+            final byte[] otherData, final int otherOffset, final int otherLength) {
+        final int limit = length <= otherLength ? length : otherLength;
+        for (int i = 0; i < limit; i++) {
+            final byte b1 = data[offset + i];
+            final byte b2 = otherData[otherOffset + i];
+            if (b1 != b2) {
+                return (b1 & 0xFF) - (b2 & 0xFF);
+            }
+        }
+        return length - otherLength;
     }
 
     public String debug() {
@@ -157,6 +157,7 @@ public class PermissionFactory {
                         permissionModifier.accept(permissions);
 
                         broker.storeXMLResource(transaction, doc);
+                        brokerPool.getXQueryResultCache().invalidate(transaction, doc.getURI().removeLastSegment());
                     }
                 } else {
 //                    // keep a write lock in the transaction
@@ -166,6 +167,7 @@ public class PermissionFactory {
                     permissionModifier.accept(permissions);
 
                     broker.saveCollection(transaction, collection);
+                    brokerPool.getXQueryResultCache().invalidate(transaction, collection.getURI());
                 }
                 broker.flush();
             }
@@ -226,7 +226,9 @@ public class SecurityManagerImpl implements SecurityManager, BrokerPoolService {
         }
 
         try (final ManagedLock<ReadWriteLock> lock = ManagedLock.acquire(accountLocks.getLock(account), LockMode.WRITE_LOCK)) {
-            return findRealmForRealmId(account.getRealmId()).updateAccount(account);
+            final boolean updated = findRealmForRealmId(account.getRealmId()).updateAccount(account);
+            invalidateResultCache();
+            return updated;
         }
     }
 
@@ -241,7 +243,9 @@ public class SecurityManagerImpl implements SecurityManager, BrokerPoolService {
         }
 
         try (final ManagedLock<ReadWriteLock> lock = ManagedLock.acquire(groupLocks.getLock(group), LockMode.WRITE_LOCK)) {
-            return findRealmForRealmId(group.getRealmId()).updateGroup(group);
+            final boolean updated = findRealmForRealmId(group.getRealmId()).updateGroup(group);
+            invalidateResultCache();
+            return updated;
         }
     }
 
@@ -257,7 +261,9 @@ public class SecurityManagerImpl implements SecurityManager, BrokerPoolService {
         }
 
         try (final ManagedLock<ReadWriteLock> lock = ManagedLock.acquire(groupLocks.getLock(group), LockMode.WRITE_LOCK)) {
-            return findRealmForRealmId(group.getRealmId()).deleteGroup(group);
+            final boolean deleted = findRealmForRealmId(group.getRealmId()).deleteGroup(group);
+            invalidateResultCache();
+            return deleted;
         }
     }
 
@@ -277,7 +283,20 @@ public class SecurityManagerImpl implements SecurityManager, BrokerPoolService {
         }
 
         try (final ManagedLock<ReadWriteLock> lock = ManagedLock.acquire(accountLocks.getLock(account), LockMode.WRITE_LOCK)) {
-            return findRealmForRealmId(account.getRealmId()).deleteAccount(account);
+            final boolean deleted = findRealmForRealmId(account.getRealmId()).deleteAccount(account);
+            invalidateResultCache();
+            return deleted;
+        }
+    }
+
+    /**
+     * Cached query results may depend on the group memberships of the
+     * accounts which computed them, so discard them all when an account
+     * or group changes.
+     */
+    private void invalidateResultCache() {
+        if (db instanceof BrokerPool) {
+            ((BrokerPool) db).getXQueryResultCache().invalidateAll();
         }
     }
 
@@ -41,7 +41,9 @@ import org.exist.config.annotation.ConfigurationFieldAsAttribute;
 import org.exist.debuggee.Debuggee;
 import org.exist.debuggee.DebuggeeFactory;
 import org.exist.dom.persistent.SymbolTable;
+import org.exist.indexing.Index;
 import org.exist.indexing.IndexManager;
+import org.exist.indexing.StructuralIndex;
 import org.exist.management.AgentFactory;
 import org.exist.numbering.DLNFactory;
 import org.exist.numbering.NodeIdFactory;
@@ -56,10 +58,12 @@ import org.exist.security.internal.SecurityManagerImpl;
 import org.exist.storage.blob.BlobStore;
 import org.exist.storage.blob.BlobStoreImplService;
 import org.exist.storage.blob.BlobStoreService;
+import org.exist.storage.btree.PageIO;
 import org.exist.storage.journal.JournalManager;
 import org.exist.storage.lock.FileLockService;
 import org.exist.storage.lock.LockManager;
 import org.exist.storage.recovery.RecoveryManager;
+import org.exist.storage.structural.NativeStructuralIndex;
 import org.exist.storage.sync.Sync;
 import org.exist.storage.sync.SyncTask;
 import org.exist.storage.txn.TransactionException;
@@ -255,6 +259,14 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     @ConfigurationFieldAsAttribute("pageSize")
     private final int pageSize;
 
+    /**
+     * The page sizes of files which do not use the default page size, by file name
+     */
+    private final Map<String, Integer> filePageSizes;
+
+    @ConfigurationFieldAsAttribute("page-io")
+    private final PageIO.Type pageIOType;
+
     private FileLockService dataLock;
 
     /**
@@ -319,6 +331,16 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      */
     private NotificationService notificationService = null;
 
+    /**
+     * The cache in which the results of XQuery function calls are stored.
+     */
+    private XQueryResultCache xQueryResultCache;
+
+    /**
+     * The server side cursors over the results of queries.
+     */
+    private CursorManager cursorManager;
+
     /**
      * The cache in which the database instance may store items.
      */
@@ -332,6 +354,11 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      */
     private XQueryPool xQueryPool;
 
+    /**
+     * The pool on which the path steps of XQueries are evaluated in parallel.
+     */
+    private ParallelQueryPool parallelQueryPool;
+
     /**
      * The monitor in which the database instance's strong>running</strong> XQueries are managed.
      */
@@ -415,6 +442,10 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         this.diskSpaceMin = 1024L * 1024L * conf.getProperty(BrokerPool.DISK_SPACE_MIN_PROPERTY, DEFAULT_DISK_SPACE_MIN);
 
         this.pageSize = conf.getProperty(PROPERTY_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+        this.filePageSizes = conf.getProperty(PROPERTY_FILE_PAGE_SIZES, Collections.emptyMap());
+
+        this.pageIOType = conf.getProperty(PROPERTY_PAGE_IO, DEFAULT_PAGE_IO);
+        LOG.info("database instance '{}' will use {} page I/O", instanceName, this.pageIOType);
 
         //Configuration is valid, save it
         this.conf = conf;
@@ -474,6 +505,7 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
 
         this.cacheManager = servicesManager.register(new DefaultCacheManager(this));
         this.xQueryPool = servicesManager.register(new XQueryPool());
+        this.parallelQueryPool = servicesManager.register(new ParallelQueryPool());
         this.processMonitor = servicesManager.register(new ProcessMonitor());
         this.xqueryStats = servicesManager.register(new PerformanceStatsService());
         final XMLReaderObjectFactory xmlReaderObjectFactory = servicesManager.register(new XMLReaderObjectFactory());
@@ -483,6 +515,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                 .orElse(DEFAULT_COLLECTION_BUFFER_SIZE);
         this.collectionCache = servicesManager.register(new CollectionCache());
         this.notificationService = servicesManager.register(new NotificationService());
+        this.xQueryResultCache = servicesManager.register(new XQueryResultCache());
+        this.cursorManager = servicesManager.register(new CursorManager());
 
         this.journalManager = recoveryEnabled ? Optional.of(new JournalManager()) : Optional.empty();
         journalManager.ifPresent(servicesManager::register);
@@ -615,7 +649,10 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
 
                         //If necessary, launch a task to repair the DB
                         //TODO : merge this with the recovery process ?
-                        if(isRecoveryEnabled() && recovered) {
+                        final Index structuralIndex = indexManager.getIndexByName(StructuralIndex.STRUCTURAL_INDEX_ID);
+                        final boolean reindexRequired = structuralIndex instanceof NativeStructuralIndex
+                                && ((NativeStructuralIndex) structuralIndex).isReindexRequired();
+                        if((isRecoveryEnabled() && recovered) || reindexRequired) {
                             if(!exportOnly) {
                                 reportStatus("Reindexing database files...");
                                 try {
@@ -625,7 +662,7 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                                 }
                             }
 
-                            if((Boolean) conf.getProperty(PROPERTY_RECOVERY_CHECK)) {
+                            if(recovered && (Boolean) conf.getProperty(PROPERTY_RECOVERY_CHECK)) {
                                 final ConsistencyCheckTask task = new ConsistencyCheckTask();
                                 final Properties props = new Properties();
                                 props.setProperty("backup", "no");
@@ -804,6 +841,28 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         return pageSize;
     }
 
+    /**
+     * Get the page size with which a new database file is created.
+     *
+     * Existing files always keep the page size which they were created with.
+     *
+     * @param fileName the name of the file, e.g. "dom.dbx"
+     *
+     * @return the page size configured for the file, or the default page size
+     */
+    public int getPageSize(final String fileName) {
+        return filePageSizes.getOrDefault(fileName, pageSize);
+    }
+
+    /**
+     * Returns the type of page I/O used by the paged database files.
+     *
+     * @return the type of page I/O
+     */
+    public PageIO.Type getPageIOType() {
+        return pageIOType;
+    }
+
     /**
      * Returns the class loader used when this BrokerPool was configured.
      *
@@ -954,6 +1013,24 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         return notificationService;
     }
 
+    /**
+     * Returns the cache of the results of XQuery function calls.
+     *
+     * @return The cache
+     */
+    public XQueryResultCache getXQueryResultCache() {
+        return xQueryResultCache;
+    }
+
+    /**
+     * Returns the server side cursors over the results of queries.
+     *
+     * @return The cursor manager
+     */
+    public CursorManager getCursorManager() {
+        return cursorManager;
+    }
+
     /**
      * Returns whether transactions can be handled by the database instance.
      *
@@ -1044,6 +1121,15 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         return xQueryPool;
     }
 
+    /**
+     * Returns the pool on which the path steps of XQueries are evaluated in parallel.
+     *
+     * @return The pool
+     */
+    public ParallelQueryPool getParallelQueryPool() {
+        return parallelQueryPool;
+    }
+
     /**
      * Retuns the XQuery Service
      *
@@ -1726,9 +1812,11 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                 transactionManager = null;
                 collectionCache = null;
                 xQueryPool = null;
+                parallelQueryPool = null;
                 processMonitor = null;
                 collectionConfigurationManager = null;
                 notificationService = null;
+                xQueryResultCache = null;
                 indexManager = null;
                 xmlReaderPool = null;
                 shutdownListener = null;
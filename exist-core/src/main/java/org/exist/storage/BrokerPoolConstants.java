@@ -21,6 +21,9 @@
  */
 package org.exist.storage;
 
+import org.exist.storage.btree.PageIO;
+import org.exist.storage.dom.RecordCompression;
+
 /**
  * Just static Constants used by {@link BrokerPool}
  *
@@ -47,6 +50,8 @@ public interface BrokerPoolConstants {
     String CONFIGURATION_STARTUP_ELEMENT_NAME = "startup";
     String CONFIGURATION_POOL_ELEMENT_NAME = "pool";
     String CONFIGURATION_RECOVERY_ELEMENT_NAME = "recovery";
+    String CONFIGURATION_FILE_ELEMENT_NAME = "file";
+    String FILE_NAME_ATTRIBUTE = "name";
     String DISK_SPACE_MIN_ATTRIBUTE = "minDiskSpace";
 
     String DATA_DIR_ATTRIBUTE = "files";
@@ -62,6 +67,8 @@ public interface BrokerPoolConstants {
     String SYNC_PERIOD_ATTRIBUTE = "sync-period";
     String SHUTDOWN_DELAY_ATTRIBUTE = "wait-before-shutdown";
     String NODES_BUFFER_ATTRIBUTE = "nodesBuffer";
+    String PAGE_IO_ATTRIBUTE = "page-io";
+    String DOM_COMPRESSION_ATTRIBUTE = "dom-compression";
 
     //Various configuration property keys (set by the configuration manager)
     String PROPERTY_STARTUP_TRIGGERS = "startup.triggers";
@@ -86,8 +93,13 @@ public interface BrokerPoolConstants {
     String RECOVERY_GROUP_COMMIT_ATTRIBUTE = "group-commit";
     String PROPERTY_RECOVERY_FORCE_RESTART = "db-connection.recovery.force-restart";
     String RECOVERY_FORCE_RESTART_ATTRIBUTE = "force-restart";
+    String PROPERTY_RECOVERY_REDO_THREADS = "db-connection.recovery.redo-threads";
+    String RECOVERY_REDO_THREADS_ATTRIBUTE = "redo-threads";
 
     String PROPERTY_PAGE_SIZE = "db-connection.page-size";
+    String PROPERTY_FILE_PAGE_SIZES = "db-connection.file-page-sizes";
+    String PROPERTY_PAGE_IO = "db-connection.page-io";
+    String PROPERTY_DOM_COMPRESSION = "db-connection.dom-compression";
 
     /**
      * Default values
@@ -97,5 +109,10 @@ public interface BrokerPoolConstants {
     //TODO : move this default setting to org.exist.collections.CollectionCache ?
     int DEFAULT_COLLECTION_BUFFER_SIZE = 64;
     int DEFAULT_PAGE_SIZE = 4096;
+    int MIN_PAGE_SIZE = 1024;
+    int MAX_PAGE_SIZE = 16384;
+    PageIO.Type DEFAULT_PAGE_IO = PageIO.Type.FILE;
+    RecordCompression DEFAULT_DOM_COMPRESSION = RecordCompression.NONE;
+    int DEFAULT_RECOVERY_REDO_THREADS = 4;
     short DEFAULT_DISK_SPACE_MIN = 64; // 64 MB
 }
@@ -33,6 +33,15 @@ public interface CacheManager {
      */
     void registerCache(Cache cache);
 
+    /**
+     * Register a cache of the pages of a file, whose page size
+     * may differ from the default page size.
+     *
+     * @param cache cache to register
+     * @param pageSize the page size of the file
+     */
+    void registerCache(Cache cache, int pageSize);
+
     void deregisterCache(Cache cache);
 
     /**
@@ -79,6 +88,26 @@ public interface CacheManager {
      */
     long getCurrentSize();
 
+    /**
+     * @return Maximum size of the off-heap page cache in bytes, or 0 if there is no off-heap page cache
+     */
+    long getOffHeapMaxTotal();
+
+    /**
+     * @return Current size of the off-heap page cache in bytes
+     */
+    long getOffHeapCurrentSize();
+
+    /**
+     * @return Number of page reads that were served by the off-heap page cache
+     */
+    long getOffHeapHits();
+
+    /**
+     * @return Number of page reads that missed the off-heap page cache
+     */
+    long getOffHeapFails();
+
     /**
      * Returns the default initial size for all caches.
      *
@@ -0,0 +1,301 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.security.Subject;
+import org.exist.util.Configuration;
+import org.exist.xquery.value.Sequence;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server side cursors over the results of queries, through which the REST server
+ * and the XML-RPC API page through a result without evaluating the query again.
+ *
+ * Each cursor is identified by an opaque id. The number of items the cursors keep
+ * in memory is bounded by a budget, see {@link #CURSOR_BUDGET_ATTRIBUTE}: when
+ * a cursor is opened which exceeds it, the least recently used cursors are spilled
+ * to temporary files, see {@link ResultCursor}. A cursor whose items cannot be spilled
+ * is closed if it is evictable and is not the cursor being opened, and otherwise stays
+ * in memory beyond the budget.
+ * Cursors which have not been accessed for some time are closed,
+ * see {@link #CURSOR_TIMEOUT_ATTRIBUTE}.
+ */
+@ThreadSafe
+public class CursorManager implements BrokerPoolService {
+
+    private static final Logger LOG = LogManager.getLogger(CursorManager.class);
+
+    public static final String CURSOR_BUDGET_ATTRIBUTE = "cursor-budget";
+    public static final String CURSOR_TIMEOUT_ATTRIBUTE = "cursor-timeout";
+
+    public static final String PROPERTY_CURSOR_BUDGET = "xquery.cursor-budget";
+    public static final String PROPERTY_CURSOR_TIMEOUT = "xquery.cursor-timeout";
+
+    public static final long DEFAULT_CURSOR_BUDGET = 1_000_000;
+    public static final long DEFAULT_CURSOR_TIMEOUT = 3 * 60 * 1000;
+
+    private long budget = DEFAULT_CURSOR_BUDGET;
+    private long timeout = DEFAULT_CURSOR_TIMEOUT;
+
+    @Nullable private BrokerPool brokerPool = null;
+
+    /**
+     * The open cursors, in the order of their last access. Guarded by this.
+     */
+    private final LinkedHashMap<String, ResultCursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The number of items of the cursors which have not been spilled. Guarded by this.
+     */
+    private long itemsInMemory = 0;
+
+    private final LongAdder spillCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    @Override
+    public void configure(final Configuration configuration) {
+        budget = Math.max(0, configuration.getProperty(PROPERTY_CURSOR_BUDGET, DEFAULT_CURSOR_BUDGET));
+        timeout = Math.max(0, configuration.getProperty(PROPERTY_CURSOR_TIMEOUT, DEFAULT_CURSOR_TIMEOUT));
+
+        LOG.info("CursorManager: budget = {} items; timeout = {}ms", budget, timeout);
+    }
+
+    @Override
+    public void prepare(final BrokerPool brokerPool) {
+        this.brokerPool = brokerPool;
+    }
+
+    @Override
+    public void shutdown() {
+        final List<ResultCursor> closed;
+        synchronized (this) {
+            closed = new ArrayList<>(cursors.values());
+            cursors.clear();
+            itemsInMemory = 0;
+        }
+        closed.forEach(ResultCursor::close);
+    }
+
+    /**
+     * Open a cursor over the result of a query.
+     *
+     * @param owner the user who executed the query
+     * @param query the query, or null if it is not known
+     * @param result the result of the query
+     * @param evictable true if the cursor may be closed when it exceeds the budget and cannot
+     *     be spilled, because the client can execute the query again
+     *
+     * @return the cursor
+     */
+    public ResultCursor open(final Subject owner, @Nullable final String query, final Sequence result,
+            final boolean evictable) {
+        final ResultCursor cursor = new ResultCursor(brokerPool, UUID.randomUUID().toString(), owner.getName(), query,
+                result, evictable);
+        final List<ResultCursor> expired = new ArrayList<>();
+        final List<ResultCursor> victims = new ArrayList<>();
+        synchronized (this) {
+            expire(expired);
+            cursors.put(cursor.getId(), cursor);
+            itemsInMemory += cursor.getItemCount();
+
+            // least recently used first, which is the new cursor last
+            for (final Iterator<ResultCursor> i = cursors.values().iterator(); i.hasNext() && itemsInMemory > budget; ) {
+                final ResultCursor victim = i.next();
+                if (victim.inMemory && !(victim.isUnspillable() && (victim == cursor || !victim.isEvictable()))) {
+                    victim.inMemory = false;
+                    itemsInMemory -= victim.getItemCount();
+                    victims.add(victim);
+                }
+            }
+        }
+        expired.forEach(ResultCursor::close);
+
+        for (final ResultCursor victim : victims) {
+            try {
+                if (victim.spill()) {
+                    spillCount.increment();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Spilled cursor {} of {} items", victim.getId(), victim.getItemCount());
+                    }
+                    continue;
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to spill cursor {}: {}", victim.getId(), e.getMessage(), e);
+            }
+            if (victim == cursor || !victim.isEvictable()) {
+                synchronized (this) {
+                    if (cursors.containsKey(victim.getId())) {
+                        victim.inMemory = true;
+                        itemsInMemory += victim.getItemCount();
+                    }
+                }
+                continue;
+            }
+            evictionCount.increment();
+            synchronized (this) {
+                cursors.remove(victim.getId());
+            }
+            victim.close();
+        }
+        return cursor;
+    }
+
+    /**
+     * Get an open cursor.
+     *
+     * @param id the id of the cursor
+     *
+     * @return the cursor, or null if it has been closed or timed out
+     */
+    public @Nullable ResultCursor get(final String id) {
+        final List<ResultCursor> expired = new ArrayList<>();
+        final ResultCursor cursor;
+        synchronized (this) {
+            expire(expired);
+            cursor = cursors.get(id);
+        }
+        expired.forEach(ResultCursor::close);
+
+        if (cursor == null || cursor.isClosed()) {
+            return null;
+        }
+        cursor.touch();
+        return cursor;
+    }
+
+    /**
+     * Close a cursor.
+     *
+     * @param id the id of the cursor
+     */
+    public void close(final String id) {
+        final ResultCursor cursor;
+        synchronized (this) {
+            cursor = cursors.remove(id);
+            if (cursor != null && cursor.inMemory) {
+                itemsInMemory -= cursor.getItemCount();
+            }
+        }
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Remove the cursors which have not been accessed within the timeout.
+     *
+     * @param expired the removed cursors, which must be closed by the caller
+     */
+    private void expire(final List<ResultCursor> expired) {
+        if (timeout == 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (final Iterator<ResultCursor> i = cursors.values().iterator(); i.hasNext(); ) {
+            final ResultCursor cursor = i.next();
+            if (now - cursor.getLastAccess() < timeout) {
+                break;
+            }
+            i.remove();
+            if (cursor.inMemory) {
+                itemsInMemory -= cursor.getItemCount();
+            }
+            timeoutCount.increment();
+            expired.add(cursor);
+        }
+    }
+
+    /**
+     * Get the open cursors.
+     *
+     * @return a snapshot of the open cursors
+     */
+    public List<ResultCursor> getCursors() {
+        final List<ResultCursor> expired = new ArrayList<>();
+        final List<ResultCursor> open;
+        synchronized (this) {
+            expire(expired);
+            open = new ArrayList<>(cursors.values());
+        }
+        expired.forEach(ResultCursor::close);
+        return open;
+    }
+
+    /**
+     * Get the maximum number of items which cursors keep in memory.
+     *
+     * @return the number of items
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Get the number of items which cursors keep in memory.
+     *
+     * @return the number of items
+     */
+    public synchronized long getItemsInMemory() {
+        return itemsInMemory;
+    }
+
+    /**
+     * Get the number of cursors which have been spilled to disk.
+     *
+     * @return the number of spills
+     */
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+
+    /**
+     * Get the number of cursors which have been closed because they
+     * exceeded the budget and could not be spilled.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Get the number of cursors which have been closed because
+     * they were not accessed within the timeout.
+     *
+     * @return the number of timeouts
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+}
@@ -21,15 +21,24 @@
  */
 package org.exist.storage;
 
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import org.exist.management.Agent;
 import org.exist.management.AgentFactory;
+import org.exist.storage.cache.BTreeCache;
+import org.exist.storage.cache.BTreeCacheable;
 import org.exist.storage.cache.Cache;
+import org.exist.storage.cache.Cacheable;
+import org.exist.storage.cache.LRUCache;
+import org.exist.storage.cache.OffHeapPageStore;
+import org.exist.storage.cache.TwoQueueCache;
 import org.exist.util.Configuration;
 import org.exist.util.DatabaseConfigurationException;
 
+import javax.annotation.Nullable;
 import java.text.NumberFormat;
 
 import java.util.ArrayList;
@@ -77,12 +86,24 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
     public static final String  SHRINK_THRESHOLD_ATTRIBUTE     		 	= "cacheShrinkThreshold";
     public static final String  SHRINK_THRESHOLD_PROPERTY      			= "db-connection.cache-shrink-threshold";
 
+    public static final Cache.Policy DEFAULT_CACHE_POLICY               = Cache.Policy.TWO_QUEUE;
+    public static final String  CACHE_POLICY_ATTRIBUTE                  = "cachePolicy";
+    public static final String  PROPERTY_CACHE_POLICY                   = "db-connection.cache-policy";
+
+    public static final int     DEFAULT_OFF_HEAP_CACHE_SIZE             = 0;
+    public static final String  OFF_HEAP_CACHE_SIZE_ATTRIBUTE           = "offHeapCacheSize";
+    public static final String  PROPERTY_OFF_HEAP_CACHE_SIZE            = "db-connection.off-heap-cache-size";
+
     /** Caches maintained by this class. */
     private List<Cache>         caches                          = new ArrayList<>();
 
     private long                totalMem;
 
-    /** The total maximum amount of pages shared between all caches. */
+    /**
+     * The total maximum amount of pages shared between all caches. Pages are counted in units
+     * of the default page size, a cache of a file with larger pages counts for more pages,
+     * see {@link #units(Cache, int)}.
+     */
     private int                 totalPageCount;
 
     /** The number of pages currently used by the active caches. */
@@ -108,6 +129,15 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
     private String              instanceName;
 
+    /** The page size of the files of the caches, if it differs from the default page size */
+    private final Reference2IntMap<Cache> pageSizes = new Reference2IntOpenHashMap<>();
+
+    /** The replacement policy of the page caches created by this manager */
+    private final Cache.Policy  cachePolicy;
+
+    /** The store of raw pages held outside of the Java heap, or null if disabled */
+    @Nullable private final OffHeapPageStore offHeapPageStore;
+
     public DefaultCacheManager( BrokerPool pool )
     {
         this.instanceName = pool.getId();
@@ -126,6 +156,16 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
         shrinkThreshold = configuration.getInteger( SHRINK_THRESHOLD_PROPERTY );
 
+        cachePolicy     = configuration.getProperty( PROPERTY_CACHE_POLICY, DEFAULT_CACHE_POLICY );
+
+        final int offHeapCacheSize = configuration.getProperty( PROPERTY_OFF_HEAP_CACHE_SIZE, DEFAULT_OFF_HEAP_CACHE_SIZE );
+        if( offHeapCacheSize > 0 ) {
+            // NOTE: the off-heap store is not subject to checkMaxCacheSize, it is bounded by -XX:MaxDirectMemorySize instead
+            offHeapPageStore = new OffHeapPageStore( offHeapCacheSize * 1024L * 1024L, pageSize );
+        } else {
+            offHeapPageStore = null;
+        }
+
         totalMem        = cacheSize * 1024L * 1024L;
 
         final Boolean checkMaxCache = (Boolean)configuration.getProperty( PROPERTY_CACHE_CHECK_MAX_SIZE );
@@ -149,15 +189,88 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
         this.maxCacheSize   = (int)( totalPageCount * MAX_MEM_USE );
         final NumberFormat nf     = NumberFormat.getNumberInstance();
 
-        LOG.info("Cache settings: {}k; totalPages: {}; maxCacheSize: {}; cacheShrinkThreshold: {}", nf.format(totalMem / 1024L), nf.format(totalPageCount), nf.format(maxCacheSize), nf.format(shrinkThreshold));
+        LOG.info("Cache settings: {}k; totalPages: {}; maxCacheSize: {}; cacheShrinkThreshold: {}; cachePolicy: {}", nf.format(totalMem / 1024L), nf.format(totalPageCount), nf.format(maxCacheSize), nf.format(shrinkThreshold), cachePolicy);
+        if( offHeapPageStore != null ) {
+            LOG.info("Off-heap page cache settings: {}k; totalPages: {}", nf.format(offHeapPageStore.getMaxSize() / 1024L), nf.format(offHeapPageStore.getMaxSize() / pageSize));
+        }
 
         registerMBean();
     }
 
+    /**
+     * Creates a new cache for B+-tree pages, according to the configured cache policy.
+     * The cache is not registered with this manager.
+     *
+     * @param <T> the type of the B+-tree pages
+     * @param name the name of the cache
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache may grow, see {@link Cache#getGrowthFactor()}
+     * @param growthThreshold the amount of thrashing which triggers a resize request
+     *
+     * @return the new cache
+     */
+    public <T extends BTreeCacheable> Cache<T> newBTreeCache( final String name, final int size, final double growthFactor, final double growthThreshold )
+    {
+        if( cachePolicy == Cache.Policy.TWO_QUEUE ) {
+            return( new TwoQueueCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.BTREE ) );
+        }
+        return( new BTreeCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.BTREE ) );
+    }
+
+
+    /**
+     * Creates a new cache for data pages, according to the configured cache policy.
+     * The cache is not registered with this manager.
+     *
+     * @param <T> the type of the data pages
+     * @param name the name of the cache
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache may grow, see {@link Cache#getGrowthFactor()}
+     * @param growthThreshold the amount of thrashing which triggers a resize request
+     *
+     * @return the new cache
+     */
+    public <T extends Cacheable> Cache<T> newDataCache( final String name, final int size, final double growthFactor, final double growthThreshold )
+    {
+        if( cachePolicy == Cache.Policy.TWO_QUEUE ) {
+            return( new TwoQueueCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.DATA ) );
+        }
+        return( new LRUCache<>( name, size, growthFactor, growthThreshold, Cache.CacheType.DATA ) );
+    }
+
+
+    /**
+     * @return the replacement policy of the page caches
+     */
+    public Cache.Policy getCachePolicy()
+    {
+        return( cachePolicy );
+    }
+
+
+    /**
+     * @return the store of raw pages held outside of the Java heap, or null if the off-heap cache is disabled
+     */
+    public @Nullable OffHeapPageStore getOffHeapPageStore()
+    {
+        return( offHeapPageStore );
+    }
+
+
     @Override
     public void registerCache( Cache cache )
     {
-        currentPageCount += cache.getBuffers();
+        registerCache( cache, pageSize );
+    }
+
+
+    @Override
+    public void registerCache( Cache cache, int filePageSize )
+    {
+        if( filePageSize != pageSize ) {
+            pageSizes.put( cache, filePageSize );
+        }
+        currentPageCount += units( cache, cache.getBuffers() );
         caches.add( cache );
         cache.setCacheManager( this );
         registerMBean( cache );
@@ -171,19 +284,22 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
             if (cache == cacheIt.next()) {
                 cache.setCacheManager( null );
                 cacheIt.remove();
+                currentPageCount -= units( cache, cache.getBuffers() );
+                pageSizes.removeInt( cache );
                 break;
             }
         }
-        currentPageCount -= cache.getBuffers();
     }
 
 
     @Override
     public int requestMem( Cache cache )
     {
+        final int maxBuffers = buffers( cache, maxCacheSize );
+
         if( currentPageCount >= totalPageCount ) {
 
-            if( cache.getBuffers() < maxCacheSize ) {
+            if( cache.getBuffers() < maxBuffers ) {
                 lastRequest = cache;
             }
 
@@ -192,7 +308,7 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
             return( -1 );
         }
 
-        if( ( cache.getGrowthFactor() > 1.0 ) && ( cache.getBuffers() < maxCacheSize ) ) {
+        if( ( cache.getGrowthFactor() > 1.0 ) && ( cache.getBuffers() < maxBuffers ) ) {
 
             synchronized( this ) {
 
@@ -205,27 +321,27 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
                 // calculate new cache size
                 int newCacheSize = (int)( cache.getBuffers() * cache.getGrowthFactor() );
 
-                if( newCacheSize > maxCacheSize ) {
+                if( newCacheSize > maxBuffers ) {
 
                     // new cache size is too large: adjust
-                    newCacheSize = maxCacheSize;
+                    newCacheSize = maxBuffers;
                 }
 
-                if( ( currentPageCount + newCacheSize ) > totalPageCount ) {
+                if( ( currentPageCount + units( cache, newCacheSize ) ) > totalPageCount ) {
 
                     // new cache size exceeds total: adjust
-                    newCacheSize = cache.getBuffers() + ( totalPageCount - currentPageCount );
+                    newCacheSize = cache.getBuffers() + buffers( cache, totalPageCount - currentPageCount );
                 }
 
                 if( LOG.isDebugEnabled() ) {
                     final NumberFormat nf = NumberFormat.getNumberInstance();
                     LOG.debug("Growing cache {} (a {}) from {} to {}", cache.getName(), cache.getClass().getName(), nf.format(cache.getBuffers()), nf.format(newCacheSize));
                 }
-                currentPageCount -= cache.getBuffers();
+                currentPageCount -= units( cache, cache.getBuffers() );
 
                 // resize the cache
                 cache.resize( newCacheSize );
-                currentPageCount += newCacheSize;
+                currentPageCount += units( cache, newCacheSize );
 //                LOG.debug("currentPageCount = " + currentPageCount + "; max = " + totalPageCount);
                 return( newCacheSize );
             }
@@ -255,15 +371,15 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
                 if (cache.getGrowthFactor() > 1.0) {
                     load = cache.getLoad();
 
-                    if ((cache.getBuffers() > minSize) && (load < shrinkThreshold)) {
+                    if ((units(cache, cache.getBuffers()) > minSize) && (load < shrinkThreshold)) {
 
                         if (LOG.isDebugEnabled()) {
                             final NumberFormat nf = NumberFormat.getNumberInstance();
                             LOG.debug("Shrinking cache: {} (a {}) to {}", cache.getName(), cache.getClass().getName(), nf.format(cache.getBuffers()));
                         }
-                        currentPageCount -= cache.getBuffers();
+                        currentPageCount -= units(cache, cache.getBuffers());
                         cache.resize(getDefaultInitialSize());
-                        currentPageCount += getDefaultInitialSize();
+                        currentPageCount += units(cache, getDefaultInitialSize());
                     }
                 }
             }
@@ -283,16 +399,16 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
         for (Cache cach : caches) {
             cache = (Cache) cach;
 
-            if (cache.getBuffers() >= minSize) {
+            if (units(cache, cache.getBuffers()) >= minSize) {
                 int newSize = (int) (cache.getBuffers() * SHRINK_FACTOR);
 
                 if (LOG.isDebugEnabled()) {
                     final NumberFormat nf = NumberFormat.getNumberInstance();
                     LOG.debug("Shrinking cache: {} (a {}) to {}", cache.getName(), cache.getClass().getName(), nf.format(newSize));
                 }
-                currentPageCount -= cache.getBuffers();
+                currentPageCount -= units(cache, cache.getBuffers());
                 cache.resize(newSize);
-                currentPageCount += newSize;
+                currentPageCount += units(cache, newSize);
                 break;
             }
         }
@@ -326,11 +442,71 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
         return( maxCacheSize );
     }
 
+    /**
+     * @return Maximum size of the off-heap page cache in bytes
+     */
+    @Override
+    public long getOffHeapMaxTotal()
+    {
+        return( offHeapPageStore == null ? 0 : offHeapPageStore.getMaxSize() );
+    }
+
+    /**
+     * @return Current size of the off-heap page cache in bytes
+     */
+    @Override
+    public long getOffHeapCurrentSize()
+    {
+        return( offHeapPageStore == null ? 0 : offHeapPageStore.getCurrentSize() );
+    }
+
+    @Override
+    public long getOffHeapHits()
+    {
+        return( offHeapPageStore == null ? 0 : offHeapPageStore.getHits() );
+    }
+
+    @Override
+    public long getOffHeapFails()
+    {
+        return( offHeapPageStore == null ? 0 : offHeapPageStore.getFails() );
+    }
+
     public long getTotalMem()
     {
         return( totalMem );
     }
 
+    /**
+     * Get the number of pages of the default page size which the buffers of a cache occupy.
+     * The file of the cache may have a different page size, see {@link #registerCache(Cache, int)}.
+     *
+     * @param cache the cache
+     * @param buffers the number of buffers of the cache
+     *
+     * @return the number of pages of the default page size
+     */
+    private int units( final Cache cache, final int buffers )
+    {
+        return( (int) ( (long) buffers * pageSizes.getOrDefault( cache, pageSize ) / pageSize ) );
+    }
+
+
+    /**
+     * Get the number of buffers of a cache which occupy a number of pages of the default page size,
+     * see {@link #units(Cache, int)}.
+     *
+     * @param cache the cache
+     * @param units the number of pages of the default page size
+     *
+     * @return the number of buffers of the cache
+     */
+    private int buffers( final Cache cache, final int units )
+    {
+        return( (int) ( (long) units * pageSize / pageSizes.getOrDefault( cache, pageSize ) ) );
+    }
+
+
     /**
      * Returns the default initial size for all caches.
      *
@@ -53,6 +53,7 @@ import org.exist.storage.dom.DOMFile;
 import org.exist.storage.dom.DOMTransaction;
 import org.exist.storage.dom.NodeIterator;
 import org.exist.storage.dom.RawNodeIterator;
+import org.exist.storage.dom.RecordCompression;
 import org.exist.storage.index.BFile;
 import org.exist.storage.index.CollectionStore;
 import org.exist.storage.io.VariableByteInput;
@@ -63,6 +64,7 @@ import org.exist.storage.lock.Lock.LockType;
 import org.exist.storage.serializers.NativeSerializer;
 import org.exist.storage.serializers.Serializer;
 import org.exist.storage.serializers.XmlSerializerPool;
+import org.exist.storage.structural.NativeStructuralIndex;
 import org.exist.storage.sync.Sync;
 import org.exist.storage.txn.TransactionException;
 import org.exist.storage.txn.TransactionManager;
@@ -199,6 +201,10 @@ public class NativeBroker implements DBBroker {
     /** used to count the nodes inserted after the last memory check */
     private int nodesCount = 0;
 
+    /** the compression configured for the document {@link #domCompressionDocId}, see {@link #getDOMCompression(DocumentImpl)} */
+    @Nullable private RecordCompression domCompression = null;
+    private int domCompressionDocId = DocumentImpl.UNKNOWN_DOCUMENT_ID;
+
     private int nodesCountThreshold = DEFAULT_NODES_BEFORE_MEMORY_CHECK;
 
     private final Path dataDir;
@@ -1203,6 +1209,7 @@ public class NativeBroker implements DBBroker {
         final XmldbURI sourceCollectionUri = sourceCollection.getURI();
         final XmldbURI targetCollectionUri = targetCollection.getURI();
         final XmldbURI destinationCollectionUri = targetCollectionUri.append(newName);
+        invalidateResultCache(transaction, destinationCollectionUri);
 
         if(sourceCollection.getId() == targetCollection.getId()) {
             throw new PermissionDeniedException("Cannot copy collection to itself '" + sourceCollectionUri + "'.");
@@ -1487,6 +1494,8 @@ public class NativeBroker implements DBBroker {
         final XmldbURI sourceCollectionUri = sourceCollection.getURI();
         final XmldbURI targetCollectionUri = targetCollection.getURI();
         final XmldbURI destinationCollectionUri = targetCollectionUri.append(newName);
+        invalidateResultCache(transaction, sourceCollectionUri);
+        invalidateResultCache(transaction, destinationCollectionUri);
 
         if(sourceCollection.getId() == targetCollection.getId()) {
             throw new PermissionDeniedException("Cannot move collection to itself '" + sourceCollectionUri + "'.");
@@ -1750,6 +1759,7 @@ public class NativeBroker implements DBBroker {
         // WRITE LOCK the collection's parent (as we will remove this collection from it)
         final XmldbURI parentCollectionUri = collection.getParentURI() == null ? XmldbURI.ROOT_COLLECTION_URI : collection.getParentURI();
         try(final ManagedCollectionLock parentCollectionLock = writeLockCollection(parentCollectionUri)) {
+            invalidateResultCache(transaction, collection.getURI());
             return _removeCollection(transaction, collection);
         } catch(final LockException e) {
             LOG.error("Unable to lock Collection: {}", collection.getURI(), e);
@@ -1970,6 +1980,17 @@ public class NativeBroker implements DBBroker {
         return lockManager.acquireCollectionReadLock(collectionUri);
     }
 
+    /**
+     * Invalidate the cached results of functions which read a collection, for the changes
+     * which are not reported to the {@link NotificationService}.
+     *
+     * @param transaction the transaction which changes the collection
+     * @param collectionUri the URI of the collection
+     */
+    private void invalidateResultCache(final Txn transaction, final XmldbURI collectionUri) {
+        pool.getXQueryResultCache().invalidate(transaction, collectionUri);
+    }
+
     @Override
     public void saveCollection(final Txn transaction, final Collection collection) throws IOException {
         if(collection == null) {
@@ -2047,6 +2068,11 @@ public class NativeBroker implements DBBroker {
         } catch(final PermissionDeniedException | IOException e) {
             LOG.error("An error occurred during reindex: {}", e.getMessage(), e);
         } finally {
+            // reindexing the root collection bulk loads the structural index
+            final Index structuralIndex = pool.getIndexManager().getIndexByName(StructuralIndex.STRUCTURAL_INDEX_ID);
+            if (structuralIndex instanceof NativeStructuralIndex) {
+                ((NativeStructuralIndex) structuralIndex).endBulkLoad();
+            }
             pool.getProcessMonitor().endJob();
             LOG.info("Finished indexing collection {} in {} ms.", fqUri, System.currentTimeMillis() - start);
         }
@@ -2340,6 +2366,7 @@ public class NativeBroker implements DBBroker {
     @Override
     public void storeBinaryResource(final Txn transaction, final BinaryDocument blob, final InputStream is)
             throws IOException {
+        invalidateResultCache(transaction, blob.getURI().removeLastSegment());
         final BlobStore blobStore = pool.getBlobStore();
         final Tuple2<BlobId, Long> blobIdLen = blobStore.add(transaction, is);
 
@@ -2605,6 +2632,7 @@ public class NativeBroker implements DBBroker {
         final XmldbURI sourceDocumentUri = sourceDocument.getURI();
         final XmldbURI targetCollectionUri = targetCollection.getURI();
         final XmldbURI targetDocumentUri = targetCollectionUri.append(newDocName);
+        invalidateResultCache(transaction, targetCollectionUri);
 
         if(!sourceDocument.getPermissions().validate(getCurrentSubject(), Permission.READ)) {
             throw new PermissionDeniedException("Account '" + getCurrentSubject().getName() + "' has insufficient privileges to copy the resource '" + sourceDocumentUri + "'.");
@@ -2849,6 +2877,8 @@ public class NativeBroker implements DBBroker {
         final XmldbURI sourceDocumentUri = sourceDocument.getURI();
         final XmldbURI targetCollectionUri = targetCollection.getURI();
         final XmldbURI destinationDocumentUri = targetCollectionUri.append(newName);
+        invalidateResultCache(transaction, sourceDocumentUri.removeLastSegment());
+        invalidateResultCache(transaction, targetCollectionUri);
 
         final Account docUser = sourceDocument.getUserLock();
         if(docUser != null) {
@@ -2945,6 +2975,7 @@ public class NativeBroker implements DBBroker {
         if(isReadOnly()) {
             throw new IOException(DATABASE_IS_READ_ONLY);
         }
+        invalidateResultCache(transaction, document.getURI().removeLastSegment());
         try {
             if(LOG.isDebugEnabled()) {
                 LOG.debug("Removing document {} ({}) ...", document.getFileURI(), document.getDocId());
@@ -3028,6 +3059,7 @@ public class NativeBroker implements DBBroker {
         if(isReadOnly()) {
             throw new IOException(DATABASE_IS_READ_ONLY);
         }
+        invalidateResultCache(transaction, blob.getURI().removeLastSegment());
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("removing binary resource {}...", blob.getDocId());
@@ -3293,6 +3325,7 @@ public class NativeBroker implements DBBroker {
         final DocumentImpl doc = node.getOwnerDocument();
         final short nodeType = node.getNodeType();
         final byte[] data = node.serialize();
+        final RecordCompression compression = getDOMCompression(doc);
         new DOMTransaction(this, domDb, () -> lockManager.acquireBtreeWriteLock(domDb.getLockName()), doc) {
             @Override
             public Object start() throws ReadOnlyException {
@@ -3301,9 +3334,9 @@ public class NativeBroker implements DBBroker {
                     || nodeType == Node.ATTRIBUTE_NODE
                     || nodeType == Node.CDATA_SECTION_NODE
                     || node.getNodeId().getTreeLevel() > defaultIndexDepth) {
-                    address = domDb.add(transaction, data);
+                    address = domDb.add(transaction, data, compression);
                 } else {
-                    address = domDb.put(transaction, new NodeRef(doc.getDocId(), node.getNodeId()), data);
+                    address = domDb.put(transaction, new NodeRef(doc.getDocId(), node.getNodeId()), data, compression);
                 }
                 if(address == BFile.UNKNOWN_ADDRESS) {
                     LOG.error("address is missing");
@@ -3361,15 +3394,16 @@ public class NativeBroker implements DBBroker {
     public void insertNodeAfter(final Txn transaction, final NodeHandle previous, final IStoredNode node) {
         final byte[] data = node.serialize();
         final DocumentImpl doc = previous.getOwnerDocument();
+        final RecordCompression compression = getDOMCompression(doc);
         new DOMTransaction(this, domDb, () -> lockManager.acquireBtreeWriteLock(domDb.getLockName()), doc) {
             @Override
             public Object start() {
                 long address = previous.getInternalAddress();
                 if(address != BFile.UNKNOWN_ADDRESS) {
-                    address = domDb.insertAfter(transaction, doc, address, data);
+                    address = domDb.insertAfter(transaction, doc, address, data, compression);
                 } else {
                     final NodeRef ref = new NodeRef(doc.getDocId(), previous.getNodeId());
-                    address = domDb.insertAfter(transaction, doc, ref, data);
+                    address = domDb.insertAfter(transaction, doc, ref, data, compression);
                 }
                 node.setInternalAddress(address);
                 return null;
@@ -3988,6 +4022,8 @@ public class NativeBroker implements DBBroker {
     //TODO UNDERSTAND : why not use shutdown ? -pb
     @Override
     public void closeDocument() {
+        domCompression = null;
+        domCompressionDocId = DocumentImpl.UNKNOWN_DOCUMENT_ID;
         new DOMTransaction(this, domDb, () -> lockManager.acquireBtreeWriteLock(domDb.getLockName())) {
             @Override
             public Object start() {
@@ -3997,6 +4033,25 @@ public class NativeBroker implements DBBroker {
         }.run();
     }
 
+    /**
+     * Get the compression of the character data nodes of a document, which is
+     * configured by the collection of the document. The compression of the last
+     * document is kept until {@link #closeDocument()} is called.
+     *
+     * @param doc the document
+     *
+     * @return the compression, or null for the compression configured for the database
+     */
+    private @Nullable RecordCompression getDOMCompression(final DocumentImpl doc) {
+        if (doc.getDocId() != domCompressionDocId) {
+            final Collection collection = doc.getCollection();
+            final CollectionConfiguration config = collection == null ? null : collection.getConfiguration(this);
+            domCompression = config == null ? null : config.getDOMCompression();
+            domCompressionDocId = doc.getDocId();
+        }
+        return domCompression;
+    }
+
     @Override
     public void addCurrentTransaction(final Txn transaction) {
         synchronized (currentTransactions) {
@@ -122,7 +122,8 @@ public class NativeValueIndex implements ContentLoadingObserver {
     private final static Logger LOG = LogManager.getLogger(NativeValueIndex.class);
 
     public static final String FILE_NAME = "values.dbx";
-    public static final short FILE_FORMAT_VERSION_ID = 15;
+    public static final short FILE_FORMAT_VERSION_ID = 16;
+    public static final short LEGACY_FILE_FORMAT_VERSION_ID = 15;
     public static final String FILE_KEY_IN_CONFIG = "db-connection.values";
 
     private static final double DEFAULT_VALUE_CACHE_GROWTH = 1.25;
@@ -184,7 +185,7 @@ public class NativeValueIndex implements ContentLoadingObserver {
             //use inheritance
             final Path file = dataDir.resolve(getFileName());
             LOG.debug("Creating '{}'...", FileUtils.fileName(file));
-            nativeFile = new BFile(broker.getBrokerPool(), id, FILE_FORMAT_VERSION_ID, false, file,
+            nativeFile = new BFile(broker.getBrokerPool(), id, FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID, false, file,
                     broker.getBrokerPool().getCacheManager(), cacheGrowth,
                     cacheValueThresHold);
             config.setProperty(getConfigKeyForFile(), nativeFile);
@@ -0,0 +1,116 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.util.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static org.exist.util.ThreadUtils.nameInstanceThread;
+
+/**
+ * The fork-join pool on which the path steps of queries are evaluated
+ * in parallel, when parallel evaluation is enabled for a query.
+ *
+ * The workers of the pool never access the database: they have no broker
+ * and take no locks, and only join node sets which the thread evaluating the
+ * query has already read from the indexes.
+ *
+ * Parallel evaluation is enabled for all queries by the xquery
+ * {@link #PARALLEL_EVALUATION_ATTRIBUTE} setting, or for an expression
+ * by the <code>exist:parallel</code> pragma.
+ */
+@ThreadSafe
+public class ParallelQueryPool implements BrokerPoolService {
+
+    private static final Logger LOG = LogManager.getLogger(ParallelQueryPool.class);
+
+    public static final String PARALLEL_EVALUATION_ATTRIBUTE = "parallel-evaluation";
+    public static final String PARALLEL_THREADS_ATTRIBUTE = "parallel-threads";
+    public static final String PARALLEL_PARTITION_SIZE_ATTRIBUTE = "parallel-partition-size";
+
+    public static final String PROPERTY_PARALLEL_EVALUATION = "xquery.parallel-evaluation";
+    public static final String PROPERTY_PARALLEL_THREADS = "xquery.parallel-threads";
+    public static final String PROPERTY_PARALLEL_PARTITION_SIZE = "xquery.parallel-partition-size";
+
+    public static final boolean DEFAULT_PARALLEL_EVALUATION = false;
+    public static final int DEFAULT_PARALLEL_THREADS = 0;
+    public static final int DEFAULT_PARALLEL_PARTITION_SIZE = 64;
+
+    private int threads;
+    private int partitionSize = DEFAULT_PARALLEL_PARTITION_SIZE;
+    private volatile ForkJoinPool pool = null;
+
+    @Override
+    public void configure(final Configuration configuration) {
+        threads = configuration.getProperty(PROPERTY_PARALLEL_THREADS, DEFAULT_PARALLEL_THREADS);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        partitionSize = Math.max(1, configuration.getProperty(PROPERTY_PARALLEL_PARTITION_SIZE, DEFAULT_PARALLEL_PARTITION_SIZE));
+
+        LOG.info("ParallelQueryPool: threads = {}; partitionSize = {}", threads, partitionSize);
+    }
+
+    @Override
+    public void prepare(final BrokerPool brokerPool) {
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = forkJoinPool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName(nameInstanceThread(brokerPool, "xquery.parallel-" + thread.getPoolIndex()));
+            return thread;
+        };
+        this.pool = new ForkJoinPool(threads, threadFactory, null, false);
+    }
+
+    /**
+     * Get the fork-join pool. The threads of the pool are started on demand.
+     *
+     * @return the pool, or null if the database has been shutdown
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Get the least number of documents of a partition. Node sets
+     * which span fewer than twice as many documents are evaluated
+     * on the calling thread.
+     *
+     * @return the number of documents
+     */
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    @Override
+    public void shutdown() {
+        final ForkJoinPool pool = this.pool;
+        this.pool = null;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
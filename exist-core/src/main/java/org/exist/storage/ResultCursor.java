@@ -0,0 +1,511 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.NewArrayNodeSet;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.numbering.NodeId;
+import org.exist.security.Permission;
+import org.exist.security.PermissionDeniedException;
+import org.exist.util.io.TemporaryFileManager;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.AbstractSequence;
+import org.exist.xquery.value.BinaryValue;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.MemoryNodeSet;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.StringValue;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A server side cursor over the result of a query, opened by the {@link CursorManager}.
+ *
+ * The items of the result are kept in memory until the cursor manager spills the cursor
+ * to a temporary file to stay within its memory budget. The items of a spilled cursor
+ * are read back on demand, {@link #BLOCK_SIZE} items at a time, so that paging forward
+ * through the result reads the file once.
+ *
+ * Only atomic values and persistent nodes can be spilled: a persistent node is written
+ * as the URI of its document, its node id and its node type, and resolved again with the permissions
+ * of the user reading the cursor. Cursors holding in-memory nodes, function items or
+ * binary values cannot be spilled: they are closed instead if they are evictable, or
+ * else stay in memory.
+ */
+@ThreadSafe
+public class ResultCursor {
+
+    private static final Logger LOG = LogManager.getLogger(ResultCursor.class);
+
+    static final int BLOCK_SIZE = 256;
+
+    private static final byte ATOMIC = 0;
+    private static final byte NODE = 1;
+    private static final byte DOCUMENT = 2;
+
+    private final BrokerPool pool;
+    private final String id;
+    private final String owner;
+    @Nullable private final String query;
+    private final long created;
+    private final int itemCount;
+    private final int itemType;
+    private final boolean evictable;
+    private volatile long lastAccess;
+
+    /**
+     * Whether the items of the cursor are counted against the memory budget,
+     * guarded by the {@link CursorManager}.
+     */
+    boolean inMemory = true;
+
+    // guarded by this
+    @Nullable private Sequence sequence;
+    @Nullable private Path spillFile = null;
+    @Nullable private long[] blockOffsets = null;
+    private boolean unspillable = false;
+    private boolean closed = false;
+
+    ResultCursor(final BrokerPool pool, final String id, final String owner, @Nullable final String query,
+            final Sequence sequence, final boolean evictable) {
+        this.pool = pool;
+        this.id = id;
+        this.owner = owner;
+        this.query = query;
+        this.sequence = sequence;
+        this.itemCount = sequence.getItemCount();
+        this.itemType = sequence.getItemType();
+        this.evictable = evictable;
+        this.created = System.currentTimeMillis();
+        this.lastAccess = created;
+    }
+
+    /**
+     * Get the opaque id of the cursor.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the name of the user who opened the cursor.
+     *
+     * @return the name of the user
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Get the query whose result the cursor iterates.
+     *
+     * @return the query, or null if it is not known
+     */
+    public @Nullable String getQuery() {
+        return query;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Whether the cursor may be closed to stay within the memory budget if it cannot be spilled,
+     * because its client is able to compute the result again.
+     *
+     * @return true if the cursor may be closed
+     */
+    public boolean isEvictable() {
+        return evictable;
+    }
+
+    void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Whether a previous attempt to spill the cursor found items which cannot be spilled.
+     *
+     * @return true if the cursor cannot be spilled
+     */
+    synchronized boolean isUnspillable() {
+        return unspillable;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Get the items of the cursor. If the cursor has been spilled, the returned
+     * sequence reads them from the spill file, using the broker of the current thread.
+     *
+     * @return the items, or null if the cursor has been closed
+     */
+    public synchronized @Nullable Sequence getSequence() {
+        if (closed) {
+            return null;
+        }
+        if (sequence != null) {
+            return sequence;
+        }
+        return new SpilledSequence(spillFile, blockOffsets);
+    }
+
+    /**
+     * Write the items of the cursor to a temporary file and release them.
+     *
+     * @return true if the cursor has been spilled, false if it holds items
+     *     which cannot be spilled or has been closed
+     *
+     * @throws IOException if the items cannot be written
+     */
+    synchronized boolean spill() throws IOException {
+        if (closed || sequence == null || unspillable) {
+            return false;
+        }
+
+        final TemporaryFileManager temporaryFileManager = TemporaryFileManager.getInstance();
+        final Path file = temporaryFileManager.getTemporaryFile();
+        final long[] offsets = new long[(itemCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        boolean spilled = false;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            int i = 0;
+            for (final SequenceIterator it = sequence.iterate(); it.hasNext(); i++) {
+                if (i % BLOCK_SIZE == 0) {
+                    os.flush();
+                    offsets[i / BLOCK_SIZE] = channel.position();
+                }
+                if (!write(os, it.nextItem())) {
+                    unspillable = true;
+                    return false;
+                }
+            }
+            spilled = true;
+        } catch (final XPathException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (!spilled) {
+                temporaryFileManager.returnTemporaryFile(file);
+            }
+        }
+
+        this.spillFile = file;
+        this.blockOffsets = offsets;
+        this.sequence = null;
+        return true;
+    }
+
+    /**
+     * Close the cursor and release its items.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (sequence instanceof BinaryValue binaryValue) {
+            try {
+                binaryValue.close();
+            } catch (final IOException e) {
+                LOG.warn("Unable to cleanup BinaryValue of cursor: {}", id, e);
+            }
+        }
+        sequence = null;
+        if (spillFile != null) {
+            TemporaryFileManager.getInstance().returnTemporaryFile(spillFile);
+            spillFile = null;
+            blockOffsets = null;
+        }
+    }
+
+    private static boolean write(final DataOutputStream os, final Item item) throws IOException, XPathException {
+        if (item instanceof NodeProxy node) {
+            final NodeId nodeId = node.getNodeId();
+            if (NodeId.DOCUMENT_NODE.equals(nodeId)) {
+                os.writeByte(DOCUMENT);
+                writeString(os, node.getOwnerDocument().getURI().toString());
+            } else {
+                os.writeByte(NODE);
+                writeString(os, node.getOwnerDocument().getURI().toString());
+                writeString(os, nodeId.toString());
+                os.writeShort(node.getNodeType());
+            }
+            return true;
+        }
+
+        final int type = item.getType();
+        if (!Type.subTypeOf(type, Type.ANY_ATOMIC_TYPE) || type == Type.JAVA_OBJECT || type == Type.QNAME
+                || type == Type.NOTATION || Type.subTypeOf(type, Type.BASE64_BINARY)
+                || Type.subTypeOf(type, Type.HEX_BINARY)) {
+            return false;
+        }
+        os.writeByte(ATOMIC);
+        os.writeInt(type);
+        writeString(os, item.getStringValue());
+        return true;
+    }
+
+    private static void writeString(final DataOutputStream os, final String s) throws IOException {
+        final byte[] data = s.getBytes(UTF_8);
+        os.writeInt(data.length);
+        os.write(data);
+    }
+
+    private static String readString(final DataInputStream is) throws IOException {
+        final byte[] data = new byte[is.readInt()];
+        is.readFully(data);
+        return new String(data, UTF_8);
+    }
+
+    /**
+     * A view of the items of a spilled cursor, which keeps the
+     * block of items read last in memory.
+     */
+    private class SpilledSequence extends AbstractSequence {
+
+        private final Path file;
+        private final long[] offsets;
+
+        private int block = -1;
+        @Nullable private Item[] items = null;
+
+        SpilledSequence(final Path file, final long[] offsets) {
+            this.file = file;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public void add(final Item item) throws XPathException {
+            throw new XPathException((Expression) null, "Internal error: adding to an immutable sequence");
+        }
+
+        @Override
+        public void addAll(final Sequence other) throws XPathException {
+            throw new XPathException((Expression) null, "Internal error: adding to an immutable sequence");
+        }
+
+        @Override
+        public int getItemType() {
+            return itemType;
+        }
+
+        @Override
+        public long getItemCountLong() {
+            return itemCount;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return itemCount == 0;
+        }
+
+        @Override
+        public boolean hasOne() {
+            return itemCount == 1;
+        }
+
+        @Override
+        public boolean hasMany() {
+            return itemCount > 1;
+        }
+
+        @Override
+        public @Nullable Item itemAt(final int pos) {
+            if (pos < 0 || pos >= itemCount) {
+                return null;
+            }
+            try {
+                return read(pos);
+            } catch (final IOException | EXistException | PermissionDeniedException | XPathException e) {
+                LOG.error("Unable to read item {} of cursor {}: {}", pos, id, e.getMessage(), e);
+                return null;
+            }
+        }
+
+        @Override
+        public SequenceIterator iterate() {
+            return new SpilledSequenceIterator();
+        }
+
+        @Override
+        public SequenceIterator unorderedIterator() {
+            return new SpilledSequenceIterator();
+        }
+
+        private Item read(final int pos) throws IOException, EXistException, PermissionDeniedException, XPathException {
+            final int b = pos / BLOCK_SIZE;
+            if (b != block || items == null) {
+                items = readBlock(b);
+                block = b;
+            }
+            return items[pos % BLOCK_SIZE];
+        }
+
+        private Item[] readBlock(final int b) throws IOException, EXistException, PermissionDeniedException, XPathException {
+            final Item[] blockItems = new Item[Math.min(BLOCK_SIZE, itemCount - b * BLOCK_SIZE)];
+            final Map<String, DocumentImpl> documents = new HashMap<>();
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                    final DataInputStream is = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offsets[b]))));
+                    final DBBroker broker = pool.getBroker()) {
+                for (int i = 0; i < blockItems.length; i++) {
+                    final byte kind = is.readByte();
+                    if (kind == ATOMIC) {
+                        final int type = is.readInt();
+                        final StringValue value = new StringValue(readString(is));
+                        blockItems[i] = type == Type.STRING ? value : value.convertTo(type);
+                    } else {
+                        final DocumentImpl doc = document(broker, documents, readString(is));
+                        if (kind == DOCUMENT) {
+                            blockItems[i] = new NodeProxy(doc);
+                        } else {
+                            final NodeId nodeId = pool.getNodeFactory().createFromString(readString(is));
+                            blockItems[i] = new NodeProxy(doc, nodeId, is.readShort());
+                        }
+                    }
+                }
+            }
+            return blockItems;
+        }
+
+        private DocumentImpl document(final DBBroker broker, final Map<String, DocumentImpl> documents,
+                final String uri) throws PermissionDeniedException, XPathException {
+            DocumentImpl doc = documents.get(uri);
+            if (doc == null) {
+                doc = broker.getResource(XmldbURI.create(uri), Permission.READ);
+                if (doc == null) {
+                    throw new XPathException((Expression) null, "Document of cursor " + id + " has been removed: " + uri);
+                }
+                documents.put(uri, doc);
+            }
+            return doc;
+        }
+
+        @Override
+        public NodeSet toNodeSet() throws XPathException {
+            final NodeSet nodes = new NewArrayNodeSet();
+            for (final SequenceIterator i = iterate(); i.hasNext(); ) {
+                final Item item = i.nextItem();
+                if (!(item instanceof NodeProxy node)) {
+                    throw new XPathException((Expression) null, "Type error: the sequence cannot be converted into" +
+                            " a node set. Item type is " + Type.getTypeName(item.getType()));
+                }
+                nodes.add(node);
+            }
+            return nodes;
+        }
+
+        @Override
+        public MemoryNodeSet toMemNodeSet() throws XPathException {
+            throw new XPathException((Expression) null, "Type error: the sequence of a spilled cursor" +
+                    " cannot be converted into a memory node set");
+        }
+
+        @Override
+        public void removeDuplicates() {
+        }
+
+        @Override
+        public boolean containsReference(final Item item) {
+            // the items are created on demand, so no item is ever part of the sequence
+            return false;
+        }
+
+        @Override
+        public boolean contains(final Item item) {
+            for (int i = 0; i < itemCount; i++) {
+                final Item other = itemAt(i);
+                if (other != null && other.equals(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private class SpilledSequenceIterator implements SequenceIterator {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < itemCount;
+            }
+
+            @Override
+            public @Nullable Item nextItem() {
+                if (position < itemCount) {
+                    return itemAt(position++);
+                }
+                return null;
+            }
+
+            @Override
+            public long skippable() {
+                return itemCount - position;
+            }
+
+            @Override
+            public long skip(final long n) {
+                final int skip = (int) Math.min(n, itemCount - position);
+                position += skip;
+                return skip;
+            }
+        }
+    }
+}
@@ -32,13 +32,19 @@
  */
 package org.exist.storage;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.text.NumberFormat;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
+import antlr.collections.AST;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import net.jcip.annotations.ThreadSafe;
+import net.jpountz.xxhash.XXHashFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.security.Permission;
@@ -49,6 +55,10 @@ import org.exist.util.Configuration;
 import org.exist.util.Holder;
 import org.exist.xquery.*;
 
+import javax.annotation.Nullable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Global pool for compiled XQuery expressions.
  *
@@ -58,6 +68,13 @@ import org.exist.xquery.*;
  * For each XQuery, a maximum of {@link #DEFAULT_MAX_QUERY_STACK_SIZE} compiled
  * expressions are kept in the pool.
  *
+ * The pool also keeps the syntax trees of the library modules imported by
+ * the queries, so that a module is parsed only once, even though every compiled
+ * query builds its own expressions from it. The expressions of a module cannot be
+ * shared, as they hold the state of the query which runs them, e.g. the values of
+ * the global variables and of the function parameters. A syntax tree is never
+ * changed after parsing and may be shared by all queries.
+ *
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
 @ThreadSafe
@@ -68,12 +85,17 @@ public class XQueryPool implements BrokerPoolService {
     public static final String CONFIGURATION_ELEMENT_NAME = "query-pool";
     public static final String MAX_STACK_SIZE_ATTRIBUTE = "max-stack-size";
     public static final String POOL_SIZE_ATTTRIBUTE = "size";
+    public static final String MODULE_CACHE_SIZE_ATTRIBUTE = "module-cache-size";
 
     public static final String PROPERTY_MAX_STACK_SIZE = "db-connection.query-pool.max-stack-size";
     public static final String PROPERTY_POOL_SIZE = "db-connection.query-pool.size";
+    public static final String PROPERTY_MODULE_CACHE_SIZE = "db-connection.query-pool.module-cache-size";
 
     private static final int DEFAULT_MAX_POOL_SIZE = 128;
     private static final int DEFAULT_MAX_QUERY_STACK_SIZE = 64;
+    private static final int DEFAULT_MODULE_CACHE_SIZE = 256;
+
+    private static final long CHECKSUM_SEED = 0x79742bc8;
 
     private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
     private int maxQueryStackSize = DEFAULT_MAX_QUERY_STACK_SIZE;
@@ -83,6 +105,11 @@ public class XQueryPool implements BrokerPoolService {
      */
     private Cache<Source, Deque<CompiledXQuery>> cache;
 
+    /**
+     * Source of a library module -> its syntax tree, or null if disabled
+     */
+    @Nullable private Cache<ModuleKey, ParsedModule> modules;
+
     @Override
     public void configure(final Configuration configuration) {
         final Integer maxStSz = (Integer) configuration.getProperty(PROPERTY_MAX_STACK_SIZE);
@@ -105,7 +132,12 @@ public class XQueryPool implements BrokerPoolService {
                 .maximumSize(maxPoolSize)
                 .build();
 
-        LOG.info("QueryPool: size = {}; maxQueryStackSize = {}", nf.format(maxPoolSize), nf.format(maxQueryStackSize));
+        final int moduleCacheSize = configuration.getProperty(PROPERTY_MODULE_CACHE_SIZE, DEFAULT_MODULE_CACHE_SIZE);
+        this.modules = moduleCacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(moduleCacheSize)
+                .build();
+
+        LOG.info("QueryPool: size = {}; maxQueryStackSize = {}; moduleCacheSize = {}", nf.format(maxPoolSize), nf.format(maxQueryStackSize), nf.format(moduleCacheSize));
     }
 
     /**
@@ -212,10 +244,97 @@ public class XQueryPool implements BrokerPoolService {
         return compiledXQuery.isValid();
     }
 
+    /**
+     * Parses a library module, unless its syntax tree is cached.
+     *
+     * A cached syntax tree is used if the source of the module has not been
+     * modified since it was parsed. Otherwise the module is read, and the cached
+     * syntax tree is still used if the checksum of the module has not changed.
+     *
+     * @param source The source of the library module.
+     * @param parser Parses the module.
+     *
+     * @return The syntax tree of the module, or null if the source could not be read.
+     *
+     * @throws XPathException if the module cannot be parsed.
+     * @throws IOException if the module cannot be read.
+     */
+    public @Nullable AST parseModule(final Source source, final ModuleParser parser) throws XPathException, IOException {
+        final Cache<ModuleKey, ParsedModule> modules = this.modules;
+        if (modules == null) {
+            try (final Reader reader = source.getReader()) {
+                return reader == null ? null : parser.parse(reader);
+            }
+        }
+
+        final ModuleKey key = new ModuleKey(source.type(), source.getKey(), source.pathOrShortIdentifier());
+        final ParsedModule cached = modules.getIfPresent(key);
+        if (cached != null && isUnmodified(cached.source(), source)) {
+            return cached.ast();
+        }
+
+        final String content;
+        try (final Reader reader = source.getReader()) {
+            if (reader == null) {
+                return null;
+            }
+            final StringWriter writer = new StringWriter();
+            reader.transferTo(writer);
+            content = writer.toString();
+        }
+        final byte[] data = content.getBytes(UTF_8);
+        final long checksum = XXHashFactory.fastestInstance().hash64().hash(data, 0, data.length, CHECKSUM_SEED);
+
+        final AST ast;
+        if (cached != null && cached.checksum() == checksum) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} was modified, but its content has not changed", source.pathOrShortIdentifier());
+            }
+            ast = cached.ast();
+        } else {
+            ast = parser.parse(new StringReader(content));
+        }
+        modules.put(key, new ParsedModule(source, checksum, ast));
+        return ast;
+    }
+
+    /**
+     * Determines if a module has not been modified since it was parsed.
+     *
+     * @param parsed the source from which the module was parsed
+     * @param source the current source of the module
+     *
+     * @return true if the module has not been modified
+     */
+    private static boolean isUnmodified(final Source parsed, final Source source) {
+        if (parsed instanceof DBSource parsedDBSource && source instanceof DBSource dbSource) {
+            // the current source has just been read from the database
+            return parsedDBSource.getLastModified() == dbSource.getLastModified();
+        }
+        return parsed.isValid() == Source.Validity.VALID;
+    }
+
     /**
      * Removes all entries from the XQuery Pool.
      */
     public void clear() {
         cache.invalidateAll();
+        if (modules != null) {
+            modules.invalidateAll();
+        }
+    }
+
+    /**
+     * Parses the source of a library module.
+     */
+    @FunctionalInterface
+    public interface ModuleParser {
+        AST parse(Reader reader) throws XPathException;
+    }
+
+    private record ModuleKey(String type, long key, String path) {
+    }
+
+    private record ParsedModule(Source source, long checksum, AST ast) {
     }
 }
@@ -0,0 +1,553 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.Namespaces;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.NodeHandle;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.numbering.NodeId;
+import org.exist.source.DBSource;
+import org.exist.source.Source;
+import org.exist.storage.txn.Txn;
+import org.exist.storage.txn.TxnListener;
+import org.exist.util.Configuration;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.LiteralValue;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQueryContext;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+import org.exist.xquery.value.ValueSequence;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global cache for the results of calls to user-defined functions
+ * which are annotated with <code>%exist:cache</code>.
+ *
+ * A cached function promises to depend on nothing but its arguments and
+ * the documents of the database. The values of the annotation are the
+ * collections the function reads, e.g. <code>%exist:cache("/db/apps/data")</code>.
+ * A cached result is invalidated when a document in one of these collections,
+ * their sub-collections or the collections of the nodes passed to or returned by
+ * the call is added, updated or removed. Without values, the result is invalidated
+ * by any change to the database.
+ *
+ * Changes to the contents of documents are reported by the {@link NotificationService}.
+ * The broker reports the other changes through {@link #invalidate(Txn, XmldbURI)}:
+ * removing, moving and copying collections and resources, storing binary resources
+ * and changing permissions. Changes to accounts and groups invalidate all results.
+ *
+ * Only calls whose arguments and results consist of atomic values and persistent
+ * nodes are cached, as in-memory nodes and function items belong to the query which
+ * created them. Nor are results whose computation read a global or external
+ * variable, as their values are not part of the key. Results are cached per user and per version of the module which
+ * declares the function. The cache is bounded by the number of items it holds,
+ * see {@link #RESULT_CACHE_SIZE_ATTRIBUTE}, and by the time an entry is kept,
+ * see {@link #RESULT_CACHE_TTL_ATTRIBUTE}.
+ */
+@ThreadSafe
+public class XQueryResultCache implements BrokerPoolService, UpdateListener {
+
+    private static final Logger LOG = LogManager.getLogger(XQueryResultCache.class);
+
+    public static final QName CACHE_ANNOTATION = new QName("cache", Namespaces.EXIST_NS, Namespaces.EXIST_NS_PREFIX);
+
+    public static final String RESULT_CACHE_SIZE_ATTRIBUTE = "result-cache-size";
+    public static final String RESULT_CACHE_TTL_ATTRIBUTE = "result-cache-ttl";
+
+    public static final String PROPERTY_RESULT_CACHE_SIZE = "xquery.result-cache-size";
+    public static final String PROPERTY_RESULT_CACHE_TTL = "xquery.result-cache-ttl";
+
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 10000;
+    public static final long DEFAULT_RESULT_CACHE_TTL = 10 * 60 * 1000;
+
+    private int maxSize = DEFAULT_RESULT_CACHE_SIZE;
+    private long ttl = DEFAULT_RESULT_CACHE_TTL;
+
+    @Nullable private Cache<Key, Entry> cache = null;
+    private StatsCounter statsCounter = new ConcurrentStatsCounter();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Incremented on every change to the database, so that a result
+     * computed concurrently with a change is not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The keys of the cached results by the paths of the collections they depend on,
+     * so that a change to a collection only has to look at the results which depend on it.
+     */
+    private final Map<String, Set<Key>> keysByCollection = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the cached results which are invalidated by any change.
+     */
+    private final Set<Key> unscopedKeys = ConcurrentHashMap.newKeySet();
+
+    @Nullable private NotificationService notificationService = null;
+
+    @Override
+    public void configure(final Configuration configuration) {
+        maxSize = Math.max(0, configuration.getProperty(PROPERTY_RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_SIZE));
+        ttl = Math.max(0, configuration.getProperty(PROPERTY_RESULT_CACHE_TTL, DEFAULT_RESULT_CACHE_TTL));
+
+        LOG.info("XQueryResultCache: maxSize = {}; ttl = {}ms", maxSize, ttl);
+    }
+
+    @Override
+    public void prepare(final BrokerPool brokerPool) {
+        if (maxSize == 0) {
+            return;
+        }
+
+        this.statsCounter = new ConcurrentStatsCounter();
+        final Caffeine<Key, Entry> builder = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Key key, Entry entry) -> key.arguments().size() + entry.items().length + 1)
+                .evictionListener((Key key, Entry entry, RemovalCause cause) -> {
+                    if (key != null && entry != null) {
+                        unindex(key, entry);
+                    }
+                })
+                .recordStats(() -> statsCounter);
+        if (ttl > 0) {
+            builder.expireAfterWrite(Duration.ofMillis(ttl));
+        }
+        this.cache = builder.build();
+
+        this.notificationService = brokerPool.getNotificationService();
+        notificationService.subscribe(this);
+    }
+
+    @Override
+    public void shutdown() {
+        if (notificationService != null) {
+            notificationService.unsubscribe(this);
+            notificationService = null;
+        }
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        keysByCollection.clear();
+        unscopedKeys.clear();
+    }
+
+    /**
+     * Returns true if results may be cached.
+     *
+     * @return true unless the cache has been disabled by configuration
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Get the current generation of the database. It must be read before a result
+     * is computed and passed to {@link #put(Key, Sequence, Set, long)}.
+     *
+     * @return the number of changes to the database since startup
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Create the key of a call to a function.
+     *
+     * @param context the context of the calling query
+     * @param source the source of the module declaring the function
+     * @param function the name of the function
+     * @param arguments the values of the arguments
+     * @param collections the collections of the nodes passed as arguments are added to this set
+     *
+     * @return the key, or null if an argument cannot be part of a key
+     *
+     * @throws XPathException if an argument cannot be read
+     */
+    public static @Nullable Key key(final XQueryContext context, final Source source, final QName function,
+            final Sequence[] arguments, final Set<XmldbURI> collections) throws XPathException {
+        final List<Object> argumentKeys = new ArrayList<>(arguments.length * 2);
+        for (final Sequence argument : arguments) {
+            argumentKeys.add(argument.getItemCount());
+            for (final SequenceIterator i = argument.iterate(); i.hasNext(); ) {
+                final Item item = i.nextItem();
+                if (item instanceof NodeProxy node) {
+                    argumentKeys.add(new NodeKey(node.getOwnerDocument().getDocId(), node.getNodeId().toString()));
+                    collections.add(collection(node.getOwnerDocument()));
+                } else if (isCacheableAtomic(item)) {
+                    argumentKeys.add(new AtomicKey(item.getType(), item.getStringValue()));
+                } else {
+                    return null;
+                }
+            }
+        }
+        final long lastModified = source instanceof DBSource dbSource ? dbSource.getLastModified() : -1;
+        return new Key(source.pathOrShortIdentifier(), source.getKey(), lastModified, function,
+                context.getEffectiveUser().getName(), argumentKeys);
+    }
+
+    /**
+     * Get a cached result.
+     *
+     * @param key the key of the call
+     *
+     * @return a copy of the result, or null if no result is cached
+     */
+    public @Nullable Sequence get(final Key key) {
+        final Cache<Key, Entry> cache = this.cache;
+        if (cache == null) {
+            return null;
+        }
+        final Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        final ValueSequence result = new ValueSequence(entry.items().length);
+        for (final Item item : entry.items()) {
+            result.add(copy(item));
+        }
+        return result;
+    }
+
+    /**
+     * Cache the result of a call, unless it contains items which cannot be cached
+     * or the database has been changed while the result was computed.
+     *
+     * @param key the key of the call
+     * @param result the result
+     * @param collections the collections read by the function, or null if unknown
+     * @param generation the generation of the database read before the result was computed
+     *
+     * @throws XPathException if the result cannot be read
+     */
+    public void put(final Key key, final Sequence result, @Nullable final Set<XmldbURI> collections,
+            final long generation) throws XPathException {
+        final Cache<Key, Entry> cache = this.cache;
+        if (cache == null || generation != this.generation.get()) {
+            return;
+        }
+        final Item[] items = new Item[result.getItemCount()];
+        int n = 0;
+        for (final SequenceIterator i = result.iterate(); i.hasNext(); ) {
+            final Item item = i.nextItem();
+            if (item instanceof NodeProxy node) {
+                if (collections != null) {
+                    collections.add(collection(node.getOwnerDocument()));
+                }
+            } else if (!isCacheableAtomic(item)) {
+                return;
+            }
+            items[n++] = copy(item);
+        }
+        final Entry entry = new Entry(items, collections == null ? null : Set.copyOf(collections));
+        final Entry previous = cache.asMap().put(key, entry);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        index(key, entry);
+
+        // the database may have been changed between the check above and the put
+        if (generation != this.generation.get()) {
+            remove(cache, key);
+        }
+    }
+
+    /**
+     * Remove all results from the cache.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        final Cache<Key, Entry> cache = this.cache;
+        if (cache != null) {
+            invalidations.add(cache.estimatedSize());
+            // results cached in between are removed by the generation check of put
+            keysByCollection.clear();
+            unscopedKeys.clear();
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Remove the results which depend on a collection, its documents or its sub-collections.
+     * They are removed again when the transaction which changes the collection ends,
+     * as a result which is computed while the change is in progress may be cached.
+     *
+     * @param transaction the transaction which changes the collection
+     * @param collection the collection
+     */
+    public void invalidate(@Nullable final Txn transaction, final XmldbURI collection) {
+        if (cache == null) {
+            return;
+        }
+        invalidate(collection, true);
+        if (transaction != null) {
+            transaction.registerListener(new TxnListener() {
+                @Override
+                public void commit() {
+                    invalidate(collection, true);
+                }
+
+                @Override
+                public void abort() {
+                    invalidate(collection, true);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void documentUpdated(final DocumentImpl document, final int event) {
+        invalidate(collection(document), false);
+    }
+
+    @Override
+    public void nodeMoved(final NodeId oldNodeId, final NodeHandle newNode) {
+        invalidate(collection(newNode.getOwnerDocument()), false);
+    }
+
+    /**
+     * Remove the results which depend on a collection or one of its ancestors,
+     * and if the sub-collections have been changed too, on one of its descendants.
+     */
+    private void invalidate(final XmldbURI collection, final boolean subCollections) {
+        generation.incrementAndGet();
+        final Cache<Key, Entry> cache = this.cache;
+        if (cache == null) {
+            return;
+        }
+        for (final Key key : unscopedKeys) {
+            remove(cache, key);
+        }
+
+        final String path = path(collection);
+        for (int end = path.indexOf('/'); ; end = path.indexOf('/', end + 1)) {
+            removeAll(cache, keysByCollection.get(end < 0 ? path : path.substring(0, end)));
+            if (end < 0) {
+                break;
+            }
+        }
+        if (subCollections) {
+            final String prefix = path + '/';
+            for (final Map.Entry<String, Set<Key>> dependants : keysByCollection.entrySet()) {
+                if (dependants.getKey().startsWith(prefix)) {
+                    removeAll(cache, dependants.getValue());
+                }
+            }
+        }
+    }
+
+    private void removeAll(final Cache<Key, Entry> cache, @Nullable final Set<Key> keys) {
+        if (keys != null) {
+            for (final Key key : keys) {
+                remove(cache, key);
+            }
+        }
+    }
+
+    private void remove(final Cache<Key, Entry> cache, final Key key) {
+        final Entry entry = cache.asMap().remove(key);
+        if (entry != null) {
+            invalidations.increment();
+            unindex(key, entry);
+        }
+    }
+
+    private void index(final Key key, final Entry entry) {
+        if (entry.collections() == null) {
+            unscopedKeys.add(key);
+            return;
+        }
+        for (final XmldbURI collection : entry.collections()) {
+            keysByCollection.computeIfAbsent(path(collection), path -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unindex(final Key key, final Entry entry) {
+        if (entry.collections() == null) {
+            unscopedKeys.remove(key);
+            return;
+        }
+        for (final XmldbURI collection : entry.collections()) {
+            keysByCollection.computeIfPresent(path(collection), (path, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * The path of a collection, independent of its form, e.g. <code>db/apps/data</code>.
+     */
+    private static String path(final XmldbURI collection) {
+        final StringBuilder path = new StringBuilder();
+        for (final XmldbURI segment : collection.getPathSegments()) {
+            if (!path.isEmpty()) {
+                path.append('/');
+            }
+            path.append(segment);
+        }
+        return path.toString();
+    }
+
+    @Override
+    public void unsubscribe() {
+        // no-op
+    }
+
+    @Override
+    public void debug() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("XQueryResultCache: {} cached results", cache == null ? 0 : cache.estimatedSize());
+        }
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return the number of results
+     */
+    public long getSize() {
+        final Cache<Key, Entry> cache = this.cache;
+        return cache == null ? 0 : cache.estimatedSize();
+    }
+
+    /**
+     * Get a snapshot of the statistics of the cache.
+     *
+     * @return the statistics
+     */
+    public Statistics getStatistics() {
+        final CacheStats cacheStats = statsCounter.snapshot();
+        return new Statistics(cacheStats.hitCount(), cacheStats.missCount(), cacheStats.evictionCount(),
+                invalidations.sum());
+    }
+
+    /**
+     * The statistics of the cache.
+     *
+     * @param hitCount the number of calls answered from the cache
+     * @param missCount the number of calls which were evaluated
+     * @param evictionCount the number of results removed because of the size or age of the cache
+     * @param invalidationCount the number of results removed because of changes to the database
+     */
+    public record Statistics(long hitCount, long missCount, long evictionCount, long invalidationCount) {
+
+        /**
+         * Returns the ratio of the calls answered from the cache.
+         *
+         * @return the ratio, or 0 if there were no calls
+         */
+        public double hitRate() {
+            final long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+        }
+    }
+
+    /**
+     * The key of a call to a cached function.
+     */
+    public record Key(String source, long sourceKey, long lastModified, QName function, String user,
+            List<Object> arguments) {
+    }
+
+    private record AtomicKey(int type, String value) {
+    }
+
+    // NodeId does not implement hashCode
+    private record NodeKey(int docId, String nodeId) {
+    }
+
+    /**
+     * A cached result.
+     *
+     * @param items the items of the result
+     * @param collections the collections read by the function, or null if any change invalidates the result
+     */
+    private record Entry(Item[] items, @Nullable Set<XmldbURI> collections) {
+    }
+
+    private static boolean isCacheableAtomic(final Item item) {
+        final int type = item.getType();
+        return Type.subTypeOf(type, Type.ANY_ATOMIC_TYPE) && type != Type.JAVA_OBJECT
+                && !Type.subTypeOf(type, Type.BASE64_BINARY) && !Type.subTypeOf(type, Type.HEX_BINARY);
+    }
+
+    /**
+     * Copy a persistent node, so that no state of the query which
+     * created it is shared. Atomic values are immutable.
+     */
+    private static Item copy(final Item item) {
+        if (item instanceof NodeProxy node) {
+            return new NodeProxy(null, node.getOwnerDocument(), node.getNodeId(), node.getNodeType(),
+                    node.getInternalAddress());
+        }
+        return item;
+    }
+
+    private static XmldbURI collection(final DocumentImpl document) {
+        return document.getURI().removeLastSegment();
+    }
+
+    /**
+     * Collect the collections of the values of a <code>%exist:cache</code> annotation.
+     *
+     * @param values the values of the annotation
+     *
+     * @return the collections, or null if the result depends on all collections
+     *
+     * @throws XPathException if a value is not a string
+     */
+    public static @Nullable Set<XmldbURI> collections(final LiteralValue[] values) throws XPathException {
+        if (values.length == 0) {
+            return null;
+        }
+        final Set<XmldbURI> collections = new HashSet<>();
+        for (final LiteralValue value : values) {
+            collections.add(XmldbURI.create(value.getValue().getStringValue()));
+        }
+        return collections;
+    }
+}
@@ -45,6 +45,11 @@ public abstract class BTAbstractLoggable extends AbstractLoggable {
         this.broker = (NativeBroker) broker;
     }
 
+    @Override
+    public int getRedoFileId() {
+        return fileId & 0xFF;
+    }
+
     protected BTree getStorage() {
         return broker.getStorage(fileId);
     }
@@ -82,16 +82,21 @@ import org.exist.storage.DefaultCacheManager;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.cache.*;
 import org.exist.storage.journal.*;
+import org.exist.storage.lock.ManagedLock;
 import org.exist.storage.txn.Txn;
 import org.exist.util.ByteConversion;
 import org.exist.util.FileUtils;
+import org.exist.util.LockException;
 import org.exist.util.Lockable;
 import org.exist.xquery.TerminatedException;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.stream.Collectors;
 
 /**
@@ -161,6 +166,17 @@ public class BTree extends Paged implements Lockable {
 
     private double splitFactor = -1;
 
+    /**
+     * Versioned latch over the structure of the tree. Every operation which modifies
+     * nodes holds the write latch, so that {@link #findValueOptimistic(Value)} can
+     * detect a concurrent modification by validating its stamp, instead of holding
+     * the lock of the file.
+     *
+     * NOTE: the redo/undo operations do not take the latch, recovery is
+     * completed before the database accepts any readers.
+     */
+    private final StampedLock latch = new StampedLock();
+
     protected BTree(final BrokerPool pool, final byte fileId, final short fileVersion, final boolean recoveryEnabled,
             final DefaultCacheManager cacheManager) throws DBException {
         super(pool, fileVersion);
@@ -209,8 +225,8 @@ public class BTree extends Paged implements Lockable {
     }
 
     @Override
-    public boolean open(final short expectedVersion) throws DBException {
-        if (super.open(expectedVersion)) {
+    public boolean open(final short expectedVersion, final short legacyVersion) throws DBException {
+        if (super.open(expectedVersion, legacyVersion)) {
             initCache();
             return true;
         } else {
@@ -224,9 +240,9 @@ public class BTree extends Paged implements Lockable {
     }
 
     protected void initCache() {
-        this.cache = new BTreeCache<>(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5,
-            0, Cache.CacheType.BTREE);
-        cacheManager.registerCache(cache);
+        this.cache = cacheManager.newBTreeCache(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5,
+            0);
+        cacheManager.registerCache(cache, getFileHeader().getPageSize());
     }
 
     protected void setSplitFactor(final double factor) {
@@ -253,7 +269,12 @@ public class BTree extends Paged implements Lockable {
     }
 
     public long addValue(final Txn transaction, final Value value, final long pointer) throws IOException, BTreeException {
-        return getRootNode().addValue(transaction, value, pointer);
+        final long stamp = latch.writeLock();
+        try {
+            return getRootNode().addValue(transaction, value, pointer);
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
     /**
@@ -270,7 +291,12 @@ public class BTree extends Paged implements Lockable {
     }
 
     public long removeValue(final Txn transaction, final Value value) throws IOException, BTreeException {
-        return getRootNode().removeValue(transaction, value);
+        final long stamp = latch.writeLock();
+        try {
+            return getRootNode().removeValue(transaction, value);
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
 
@@ -302,7 +328,12 @@ public class BTree extends Paged implements Lockable {
             data2[data2.length - 1] += 1;
             query = new IndexQuery(query.getOperator(), val1, new Value(data2));
         }
-        getRootNode().remove(transaction, query, callback);
+        final long stamp = latch.writeLock();
+        try {
+            getRootNode().remove(transaction, query, callback);
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
     protected void removeSequential(final Txn transaction, final BTreeNode page, final IndexQuery query,
@@ -347,6 +378,86 @@ public class BTree extends Paged implements Lockable {
         return getRootNode().findValue(value);
     }
 
+    /**
+     * Finds a Value in the BTree and returns the associated pointer for it,
+     * like {@link #findValue(Value)}, but without requiring the caller to
+     * hold the lock of the file.
+     *
+     * The lookup is first attempted optimistically: the path from the root to
+     * the leaf is followed through the nodes in the cache, and the result is
+     * only accepted if no operation has modified the tree in the meantime.
+     * This requires a thread safe cache, i.e. the default <code>cachePolicy="2q"</code>.
+     * If the optimistic lookup is not possible, e.g. because a node is not
+     * in the cache, the lookup is repeated under the read lock of the file.
+     *
+     * @param  value               The Value to find
+     * @return                     The pointer that was associated with it
+     * @throws IOException if an I/O error occurs
+     * @throws BTreeException if an error occurss with the tree
+     * @throws LockException if the read lock of the file could not be acquired
+     */
+    public long findValueOptimistic(final Value value) throws IOException, BTreeException, LockException {
+        final OptionalLong pointer = tryFindValue(value);
+        if (pointer.isPresent()) {
+            return pointer.getAsLong();
+        }
+
+        try (final ManagedLock<ReentrantLock> btreeLock = pool.getLockManager().acquireBtreeReadLock(getLockName())) {
+            return findValue(value);
+        }
+    }
+
+    /**
+     * Attempt to find a Value by an optimistic traversal of the cached nodes.
+     *
+     * @param value the Value to find
+     * @return the pointer associated with the value (or {@link #KEY_NOT_FOUND}),
+     *     or empty if the lookup could not be completed optimistically
+     */
+    private OptionalLong tryFindValue(final Value value) {
+        final Cache<BTreeNode> nodes = cache;
+        if (nodes == null || !nodes.isThreadSafe()) {
+            return OptionalLong.empty();
+        }
+
+        final long stamp = latch.tryOptimisticRead();
+        if (stamp == 0) {
+            // a modification is in progress
+            return OptionalLong.empty();
+        }
+
+        try {
+            long pageNum = fileHeader.getRootPage();
+            while (true) {
+                final BTreeNode node = nodes.get(pageNum);
+                if (node == null || !latch.validate(stamp)) {
+                    return OptionalLong.empty();
+                }
+
+                final int idx = node.searchKey(value);
+                switch (node.pageHeader.getStatus()) {
+                    case BRANCH:
+                        final int childIdx = idx < 0 ? -(idx + 1) : idx + 1;
+                        if (childIdx >= node.nPtrs) {
+                            return OptionalLong.empty();
+                        }
+                        pageNum = node.ptrs[childIdx];
+                        break;
+
+                    case LEAF:
+                        final long pointer = idx < 0 ? KEY_NOT_FOUND : node.ptrs[idx];
+                        return latch.validate(stamp) ? OptionalLong.of(pointer) : OptionalLong.empty();
+
+                    default:
+                        return OptionalLong.empty();
+                }
+            }
+        } catch (final RuntimeException e) {
+            // the node was read whilst it was being modified, validation would fail
+            return OptionalLong.empty();
+        }
+    }
+
     /**
      * query performs a query against the BTree and performs callback
      * operations to report the search results.
@@ -667,6 +778,15 @@ public class BTree extends Paged implements Lockable {
      * @throws TerminatedException if the callback is terminated
      */
     public void rebuild() throws TerminatedException, IOException, DBException {
+        final long stamp = latch.writeLock();
+        try {
+            rebuildTree();
+        } finally {
+            latch.unlockWrite(stamp);
+        }
+    }
+
+    private void rebuildTree() throws TerminatedException, IOException, DBException {
         final TreeInfo info  = scanTree(true);
         if (info.leafPages == 1) {
             final BTreeNode root = getBTreeNode(info.firstPage);
@@ -711,6 +831,236 @@ public class BTree extends Paged implements Lockable {
         }
     }
 
+    /**
+     * Create a loader which builds the tree bottom-up from keys supplied in
+     * ascending order, see {@link BulkLoader}.
+     *
+     * The tree must be empty. The caller must hold the write lock of the
+     * file until {@link BulkLoader#finish()} has been called.
+     *
+     * @return the bulk loader
+     *
+     * @throws BTreeException if the tree is not empty
+     */
+    public BulkLoader newBulkLoader() throws BTreeException {
+        final BTreeNode root = getRootNode();
+        if (root == null || root.pageHeader.getStatus() != LEAF || root.nKeys != 0) {
+            throw new BTreeException("Bulk loading requires an empty tree: " + FileUtils.fileName(getFile()));
+        }
+        return new BulkLoader(root);
+    }
+
+    /**
+     * Builds a tree bottom-up from keys which are supplied in ascending order.
+     *
+     * Each leaf page is filled completely before the next one is started, and
+     * the first key of each new page is appended to the right-most page of the
+     * level above, which is itself filled completely, and so on up to the root.
+     * Compared to calling {@link #addValue(Value, long)} for each key, no page is
+     * ever split or revisited, so the pages are packed rather than half full.
+     *
+     * Nothing is written to the journal during the load. Instead {@link #finish()}
+     * flushes the pages of the tree and forces them onto the storage device before
+     * it returns. The caller is responsible for making the load recoverable, e.g. by
+     * rebuilding the tree from scratch if the load was interrupted.
+     */
+    public final class BulkLoader {
+
+        /** The right-most node of each level of the tree, the leaves are at level 0 */
+        private final List<BTreeNode> levels = new ArrayList<>();
+        private Value lastKey = null;
+        private long count = 0;
+        private boolean finished = false;
+
+        private BulkLoader(final BTreeNode firstLeaf) {
+            firstLeaf.allowUnload = false;
+            levels.add(firstLeaf);
+        }
+
+        /**
+         * Add a key to the tree.
+         *
+         * @param key the key, which must not be less than the previously added key.
+         *     If it is equal to the previous key, the previous pointer is replaced.
+         * @param pointer the pointer to associate with the key
+         *
+         * @throws IOException if an I/O error occurs
+         * @throws BTreeException if the key is out of order, or the loader was finished
+         */
+        public void add(final Value key, final long pointer) throws IOException, BTreeException {
+            if (finished) {
+                throw new BTreeException("Bulk load of " + FileUtils.fileName(getFile()) + " has already finished");
+            }
+
+            final long stamp = latch.writeLock();
+            try {
+                BTreeNode leaf = levels.get(0);
+                if (lastKey != null) {
+                    final int cmp = key.compareTo(lastKey);
+                    if (cmp < 0) {
+                        throw new BTreeException("Bulk loaded keys must be in ascending order, '" + key + "' follows '" + lastKey + "'");
+                    } else if (cmp == 0) {
+                        leaf.ptrs[leaf.nPtrs - 1] = pointer;
+                        leaf.saved = false;
+                        return;
+                    }
+                }
+
+                final int idx = leaf.nKeys;
+                leaf.insertKey(key, idx);
+                leaf.insertPointer(pointer, idx);
+                leaf.adjustDataLen(idx);
+                if (leaf.nKeys > 1 && leaf.mustSplit()) {
+                    // the leaf is full, move the key to a new leaf
+                    leaf.removeKey(idx);
+                    leaf.removePointer(idx);
+                    leaf.recalculateDataLen();
+
+                    final BTreeNode next = newNode(LEAF);
+                    next.insertKey(key, 0);
+                    next.insertPointer(pointer, 0);
+                    next.recalculateDataLen();
+                    leaf.pageHeader.setNextPage(next.page.getPageNum());
+                    levels.set(0, next);
+
+                    appendChild(1, leaf, key, next);
+                    release(leaf);
+                }
+
+                lastKey = key;
+                count++;
+            } finally {
+                latch.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Complete the tree and make it durable.
+         *
+         * @return the number of distinct keys which were loaded
+         *
+         * @throws IOException if an I/O error occurs
+         * @throws DBException if the tree could not be flushed
+         */
+        public long finish() throws IOException, DBException {
+            if (finished) {
+                return count;
+            }
+            finished = true;
+
+            final long stamp = latch.writeLock();
+            try {
+                for (final BTreeNode node : levels) {
+                    release(node);
+                }
+                setRootNode(levels.get(levels.size() - 1));
+            } finally {
+                latch.unlockWrite(stamp);
+            }
+
+            sync();
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Bulk loaded {} keys into {}, {} levels", count, FileUtils.fileName(getFile()), levels.size());
+            }
+            return count;
+        }
+
+        /**
+         * Append a child to the right-most node of a level, adding a
+         * level to the tree or starting a new node as required.
+         *
+         * @param level the level of the parent
+         * @param left the previous child, i.e. the current right-most child of the parent
+         * @param separator the first key of the subtree of the new child
+         * @param right the new child
+         */
+        private void appendChild(final int level, final BTreeNode left, final Value separator, final BTreeNode right)
+                throws IOException {
+            if (level == levels.size()) {
+                // the tree grows by one level
+                final BTreeNode root = newNode(BRANCH);
+                root.insertPointer(left.page.getPageNum(), 0);
+                root.insertKey(separator, 0);
+                root.insertPointer(right.page.getPageNum(), 1);
+                root.recalculateDataLen();
+                adopt(root, left);
+                adopt(root, right);
+                levels.add(root);
+                return;
+            }
+
+            final BTreeNode parent = levels.get(level);
+            parent.insertKey(separator, parent.nKeys);
+            parent.insertPointer(right.page.getPageNum(), parent.nPtrs);
+            parent.recalculateDataLen();
+            adopt(parent, right);
+
+            // NOTE: a branch of two keys always fits, as the key size is limited to half a page
+            if (parent.nKeys > 2 && parent.mustSplit()) {
+                // the parent is full, move the last two children to a new node
+                parent.removeKey(parent.nKeys - 1);
+                parent.removePointer(parent.nPtrs - 1);
+                final Value promoted = fullKey(parent, parent.nKeys - 1);
+                parent.removeKey(parent.nKeys - 1);
+                parent.removePointer(parent.nPtrs - 1);
+                parent.recalculateDataLen();
+
+                final BTreeNode sibling = newNode(BRANCH);
+                sibling.insertPointer(left.page.getPageNum(), 0);
+                sibling.insertKey(separator, 0);
+                sibling.insertPointer(right.page.getPageNum(), 1);
+                sibling.recalculateDataLen();
+                adopt(sibling, left);
+                adopt(sibling, right);
+                levels.set(level, sibling);
+
+                appendChild(level + 1, parent, promoted, sibling);
+                release(parent);
+            }
+        }
+
+        private BTreeNode newNode(final byte status) throws IOException {
+            final BTreeNode node = createBTreeNode(null, status, null, false);
+            if (node == null) {
+                throw new IOException("Failed to create a BTree node in " + FileUtils.fileName(getFile()));
+            }
+            // the right-most nodes are kept in the cache until they are complete
+            node.allowUnload = false;
+            cache.add(node, 2);
+            return node;
+        }
+
+        /**
+         * Set the parent of a node. The node is (re)added to the cache,
+         * as it may already have been evicted and written.
+         */
+        private void adopt(final BTreeNode parent, final BTreeNode child) {
+            child.setParent(parent);
+            cache.add(child);
+        }
+
+        private void release(final BTreeNode node) {
+            node.allowUnload = true;
+            node.saved = false;
+            cache.add(node);
+        }
+
+        /**
+         * Get the full key at an index of a branch node, i.e. including the common prefix.
+         */
+        private Value fullKey(final BTreeNode node, final int idx) {
+            final Value key = node.keys[idx];
+            if (node.prefix == null || node.prefix.getLength() == 0) {
+                return key;
+            }
+            final byte[] data = new byte[node.prefix.getLength() + key.getLength()];
+            System.arraycopy(node.prefix.data(), node.prefix.start(), data, 0, node.prefix.getLength());
+            System.arraycopy(key.data(), key.start(), data, node.prefix.getLength(), key.getLength());
+            return new Value(data);
+        }
+    }
+
     /**
      * Walk the tree to find the parent page to which key should
      * be promoted.
@@ -940,6 +1290,7 @@ public class BTree extends Paged implements Lockable {
                 keys = new Value[DEFAULT_INITIAL_ENTRIES];
                 ptrs = new long[DEFAULT_INITIAL_ENTRIES + 1];
                 pageHeader.setValueCount((short) 0);
+                pageHeader.setFrontCoded(true);
                 saved = false;
             }
         }
@@ -1080,27 +1431,11 @@ public class BTree extends Paged implements Lockable {
          */
         private int recalculateDataLen() {
             currentDataLen = ptrs == null ? 0 : nPtrs * 8;
-            if(fileHeader.getFixedKeyLen() < 0) {
-                currentDataLen += 2 * nKeys;
-            }
             if (pageHeader.getStatus() == BRANCH) {
                 currentDataLen += prefix.getLength() + 2;
             }
-            if (pageHeader.getStatus() == LEAF) {
-                currentDataLen += nKeys - 1;
-            }
             for (int i = 0; i < nKeys; i++) {
-                if (pageHeader.getStatus() == LEAF && i > 0) {
-                    // if this is a leaf page, we use prefix compression to store the keys,
-                    // so subtract the size of the prefix
-                    int prefix = keys[i].commonPrefix(keys[i - 1]);
-                    if (prefix < 0 || prefix > Byte.MAX_VALUE) {
-                        prefix = 0;
-                    }
-                    currentDataLen += keys[i].getLength() - prefix;
-                } else {
-                    currentDataLen += keys[i].getLength();
-                }
+                currentDataLen += getEncodedKeyLen(i);
             }
             return currentDataLen;
         }
@@ -1116,39 +1451,44 @@ public class BTree extends Paged implements Lockable {
                 recalculateDataLen();
                 return;
             }
-            if (pageHeader.getStatus() == LEAF && idx > 0) {
-                // if this is a leaf page, we use prefix compression to store the keys,
-                // so subtract the size of the prefix
-                int prefix;
-                if (idx + 1< nKeys) {
-                    // recalculate the prefix length for the following value
-                    prefix = calculatePrefixLen(idx + 1, idx - 1);
-                    currentDataLen -= keys[idx + 1].getLength() - prefix;
-                    prefix = calculatePrefixLen(idx + 1, idx);
-                    currentDataLen += keys[idx + 1].getLength() - prefix;
-                }
-                // calculate the prefix length for the new value
-                prefix = calculatePrefixLen(idx, idx - 1);
-                currentDataLen += keys[idx].getLength() - prefix;
-                currentDataLen++; // add one byte for the prefix length
-            } else {
-                currentDataLen += keys[idx].getLength();
-                if (pageHeader.getStatus() == LEAF) {
-                    currentDataLen++;
-                }
+            if (idx + 1 < nKeys) {
+                // the following key was stored relative to the key before the new one
+                currentDataLen -= getEncodedKeyLen(keys[idx + 1], idx > 0 ? keys[idx - 1] : null);
+                currentDataLen += getEncodedKeyLen(idx + 1);
             }
+            currentDataLen += getEncodedKeyLen(idx);
             currentDataLen += 8;
-            if(fileHeader.getFixedKeyLen() < 0) {
-                currentDataLen += 2;
-            }
         }
 
-        private int calculatePrefixLen(final int idx0, final int idx1) {
-            int prefix = keys[idx0].commonPrefix(keys[idx1]);
-            if (prefix < 0 || prefix > Byte.MAX_VALUE) {
-                prefix = 0;
+        /**
+         * Get the number of bytes required to store the key at
+         * the given index, see {@link #write()}.
+         *
+         * @param idx the index
+         *
+         * @return the number of bytes
+         */
+        private int getEncodedKeyLen(final int idx) {
+            return getEncodedKeyLen(keys[idx], idx > 0 ? keys[idx - 1] : null);
+        }
+
+        private int getEncodedKeyLen(final Value key, @Nullable final Value previous) {
+            if (pageHeader.isFrontCoded()) {
+                final int prefixLen = previous == null ? 0 : key.commonPrefix(previous);
+                final int suffixLen = key.getLength() - prefixLen;
+                return (previous == null ? 0 : getVarIntLen(prefixLen)) + getVarIntLen(suffixLen) + suffixLen;
+            }
+
+            final int len = fileHeader.getFixedKeyLen() < 0 ? 2 : 0;
+            if (pageHeader.getStatus() == LEAF && previous != null) {
+                // leaf pages in the legacy format store the prefix length as a single byte
+                int prefixLen = key.commonPrefix(previous);
+                if (prefixLen > Byte.MAX_VALUE) {
+                    prefixLen = 0;
+                }
+                return len + 1 + key.getLength() - prefixLen;
             }
-            return prefix;
+            return len + key.getLength();
         }
 
         /**
@@ -1166,17 +1506,7 @@ public class BTree extends Paged implements Lockable {
             int currentLen = 0;
             int pivot = nKeys - 1;
             for (int i = 0; i < nKeys - 1; i++) {
-                if (pageHeader.getStatus() == LEAF && i > 0) {
-                    // if this is a leaf page, we use prefix compression to store the keys,
-                    // so subtract the size of the prefix
-                    int prefix = keys[i].commonPrefix(keys[i - 1]);
-                    if (prefix < 0 || prefix > Byte.MAX_VALUE) {
-                        prefix = 0;
-                    }
-                    currentLen += keys[i].getLength() - prefix;
-                } else {
-                    currentLen += keys[i].getLength();
-                }
+                currentLen += getEncodedKeyLen(i);
                 if (currentLen > totalLen / 2 || i + 1 == preferred) {
                     pivot = currentLen > fileHeader.getWorkSize() ? i : i + 1;
                     break;
@@ -1188,17 +1518,7 @@ public class BTree extends Paged implements Lockable {
         private int getKeyDataLen() {
             int totalLen = 0;
             for (int i = 0; i < nKeys; i++) {
-                if (pageHeader.getStatus() == LEAF && i > 0) {
-                    // if this is a leaf page, we use prefix compression to store the keys,
-                    // so subtract the size of the prefix
-                    int prefix = keys[i].commonPrefix(keys[i - 1]);
-                    if (prefix < 0 || prefix > Byte.MAX_VALUE) {
-                        prefix = 0;
-                    }
-                    totalLen += keys[i].getLength() - prefix;
-                } else {
-                    totalLen += keys[i].getLength();
-                }
+                totalLen += getEncodedKeyLen(i);
             }
             return totalLen;
         }
@@ -1233,35 +1553,58 @@ public class BTree extends Paged implements Lockable {
             }
             nKeys = pageHeader.getValueCount();
             keys = new Value[(nKeys * 3) / 2 + 1];
-            for (int i = 0; i < nKeys; i++) {
-                if (keyLen < 0) {
-                    valSize = ByteConversion.byteToShort(data, p);
-                    p += 2;
+            if (pageHeader.isFrontCoded()) {
+                // see write() for the format
+                for (int i = 0; i < nKeys; i++) {
+                    int prefixLen = 0;
+                    if (i > 0) {
+                        prefixLen = readVarInt(data, p);
+                        p += getVarIntLen(prefixLen);
+                    }
+                    final int suffixLen = readVarInt(data, p);
+                    p += getVarIntLen(suffixLen);
+                    if (prefixLen == 0) {
+                        keys[i] = new Value(data, p, suffixLen);
+                    } else {
+                        // copy prefixLen leading bytes from the previous key
+                        final byte[] t = new byte[prefixLen + suffixLen];
+                        System.arraycopy(keys[i - 1].data(), keys[i - 1].start(), t, 0, prefixLen);
+                        System.arraycopy(data, p, t, prefixLen, suffixLen);
+                        keys[i] = new Value(t);
+                    }
+                    p += suffixLen;
                 }
-                if (pageHeader.getStatus() == LEAF && i > 0) {
-                    // for leaf pages, we use prefix compression to increase the number of
-                    // keys that can be stored on one page. Each key is stored as follows:
-                    // [valSize, prefixLen, value], where prefixLen specifies the number of
-                    // leading bytes the key has in common with the previous key.
-                    final int prefixLen = (data[p++] & 0xFF);
-                    try {
-                        final byte[] t = new byte[valSize];
-                        if (prefixLen > 0) {
-                            // copy prefixLen leading bytes from the previous key
-                            System.arraycopy(keys[i - 1].data(), keys[i - 1].start(), t, 0, prefixLen);
+            } else {
+                for (int i = 0; i < nKeys; i++) {
+                    if (keyLen < 0) {
+                        valSize = ByteConversion.byteToShort(data, p);
+                        p += 2;
+                    }
+                    if (pageHeader.getStatus() == LEAF && i > 0) {
+                        // for leaf pages, we use prefix compression to increase the number of
+                        // keys that can be stored on one page. Each key is stored as follows:
+                        // [valSize, prefixLen, value], where prefixLen specifies the number of
+                        // leading bytes the key has in common with the previous key.
+                        final int prefixLen = (data[p++] & 0xFF);
+                        try {
+                            final byte[] t = new byte[valSize];
+                            if (prefixLen > 0) {
+                                // copy prefixLen leading bytes from the previous key
+                                System.arraycopy(keys[i - 1].data(), keys[i - 1].start(), t, 0, prefixLen);
+                            }
+                            // read the remaining bytes
+                            System.arraycopy(data, p, t, prefixLen, valSize - prefixLen);
+                            p += valSize - prefixLen;
+                            keys[i] = new Value(t);
+                        } catch (final Exception e) {
+                            e.printStackTrace();
+                            LOG.error("prefixLen = {}; i = {}; nKeys = {}", prefixLen, i, nKeys);
+                            throw new IOException(e.getMessage());
                         }
-                        // read the remaining bytes
-                        System.arraycopy(data, p, t, prefixLen, valSize - prefixLen);
-                        p += valSize - prefixLen;
-                        keys[i] = new Value(t);
-                    } catch (final Exception e) {
-                        e.printStackTrace();
-                        LOG.error("prefixLen = {}; i = {}; nKeys = {}", prefixLen, i, nKeys);
-                        throw new IOException(e.getMessage());
+                    } else {
+                        keys[i] = new Value(data, p, valSize);
+                        p += valSize;
                     }
-                } else {
-                    keys[i] = new Value(data, p, valSize);
-                    p += valSize;
                 }
             }
             //	Read in the pointers
@@ -1271,6 +1614,16 @@ public class BTree extends Paged implements Lockable {
                 ptrs[i] = ByteConversion.byteToLong(data, p);
                 p += 8;
             }
+
+            if (!pageHeader.isFrontCoded()) {
+                // a page in the legacy format is converted when it is next written,
+                // unless the front coded keys would not fit onto the page
+                pageHeader.setFrontCoded(true);
+                if (recalculateDataLen() > fileHeader.getWorkSize()) {
+                    pageHeader.setFrontCoded(false);
+                    recalculateDataLen();
+                }
+            }
         }
 
         /**
@@ -1295,33 +1648,55 @@ public class BTree extends Paged implements Lockable {
                     p += prefix.getLength();
                 }
             }
-            final int keyLen = fileHeader.getFixedKeyLen();
-            for (int i = 0; i < nKeys; i++) {
-                if (keyLen < 0) {
-                    ByteConversion.shortToByte((short) keys[i].getLength(), temp, p);
-                    p += 2;
+            if (pageHeader.isFrontCoded()) {
+                // the keys of both leaf and branch pages are front coded, each key is stored
+                // as [prefixLen, suffixLen, suffix], where prefixLen is the number of leading bytes
+                // the key has in common with the previous key (omitted for the first key),
+                // and both lengths are variable-byte encoded
+                for (int i = 0; i < nKeys; i++) {
+                    final Value key = keys[i];
+                    int prefixLen = 0;
+                    if (i > 0) {
+                        prefixLen = key.commonPrefix(keys[i - 1]);
+                        p = writeVarInt(prefixLen, temp, p);
+                    }
+                    final int suffixLen = key.getLength() - prefixLen;
+                    p = writeVarInt(suffixLen, temp, p);
+                    if (p + suffixLen > temp.length) {
+                        throw new IOException("calculated: " + getDataLen() + "; required: " + (p + suffixLen));
+                    }
+                    System.arraycopy(key.data(), key.start() + prefixLen, temp, p, suffixLen);
+                    p += suffixLen;
                 }
-                if (pageHeader.getStatus() == LEAF && i > 0) {
-                    // for leaf pages, we use prefix compression to increase the number of
-                    // keys that can be stored on one page. Each key is stored as follows:
-                    // [valSize, prefixLen, value], where prefixLen specifies the number of
-                    // leading bytes the key has in common with the previous key.
-                    int prefixLen = keys[i].commonPrefix(keys[i - 1]); // determine the common prefix
-                    if (prefixLen < 0 || prefixLen > Byte.MAX_VALUE)
-                        {prefixLen = 0;}
-                    // store the length of the prefix
-                    temp[p++] = (byte) prefixLen;
-                    // copy the remaining bytes, starting at prefixLen
-                    System.arraycopy(keys[i].data(), keys[i].start() + prefixLen, 
-                            temp, p, keys[i].getLength() - prefixLen);
-                    p += keys[i].getLength() - prefixLen;
-                } else {
-                    final byte[] data = keys[i].getData();
-                    if(p + data.length > temp.length) {
-                        throw new IOException("calculated: " + getDataLen() + "; required: " + (p + data.length));
+            } else {
+                final int keyLen = fileHeader.getFixedKeyLen();
+                for (int i = 0; i < nKeys; i++) {
+                    if (keyLen < 0) {
+                        ByteConversion.shortToByte((short) keys[i].getLength(), temp, p);
+                        p += 2;
+                    }
+                    if (pageHeader.getStatus() == LEAF && i > 0) {
+                        // for leaf pages, we use prefix compression to increase the number of
+                        // keys that can be stored on one page. Each key is stored as follows:
+                        // [valSize, prefixLen, value], where prefixLen specifies the number of
+                        // leading bytes the key has in common with the previous key.
+                        int prefixLen = keys[i].commonPrefix(keys[i - 1]); // determine the common prefix
+                        if (prefixLen < 0 || prefixLen > Byte.MAX_VALUE)
+                            {prefixLen = 0;}
+                        // store the length of the prefix
+                        temp[p++] = (byte) prefixLen;
+                        // copy the remaining bytes, starting at prefixLen
+                        System.arraycopy(keys[i].data(), keys[i].start() + prefixLen, 
+                                temp, p, keys[i].getLength() - prefixLen);
+                        p += keys[i].getLength() - prefixLen;
+                    } else {
+                        final byte[] data = keys[i].getData();
+                        if(p + data.length > temp.length) {
+                            throw new IOException("calculated: " + getDataLen() + "; required: " + (p + data.length));
+                        }
+                        System.arraycopy(data, 0, temp, p, data.length);
+                        p += data.length;
                     }
-                    System.arraycopy(data, 0, temp, p, data.length);
-                    p += data.length;
                 }
             }
             for (int i = 0; i < nPtrs; i++) {
@@ -2660,6 +3035,59 @@ public class BTree extends Paged implements Lockable {
         LOGSTATS.info(buf.toString());
     }
 
+    /**
+     * Get the number of bytes required to variable-byte encode an int.
+     *
+     * @param value a non-negative int
+     *
+     * @return the number of bytes
+     */
+    static int getVarIntLen(int value) {
+        int len = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            len++;
+        }
+        return len;
+    }
+
+    /**
+     * Variable-byte encode an int, in the same format as
+     * {@link org.exist.storage.io.VariableByteOutputStream#writeInt(int)}.
+     *
+     * @param value a non-negative int
+     * @param data the buffer to write to
+     * @param offset the offset in the buffer
+     *
+     * @return the offset after the written value
+     */
+    static int writeVarInt(int value, final byte[] data, int offset) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Read a variable-byte encoded int.
+     *
+     * @param data the buffer to read from
+     * @param offset the offset in the buffer
+     *
+     * @return the value
+     */
+    static int readVarInt(final byte[] data, int offset) {
+        byte b = data[offset++];
+        int value = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = data[offset++];
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
     protected class BTreeFileHeader extends FileHeader {
 
         private long rootPage = 0;
@@ -2728,8 +3156,16 @@ public class BTree extends Paged implements Lockable {
 
     protected static class BTreePageHeader extends PageHeader {
 
+        /**
+         * Flag which is combined with the status of a leaf or branch page whose
+         * keys are front coded. Pages without the flag use the legacy format,
+         * where only the keys of leaf pages are (partially) prefix compressed.
+         */
+        private static final byte FRONT_CODED = 0x40;
+
         private short valueCount = 0;
         private long parentPage = Page.NO_PAGE;
+        private boolean frontCoded = true;
 
         public BTreePageHeader() {
             super();
@@ -2742,6 +3178,13 @@ public class BTree extends Paged implements Lockable {
         @Override
         public int read(final byte[] data, int offset) throws IOException {
             offset = super.read(data, offset);
+            final byte status = getStatus();
+            if (status == (LEAF | FRONT_CODED) || status == (BRANCH | FRONT_CODED)) {
+                setStatus((byte) (status & ~FRONT_CODED));
+                frontCoded = true;
+            } else {
+                frontCoded = false;
+            }
             parentPage = ByteConversion.byteToLong(data, offset);
             offset += 8;
             valueCount = ByteConversion.byteToShort(data, offset);
@@ -2750,7 +3193,11 @@ public class BTree extends Paged implements Lockable {
 
         @Override
         public int write(final byte[] data, int offset) throws IOException {
+            final int statusOffset = offset;
             offset = super.write(data, offset);
+            if (frontCoded && (getStatus() == LEAF || getStatus() == BRANCH)) {
+                data[statusOffset] = (byte) (getStatus() | FRONT_CODED);
+            }
             ByteConversion.longToByte(parentPage, data, offset);
             offset += 8;
             ByteConversion.shortToByte(valueCount, data, offset);
@@ -2771,6 +3218,20 @@ public class BTree extends Paged implements Lockable {
             return valueCount;
         }
 
+        /**
+         * Whether the keys of this page are front coded,
+         * see {@link BTreeNode#write()}.
+         *
+         * @return true if the keys are front coded, false for the legacy format
+         */
+        public final boolean isFrontCoded() {
+            return frontCoded;
+        }
+
+        public final void setFrontCoded(final boolean frontCoded) {
+            this.frontCoded = frontCoded;
+        }
+
         /**
          * The number of pointers stored by this page
          *
@@ -0,0 +1,247 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.EXistException;
+import org.exist.indexing.Index;
+import org.exist.indexing.StructuralIndex;
+import org.exist.start.CompatibleJavaVersionCheck;
+import org.exist.start.StartException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.NativeBroker;
+import org.exist.storage.dom.DOMFile;
+import org.exist.storage.index.BFile;
+import org.exist.storage.lock.LockManager;
+import org.exist.storage.lock.ManagedLock;
+import org.exist.storage.structural.NativeStructuralIndexWorker;
+import org.exist.util.Configuration;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.exist.util.ReadOnlyException;
+import org.exist.xquery.TerminatedException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Utility to convert b+-tree based index files to the page size which is configured for them
+ * in conf.xml (see the <code>file</code> element of <code>db-connection</code>).
+ *
+ * The content of each file is copied into a new file which is created with the configured page size.
+ * The new files are moved over the old ones once the database has been shut down.
+ *
+ * The page size of dom.dbx cannot be changed by this tool, as the addresses of the nodes
+ * contain page numbers. It requires a backup of the database to be restored into an empty
+ * data directory instead.
+ */
+public class ChangePageSize {
+
+    private static final String CONVERSION_DIR = "page-size";
+
+    private final PrintStream out;
+    private final BrokerPool pool;
+    private final Map<Path, Path> converted = new LinkedHashMap<>();
+
+    /**
+     * Start the database to convert its files.
+     *
+     * @param out the stream to which the progress of the conversion is reported
+     *
+     * @throws DatabaseConfigurationException if the configuration cannot be read
+     * @throws EXistException if the database cannot be started
+     */
+    public ChangePageSize(final PrintStream out) throws DatabaseConfigurationException, EXistException {
+        this.out = out;
+        final Configuration config = new Configuration();
+        BrokerPool.configure(1, 5, config);
+        this.pool = BrokerPool.getInstance();
+    }
+
+    public void convert(final String id) {
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+
+            BTree btree = null;
+            if ("collections".equals(id)) {
+                btree = ((NativeBroker) broker).getStorage(NativeBroker.COLLECTIONS_DBX_ID);
+            } else if ("dom".equals(id)) {
+                btree = ((NativeBroker) broker).getStorage(NativeBroker.DOM_DBX_ID);
+            } else if ("range".equals(id)) {
+                btree = ((NativeBroker) broker).getStorage(NativeBroker.VALUES_DBX_ID);
+            } else if ("structure".equals(id)) {
+                final NativeStructuralIndexWorker index = (NativeStructuralIndexWorker)
+                        broker.getIndexController().getWorkerByIndexName(StructuralIndex.STRUCTURAL_INDEX_ID);
+                btree = index.getStorage();
+            } else {
+                // use index id defined in conf.xml
+                final Index index = pool.getIndexManager().getIndexByName(id);
+                if (index != null) {
+                    btree = index.getStorage();
+                }
+            }
+            if (btree == null) {
+                out.printf("Unknown index: %s\n", id);
+                return;
+            }
+
+            final String fileName = FileUtils.fileName(btree.getFile());
+            final int pageSize = pool.getPageSize(fileName);
+            if (pageSize == btree.getFileHeader().getPageSize()) {
+                out.printf("%15s already has a page size of %d\n", fileName, pageSize);
+                return;
+            }
+            if (btree instanceof DOMFile) {
+                out.printf("The page size of %s cannot be changed in place. Backup the database " +
+                        "and restore it into an empty data directory instead.\n", fileName);
+                return;
+            }
+
+            final Path dir = pool.getStoragePlace().resolve(CONVERSION_DIR);
+            Files.createDirectories(dir);
+            final Path target = dir.resolve(fileName);
+            Files.deleteIfExists(target);
+
+            final LockManager lockManager = pool.getLockManager();
+            try (final ManagedLock<ReentrantLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+                out.printf("Converting %15s from %d to %d bytes per page ...",
+                        fileName, btree.getFileHeader().getPageSize(), pageSize);
+                if (btree instanceof BFile) {
+                    copy((BFile) btree, target);
+                } else {
+                    copy(btree, target);
+                }
+                out.println("Done");
+            }
+            converted.put(target, btree.getFile());
+
+        } catch (final Exception e) {
+            out.printf("An exception occurred during conversion: %s\n", e.getMessage());
+            e.printStackTrace(out);
+        }
+    }
+
+    /**
+     * Copy the entries of a B+tree, which are read in key order, into a new file by bulk loading.
+     */
+    private void copy(final BTree source, final Path target) throws DBException, IOException, TerminatedException {
+        try (final BTree dest = new BTree(pool, source.fileId, source.fileVersion, false, pool.getCacheManager(), target)) {
+            dest.create(((BTree.BTreeFileHeader) source.getFileHeader()).getFixedKeyLen());
+            final BTree.BulkLoader loader = dest.newBulkLoader();
+            final Exception[] error = new Exception[1];
+            source.query(null, (value, pointer) -> {
+                try {
+                    loader.add(value, pointer);
+                    return true;
+                } catch (final IOException | BTreeException e) {
+                    error[0] = e;
+                    return false;
+                }
+            });
+            loader.finish();
+            if (error[0] != null) {
+                throw new IOException("Failed to copy " + FileUtils.fileName(source.getFile()) + ": " + error[0].getMessage(), error[0]);
+            }
+        }
+    }
+
+    /**
+     * Copy the entries of a BFile, the values of which are stored on separate data pages, into a new file.
+     */
+    private void copy(final BFile source, final Path target) throws DBException, IOException, TerminatedException {
+        try (final BFile dest = new BFile(pool, source.fileId, source.fileVersion, false, target, pool.getCacheManager(), 1.4, 0.01)) {
+            dest.create();
+            final Exception[] error = new Exception[1];
+            source.query(null, (value, pointer) -> {
+                try {
+                    final Value data = source.get(pointer);
+                    if (data == null) {
+                        throw new IOException("No value found for pointer " + pointer);
+                    }
+                    dest.put(value, data.getData(), true);
+                    return true;
+                } catch (final IOException | ReadOnlyException e) {
+                    error[0] = e;
+                    return false;
+                }
+            });
+            if (error[0] != null) {
+                throw new IOException("Failed to copy " + FileUtils.fileName(source.getFile()) + ": " + error[0].getMessage(), error[0]);
+            }
+        }
+    }
+
+    /**
+     * Shut down the database and replace the original files with the converted ones.
+     */
+    public void shutdown() {
+        pool.shutdown(false);
+
+        for (final Map.Entry<Path, Path> entry : converted.entrySet()) {
+            try {
+                Files.move(entry.getKey(), entry.getValue(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                out.printf("Failed to replace %s with %s: %s\n", entry.getValue(), entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        try {
+            CompatibleJavaVersionCheck.checkForCompatibleJavaVersion();
+        } catch (final StartException e) {
+            if (e.getMessage() != null && !e.getMessage().isEmpty()) {
+                System.err.println(e.getMessage());
+            }
+            System.exit(e.getErrorCode());
+        }
+
+        if (args.length == 0) {
+            System.out.println("\nUsage: " + ChangePageSize.class.getName() + " [index-name]+\n");
+            System.out.println("Converts the index files specified as arguments to the page size which is");
+            System.out.println("configured for them in conf.xml. Can be applied to any of the b+-tree based");
+            System.out.println("indexes except dom: collections, range, structure, ngram-index.");
+            System.out.println("The database must not be running. Make a backup of the data directory first.\n");
+            System.out.println("Example call to convert the structural index:\n");
+            System.out.println(ChangePageSize.class.getName() + " structure");
+        } else {
+            final ChangePageSize changePageSize;
+            try {
+                changePageSize = new ChangePageSize(System.out);
+            } catch (final DatabaseConfigurationException | EXistException e) {
+                System.err.println("Failed to start the database: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            for (final String arg : args) {
+                changePageSize.convert(arg);
+            }
+            changePageSize.shutdown();
+        }
+    }
+}
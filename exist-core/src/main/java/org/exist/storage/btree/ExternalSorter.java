@@ -0,0 +1,258 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.util.io.TemporaryFileManager;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts (key, pointer) pairs for a {@link BTree.BulkLoader}.
+ *
+ * Pairs are buffered in memory until the memory budget is reached,
+ * at which point the buffer is sorted and written to a temporary file
+ * as a run. {@link #drainTo(BTree.BulkLoader)} then merges the runs,
+ * so that the number of pairs is limited only by the available disk space.
+ *
+ * Where the same key has been added more than once, the pointer which
+ * was added last is the one which is passed to the loader.
+ */
+@NotThreadSafe
+public class ExternalSorter implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(ExternalSorter.class);
+
+    /** The estimated memory overhead of each buffered pair, in addition to its key */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final Comparator<Entry> ENTRY_COMPARATOR = Comparator.comparing((Entry entry) -> entry.key);
+
+    private final long maxMemory;
+    private final List<Entry> buffer = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param maxMemory the maximum number of bytes to buffer in memory before spilling to disk.
+     */
+    public ExternalSorter(final long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Add a pair to be sorted.
+     *
+     * @param key the key, which is copied
+     * @param pointer the pointer
+     *
+     * @throws IOException if a run could not be written
+     */
+    public void add(final Value key, final long pointer) throws IOException {
+        final byte[] data = new byte[key.getLength()];
+        System.arraycopy(key.data(), key.start(), data, 0, key.getLength());
+        buffer.add(new Entry(new Value(data), pointer));
+        bufferedBytes += key.getLength() + ENTRY_OVERHEAD;
+        if (bufferedBytes >= maxMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * Get the number of runs which have been written to disk.
+     *
+     * @return the number of runs
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Pass all of the pairs to a loader in ascending order of key.
+     *
+     * @param loader the loader
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws BTreeException if the loader rejects a key
+     */
+    public void drainTo(final BTree.BulkLoader loader) throws IOException, BTreeException {
+        // NOTE: List#sort is stable, so a later pair with the same key follows an earlier one
+        buffer.sort(ENTRY_COMPARATOR);
+        if (runs.isEmpty()) {
+            for (final Entry entry : buffer) {
+                loader.add(entry.key, entry.pointer);
+            }
+            clearBuffer();
+            return;
+        }
+
+        // merge the runs, and the buffer as the last run. Ties are broken by
+        // run order so that the pair which was added last is passed last
+        final List<RunReader> readers = new ArrayList<>(runs.size() + 1);
+        try {
+            for (final Path run : runs) {
+                readers.add(new FileRunReader(readers.size(), run));
+            }
+            readers.add(new BufferRunReader(readers.size(), buffer));
+
+            final PriorityQueue<RunReader> queue = new PriorityQueue<>(readers.size(),
+                    Comparator.comparing((RunReader reader) -> reader.current.key).thenComparingInt(reader -> reader.index));
+            for (final RunReader reader : readers) {
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final RunReader reader = queue.poll();
+                loader.add(reader.current.key, reader.current.pointer);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (final RunReader reader : readers) {
+                reader.close();
+            }
+            clearBuffer();
+        }
+    }
+
+    @Override
+    public void close() {
+        clearBuffer();
+        final TemporaryFileManager temporaryFileManager = TemporaryFileManager.getInstance();
+        for (final Path run : runs) {
+            temporaryFileManager.returnTemporaryFile(run);
+        }
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(ENTRY_COMPARATOR);
+        final Path run = TemporaryFileManager.getInstance().getTemporaryFile();
+        runs.add(run);
+        try (final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 65536))) {
+            for (final Entry entry : buffer) {
+                os.writeInt(entry.key.getLength());
+                os.write(entry.key.data(), entry.key.start(), entry.key.getLength());
+                os.writeLong(entry.pointer);
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Wrote run {} of {} entries", runs.size(), buffer.size());
+        }
+        clearBuffer();
+    }
+
+    private void clearBuffer() {
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    private static final class Entry {
+        final Value key;
+        final long pointer;
+
+        Entry(final Value key, final long pointer) {
+            this.key = key;
+            this.pointer = pointer;
+        }
+    }
+
+    private abstract static class RunReader implements Closeable {
+        final int index;
+        Entry current = null;
+
+        RunReader(final int index) {
+            this.index = index;
+        }
+
+        /**
+         * Advance to the next entry of the run.
+         *
+         * @return true if there is a current entry, false if the run is exhausted
+         */
+        abstract boolean next() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class BufferRunReader extends RunReader {
+        private final List<Entry> entries;
+        private int position = 0;
+
+        BufferRunReader(final int index, final List<Entry> entries) {
+            super(index);
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next() {
+            if (position < entries.size()) {
+                current = entries.get(position++);
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+
+    private static final class FileRunReader extends RunReader {
+        private final DataInputStream is;
+
+        FileRunReader(final int index, final Path run) throws IOException {
+            super(index);
+            this.is = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 65536));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            final int len;
+            try {
+                len = is.readInt();
+            } catch (final EOFException e) {
+                current = null;
+                return false;
+            }
+            final byte[] data = new byte[len];
+            is.readFully(data);
+            current = new Entry(new Value(data), is.readLong());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Page I/O by copying to/from a memory mapping of the file.
+ *
+ * A single {@link MappedByteBuffer} cannot address more than 2 GB, so the
+ * file is mapped as a sequence of fixed size segments. The mapping never
+ * extends beyond the current end of the file: bytes past the mapped
+ * region (i.e. pages which have just been appended) are accessed through
+ * the {@link FileChannel}, and the tail of the mapping is re-established
+ * once the file has grown by {@link #REMAP_THRESHOLD} bytes. A given
+ * byte range is therefore always accessed by the mapping once it has been
+ * mapped, and by the channel before that.
+ */
+@ThreadSafe
+final class MappedPageIO implements PageIO {
+
+    static final int SEGMENT_SHIFT = 30;  // 1 GB
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * The number of bytes the file must grow past the mapped
+     * region before the mapping is extended.
+     */
+    static final long REMAP_THRESHOLD = 1024 * 1024;  // 1 MB
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FileChannel.MapMode mapMode;
+
+    private volatile Mapping mapping;
+
+    MappedPageIO(final RandomAccessFile raf, final boolean readOnly) throws IOException {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.mapMode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        this.mapping = map(new Mapping(new MappedByteBuffer[0], 0), channel.size());
+    }
+
+    @Override
+    public int read(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        final Mapping current = ensureMapped(position + len);
+        if (position + len <= current.size) {
+            current.get(position, buf, off, len);
+            return len;
+        }
+
+        // outside of the mapped region
+        final ByteBuffer dst = ByteBuffer.wrap(buf, off, len);
+        long pos = position;
+        while (dst.hasRemaining()) {
+            final int read = channel.read(dst, pos);
+            if (read == -1) {
+                break;
+            }
+            pos += read;
+        }
+        final int total = len - dst.remaining();
+        return total == 0 && len > 0 ? -1 : total;
+    }
+
+    @Override
+    public void write(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        final Mapping current = ensureMapped(position + len);
+        if (position + len <= current.size) {
+            current.put(position, buf, off, len);
+            return;
+        }
+
+        // outside of the mapped region, extends the file
+        final ByteBuffer src = ByteBuffer.wrap(buf, off, len);
+        long pos = position;
+        while (src.hasRemaining()) {
+            pos += channel.write(src, pos);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public Type getType() {
+        return Type.MMAP;
+    }
+
+    @Override
+    public void force() throws IOException {
+        if (mapMode == FileChannel.MapMode.READ_WRITE) {
+            for (final MappedByteBuffer segment : mapping.segments) {
+                segment.force();
+            }
+            // pages beyond the mapping are written through the channel
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mapMode == FileChannel.MapMode.READ_WRITE) {
+                for (final MappedByteBuffer segment : mapping.segments) {
+                    segment.force();
+                }
+            }
+        } finally {
+            mapping = new Mapping(new MappedByteBuffer[0], 0);
+            raf.close();
+        }
+    }
+
+    /**
+     * Ensures that the mapping covers the requested end offset
+     * if the file is large enough, or has grown enough since
+     * it was last mapped.
+     *
+     * @param end the end offset (exclusive) that is about to be accessed.
+     *
+     * @return the current mapping.
+     */
+    private Mapping ensureMapped(final long end) throws IOException {
+        final Mapping current = mapping;
+        if (end <= current.size) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (end <= mapping.size) {
+                return mapping;
+            }
+            final long fileSize = channel.size();
+            if (fileSize - mapping.size >= REMAP_THRESHOLD) {
+                mapping = map(mapping, fileSize);
+            }
+            return mapping;
+        }
+    }
+
+    /**
+     * Extends an existing mapping up to the given size.
+     *
+     * Complete segments of the existing mapping are reused, only
+     * the partial tail segment and any new segments are mapped.
+     */
+    private Mapping map(final Mapping existing, final long size) throws IOException {
+        final int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        final MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+
+        final int completeSegments = (int) (existing.size >>> SEGMENT_SHIFT);
+        System.arraycopy(existing.segments, 0, segments, 0, Math.min(completeSegments, segmentCount));
+
+        for (int i = completeSegments; i < segmentCount; i++) {
+            final long segmentStart = ((long) i) << SEGMENT_SHIFT;
+            segments[i] = channel.map(mapMode, segmentStart, Math.min(SEGMENT_SIZE, size - segmentStart));
+        }
+        return new Mapping(segments, size);
+    }
+
+    /**
+     * An immutable snapshot of the mapped segments.
+     */
+    private static final class Mapping {
+        final MappedByteBuffer[] segments;
+        final long size;
+
+        Mapping(final MappedByteBuffer[] segments, final long size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        void get(long position, final byte[] buf, int off, int len) {
+            while (len > 0) {
+                final MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                final int segmentOffset = (int) (position & SEGMENT_MASK);
+                final int chunk = Math.min(len, segment.capacity() - segmentOffset);
+                segment.get(segmentOffset, buf, off, chunk);
+                position += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        void put(long position, final byte[] buf, int off, int len) {
+            while (len > 0) {
+                final MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                final int segmentOffset = (int) (position & SEGMENT_MASK);
+                final int chunk = Math.min(len, segment.capacity() - segmentOffset);
+                segment.put(segmentOffset, buf, off, chunk);
+                position += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.exist.storage.cache.OffHeapPageStore;
+
+import java.io.IOException;
+
+/**
+ * Page I/O which keeps copies of the pages of a file in an
+ * {@link OffHeapPageStore}, and serves reads from there when it can.
+ *
+ * The file is divided into blocks of the store's page size, so that files
+ * with a larger page size than the store can share it. Reads are served
+ * from the store block by block, on a miss the whole block is read from the
+ * underlying page I/O and put into the store.
+ * Writes are always written through to the underlying page I/O, and then
+ * applied to any copy of the block in the store, so the store never holds
+ * a page which differs from the file.
+ */
+@NotThreadSafe
+final class OffHeapCachingPageIO implements PageIO {
+
+    private final PageIO delegate;
+    private final OffHeapPageStore store;
+    private final int fileId;
+    private final int blockSize;
+    private final byte[] blockData;
+
+    OffHeapCachingPageIO(final PageIO delegate, final OffHeapPageStore store) {
+        this.delegate = delegate;
+        this.store = store;
+        this.fileId = store.registerFile();
+        this.blockSize = store.getPageSize();
+        this.blockData = new byte[blockSize];
+    }
+
+    @Override
+    public int read(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        // NOTE: a file may have a larger page size than the store, the read is then served block by block
+        int read = 0;
+        while (read < len) {
+            final long block = (position + read) / blockSize;
+            final int blockOffset = (int) ((position + read) % blockSize);
+            final int chunk = Math.min(len - read, blockSize - blockOffset);
+            final int copied = readBlock(block, blockOffset, buf, off + read, chunk);
+            if (copied <= 0) {
+                return read == 0 ? -1 : read;
+            }
+            read += copied;
+            if (copied < chunk) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    private int readBlock(final long block, final int blockOffset, final byte[] buf, final int off, final int len) throws IOException {
+        if (store.read(fileId, block, blockOffset, buf, off, len)) {
+            return len;
+        }
+
+        final int read = delegate.read(block * blockSize, blockData, 0, blockSize);
+        if (read == blockSize) {
+            store.put(fileId, block, blockData, 0);
+        }
+
+        // NOTE: a short read of the last block of the file is not cached
+        final int available = read - blockOffset;
+        if (available <= 0) {
+            return -1;
+        }
+        final int copied = Math.min(len, available);
+        System.arraycopy(blockData, blockOffset, buf, off, copied);
+        return copied;
+    }
+
+    @Override
+    public void write(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        delegate.write(position, buf, off, len);
+
+        long block = position / blockSize;
+        int blockOffset = (int) (position % blockSize);
+        int written = 0;
+        while (written < len) {
+            final int chunk = Math.min(len - written, blockSize - blockOffset);
+            if (chunk == blockSize) {
+                store.put(fileId, block, buf, off + written);
+            } else {
+                store.update(fileId, block, blockOffset, buf, off + written, chunk);
+            }
+            written += chunk;
+            block++;
+            blockOffset = 0;
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    @Override
+    public void force() throws IOException {
+        delegate.force();
+    }
+
+    @Override
+    public Type getType() {
+        return delegate.getType();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.deregisterFile(fileId);
+        delegate.close();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Positional I/O over the file that backs a {@link Paged} file.
+ *
+ * {@link Paged} only ever addresses its file by absolute offset, so
+ * implementations are free to choose how bytes are transferred, e.g. by
+ * seek+read on a {@link RandomAccessFile} or by copying from a memory mapping.
+ */
+public interface PageIO extends AutoCloseable {
+
+    /**
+     * The available page I/O implementations, selected by
+     * the <code>db-connection/@page-io</code> setting in conf.xml.
+     */
+    enum Type {
+        /**
+         * Seek+read/write through a {@link RandomAccessFile}.
+         */
+        FILE,
+
+        /**
+         * Copy to/from a memory mapping of the file.
+         */
+        MMAP;
+
+        /**
+         * Parse a page I/O type from its configuration value.
+         *
+         * @param value the configuration value, e.g. "file" or "mmap".
+         *
+         * @return the type, or null if the value is not recognised.
+         */
+        public static @Nullable Type fromString(@Nullable final String value) {
+            if (value == null) {
+                return null;
+            }
+            for (final Type type : values()) {
+                if (type.name().equalsIgnoreCase(value.trim())) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read bytes from the file, starting at an absolute position.
+     *
+     * Reading stops early only at the end of the file, the remainder of
+     * the buffer is then left untouched.
+     *
+     * @param position the absolute offset in the file.
+     * @param buf the buffer to read into.
+     * @param off the offset in the buffer.
+     * @param len the number of bytes to read.
+     *
+     * @return the number of bytes read, or -1 if position is at or beyond the end of the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    int read(long position, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Write bytes to the file, starting at an absolute position.
+     * The file is extended if necessary.
+     *
+     * @param position the absolute offset in the file.
+     * @param buf the buffer to write from.
+     * @param off the offset in the buffer.
+     * @param len the number of bytes to write.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void write(long position, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Get the current size of the file.
+     *
+     * @return the size of the file in bytes.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    long size() throws IOException;
+
+    /**
+     * Force all writes to the file onto the storage device.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void force() throws IOException;
+
+    /**
+     * Get the type of this implementation.
+     *
+     * @return the type.
+     */
+    Type getType();
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Create a PageIO of the given type over an already opened file.
+     *
+     * The returned PageIO takes ownership of the file, and will close
+     * it when it is closed.
+     *
+     * @param type the type of page I/O.
+     * @param raf the opened file.
+     * @param readOnly true if the file was opened read-only.
+     *
+     * @return the page I/O.
+     *
+     * @throws IOException if the page I/O cannot be set up
+     */
+    static PageIO create(final Type type, final RandomAccessFile raf, final boolean readOnly) throws IOException {
+        switch (type) {
+            case MMAP:
+                return new MappedPageIO(raf, readOnly);
+
+            case FILE:
+            default:
+                return new RandomAccessFilePageIO(raf);
+        }
+    }
+}
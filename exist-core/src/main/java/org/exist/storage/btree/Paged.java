@@ -75,11 +75,14 @@ package org.exist.storage.btree;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.storage.BrokerPool;
+import org.exist.storage.DefaultCacheManager;
+import org.exist.storage.cache.OffHeapPageStore;
 import org.exist.storage.journal.Lsn;
 import org.exist.util.ByteConversion;
 import org.exist.util.FileUtils;
 import org.exist.xquery.Constants;
 
+import javax.annotation.Nullable;
 import java.lang.AutoCloseable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -130,20 +133,39 @@ public abstract class Paged implements AutoCloseable {
     protected static int PAGE_SIZE = 4096;
 
     protected final short fileVersion;
+    private final BrokerPool pool;
     private final FileHeader fileHeader;
-    private final byte[] tempPageData;
-    private final byte[] tempHeaderData;
+    private byte[] tempPageData;
+    private byte[] tempHeaderData;
 
-    private RandomAccessFile raf;
+    private final PageIO.Type pageIOType;
+    @Nullable private final OffHeapPageStore offHeapPageStore;
+    private PageIO pageIO;
     private Path file;
     private boolean readOnly = false;
     private boolean fileIsNew = false;
 	
     public Paged(final BrokerPool pool, final short fileVersion) {
         this.fileVersion = fileVersion;
+        this.pool = pool;
+        this.pageIOType = pool.getPageIOType();
+        final DefaultCacheManager cacheManager = pool.getCacheManager();
+        this.offHeapPageStore = cacheManager != null ? cacheManager.getOffHeapPageStore() : null;
         this.fileHeader = createFileHeader(pool.getPageSize());
-        this.tempPageData = new byte[fileHeader.pageSize];
-        this.tempHeaderData = new byte[fileHeader.pageHeaderSize];
+        allocatePageBuffers();
+    }
+
+    /**
+     * (Re)allocate the buffers used for reading and writing pages,
+     * after the page size of the file has been determined.
+     */
+    private void allocatePageBuffers() {
+        if (tempPageData == null || tempPageData.length != fileHeader.pageSize) {
+            tempPageData = new byte[fileHeader.pageSize];
+        }
+        if (tempHeaderData == null || tempHeaderData.length != fileHeader.pageHeaderSize) {
+            tempHeaderData = new byte[fileHeader.pageHeaderSize];
+        }
     }
 
     public final static void setPageSize(final int pageSize) {
@@ -154,6 +176,15 @@ public abstract class Paged implements AutoCloseable {
         return PAGE_SIZE;
     }
 
+    /**
+     * Get the type of page I/O used for the underlying file.
+     *
+     * @return the type of page I/O
+     */
+    public final PageIO.Type getPageIOType() {
+        return pageIOType;
+    }
+
     public final boolean isReadOnly() {
         return readOnly;
     }
@@ -166,7 +197,7 @@ public abstract class Paged implements AutoCloseable {
     @Override
     public void close() throws DBException {
         try {
-            raf.close();
+            pageIO.close();
         } catch (final IOException e) {
             throw new DBException("An error occurred whilst closing the database file '"
                     + file == null ? "null" : FileUtils.fileName(file) + "': " + e.getMessage());
@@ -234,6 +265,24 @@ public abstract class Paged implements AutoCloseable {
         return flushed;
     }
 
+    /**
+     * Flush the file, see {@link #flush()}, and force all writes
+     * to the file onto the storage device.
+     *
+     * @throws DBException if the file cannot be written
+     */
+    public void sync() throws DBException {
+        flush();
+        if (readOnly) {
+            return;
+        }
+        try {
+            pageIO.force();
+        } catch (final IOException e) {
+            throw new DBException("Unable to sync " + FileUtils.fileName(file) + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Backup the entire contents of the underlying file to 
      * an output stream.
@@ -242,11 +291,12 @@ public abstract class Paged implements AutoCloseable {
      * @throws IOException if an I/O error occurs
      */
     public void backupToStream(final OutputStream os) throws IOException {
-        raf.seek(0);
         final byte[] buf = new byte[4096];
+        long position = 0;
         int len;
-        while ((len = raf.read(buf)) > 0) {
+        while ((len = pageIO.read(position, buf, 0, buf.length)) > 0) {
             os.write(buf, 0, len);
+            position += len;
         }
     }
 
@@ -343,10 +393,32 @@ public abstract class Paged implements AutoCloseable {
      * @throws DBException if the paged file cannot be opened
      */
     public boolean open(final short requiredVersion) throws DBException {
+        return open(requiredVersion, requiredVersion);
+    }
+
+    /**
+     * Open a file, which may also have been written by an older version of
+     * eXist whose format can still be read. Unless the file is read-only, its
+     * version is upgraded to the required version, so that an older version
+     * of eXist refuses to open it once it has been written in the new format.
+     *
+     * @param requiredVersion The required version of the file
+     * @param legacyVersion The older version of the file which can still be read
+     * @return true if opened
+     * @throws DBException if the paged file cannot be opened
+     */
+    public boolean open(final short requiredVersion, final short legacyVersion) throws DBException {
         try {
             if (exists()) {
                 fileHeader.read();
-                if(fileHeader.getVersion() != requiredVersion) {
+                if (fileHeader.getVersion() == legacyVersion && legacyVersion != requiredVersion) {
+                    if (!readOnly) {
+                        LOG.info("Upgrading {} from version {} to {}", FileUtils.fileName(getFile()),
+                                legacyVersion, requiredVersion);
+                        fileHeader.setVersion(requiredVersion);
+                        fileHeader.write();
+                    }
+                } else if(fileHeader.getVersion() != requiredVersion) {
                     throw new DBException("Database file " +
                         FileUtils.fileName(getFile()) + " has a storage format incompatible with this " +
                         "version of eXist. You need to upgrade your database by creating a backup, " +
@@ -398,6 +470,7 @@ public abstract class Paged implements AutoCloseable {
         this.file = file;
         fileIsNew = !Files.exists(file);
         try {
+            RandomAccessFile raf;
             if ((!Files.exists(file)) || Files.isWritable(file)) {
                 try {
                     raf = new RandomAccessFile(file.toFile(), "rw");
@@ -417,6 +490,20 @@ public abstract class Paged implements AutoCloseable {
                 readOnly = true;
                 raf = new RandomAccessFile(file.toFile(), "r");
             }
+            pageIO = PageIO.create(pageIOType, raf, readOnly);
+            if (offHeapPageStore != null) {
+                pageIO = new OffHeapCachingPageIO(pageIO, offHeapPageStore);
+            }
+
+            if (fileIsNew) {
+                // a new file is created with the page size configured for it,
+                // an existing file keeps its page size, see FileHeader#read()
+                final int pageSize = pool.getPageSize(FileUtils.fileName(file));
+                if (pageSize != fileHeader.pageSize) {
+                    fileHeader.setFilePageSize(pageSize);
+                    allocatePageBuffers();
+                }
+            }
         } catch (final IOException e) {
             LOG.warn("An exception occurred while opening database file {}: {}", file.toAbsolutePath().toString(), e.getMessage(), e);
         }
@@ -534,8 +621,7 @@ public abstract class Paged implements AutoCloseable {
         final PageHeader pageHeader = page.getPageHeader();
         pageHeader.dataLen = fileHeader.workSize;
         if (data.length != pageHeader.dataLen) {
-            //TODO : where to get this 64 from ?
-            if (pageHeader.dataLen != getPageSize() - 64) {
+            if (pageHeader.dataLen != fileHeader.pageSize - fileHeader.pageHeaderSize) {
                 LOG.warn("ouch: {} != {}", fileHeader.workSize, data.length);
             }
             pageHeader.dataLen = data.length;
@@ -575,7 +661,7 @@ public abstract class Paged implements AutoCloseable {
         private long totalCount;
         private int workSize;
 
-        private final byte[] buf;
+        private byte[] buf;
 
         public FileHeader(final long pageCount, final int pageSize) {
             this.pageSize = pageSize;
@@ -692,6 +778,16 @@ public abstract class Paged implements AutoCloseable {
         public final short getVersion() {
             return version;
         }
+
+        /**
+         * Set the version of the file format
+         *
+         * @param version The new version
+         */
+        final void setVersion(final short version) {
+            this.version = version;
+            dirty = true;
+        }
         
         /**
          * Increment the number of records being managed by the file
@@ -711,13 +807,33 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void read() throws IOException {
-            raf.seek(0);
-            raf.read(buf);
+            pageIO.read(0, buf, 0, buf.length);
             read(buf);
+            if (headerSize != buf.length) {
+                // the file was created with a different page size
+                buf = new byte[headerSize];
+                pageIO.read(0, buf, 0, buf.length);
+                read(buf);
+            }
             calculateWorkSize();
+            allocatePageBuffers();
             dirty = false;
         }
 
+        /**
+         * Set the page size of a new file, the header
+         * occupies the first page of the file.
+         *
+         * @param pageSize the page size
+         */
+        final synchronized void setFilePageSize(final int pageSize) {
+            this.pageSize = pageSize;
+            this.headerSize = (short) pageSize;
+            this.buf = new byte[headerSize];
+            calculateWorkSize();
+            dirty = true;
+        }
+
         public int read(final byte[] buf) throws IOException {
             version = ByteConversion.byteToShort(buf, OFFSET_VERSION_ID);
             headerSize = ByteConversion.byteToShort(buf, OFFSET_HEADER_SIZE);
@@ -848,9 +964,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void write() throws IOException {
-            raf.seek(0);
             write(buf);
-            raf.write(buf);
+            pageIO.write(0, buf, 0, buf.length);
             dirty = false;
         }
     }
@@ -944,16 +1059,13 @@ public abstract class Paged implements AutoCloseable {
 
         public byte[] read() throws IOException {
             try {
-                if (raf.getFilePointer() != offset) {
-                    raf.seek(offset);
-                }
                 Arrays.fill(tempHeaderData, (byte)0);
-                raf.read(tempHeaderData);
+                pageIO.read(offset, tempHeaderData, 0, tempHeaderData.length);
                 // Read in the header
                 header.read(tempHeaderData, 0);
                 // Read the working data
                 final byte[] workData = new byte[header.dataLen];
-                raf.read(workData);
+                pageIO.read(offset + tempHeaderData.length, workData, 0, workData.length);
                 return workData;
             } catch(final Exception e) {
                 LOG.warn("error while reading page: {}", getPageInfo(), e);
@@ -986,10 +1098,7 @@ public abstract class Paged implements AutoCloseable {
                     System.arraycopy(data, 0, tempPageData, fileHeader.pageHeaderSize, data.length);
                 }
             }
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
-            raf.write(tempPageData);
+            pageIO.write(offset, tempPageData, 0, tempPageData.length);
         }
 
         @Override
@@ -1009,11 +1118,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public void dumpPage() throws IOException {
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
             final byte[] data = new byte[fileHeader.pageSize];
-            raf.read(data);
+            pageIO.read(offset, data, 0, data.length);
             LOG.debug("Contents of page {}: {}", pageNum, hexDump(data));
         }
     }
@@ -0,0 +1,89 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Page I/O by seek+read/write on a {@link RandomAccessFile}.
+ *
+ * This is the original I/O path of {@link Paged}, the file pointer
+ * is only moved when it is not already at the requested position, so
+ * that sequential page access avoids the seek.
+ */
+@NotThreadSafe
+final class RandomAccessFilePageIO implements PageIO {
+
+    private final RandomAccessFile raf;
+
+    RandomAccessFilePageIO(final RandomAccessFile raf) {
+        this.raf = raf;
+    }
+
+    @Override
+    public int read(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        if (raf.getFilePointer() != position) {
+            raf.seek(position);
+        }
+
+        int total = 0;
+        while (total < len) {
+            final int read = raf.read(buf, off + total, len - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total == 0 && len > 0 ? -1 : total;
+    }
+
+    @Override
+    public void write(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        if (raf.getFilePointer() != position) {
+            raf.seek(position);
+        }
+        raf.write(buf, off, len);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return raf.length();
+    }
+
+    @Override
+    public void force() throws IOException {
+        raf.getChannel().force(true);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.FILE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -57,6 +57,9 @@ public class Accounting {
     
     /** total cache misses during the lifetime of the cache */
     private int misses = 0;
+
+    /** total pages evicted during the lifetime of the cache */
+    private int evictions = 0;
     
     /** the current size of the cache */
     private int totalSize = 0;
@@ -126,6 +129,8 @@ public class Accounting {
      * @param cacheable object
      */
     public void replacedPage(Cacheable cacheable) {
+        ++evictions;
+
         if (System.currentTimeMillis() - checkPeriodStart > checkPeriod) {
             map.clear();
             thrashing = 0;
@@ -142,6 +147,16 @@ public class Accounting {
             {map.put(cacheable.getKey(), DUMMY);}
     }
     
+    /**
+     * Returns the number of pages evicted from the cache
+     * during the lifetime of the cache.
+     *
+     * @return number of total evictions
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
     /**
      * Return the current amount of trashing.
      * @return current amount of trashing
@@ -23,6 +23,8 @@ package org.exist.storage.cache;
 
 import org.exist.storage.CacheManager;
 
+import javax.annotation.Nullable;
+
 /**
  * Base interface for all cache implementations that are used for
  * buffering btree and data pages.
@@ -38,6 +40,44 @@ public interface Cache<T extends Cacheable> {
         DATA
     }
 
+    /**
+     * The replacement policies that can be selected for the
+     * page caches by the <code>db-connection/@cachePolicy</code>
+     * setting in conf.xml.
+     */
+    enum Policy {
+        /**
+         * {@link BTreeCache} for B+-tree pages, and {@link LRUCache} for data pages.
+         */
+        LRU,
+
+        /**
+         * {@link TwoQueueCache} for both B+-tree and data pages.
+         */
+        TWO_QUEUE;
+
+        /**
+         * Parse a cache policy from its configuration value.
+         *
+         * @param value the configuration value, either "lru" or "2q".
+         *
+         * @return the policy, or null if the value is not recognised.
+         */
+        public static @Nullable Policy fromString(@Nullable final String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (value.trim().toLowerCase()) {
+                case "lru":
+                    return LRU;
+                case "2q":
+                    return TWO_QUEUE;
+                default:
+                    return null;
+            }
+        }
+    }
+
     /**
      * Returns the type of this cache. Should be one of the
      * constants defined in {@link CacheType}.
@@ -166,6 +206,22 @@ public interface Cache<T extends Cacheable> {
      */
     int getFails();
 
+    /**
+     * Get the number of objects which have been evicted from
+     * the cache to make room for other objects.
+     *
+     * @return number of evictions
+     */
+    int getEvictions();
+
+    /**
+     * Determine if the cache may be accessed concurrently
+     * by several threads, without any external locking.
+     *
+     * @return true if the cache is thread safe
+     */
+    boolean isThreadSafe();
+
     /**
      * Get the load factor if the cache
      *
@@ -237,6 +237,16 @@ public class GClockCache<T extends Cacheable> implements Cache<T> {
 		return accounting.getMisses();
 	}
 
+    @Override
+	public int getEvictions() {
+		return accounting.getEvictions();
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return false;
+	}
+
     public int getThrashing() {
         return accounting.getThrashing();
     }
@@ -0,0 +1,294 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A store for the raw contents of database pages, held in off-heap
+ * (direct) memory outside of the Java heap.
+ *
+ * The store has a fixed byte budget which is shared by all of the database
+ * files. The budget is divided into frames of one page each, which are
+ * allocated lazily in slabs of (up to) 1 GB. When all frames are in use, a
+ * frame is reclaimed by the CLOCK algorithm.
+ *
+ * The store sits below the on-heap page caches ({@link Cache}), and so
+ * allows a small Java heap to be combined with a large page cache: a page
+ * which has been evicted from an on-heap cache can be reloaded from the
+ * store without a disk read.
+ */
+@ThreadSafe
+public class OffHeapPageStore {
+
+    private static final int SLAB_SIZE = 1 << 30;  // 1 GB
+
+    private static final int NO_FRAME = -1;
+    private static final long NO_KEY = -1;
+
+    /**
+     * The number of bits of a key that are used for the page number,
+     * the remaining bits identify the file.
+     */
+    private static final int PAGE_NUM_BITS = 40;
+
+    private final int pageSize;
+    private final int frameCount;
+    private final int framesPerSlab;
+
+    private final AtomicInteger nextFileId = new AtomicInteger();
+
+    @GuardedBy("this") private final ByteBuffer[] slabs;
+    @GuardedBy("this") private final Long2IntOpenHashMap index;
+    @GuardedBy("this") private final long[] frameKeys;
+    @GuardedBy("this") private final boolean[] referenced;
+    @GuardedBy("this") private final int[] freeFrames;
+    @GuardedBy("this") private int freeFrameCount = 0;
+    @GuardedBy("this") private int allocatedFrames = 0;
+    @GuardedBy("this") private int clockHand = 0;
+
+    @GuardedBy("this") private long hits = 0;
+    @GuardedBy("this") private long misses = 0;
+    @GuardedBy("this") private long evictions = 0;
+
+    /**
+     * @param maxSize the byte budget of the store.
+     * @param pageSize the size of each page in bytes.
+     */
+    public OffHeapPageStore(final long maxSize, final int pageSize) {
+        if (pageSize <= 0 || pageSize > SLAB_SIZE) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        final long frames = maxSize / pageSize;
+        if (frames <= 0 || frames > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid off-heap cache size: " + maxSize);
+        }
+
+        this.pageSize = pageSize;
+        this.frameCount = (int) frames;
+        this.framesPerSlab = SLAB_SIZE / pageSize;
+        this.slabs = new ByteBuffer[(frameCount + framesPerSlab - 1) / framesPerSlab];
+        this.index = new Long2IntOpenHashMap(Math.min(frameCount, 1024 * 1024));
+        this.index.defaultReturnValue(NO_FRAME);
+        this.frameKeys = new long[frameCount];
+        this.referenced = new boolean[frameCount];
+        this.freeFrames = new int[frameCount];
+    }
+
+    /**
+     * Get the size of the pages held by this store.
+     *
+     * @return the page size in bytes.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Get the byte budget of this store.
+     *
+     * @return the maximum size in bytes.
+     */
+    public long getMaxSize() {
+        return (long) frameCount * pageSize;
+    }
+
+    /**
+     * Get the number of bytes currently occupied by pages.
+     *
+     * @return the current size in bytes.
+     */
+    public synchronized long getCurrentSize() {
+        return (long) (allocatedFrames - freeFrameCount) * pageSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getFails() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Register a file whose pages will be held in this store.
+     *
+     * @return the id by which the file's pages are identified.
+     */
+    public int registerFile() {
+        final int fileId = nextFileId.getAndIncrement();
+        if (fileId >= (1 << (Long.SIZE - PAGE_NUM_BITS - 1))) {
+            throw new IllegalStateException("Too many files have been registered with the off-heap page store");
+        }
+        return fileId;
+    }
+
+    /**
+     * Deregister a file, releasing all of its pages.
+     *
+     * @param fileId the id of the file, as returned by {@link #registerFile()}.
+     */
+    public synchronized void deregisterFile(final int fileId) {
+        for (int frame = 0; frame < allocatedFrames; frame++) {
+            final long key = frameKeys[frame];
+            if (key != NO_KEY && (key >>> PAGE_NUM_BITS) == fileId) {
+                releaseFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * Read (part of) a page from the store.
+     *
+     * @param fileId the id of the file.
+     * @param pageNum the number of the page within the file.
+     * @param pageOffset the offset within the page to read from.
+     * @param buf the buffer to read into.
+     * @param off the offset in the buffer.
+     * @param len the number of bytes to read.
+     *
+     * @return true if the page was present in the store and has been read, false otherwise.
+     */
+    public synchronized boolean read(final int fileId, final long pageNum, final int pageOffset, final byte[] buf, final int off, final int len) {
+        final int frame = index.get(key(fileId, pageNum));
+        if (frame == NO_FRAME) {
+            misses++;
+            return false;
+        }
+
+        hits++;
+        referenced[frame] = true;
+        slab(frame).get(slabOffset(frame) + pageOffset, buf, off, len);
+        return true;
+    }
+
+    /**
+     * Put a complete page into the store, replacing any previous content.
+     *
+     * @param fileId the id of the file.
+     * @param pageNum the number of the page within the file.
+     * @param buf the buffer holding the page.
+     * @param off the offset of the page in the buffer.
+     */
+    public synchronized void put(final int fileId, final long pageNum, final byte[] buf, final int off) {
+        final long key = key(fileId, pageNum);
+        int frame = index.get(key);
+        if (frame == NO_FRAME) {
+            frame = allocateFrame();
+            frameKeys[frame] = key;
+            index.put(key, frame);
+        }
+
+        referenced[frame] = true;
+        slab(frame).put(slabOffset(frame), buf, off, pageSize);
+    }
+
+    /**
+     * Update part of a page, if it is present in the store.
+     *
+     * @param fileId the id of the file.
+     * @param pageNum the number of the page within the file.
+     * @param pageOffset the offset within the page to write to.
+     * @param buf the buffer holding the new content.
+     * @param off the offset in the buffer.
+     * @param len the number of bytes to write.
+     */
+    public synchronized void update(final int fileId, final long pageNum, final int pageOffset, final byte[] buf, final int off, final int len) {
+        final int frame = index.get(key(fileId, pageNum));
+        if (frame != NO_FRAME) {
+            slab(frame).put(slabOffset(frame) + pageOffset, buf, off, len);
+        }
+    }
+
+    /**
+     * Remove a page from the store, if it is present.
+     *
+     * @param fileId the id of the file.
+     * @param pageNum the number of the page within the file.
+     */
+    public synchronized void remove(final int fileId, final long pageNum) {
+        final int frame = index.get(key(fileId, pageNum));
+        if (frame != NO_FRAME) {
+            releaseFrame(frame);
+        }
+    }
+
+    @GuardedBy("this")
+    private int allocateFrame() {
+        if (freeFrameCount > 0) {
+            return freeFrames[--freeFrameCount];
+        }
+
+        if (allocatedFrames < frameCount) {
+            final int frame = allocatedFrames++;
+            final int slab = frame / framesPerSlab;
+            if (slabs[slab] == null) {
+                final int slabFrames = Math.min(framesPerSlab, frameCount - (slab * framesPerSlab));
+                slabs[slab] = ByteBuffer.allocateDirect(slabFrames * pageSize);
+            }
+            return frame;
+        }
+
+        // CLOCK: evict the first frame which has not been referenced since the hand last passed it
+        while (true) {
+            final int frame = clockHand;
+            clockHand = (clockHand + 1) % frameCount;
+            if (referenced[frame]) {
+                referenced[frame] = false;
+            } else {
+                index.remove(frameKeys[frame]);
+                evictions++;
+                return frame;
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void releaseFrame(final int frame) {
+        index.remove(frameKeys[frame]);
+        frameKeys[frame] = NO_KEY;
+        referenced[frame] = false;
+        freeFrames[freeFrameCount++] = frame;
+    }
+
+    @GuardedBy("this")
+    private ByteBuffer slab(final int frame) {
+        return slabs[frame / framesPerSlab];
+    }
+
+    private int slabOffset(final int frame) {
+        return (frame % framesPerSlab) * pageSize;
+    }
+
+    private static long key(final int fileId, final long pageNum) {
+        return (((long) fileId) << PAGE_NUM_BITS) | pageNum;
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.storage.CacheManager;
+import org.exist.util.hashtable.SequencedLongHashMap;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A scan resistant, thread-safe cache implementing the 2Q replacement policy
+ * (Johnson and Shasha, "2Q: A Low Overhead High Performance Buffer Management
+ * Replacement Algorithm", VLDB 1994).
+ *
+ * Objects which are added for the first time enter a small FIFO queue (A1in).
+ * Only objects which are referenced again after they have been evicted from
+ * that queue, i.e. whose key is still remembered in the ghost queue (A1out),
+ * are admitted to the main LRU queue (Am). A large scan therefore only cycles
+ * through A1in, and does not evict the frequently used objects held in Am.
+ * Inner B+-tree pages ({@link BTreeCacheable#isInnerPage()}) are always
+ * admitted straight to Am, as they are needed by every lookup.
+ *
+ * The cache is split into a number of segments by key, each segment is an
+ * independent 2Q cache guarded by its own lock, so that concurrent accesses
+ * to different pages do not contend with each other.
+ *
+ * @param <T> The type that implements {@link Cacheable}
+ */
+@ThreadSafe
+public class TwoQueueCache<T extends Cacheable> implements Cache<T> {
+    private final static Logger LOG = LogManager.getLogger(TwoQueueCache.class);
+
+    /**
+     * The maximum number of segments.
+     */
+    static final int MAX_SEGMENTS = 16;
+
+    /**
+     * The minimum number of objects per segment,
+     * used to limit the number of segments of small caches.
+     */
+    static final int MIN_SEGMENT_SIZE = 8;
+
+    /**
+     * The share of a segment which is used for the A1in queue.
+     */
+    static final double IN_QUEUE_RATIO = 0.25;
+
+    /**
+     * The number of keys remembered in the A1out queue,
+     * as a share of the segment size.
+     */
+    static final double OUT_QUEUE_RATIO = 0.5;
+
+    private final static Object DUMMY = new Object();
+
+    private final String name;
+    private final CacheType type;
+    private final double growthFactor;
+    private final Segment<T>[] segments;
+    private final int segmentMask;
+    private volatile int max;
+    private volatile CacheManager cacheManager = null;
+    private int hitsOld = -1;
+
+    @SuppressWarnings("unchecked")
+    public TwoQueueCache(final String name, final int size, final double growthFactor, final double growthThreshold, final CacheType type) {
+        this.name = name;
+        this.type = type;
+        this.growthFactor = growthFactor;
+        this.max = size;
+
+        final int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, size / MIN_SEGMENT_SIZE)));
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentSize(size, segmentCount, i), growthThreshold);
+        }
+    }
+
+    /**
+     * Distributes the size of the cache over its segments.
+     */
+    private static int segmentSize(final int size, final int segmentCount, final int segment) {
+        final int segmentSize = size / segmentCount + (segment < size % segmentCount ? 1 : 0);
+        return Math.max(2, segmentSize);
+    }
+
+    private Segment<T> segmentFor(final long key) {
+        int h = Long.hashCode(key);
+        h ^= (h >>> 16);
+        h *= 0x45d9f3b;
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CacheType getType() {
+        return type;
+    }
+
+    @Override
+    public void add(final T item) {
+        add(item, 1);
+    }
+
+    @Override
+    public void add(final T item, final int initialRefCount) {
+        final Segment<T> segment = segmentFor(item.getKey());
+        final boolean resizeNeeded;
+        segment.lock.lock();
+        try {
+            resizeNeeded = segment.add(item, growthFactor > 1.0);
+        } finally {
+            segment.lock.unlock();
+        }
+
+        // NOTE: must not hold a segment lock, as the cache manager may call resize
+        final CacheManager manager = cacheManager;
+        if (resizeNeeded && manager != null) {
+            manager.requestMem(this);
+        }
+    }
+
+    @Override
+    public T get(final T item) {
+        return get(item.getKey());
+    }
+
+    @Override
+    public T get(final long key) {
+        final Segment<T> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(final T item) {
+        final Segment<T> segment = segmentFor(item.getKey());
+        segment.lock.lock();
+        try {
+            segment.remove(item.getKey());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasDirtyItems() {
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                if (hasDirtyItems(segment.in) || hasDirtyItems(segment.main)) {
+                    return true;
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    private static <T extends Cacheable> boolean hasDirtyItems(final SequencedLongHashMap<T> queue) {
+        final Iterator<T> iterator = queue.valueIterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean flush() {
+        boolean flushed = false;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                flushed = flush(segment.in) | flushed;
+                flushed = flush(segment.main) | flushed;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return flushed;
+    }
+
+    private static <T extends Cacheable> boolean flush(final SequencedLongHashMap<T> queue) {
+        boolean flushed = false;
+        final Iterator<T> iterator = queue.valueIterator();
+        while (iterator.hasNext()) {
+            final T cacheable = iterator.next();
+            if (cacheable.isDirty()) {
+                flushed = flushed | cacheable.sync(false);
+            }
+        }
+        return flushed;
+    }
+
+    @Override
+    public int getBuffers() {
+        return max;
+    }
+
+    @Override
+    public double getGrowthFactor() {
+        return growthFactor;
+    }
+
+    @Override
+    public void resize(final int newSize) {
+        for (int i = 0; i < segments.length; i++) {
+            final Segment<T> segment = segments[i];
+            segment.lock.lock();
+            try {
+                segment.resize(segmentSize(newSize, segments.length, i));
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        max = newSize;
+    }
+
+    @Override
+    public void setCacheManager(final CacheManager manager) {
+        this.cacheManager = manager;
+    }
+
+    @Override
+    public int getUsedBuffers() {
+        int used = 0;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                used += segment.in.size() + segment.main.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return used;
+    }
+
+    @Override
+    public int getHits() {
+        int hits = 0;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                hits += segment.accounting.getHits();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int getFails() {
+        int misses = 0;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                misses += segment.accounting.getMisses();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return misses;
+    }
+
+    @Override
+    public int getEvictions() {
+        int evictions = 0;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                evictions += segment.accounting.getEvictions();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return evictions;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public int getLoad() {
+        final int hits = getHits();
+        if (hitsOld == 0) {
+            hitsOld = hits;
+            return Integer.MAX_VALUE;
+        }
+        final int load = hits - hitsOld;
+        hitsOld = hits;
+        return load;
+    }
+
+    /**
+     * A single 2Q cache, which holds the objects
+     * for a subset of the keys.
+     */
+    private static final class Segment<T extends Cacheable> {
+        final ReentrantLock lock = new ReentrantLock();
+
+        /** A1in: FIFO of objects which have been referenced once */
+        @GuardedBy("lock") final SequencedLongHashMap<T> in;
+
+        /** A1out: FIFO of the keys of objects which were evicted from A1in */
+        @GuardedBy("lock") final SequencedLongHashMap<Object> out;
+
+        /** Am: LRU of objects which have been referenced more than once */
+        @GuardedBy("lock") final SequencedLongHashMap<T> main;
+
+        @GuardedBy("lock") final Accounting accounting;
+        @GuardedBy("lock") int size;
+        @GuardedBy("lock") int inSize;
+        @GuardedBy("lock") int outSize;
+
+        Segment(final int size, final double growthThreshold) {
+            this.in = new SequencedLongHashMap<>(size);
+            this.out = new SequencedLongHashMap<>(size);
+            this.main = new SequencedLongHashMap<>(size * 2);
+            this.accounting = new Accounting(growthThreshold);
+            setSize(size);
+        }
+
+        private void setSize(final int size) {
+            this.size = size;
+            this.inSize = Math.max(1, (int) (size * IN_QUEUE_RATIO));
+            this.outSize = Math.max(1, (int) (size * OUT_QUEUE_RATIO));
+            accounting.setTotalSize(size);
+        }
+
+        @Nullable T get(final long key) {
+            T cached = main.get(key);
+            if (cached != null) {
+                // move to the most recently used position
+                main.put(key, cached);
+            } else {
+                // NOTE: a reference to an object in A1in does not move it, see 2Q
+                cached = in.get(key);
+            }
+
+            if (cached == null) {
+                accounting.missesIncrement();
+            } else {
+                accounting.hitIncrement();
+            }
+            return cached;
+        }
+
+        /**
+         * Adds an object to the segment, evicting other objects if needed.
+         *
+         * @return true if the cache should be resized
+         */
+        boolean add(final T item, final boolean canGrow) {
+            final long key = item.getKey();
+
+            if (main.get(key) != null) {
+                main.put(key, item);
+                return false;
+            }
+
+            final T inItem = in.get(key);
+            if (inItem != null) {
+                if (inItem != item) {
+                    in.put(key, item);
+                }
+                return false;
+            }
+
+            if (out.remove(key) != null
+                    || (item instanceof BTreeCacheable && ((BTreeCacheable) item).isInnerPage())) {
+                main.put(key, item);
+            } else {
+                in.put(key, item);
+            }
+
+            boolean resizeNeeded = false;
+            while (in.size() + main.size() > size) {
+                if (!evictOne(item)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Unable to evict an entry, all entries are in use");
+                    }
+                    break;
+                }
+                accounting.replacedPage(item);
+                resizeNeeded |= canGrow && accounting.resizeNeeded();
+            }
+            return resizeNeeded;
+        }
+
+        void remove(final long key) {
+            if (main.remove(key) == null) {
+                in.remove(key);
+            }
+        }
+
+        void resize(final int newSize) {
+            setSize(newSize);
+            while (in.size() + main.size() > size) {
+                if (!evictOne(null)) {
+                    break;
+                }
+            }
+            while (out.size() > outSize) {
+                out.removeFirst();
+            }
+            accounting.reset();
+        }
+
+        /**
+         * Evicts a single object, from A1in if it has grown beyond its
+         * share of the segment, otherwise the least recently used object
+         * from Am.
+         *
+         * @param exclude an object which must not be evicted, or null
+         *
+         * @return true if an object was evicted, false if all objects are in use
+         */
+        private boolean evictOne(@Nullable final T exclude) {
+            if (in.size() > inSize || main.size() == 0) {
+                return evictFromIn(exclude) || evictFirst(main, exclude) != null;
+            } else {
+                return evictFirst(main, exclude) != null || evictFromIn(exclude);
+            }
+        }
+
+        private boolean evictFromIn(@Nullable final T exclude) {
+            final T evicted = evictFirst(in, exclude);
+            if (evicted == null) {
+                return false;
+            }
+
+            // remember the key, so that it is admitted to Am if it is referenced again
+            out.put(evicted.getKey(), DUMMY);
+            if (out.size() > outSize) {
+                out.removeFirst();
+            }
+            return true;
+        }
+
+        /**
+         * Evicts the first object in the queue which may be unloaded.
+         */
+        private @Nullable T evictFirst(final SequencedLongHashMap<T> queue, @Nullable final T exclude) {
+            final Iterator<T> iterator = queue.valueIterator();
+            while (iterator.hasNext()) {
+                final T cached = iterator.next();
+                if ((exclude == null || cached.getKey() != exclude.getKey()) && cached.allowUnload()) {
+                    cached.sync(true);
+                    queue.remove(cached.getKey());
+                    return cached;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -64,7 +65,6 @@ import org.exist.storage.btree.IndexQuery;
 import org.exist.storage.btree.Value;
 import org.exist.storage.cache.Cache;
 import org.exist.storage.cache.Cacheable;
-import org.exist.storage.cache.LRUCache;
 import org.exist.storage.journal.JournalException;
 import org.exist.storage.journal.LogEntryTypes;
 import org.exist.storage.journal.Loggable;
@@ -112,6 +112,9 @@ import org.w3c.dom.Node;
  * The upper two bits of the tuple id are used to indicate the type of the record
  * (see {@link org.exist.storage.dom.ItemId}).
  * 
+ * The data of character data nodes may be stored compressed
+ * (see {@link org.exist.storage.dom.RecordCompression}).
+ * 
  * @author <a href="mailto:wolfgang@exist-db.org">Wolfgang Meier</a>
  */
 public class DOMFile extends BTree implements Lockable {
@@ -164,7 +167,8 @@ public class DOMFile extends BTree implements Lockable {
         LogEntryTypes.addEntryType(LOG_UPDATE_LINK, UpdateLinkLoggable::new);
     }
 
-    public static final short FILE_FORMAT_VERSION_ID = 10;
+    public static final short FILE_FORMAT_VERSION_ID = 11;
+    public static final short LEGACY_FILE_FORMAT_VERSION_ID = 10;
 
     private final LockManager lockManager;
 
@@ -188,16 +192,18 @@ public class DOMFile extends BTree implements Lockable {
 
     private final AddValueLoggable addValueLog = new AddValueLoggable();
 
+    private final RecordCompression compression;
+
     public DOMFile(final BrokerPool pool, final byte id, final Path dataDir, final Configuration config) throws DBException {
         super(pool, id, FILE_FORMAT_VERSION_ID, true, pool.getCacheManager());
         this.lockManager = pool.getLockManager();
         this.pages = new Reference2LongOpenHashMap<>(64);
         this.pages.defaultReturnValue(NO_PAGE);
+        this.compression = config.getProperty(BrokerPool.PROPERTY_DOM_COMPRESSION, BrokerPool.DEFAULT_DOM_COMPRESSION);
         fileHeader = (BTreeFileHeader)getFileHeader();
         fileHeader.setPageCount(0);
         fileHeader.setTotalCount(0);
-        dataCache = new LRUCache<>(getFileName(), 256, 0.0, 1.0, Cache.CacheType.DATA);
-        cacheManager.registerCache(dataCache);
+        dataCache = cacheManager.newDataCache(getFileName(), 256, 0.0, 1.0);
         final Path file = dataDir.resolve(getFileName());
         setFile(file);
         if (exists()) {
@@ -208,6 +214,8 @@ public class DOMFile extends BTree implements Lockable {
             }
             create();
         }
+        // the page size is only known once the file has been opened
+        cacheManager.registerCache(dataCache, fileHeader.getPageSize());
         config.setProperty(getConfigKeyForFile(), this);
     }
 
@@ -267,7 +275,7 @@ public class DOMFile extends BTree implements Lockable {
      * @throws DBException   Description of the Exception
      */
     private boolean open() throws DBException {
-        return super.open(FILE_FORMAT_VERSION_ID);
+        return super.open(FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID);
     }
 
     public void closeDocument() {
@@ -332,13 +340,28 @@ public class DOMFile extends BTree implements Lockable {
      * @throws ReadOnlyException if the DOM file is read-only
      */
     public long add(final Txn transaction, final byte[] value) throws ReadOnlyException {
+        return add(transaction, value, (RecordCompression) null);
+    }
+
+    /**
+     * Append a value to the current page, see {@link #add(Txn, byte[])}.
+     *
+     * @param transaction the database transaction
+     * @param node the value to append
+     * @param compression the compression of the value, or null for the compression configured for the database
+     * @return the virtual storage address of the value
+     *
+     * @throws ReadOnlyException if the DOM file is read-only
+     */
+    public long add(final Txn transaction, final byte[] node, @Nullable final RecordCompression compression) throws ReadOnlyException {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
 
-        if (value == null || value.length == 0) {
+        if (node == null || node.length == 0) {
             return KEY_NOT_FOUND;
         }
+        final byte[] value = (compression != null ? compression : this.compression).compress(node);
 
         // overflow value?
         if (value.length + LENGTH_TID + LENGTH_DATA_LENGTH > fileHeader.getWorkSize()) {
@@ -506,6 +529,22 @@ public class DOMFile extends BTree implements Lockable {
      * @return the storage address pointer
      */
     public long insertAfter(final Txn transaction, final DocumentImpl doc, final Value key, final byte[] value) {
+        return insertAfter(transaction, doc, key, value, null);
+    }
+
+    /**
+     * Insert a new node after the specified node, see {@link #insertAfter(Txn, DocumentImpl, Value, byte[])}.
+     *
+     * @param transaction the database transaction
+     * @param doc the document
+     * @param key the key
+     * @param value the value
+     * @param compression the compression of the value, or null for the compression configured for the database
+     *
+     * @return the storage address pointer
+     */
+    public long insertAfter(final Txn transaction, final DocumentImpl doc, final Value key, final byte[] value,
+            @Nullable final RecordCompression compression) {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
@@ -515,7 +554,7 @@ public class DOMFile extends BTree implements Lockable {
                 LOG.warn("Couldn't find the value");
                 return KEY_NOT_FOUND;
             }
-            return insertAfter(transaction, doc, address, value);
+            return insertAfter(transaction, doc, address, value, compression);
         } catch (final BTreeException e) {
             LOG.warn("key not found", e);
         } catch (final IOException e) {
@@ -539,10 +578,29 @@ public class DOMFile extends BTree implements Lockable {
      *
      * @return the storage address pointer
      */
-    public long insertAfter(final Txn transaction, final DocumentImpl doc, final long address, byte[] value) {
+    public long insertAfter(final Txn transaction, final DocumentImpl doc, final long address, final byte[] value) {
+        return insertAfter(transaction, doc, address, value, null);
+    }
+
+    /**
+     * Insert a new node after the node located at the specified address,
+     * see {@link #insertAfter(Txn, DocumentImpl, long, byte[])}.
+     *
+     * @param transaction the database transaction
+     * @param doc       the document to which the new node belongs.
+     * @param address   the storage address of the node after which the
+     *                  new value should be inserted.
+     * @param value     the value of the new node.
+     * @param compression the compression of the value, or null for the compression configured for the database
+     *
+     * @return the storage address pointer
+     */
+    public long insertAfter(final Txn transaction, final DocumentImpl doc, final long address, byte[] value,
+            @Nullable final RecordCompression compression) {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
+        value = (compression != null ? compression : this.compression).compress(value);
         // check if we need an overflow page
         boolean isOverflow = false;
         if (LENGTH_TID + LENGTH_DATA_LENGTH + value.length > fileHeader.getWorkSize()) {
@@ -1099,6 +1157,9 @@ public class DOMFile extends BTree implements Lockable {
                 } else if (ItemId.isRelocated(tupleID)) {
                     //TODO : output to buffer ?
                     pos += LENGTH_ORIGINAL_LOCATION;
+                } else if (RecordCompression.isCompressed(page.data[pos])) {
+                    buf.append("[compressed ").append(RecordCompression.of(page.data[pos]))
+                        .append(": ").append(valueLength).append(" bytes] ");
                 } else {
                     buf.append("[");
                     switch (Signatures.getType(page.data[pos])) {
@@ -1494,7 +1555,7 @@ public class DOMFile extends BTree implements Lockable {
         if (ItemId.isRelocated(rec.getTupleID())) {
             rec.offset += LENGTH_ORIGINAL_LOCATION;
         }
-        final Value value;
+        Value value;
         if (vlen == OVERFLOW) {
             final long pageNo = ByteConversion.byteToLong(rec.getPage().data, rec.offset);
             final byte[] data = getOverflowValue(pageNo);
@@ -1502,10 +1563,44 @@ public class DOMFile extends BTree implements Lockable {
         } else {
             value = new Value(rec.getPage().data, rec.offset, vlen);
         }
+        try {
+            value = RecordCompression.decompress(value);
+        } catch (final IOException e) {
+            LOG.error("Failed to decompress the node at {}: {}", StorageAddress.toString(pointer), e.getMessage(), e);
+            //TODO : throw exception ?
+            return null;
+        }
         value.setAddress(pointer);
         return value;
     }
 
+    /**
+     * Get the compression of a stored record.
+     *
+     * @param pointer the storage address of the record
+     *
+     * @return the compression of the record, or null if the record was not found
+     */
+    public @Nullable RecordCompression getCompression(final long pointer) {
+        if(LOG.isDebugEnabled() && !lockManager.isBtreeLocked(getLockName())) {
+            LOG.debug("The file doesn't own a lock");
+        }
+        final RecordPos rec = findRecord(pointer);
+        if (rec == null) {
+            return null;
+        }
+        final short vlen = ByteConversion.byteToShort(rec.getPage().data, rec.offset);
+        rec.offset += LENGTH_DATA_LENGTH;
+        if (ItemId.isRelocated(rec.getTupleID())) {
+            rec.offset += LENGTH_ORIGINAL_LOCATION;
+        }
+        if (vlen == OVERFLOW) {
+            final long pageNo = ByteConversion.byteToLong(rec.getPage().data, rec.offset);
+            return RecordCompression.of(getOverflowValue(pageNo)[0]);
+        }
+        return RecordCompression.of(rec.getPage().data[rec.offset]);
+    }
+
     @Override
     protected void dumpValue(final Writer writer, final Value key, final int status) throws IOException {
         if (status == BRANCH) {
@@ -1540,10 +1635,26 @@ public class DOMFile extends BTree implements Lockable {
      */
     public long put(final Txn transaction, final Value key, final byte[] value)
             throws ReadOnlyException {
+        return put(transaction, key, value, null);
+    }
+
+    /**
+     * Put a new key/value pair, see {@link #put(Txn, Value, byte[])}.
+     *
+     * @param transaction the database transaction
+     * @param key the key
+     * @param value the value
+     * @param compression the compression of the value, or null for the compression configured for the database
+     * @return pointer to the address
+     *
+     * @throws ReadOnlyException if the DOM file is read-only
+     */
+    public long put(final Txn transaction, final Value key, final byte[] value,
+            @Nullable final RecordCompression compression) throws ReadOnlyException {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
-        final long pointer = add(transaction, value);
+        final long pointer = add(transaction, value, compression);
         try {
             addValue(transaction, key, pointer);
         } catch (final BTreeException | IOException e) {
@@ -1898,11 +2009,11 @@ public class DOMFile extends BTree implements Lockable {
      *
      * @param transaction the database transaction
      * @param pointer pointer to the existing value
-     * @param value the new value
+     * @param node the new value
      *
      * @throws ReadOnlyException if the DOM file is read-only
      */
-    public void update(final Txn transaction, final long pointer, final byte[] value) throws ReadOnlyException {
+    public void update(final Txn transaction, final long pointer, final byte[] node) throws ReadOnlyException {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLockedForWrite(getLockName())) {
             LOG.debug("The file doesn't own a write lock");
         }
@@ -1912,6 +2023,9 @@ public class DOMFile extends BTree implements Lockable {
         if (ItemId.isRelocated(recordPos.getTupleID())) {
             recordPos.offset += LENGTH_ORIGINAL_LOCATION;
         }
+        // a compressed record is replaced by a record compressed in the same way
+        final byte[] value = valueLength == OVERFLOW ? node :
+            RecordCompression.of(recordPos.getPage().data[recordPos.offset]).compress(node);
         if (value.length < valueLength) {
             // value is smaller than before
             throw new IllegalStateException("Value too short. Expected: "
@@ -2064,6 +2178,22 @@ public class DOMFile extends BTree implements Lockable {
             readOffset = 0;
             inOverflow = true;
         }
+        if (RecordCompression.isCompressed(data[readOffset])) {
+            if (!inOverflow) {
+                //Like an overflow value, we position the offset *after* the next TID
+                rec.offset += realLen + LENGTH_TID;
+                inOverflow = true;
+            }
+            try {
+                data = RecordCompression.decompress(data, readOffset, realLen);
+            } catch (final IOException e) {
+                LOG.error("Failed to decompress the node on page {}: {}", rec.getPage().getPageNum(), e.getMessage(), e);
+                //TODO : throw exception ? -pb
+                return;
+            }
+            realLen = data.length;
+            readOffset = 0;
+        }
         // check the type of the node
         final short type = Signatures.getType(data[readOffset]);
         readOffset += StoredNode.LENGTH_SIGNATURE_LENGTH;
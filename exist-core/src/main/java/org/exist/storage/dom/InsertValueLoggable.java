@@ -25,7 +25,6 @@ import java.nio.ByteBuffer;
 
 import org.exist.storage.DBBroker;
 import org.exist.storage.NativeBroker;
-import org.exist.storage.journal.AbstractLoggable;
 import org.exist.storage.journal.LogException;
 import org.exist.storage.txn.Txn;
 
@@ -34,7 +33,7 @@ import org.exist.storage.txn.Txn;
  *
  * @author wolf
  */
-public class InsertValueLoggable extends AbstractLoggable {
+public class InsertValueLoggable extends AbstractDOMLoggable {
     private DOMFile domDb;
     protected byte isOverflow;
     protected long pageNum;
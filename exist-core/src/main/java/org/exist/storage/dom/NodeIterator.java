@@ -181,7 +181,10 @@ public final class NodeIterator implements INodeIterator {
                         final long overflow = ByteConversion.byteToLong(page.data, offset);
                         offset += DOMFile.LENGTH_OVERFLOW_LOCATION;
                         try {
-                            final byte[] overflowValue = db.getOverflowValue(overflow);
+                            byte[] overflowValue = db.getOverflowValue(overflow);
+                            if (RecordCompression.isCompressed(overflowValue[0])) {
+                                overflowValue = RecordCompression.decompress(overflowValue, 0, overflowValue.length);
+                            }
                             nextNode = StoredNode.deserialize(overflowValue, 0, overflowValue.length,
                                 doc, useNodePool);
                         } catch(final Exception e) {
@@ -191,7 +194,12 @@ public final class NodeIterator implements INodeIterator {
                     //Normal node
                     } else {
                         try {
-                            nextNode = StoredNode.deserialize(page.data, offset, vlen, doc, useNodePool);
+                            if (RecordCompression.isCompressed(page.data[offset])) {
+                                final byte[] data = RecordCompression.decompress(page.data, offset, vlen);
+                                nextNode = StoredNode.deserialize(data, 0, data.length, doc, useNodePool);
+                            } else {
+                                nextNode = StoredNode.deserialize(page.data, offset, vlen, doc, useNodePool);
+                            }
                             offset += vlen;
                         } catch(final Exception e) {
                             LOG.error("Error while deserializing node: {}", e.getMessage(), e);
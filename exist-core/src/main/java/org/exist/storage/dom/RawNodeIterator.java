@@ -155,14 +155,14 @@ public class RawNodeIterator implements IRawNodeIterator {
                     offset += DOMFile.LENGTH_OVERFLOW_LOCATION;
                     try {
                         final byte[] odata = db.getOverflowValue(overflow);
-                        nextValue = new Value(odata);
+                        nextValue = RecordCompression.decompress(new Value(odata));
                     } catch(final Exception e) {
                         LOG.error("Exception while loading overflow value: {}; originating page: {}", e.getMessage(), page.page.getPageInfo());
                     }
                     // normal node
                 } else {
                     try {
-                        nextValue = new Value(page.data, offset, valueLength);
+                        nextValue = RecordCompression.decompress(new Value(page.data, offset, valueLength));
                         offset += valueLength;
                     } catch(final Exception e) {
                         LOG.error("Error while deserializing node: {}", e.getMessage(), e);
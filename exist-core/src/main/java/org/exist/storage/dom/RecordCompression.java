@@ -0,0 +1,258 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.dom;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import org.exist.storage.Signatures;
+import org.exist.storage.btree.Value;
+import org.exist.util.ByteConversion;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the records of character data nodes (text, CDATA sections,
+ * comments and processing instructions) in the dom.dbx persistent DOM store.
+ *
+ * A compressed record replaces the node type bits of the signature byte of the
+ * serialized node with a value which is not used by any node type:
+ *
+ *  | 0xE0 + compression id | length of uncompressed data | compressed data |
+ *
+ * The length uses four bytes (int). As the stored record is opaque to the page
+ * management of {@link DOMFile}, moving records between pages and recovery work
+ * unchanged on compressed records. Records are decompressed where they are read,
+ * i.e. by {@link DOMFile#get(long)}, {@link NodeIterator}, {@link RawNodeIterator}
+ * and {@link DOMFile#getNodeValue(org.exist.storage.DBBroker, org.exist.dom.persistent.IStoredNode, boolean)}.
+ *
+ * @see org.exist.storage.dom.DOMFile
+ */
+public enum RecordCompression {
+
+    /**
+     * Records are stored as they are.
+     */
+    NONE((byte) 0x0),
+
+    /**
+     * LZ4, which favours the speed of decompression over the ratio.
+     */
+    LZ4((byte) 0x1),
+
+    /**
+     * Deflate, which favours the ratio over the speed of decompression.
+     */
+    DEFLATE((byte) 0x2);
+
+    static final byte COMPRESSED_MASK = (byte) 0xE0;
+    static final byte ID_MASK = (byte) 0x1F;
+
+    static final int LENGTH_SIGNATURE = 1;
+    static final int LENGTH_UNCOMPRESSED_LENGTH = 4; //sizeof int
+    static final int LENGTH_HEADER = LENGTH_SIGNATURE + LENGTH_UNCOMPRESSED_LENGTH;
+
+    /**
+     * Records shorter than this are not worth compressing.
+     */
+    static final int MIN_LENGTH = 64;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final byte id;
+
+    RecordCompression(final byte id) {
+        this.id = id;
+    }
+
+    /**
+     * Parse a compression from its configuration value.
+     *
+     * @param value the configuration value, e.g. "none", "lz4" or "deflate".
+     *
+     * @return the compression, or null if the value is not recognised.
+     */
+    public static @Nullable RecordCompression fromString(@Nullable final String value) {
+        if (value == null) {
+            return null;
+        }
+        for (final RecordCompression compression : values()) {
+            if (compression.name().equalsIgnoreCase(value.trim())) {
+                return compression;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compress the serialized node if it is a character data node,
+     * and the compressed record is smaller.
+     *
+     * @param value the serialized node
+     *
+     * @return the record to store, which may be the passed value
+     */
+    byte[] compress(final byte[] value) {
+        if (this == NONE || value.length < MIN_LENGTH || !isCharacterData(value[0])) {
+            return value;
+        }
+
+        final byte[] record;
+        final int len;
+        switch (this) {
+            case LZ4: {
+                final LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+                record = new byte[LENGTH_HEADER + compressor.maxCompressedLength(value.length)];
+                len = compressor.compress(value, 0, value.length, record, LENGTH_HEADER, record.length - LENGTH_HEADER);
+                break;
+            }
+
+            case DEFLATE: {
+                // the output is not allowed to grow, a record which does not compress is stored as is
+                record = new byte[value.length];
+                final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                try {
+                    deflater.setInput(value);
+                    deflater.finish();
+                    len = deflater.deflate(record, LENGTH_HEADER, record.length - LENGTH_HEADER);
+                    if (!deflater.finished()) {
+                        return value;
+                    }
+                } finally {
+                    deflater.end();
+                }
+                break;
+            }
+
+            default:
+                return value;
+        }
+
+        if (LENGTH_HEADER + len >= value.length) {
+            return value;
+        }
+        record[0] = (byte) (COMPRESSED_MASK | id);
+        ByteConversion.intToByte(value.length, record, LENGTH_SIGNATURE);
+        final byte[] compressed = new byte[LENGTH_HEADER + len];
+        System.arraycopy(record, 0, compressed, 0, compressed.length);
+        return compressed;
+    }
+
+    /**
+     * Check if a stored record is compressed.
+     *
+     * @param signature the first byte of the record
+     *
+     * @return true if the record is compressed
+     */
+    static boolean isCompressed(final byte signature) {
+        return (signature & COMPRESSED_MASK) == COMPRESSED_MASK;
+    }
+
+    /**
+     * Get the compression of a stored record.
+     *
+     * @param signature the first byte of the record
+     *
+     * @return the compression, {@link #NONE} if the record is not compressed
+     */
+    static RecordCompression of(final byte signature) {
+        if (!isCompressed(signature)) {
+            return NONE;
+        }
+        final byte id = (byte) (signature & ID_MASK);
+        for (final RecordCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Decompress a stored record.
+     *
+     * @param data the data holding the record
+     * @param offset the offset of the record in data
+     * @param len the length of the stored record
+     *
+     * @return the serialized node
+     *
+     * @throws IOException if the record cannot be decompressed
+     */
+    static byte[] decompress(final byte[] data, final int offset, final int len) throws IOException {
+        final int uncompressedLen = ByteConversion.byteToInt(data, offset + LENGTH_SIGNATURE);
+        final byte[] value = new byte[uncompressedLen];
+        switch (of(data[offset])) {
+            case LZ4:
+                try {
+                    LZ4_FACTORY.fastDecompressor().decompress(data, offset + LENGTH_HEADER, value, 0, uncompressedLen);
+                } catch (final LZ4Exception e) {
+                    throw new IOException("Corrupt LZ4 record: " + e.getMessage(), e);
+                }
+                return value;
+
+            case DEFLATE:
+                final Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data, offset + LENGTH_HEADER, len - LENGTH_HEADER);
+                    final int read = inflater.inflate(value);
+                    if (read != uncompressedLen) {
+                        throw new IOException("Corrupt Deflate record: expected " + uncompressedLen + " bytes, got " + read);
+                    }
+                } catch (final DataFormatException e) {
+                    throw new IOException("Corrupt Deflate record: " + e.getMessage(), e);
+                } finally {
+                    inflater.end();
+                }
+                return value;
+
+            default:
+                throw new IOException("Unknown record compression: " + (data[offset] & ID_MASK));
+        }
+    }
+
+    /**
+     * Decompress a value read from the store, if it is compressed.
+     *
+     * @param value the stored value
+     *
+     * @return the value of the serialized node, which may be the passed value
+     *
+     * @throws IOException if the value cannot be decompressed
+     */
+    static Value decompress(final Value value) throws IOException {
+        if (value.getLength() == 0 || !isCompressed(value.data()[value.start()])) {
+            return value;
+        }
+        return new Value(decompress(value.data(), value.start(), value.getLength()));
+    }
+
+    private static boolean isCharacterData(final byte signature) {
+        final int type = (signature & 0xE0) >>> 5;
+        return type == Signatures.Char || type == Signatures.Cdata || type == Signatures.Comm || type == Signatures.Proc;
+    }
+}
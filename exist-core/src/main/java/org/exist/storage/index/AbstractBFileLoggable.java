@@ -68,6 +68,11 @@ public abstract class AbstractBFileLoggable extends AbstractLoggable {
         return fileId;
     }
 
+    @Override
+    public int getRedoFileId() {
+        return fileId & 0xFF;
+    }
+
     @Override
     public String dump() {
         return super.dump() + " [BFile]";
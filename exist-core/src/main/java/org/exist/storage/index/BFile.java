@@ -37,7 +37,6 @@ import org.exist.storage.btree.IndexQuery;
 import org.exist.storage.btree.Value;
 import org.exist.storage.cache.Cache;
 import org.exist.storage.cache.Cacheable;
-import org.exist.storage.cache.LRUCache;
 import org.exist.storage.io.VariableByteArrayInput;
 import org.exist.storage.io.VariableByteInput;
 import org.exist.storage.io.VariableByteOutputStream;
@@ -138,27 +137,39 @@ public class BFile extends BTree {
     protected final int minFree;
     protected final Cache<DataPage> dataCache;
     public final int fixedKeyLen = -1;
-    protected final int maxValueSize;
+    protected int maxValueSize;
 
 
     public BFile(final BrokerPool pool, final byte fileId, final short fileVersion, final boolean recoveryEnabled, final Path file, final DefaultCacheManager cacheManager,
             final double cacheGrowth, final double thresholdData) throws DBException {
+        this(pool, fileId, fileVersion, fileVersion, recoveryEnabled, file, cacheManager, cacheGrowth, thresholdData);
+    }
+
+    /**
+     * @param legacyFileVersion an older version of the file which can still be read,
+     *     see {@link #open(short, short)}
+     */
+    public BFile(final BrokerPool pool, final byte fileId, final short fileVersion, final short legacyFileVersion,
+            final boolean recoveryEnabled, final Path file, final DefaultCacheManager cacheManager,
+            final double cacheGrowth, final double thresholdData) throws DBException {
         super(pool, fileId, fileVersion, recoveryEnabled, cacheManager, file);
         lockManager = pool.getLockManager();
         fileHeader = (BFileHeader) getFileHeader();
-        dataCache = new LRUCache<>(FileUtils.fileName(file), 64, cacheGrowth, thresholdData, Cache.CacheType.DATA);
-        cacheManager.registerCache(dataCache);
+        dataCache = cacheManager.newDataCache(FileUtils.fileName(file), 64, cacheGrowth, thresholdData);
         minFree = PAGE_MIN_FREE;
-        maxValueSize = fileHeader.getWorkSize() / 2;
         
         if(exists()) {
-            open(fileVersion);
+            open(fileVersion, legacyFileVersion);
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Creating data file: {}", FileUtils.fileName(getFile()));
             }
             create();
         }
+
+        // NOTE: the page size is only known once the file has been opened
+        maxValueSize = fileHeader.getWorkSize() / 2;
+        cacheManager.registerCache(dataCache, fileHeader.getPageSize());
     }
 
     /**
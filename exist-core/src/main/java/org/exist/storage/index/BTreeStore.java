@@ -32,10 +32,19 @@ import java.nio.file.Path;
 public class BTreeStore extends BTree {
 
     public BTreeStore(final BrokerPool pool, final byte fileId, final short fileVersion, final boolean recoverEnabled, final Path file, final DefaultCacheManager cacheManager) throws DBException {
+        this(pool, fileId, fileVersion, fileVersion, recoverEnabled, file, cacheManager);
+    }
+
+    /**
+     * @param legacyFileVersion an older version of the file which can still be read,
+     *     see {@link #open(short, short)}
+     */
+    public BTreeStore(final BrokerPool pool, final byte fileId, final short fileVersion, final short legacyFileVersion,
+            final boolean recoverEnabled, final Path file, final DefaultCacheManager cacheManager) throws DBException {
         super(pool, fileId, fileVersion, recoverEnabled, cacheManager, file);
 
         if(exists()) {
-            open(fileVersion);
+            open(fileVersion, legacyFileVersion);
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Creating data file: {}", FileUtils.fileName(getFile()));
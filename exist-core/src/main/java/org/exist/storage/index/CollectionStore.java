@@ -42,7 +42,8 @@ import java.util.concurrent.ConcurrentLinkedDeque;
  */
 public class CollectionStore extends BFile {
 
-    public static final short FILE_FORMAT_VERSION_ID = 17;
+    public static final short FILE_FORMAT_VERSION_ID = 18;
+    public static final short LEGACY_FILE_FORMAT_VERSION_ID = 17;
 
     public static final String FILE_NAME = "collections.dbx";
     public static final String  FILE_KEY_IN_CONFIG = "db-connection.collections";
@@ -67,7 +68,7 @@ public class CollectionStore extends BFile {
      * @throws DBException if the collection store cannot be constructed.
      */
     public CollectionStore(BrokerPool pool, byte id, Path dataDir, Configuration config) throws DBException {
-        super(pool, id, FILE_FORMAT_VERSION_ID, true, dataDir.resolve(getFileName()),
+        super(pool, id, FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID, true, dataDir.resolve(getFileName()),
                 pool.getCacheManager(), 1.25, 0.03);
         config.setProperty(getConfigKeyForFile(), this);
     }
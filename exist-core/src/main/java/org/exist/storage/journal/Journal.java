@@ -24,6 +24,7 @@ package org.exist.storage.journal;
 import java.io.*;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
@@ -66,6 +67,11 @@ import static org.exist.util.ThreadUtils.newInstanceThread;
  * A buffer is used to temporarily buffer journal entries. To guarantee consistency, the buffer will be flushed
  * and the journal is synced after every commit or whenever a db page is written to disk.
  *
+ * When group commit is enabled, committing threads do not flush or sync the journal themselves, and so
+ * do not hold the journal monitor across a file sync. Instead they wait for a single flusher thread,
+ * which writes out the buffer, syncs the file once for the whole batch, and then wakes every committer
+ * whose LSN has been made durable.
+ *
  * Each journal file has the following format:
  *
  * <pre>{@code
@@ -158,6 +164,11 @@ public final class Journal implements Closeable {
      */
     final static boolean DEFAULT_SYNC_ON_COMMIT = true;
 
+    /**
+     * default group commit setting: false
+     */
+    final static boolean DEFAULT_GROUP_COMMIT = false;
+
     /**
      * default maximum journal size: 100 MB
      */
@@ -191,6 +202,13 @@ public final class Journal implements Closeable {
     //TODO: conf.xml refactoring <recovery sync-on-commit=""> => <journal sync-on-commit="">
     private final boolean syncOnCommit;
 
+    /**
+     * if set to true, commits are flushed and synced in batches by the group commit flusher thread
+     */
+    @ConfigurationFieldAsAttribute("group-commit")
+    //TODO: conf.xml refactoring <recovery group-commit=""> => <journal group-commit="">
+    private final boolean groupCommit;
+
     /**
      * the data directory where journal files are written to
      */
@@ -218,6 +236,27 @@ public final class Journal implements Closeable {
 
     private final XXHash64 xxHash64 = XXHashFactory.fastestInstance().hash64();
 
+    /**
+     * monitor for the group commit state, must never
+     * be held when acquiring the journal monitor
+     */
+    private final Object groupCommitMonitor = new Object();
+
+    /**
+     * set when a committer is waiting for the group commit flusher
+     */
+    @GuardedBy("groupCommitMonitor") private boolean groupCommitRequested = false;
+
+    /**
+     * true whilst the group commit flusher thread should keep running
+     */
+    @GuardedBy("groupCommitMonitor") private boolean groupCommitRunning = false;
+
+    /**
+     * the group commit flusher thread
+     */
+    @GuardedBy("this") private Thread groupCommitThread;
+
     /**
      * the current output channel
      * Only valid after switchFiles() was called at least once!
@@ -247,7 +286,7 @@ public final class Journal implements Closeable {
     /**
      * stores the current LSN of the last file sync on the file
      */
-    @GuardedBy("this") private Lsn lastSyncLsn = Lsn.LSN_INVALID;
+    @GuardedBy("groupCommitMonitor") private Lsn lastSyncLsn = Lsn.LSN_INVALID;
 
     /**
      * set to true while recovery is in progress
@@ -271,6 +310,11 @@ public final class Journal implements Closeable {
             LOG.debug("SyncOnCommit = {}", syncOnCommit);
         }
 
+        this.groupCommit = configuration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, DEFAULT_GROUP_COMMIT);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("GroupCommit = {}", groupCommit);
+        }
+
         final Optional<Path> logDir = Optional.ofNullable((Path) configuration.getProperty(PROPERTY_RECOVERY_JOURNAL_DIR));
         if (logDir.isPresent()) {
             Path f = logDir.get();
@@ -323,6 +367,15 @@ public final class Journal implements Closeable {
                     "eXist process. A lock file: " + fileLock.getFile().toAbsolutePath() + " is present in the " +
                     "log directory. Last access to the lock file: " + lastHeartbeat);
         }
+
+        if (groupCommit && syncOnCommit) {
+            synchronized (groupCommitMonitor) {
+                groupCommitRunning = true;
+            }
+            groupCommitThread = newInstanceThread(pool, "journal-group-commit", this::groupCommitLoop);
+            groupCommitThread.setDaemon(true);
+            groupCommitThread.start();
+        }
     }
 
     /**
@@ -400,7 +453,7 @@ public final class Journal implements Closeable {
      *
      * @param fsync forces all changes to disk if true and syncMode is set to SYNC_ON_COMMIT.
      */
-    public synchronized void flushToLog(final boolean fsync) {
+    public void flushToLog(final boolean fsync) {
         flushToLog(fsync, false);
     }
 
@@ -408,25 +461,49 @@ public final class Journal implements Closeable {
      * Flush the current buffer to disk. If fsync is true, a sync will
      * be called on the file to force all changes to disk.
      *
+     * When group commit is enabled, a call with {@code fsync} set (and {@code forceSync} not set)
+     * does not sync the file itself, but instead waits until the group commit flusher thread
+     * has synced the journal up to (at least) the last LSN written at the time of the call.
+     *
      * @param fsync     forces all changes to disk if true and syncMode is set to SYNC_ON_COMMIT.
      * @param forceSync force changes to disk even if syncMode doesn't require it.
      */
-    public synchronized void flushToLog(final boolean fsync, final boolean forceSync) {
-        if (inRecovery) {
-            return;
-        }
+    public void flushToLog(final boolean fsync, final boolean forceSync) {
+        final Lsn awaitLsn;
+
+        synchronized (this) {
+            if (inRecovery) {
+                return;
+            }
 
-        flushBuffer();
+            if (fsync && !forceSync && groupCommitThread != null) {
+                // the group commit flusher will write out the buffer and sync
+                awaitLsn = currentLsn;
 
-        try {
-            if (forceSync || (fsync && syncOnCommit && currentLsn.compareTo(lastSyncLsn) > 0)) {
-                sync();
-                lastSyncLsn = currentLsn;
+            } else {
+                awaitLsn = null;
+
+                flushBuffer();
+
+                try {
+                    if (forceSync || (fsync && syncOnCommit && currentLsn.compareTo(getLastSyncLsn()) > 0)) {
+                        sync();
+                        advanceLastSyncLsn(currentLsn);
+                    }
+                } catch (final IOException e) {
+                    LOG.error("Could not sync Journal to disk: {}", e.getMessage(), e);
+                }
             }
-        } catch (final IOException e) {
-            LOG.error("Could not sync Journal to disk: {}", e.getMessage(), e);
+
+            checkJournalSizeLimit();
         }
 
+        if (awaitLsn != null) {
+            awaitGroupCommit(awaitLsn);
+        }
+    }
+
+    private void checkJournalSizeLimit() {
         try {
             if (channel != null && channel.size() >= journalSizeLimit) {
                 pool.triggerCheckpoint();
@@ -436,6 +513,125 @@ public final class Journal implements Closeable {
         }
     }
 
+    private Lsn getLastSyncLsn() {
+        synchronized (groupCommitMonitor) {
+            return lastSyncLsn;
+        }
+    }
+
+    /**
+     * Records that the journal has been synced up to {@code lsn},
+     * and wakes any committers which are waiting on the group commit.
+     *
+     * @param lsn the LSN up to which the journal has been synced.
+     */
+    private void advanceLastSyncLsn(final Lsn lsn) {
+        synchronized (groupCommitMonitor) {
+            if (lsn.compareTo(lastSyncLsn) > 0) {
+                lastSyncLsn = lsn;
+            }
+            groupCommitMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks the calling thread until the group commit flusher
+     * has synced the journal up to (at least) {@code lsn}.
+     *
+     * @param lsn the LSN that must be durable before returning.
+     */
+    private void awaitGroupCommit(final Lsn lsn) {
+        boolean interrupted = false;
+        synchronized (groupCommitMonitor) {
+            while (groupCommitRunning && lsn.compareTo(lastSyncLsn) > 0) {
+                groupCommitRequested = true;
+                groupCommitMonitor.notifyAll();
+                try {
+                    groupCommitMonitor.wait();
+                } catch (final InterruptedException e) {
+                    // keep waiting, the commit is not yet durable
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            // restore interrupted state
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The body of the group commit flusher thread.
+     *
+     * Each iteration writes out everything that has been appended to the
+     * buffer so far, syncs the file once, and wakes all of the committers
+     * whose LSN is covered by that sync.
+     */
+    private void groupCommitLoop() {
+        while (true) {
+            synchronized (groupCommitMonitor) {
+                while (groupCommitRunning && !groupCommitRequested) {
+                    try {
+                        groupCommitMonitor.wait();
+                    } catch (final InterruptedException e) {
+                        // ignore, checked by the loop condition
+                    }
+                }
+                if (!groupCommitRunning) {
+                    return;
+                }
+                groupCommitRequested = false;
+            }
+
+            final FileChannel syncChannel;
+            final Lsn syncLsn;
+            synchronized (this) {
+                flushBuffer();
+                syncChannel = channel;
+                // without a journal file there is nothing to sync, so just release the committers
+                syncLsn = channel != null ? lastLsnWritten : currentLsn;
+            }
+
+            if (syncChannel != null) {
+                try {
+                    syncChannel.force(true);
+                } catch (final ClosedChannelException e) {
+                    // the journal file was switched or closed, which syncs it before closing
+                } catch (final IOException e) {
+                    LOG.error("Could not sync Journal to disk: {}", e.getMessage(), e);
+                }
+            }
+
+            advanceLastSyncLsn(syncLsn);
+        }
+    }
+
+    /**
+     * Stops the group commit flusher thread (if any), after
+     * releasing any committers which are still waiting on it.
+     */
+    private void stopGroupCommit() {
+        final Thread thread;
+        synchronized (this) {
+            thread = groupCommitThread;
+            groupCommitThread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+
+        synchronized (groupCommitMonitor) {
+            groupCommitRunning = false;
+            groupCommitMonitor.notifyAll();
+        }
+
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void sync() throws IOException {
         channel.force(true);
     }
@@ -719,7 +915,17 @@ public final class Journal implements Closeable {
      * @param txnId      the transaction id.
      * @param checkpoint true if a checkpoint should be written before shitdown
      */
-    public synchronized void shutdown(final long txnId, final boolean checkpoint) {
+    public void shutdown(final long txnId, final boolean checkpoint) {
+        // NOTE: must not hold the journal monitor, as the flusher thread needs it to finish
+        stopGroupCommit();
+
+        synchronized (this) {
+            shutdownJournal(txnId, checkpoint);
+        }
+    }
+
+    @GuardedBy("this")
+    private void shutdownJournal(final long txnId, final boolean checkpoint) {
         if (!initialised) {
             // no journal is initialized
             return;
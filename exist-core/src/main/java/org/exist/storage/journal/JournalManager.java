@@ -60,10 +60,9 @@ public class JournalManager implements BrokerPoolService {
     private static final Logger LOG = LogManager.getLogger(JournalManager.class);
 
     @GuardedBy("this") private Path journalDir;
-    @GuardedBy("this") private boolean groupCommits;
     // package-private accessibility for testing
-    @GuardedBy("this") Journal journal;
-    @GuardedBy("this") private boolean journallingDisabled = false;
+    volatile Journal journal;
+    private volatile boolean journallingDisabled = false;
     @GuardedBy("this") private boolean initialized = false;
 
     private final List<JournalListener> journalListeners = new CopyOnWriteArrayList<>();
@@ -72,10 +71,6 @@ public class JournalManager implements BrokerPoolService {
     public synchronized void configure(final Configuration configuration) {
         this.journalDir = (Path) Optional.ofNullable(configuration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR))
                 .orElse(configuration.getProperty(BrokerPool.PROPERTY_DATA_DIR));
-        this.groupCommits = configuration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, false);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("GroupCommits = {}", groupCommits);
-        }
     }
 
     @Override
@@ -104,7 +99,7 @@ public class JournalManager implements BrokerPoolService {
      *
      * @throws JournalException of the journal entry cannot be written
      */
-    public synchronized void journal(final Loggable loggable) throws JournalException {
+    public void journal(final Loggable loggable) throws JournalException {
         if (!journallingDisabled) {
             journal.writeToLog(loggable);
         }
@@ -120,12 +115,10 @@ public class JournalManager implements BrokerPoolService {
      *
      * @throws JournalException of the journal group cannot be written
      */
-    public synchronized void journalGroup(final Loggable loggable) throws JournalException {
+    public void journalGroup(final Loggable loggable) throws JournalException {
         if (!journallingDisabled) {
             journal.writeToLog(loggable);
-            if (!groupCommits) {
-                journal.flushToLog(true);
-            }
+            journal.flushToLog(true);
         }
     }
 
@@ -166,7 +159,7 @@ public class JournalManager implements BrokerPoolService {
      *
      * See {@link Journal#flushToLog(boolean, boolean)}.
      */
-    public synchronized void flush(final boolean fsync, final boolean forceSync) {
+    public void flush(final boolean fsync, final boolean forceSync) {
         journal.flushToLog(fsync, forceSync);
     }
 
@@ -192,7 +185,7 @@ public class JournalManager implements BrokerPoolService {
      *
      * @return the last written LSN
      */
-    public synchronized Lsn lastWrittenLsn() {
+    public Lsn lastWrittenLsn() {
         return journal.lastWrittenLsn();
     }
 
@@ -30,6 +30,12 @@ import java.nio.ByteBuffer;
  * @author wolf
  */
 public interface Loggable {
+
+    /**
+     * Returned by {@link #getRedoFileId()} for an entry whose redo
+     * is not confined to the pages of a single file.
+     */
+    int NO_FILE = -1;
     
 	/**
 	 * Returns the type id of the log entry. This is the type registered
@@ -93,6 +99,21 @@ public interface Loggable {
      */
     void redo() throws LogException;
     
+    /**
+     * Returns the id of the file whose pages are modified by {@link #redo()}.
+     *
+     * The {@link org.exist.storage.recovery.RecoveryManager} may redo the entries
+     * of different files concurrently, whilst the entries of the same file are
+     * always redone one after the other in the order of the journal. Entries
+     * which return {@link #NO_FILE} are redone once all of the entries which
+     * precede them have been redone.
+     *
+     * @return the id of the file, or {@link #NO_FILE}
+     */
+    default int getRedoFileId() {
+        return NO_FILE;
+    }
+
     /**
      * Undo, i.e. roll back, the underlying operation. The method
      * is called by {@link org.exist.storage.recovery.RecoveryManager}.
@@ -34,12 +34,15 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.management.AgentFactory;
+import org.exist.management.impl.Recovery;
 import org.exist.storage.DBBroker;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.blob.BlobStore;
 import org.exist.storage.journal.*;
 import org.exist.storage.sync.Sync;
 import org.exist.storage.txn.Checkpoint;
+import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.FileUtils;
 import org.exist.util.ProgressBar;
 import com.evolvedbinary.j8fu.function.SupplierE;
@@ -51,6 +54,10 @@ import javax.annotation.Nullable;
  * Database recovery. This class is used once during startup to check
  * if the database is in a consistent state. If not, the class attempts to recover
  * the database from the journalling log.
+ *
+ * The redo pass runs on up to {@link BrokerPool#PROPERTY_RECOVERY_REDO_THREADS}
+ * threads, see {@link RedoExecutor}. The progress of a recovery is registered
+ * with JMX, see {@link RecoveryProgress}.
  * 
  * @author wolf
  */
@@ -62,14 +69,27 @@ public class RecoveryManager {
     private final JournalRecoveryAccessor journalRecovery;
     private final boolean restartOnError;
     private final boolean hideProgressBar;
+    private final int redoThreads;
+    private final RecoveryProgress progress;
 
     public RecoveryManager(final DBBroker broker, final JournalManager journalManager, final boolean restartOnError) {
         this.broker = broker;
         this.journalRecovery = journalManager.getRecoveryAccessor(this);
         this.restartOnError = restartOnError;
         this.hideProgressBar = Boolean.getBoolean("exist.recovery.progressbar.hide");
+        this.redoThreads = broker.getBrokerPool().getConfiguration().getProperty(BrokerPool.PROPERTY_RECOVERY_REDO_THREADS, BrokerPool.DEFAULT_RECOVERY_REDO_THREADS);
+        this.progress = new RecoveryProgress(redoThreads);
 	}
 
+    /**
+     * Get the progress of the recovery.
+     *
+     * @return the progress
+     */
+    public RecoveryProgress getProgress() {
+        return progress;
+    }
+
 	/**
 	 * Checks if the database is in a consistent state. If not, start a recovery run.
 	 * 
@@ -94,6 +114,7 @@ public class RecoveryManager {
 		if (-1 < lastNum) {
             // load the last log file
 			final Path last = journalRecovery.getFile.apply(lastNum);
+            @Nullable Recovery recoveryMBean = null;
 			// scan the last log file and record the last checkpoint found
             try (JournalReader reader = new JournalReader(broker, last, lastNum)) {
                 // try to read the last log record to see if it is a checkpoint
@@ -118,6 +139,7 @@ public class RecoveryManager {
                 if (!checkpointFound) {
                     LOG.info("Unclean shutdown detected. Scanning journal...");
                     broker.getBrokerPool().reportStatus("Unclean shutdown detected. Scanning log...");
+                    recoveryMBean = registerProgress();
                     reader.positionFirst();
                     final Long2ObjectMap<Loggable> txnsStarted = new Long2ObjectOpenHashMap<>();
                     Checkpoint lastCheckpoint = null;
@@ -125,6 +147,7 @@ public class RecoveryManager {
                     Loggable next;
                     try {
                         final long lastSize = FileUtils.sizeQuietly(last);
+                        progress.startPhase(RecoveryProgress.Phase.SCAN, 0, lastSize);
                         @Nullable final ProgressBar scanProgressBar = hideProgressBar ? null : new ProgressBar("Scanning journal ", lastSize);
                         while ((next = reader.nextEntry()) != null) {
 //	                        LOG.debug(next.dump());
@@ -139,6 +162,7 @@ public class RecoveryManager {
                                 lastCheckpoint = (Checkpoint) next;
                             }
                             lastLsn = next.getLsn();
+                            progress.setOffset(next.getLsn().getOffset());
 
                             if (scanProgressBar != null) {
                                 scanProgressBar.set(next.getLsn().getOffset());
@@ -182,7 +206,8 @@ public class RecoveryManager {
                                     throw new LogException("Unable to Open the Blob Store for Recovery: " + e.getMessage(), e);
                                 }
 
-                                doRecovery(txnsStarted.size(), last, reader, lastLsn);
+                                doRecovery(txnsStarted.size(), last, reader, lastCheckpoint == null ? 0 : lastCheckpoint.getLsn().getOffset(), lastLsn);
+                                progress.finish(false);
 
                             } catch (final IOException e) {
                                 LOG.error("Error whilst closing the Blob Store after recovery: {}", e.getMessage(), e);
@@ -190,6 +215,7 @@ public class RecoveryManager {
                         } catch (final LogException e) {
                             // if restartOnError == true, we try to bring up the database even if there
                             // are errors. Otherwise, an exception is thrown, which will stop the db initialization
+                            progress.finish(true);
                             broker.getBrokerPool().reportStatus(BrokerPool.SIGNAL_ABORTED);
                             if (restartOnError) {
                                 LOG.error("Aborting recovery. eXist-db detected an error during recovery. This may not be fatal. Database will start up, but corruptions are likely.");
@@ -200,9 +226,13 @@ public class RecoveryManager {
                         }
                     } else {
                         LOG.info("Database is in clean state. Nothing to recover from the journal.");
+                        progress.finish(false);
                     }
                 }
             } finally {
+                if (recoveryMBean != null) {
+                    AgentFactory.getInstance().removeMBean(recoveryMBean);
+                }
                 // remove .log files from directory even if recovery failed.
                 // Re-applying them on a second start up attempt would definitely damage the db, so we better
                 // delete them before user tries to launch again.
@@ -238,17 +268,34 @@ public class RecoveryManager {
         }
     }
 
+    /**
+     * Register the progress of the recovery with JMX, for as long as the recovery runs.
+     *
+     * @return the registered MBean, or null if it could not be registered
+     */
+    private @Nullable Recovery registerProgress() {
+        final Recovery recoveryMBean = new Recovery(broker.getBrokerPool(), progress);
+        try {
+            AgentFactory.getInstance().addMBean(recoveryMBean);
+            return recoveryMBean;
+        } catch (final DatabaseConfigurationException e) {
+            LOG.warn("Unable to register the progress of the recovery with JMX: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Called by {@link #recover()} to do the actual recovery.
      *
      * @param txnCount
      * @param last
      * @param reader
+     * @param startOffset the offset of the journal at which recovery starts
      * @param lastLsn
      *
      * @throws LogException
      */
-    private void doRecovery(final int txnCount, final Path last, final JournalReader reader, final Lsn lastLsn) throws LogException {
+    private void doRecovery(final int txnCount, final Path last, final JournalReader reader, final long startOffset, final Lsn lastLsn) throws LogException {
         if (LOG.isInfoEnabled()) {
             LOG.info("Running recovery ...");
         }
@@ -264,8 +311,10 @@ public class RecoveryManager {
                     LOG.info("First pass: redoing {} transactions...", txnCount);}
             Loggable next = null;
             int redoCnt = 0;
+            final RedoExecutor redoExecutor = new RedoExecutor(broker.getBrokerPool(), progress, redoThreads);
             try {
                 final long lastSize = FileUtils.sizeQuietly(last);
+                progress.startPhase(RecoveryProgress.Phase.REDO, startOffset, lastLsn.getOffset());
                 @Nullable final ProgressBar redoProgressBar = hideProgressBar ? null : new ProgressBar("Redo ", lastSize);
                 while ((next = reader.nextEntry()) != null) {
                     SanityCheck.ASSERT(next.getLogType() != LogEntryTypes.CHECKPOINT,
@@ -280,11 +329,13 @@ public class RecoveryManager {
                     } else if (next.getLogType() == LogEntryTypes.TXN_ABORT) {
                         // transaction aborted: remove it from the transactions table
                         runningTxns.remove(next.getTransactionId());
+                    } else {
+        //                LOG.debug("Redo: " + next.dump());
+                        // redo the log entry, the transaction records themselves have nothing to redo
+                        redoExecutor.redo(next);
                     }
-        //            LOG.debug("Redo: " + next.dump());
-                    // redo the log entry
-                    next.redo();
 
+                    progress.setOffset(next.getLsn().getOffset());
                     if (redoProgressBar != null) {
                         redoProgressBar.set(next.getLsn().getOffset());
                     }
@@ -295,17 +346,24 @@ public class RecoveryManager {
                     }
                 }
 
+                // wait for the redo of the remaining entries
+                redoExecutor.await();
+
                 if (redoProgressBar != null) {
                     redoProgressBar.set(lastSize);  // 100% done
                 }
             } catch (final Exception e) {
                 LOG.error("Exception caught while redoing transactions. Aborting recovery to avoid possible damage. " +
                     "Before starting again, make sure to run a check via the emergency export tool.", e);
+                if (redoExecutor.getFailedEntry() != null) {
+                    next = redoExecutor.getFailedEntry();
+                }
                 if (next != null)
                     {
                         LOG.info("Log entry that caused the exception: {}", next.dump());}
                 throw new LogException("Recovery aborted. ");
             } finally {
+                redoExecutor.close();
                 LOG.info("Redo processed {} out of {} transactions.", redoCnt, txnCount);
             }
 
@@ -318,6 +376,7 @@ public class RecoveryManager {
                 // do a reverse scan of the log, undoing all uncommitted transactions
                 try {
                     final long lastSize = FileUtils.sizeQuietly(last);
+                    progress.startPhase(RecoveryProgress.Phase.UNDO, lastLsn.getOffset(), startOffset);
                     final ProgressBar undoProgressBar = hideProgressBar ? null : new ProgressBar("Undo ", lastSize);
                     while ((next = reader.previousEntry()) != null) {
                         if (next.getLogType() == LogEntryTypes.TXN_START) {
@@ -339,8 +398,10 @@ public class RecoveryManager {
                         if (runningTxns.get(next.getTransactionId()) != null) {
     //					LOG.debug("Undo: " + next.dump());
                             next.undo();
+                            progress.undone();
                         }
 
+                        progress.setOffset(next.getLsn().getOffset());
                         if (undoProgressBar != null) {
                             undoProgressBar.set(lastSize - next.getLsn().getOffset());
                         }
@@ -0,0 +1,166 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.recovery;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of a recovery run, as reported by the
+ * {@link RecoveryManager} whilst it scans, redoes and undoes the journal.
+ *
+ * The progress of each pass is measured by the offset of the journal
+ * entry which it has reached, from which the remaining time of the pass
+ * is estimated.
+ */
+@ThreadSafe
+public class RecoveryProgress {
+
+    public enum Phase {
+        SCAN,
+        REDO,
+        UNDO,
+        COMPLETED,
+        ABORTED
+    }
+
+    private final int redoThreads;
+    private final long startTime = System.currentTimeMillis();
+    private volatile long endTime = -1;
+
+    private volatile Phase phase = Phase.SCAN;
+    private volatile long phaseStartTime = startTime;
+    private volatile long phaseStartOffset = 0;
+    private volatile long phaseEndOffset = 0;
+    private volatile long offset = 0;
+
+    private final LongAdder redone = new LongAdder();
+    private final LongAdder undone = new LongAdder();
+
+    public RecoveryProgress(final int redoThreads) {
+        this.redoThreads = redoThreads;
+    }
+
+    /**
+     * Start a pass over the journal.
+     *
+     * @param phase the pass
+     * @param startOffset the offset of the journal at which the pass starts
+     * @param endOffset the offset of the journal at which the pass is expected to end,
+     *     which is lower than the start offset for a backwards pass
+     */
+    void startPhase(final Phase phase, final long startOffset, final long endOffset) {
+        this.phaseStartOffset = startOffset;
+        this.phaseEndOffset = endOffset;
+        this.offset = startOffset;
+        this.phaseStartTime = System.currentTimeMillis();
+        this.phase = phase;
+    }
+
+    void setOffset(final long offset) {
+        this.offset = offset;
+    }
+
+    void redone() {
+        redone.increment();
+    }
+
+    void undone() {
+        undone.increment();
+    }
+
+    void finish(final boolean aborted) {
+        this.endTime = System.currentTimeMillis();
+        this.phase = aborted ? Phase.ABORTED : Phase.COMPLETED;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public int getRedoThreads() {
+        return redoThreads;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the time at which recovery completed or was aborted, or -1 if it is running
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getElapsedTime() {
+        final long end = endTime;
+        return (end == -1 ? System.currentTimeMillis() : end) - startTime;
+    }
+
+    public long getRedoneEntries() {
+        return redone.sum();
+    }
+
+    public long getUndoneEntries() {
+        return undone.sum();
+    }
+
+    /**
+     * @return the percentage of the current pass which has been completed
+     */
+    public int getPhasePercentage() {
+        if (isFinished()) {
+            return 100;
+        }
+        final long total = Math.abs(phaseEndOffset - phaseStartOffset);
+        if (total == 0) {
+            return 0;
+        }
+        return (int) Math.min(100, Math.abs(offset - phaseStartOffset) * 100 / total);
+    }
+
+    /**
+     * Estimate the remaining time of the current pass from
+     * the rate at which it has progressed so far.
+     *
+     * @return the estimated time in milliseconds, or -1 if it can not yet be estimated
+     */
+    public long getEstimatedRemainingTime() {
+        if (isFinished()) {
+            return 0;
+        }
+        final long done = Math.abs(offset - phaseStartOffset);
+        final long remaining = Math.max(0, Math.abs(phaseEndOffset - phaseStartOffset) - done);
+        final long elapsed = System.currentTimeMillis() - phaseStartTime;
+        if (done == 0 || elapsed == 0) {
+            return -1;
+        }
+        return (long) ((double) elapsed * remaining / done);
+    }
+
+    private boolean isFinished() {
+        final Phase current = phase;
+        return current == Phase.COMPLETED || current == Phase.ABORTED;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.recovery;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.Database;
+import org.exist.storage.journal.LogException;
+import org.exist.storage.journal.Loggable;
+import org.exist.util.ThreadUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Redoes the entries of the journal on a number of threads.
+ *
+ * Each file is assigned to one of the threads, which redoes the entries
+ * of that file in the order of the journal, so the entries of different
+ * files are redone concurrently. An entry which is not confined to a single
+ * file, see {@link Loggable#getRedoFileId()}, is redone by the calling thread
+ * once all of the entries before it have been redone.
+ *
+ * The entries of a file are not spread over several threads, as the pages
+ * of a file share the cache and the file header of that file.
+ */
+@NotThreadSafe
+class RedoExecutor implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(RedoExecutor.class);
+
+    /**
+     * The maximum number of entries which are queued for each thread,
+     * this limits both the memory used and how far the reader of the
+     * journal may run ahead of the threads.
+     */
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static final Runnable STOP = () -> {};
+
+    private final Database database;
+    private final RecoveryProgress progress;
+    private final int threads;
+    private final List<Worker> workers = new ArrayList<>();
+    private final Worker[] fileWorkers = new Worker[256];
+
+    private volatile @Nullable Failure failure = null;
+
+    /**
+     * @param database the database
+     * @param progress the progress of the recovery
+     * @param threads the maximum number of threads to start,
+     *     if less than 2 all entries are redone by the calling thread
+     */
+    RedoExecutor(final Database database, final RecoveryProgress progress, final int threads) {
+        this.database = database;
+        this.progress = progress;
+        this.threads = threads;
+    }
+
+    /**
+     * Schedule the redo of an entry.
+     *
+     * @param loggable the entry
+     *
+     * @throws LogException if this or an earlier entry could not be redone
+     */
+    void redo(final Loggable loggable) throws LogException {
+        checkFailure();
+
+        final int fileId = loggable.getRedoFileId();
+        if (threads < 2 || fileId < 0 || fileId >= fileWorkers.length) {
+            await();
+            redoEntry(loggable);
+            checkFailure();
+            return;
+        }
+
+        Worker worker = fileWorkers[fileId];
+        if (worker == null) {
+            if (workers.size() < threads) {
+                worker = new Worker(workers.size());
+                workers.add(worker);
+                worker.thread.start();
+            } else {
+                worker = workers.get(fileId % threads);
+            }
+            fileWorkers[fileId] = worker;
+        }
+        worker.submit(() -> redoEntry(loggable));
+    }
+
+    /**
+     * Wait until all of the entries which have been scheduled have been redone.
+     *
+     * @throws LogException if an entry could not be redone
+     */
+    void await() throws LogException {
+        if (!workers.isEmpty()) {
+            final CountDownLatch latch = new CountDownLatch(workers.size());
+            for (final Worker worker : workers) {
+                worker.submit(latch::countDown);
+            }
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LogException("Interrupted whilst waiting for redo: " + e.getMessage(), e);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return the entry which could not be redone, or null
+     */
+    @Nullable Loggable getFailedEntry() {
+        final Failure current = failure;
+        return current == null ? null : current.loggable;
+    }
+
+    @Override
+    public void close() {
+        for (final Worker worker : workers) {
+            worker.submit(STOP);
+        }
+        for (final Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted whilst stopping redo thread: {}", worker.thread.getName());
+            }
+        }
+        workers.clear();
+    }
+
+    private void redoEntry(final Loggable loggable) {
+        if (failure != null) {
+            // an earlier entry could not be redone, skip the remaining entries
+            return;
+        }
+        try {
+            loggable.redo();
+            progress.redone();
+        } catch (final Exception e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = new Failure(loggable, e);
+                }
+            }
+        }
+    }
+
+    private void checkFailure() throws LogException {
+        final Failure current = failure;
+        if (current != null) {
+            if (current.cause instanceof LogException) {
+                throw (LogException) current.cause;
+            }
+            throw new LogException(current.cause.getMessage(), current.cause);
+        }
+    }
+
+    private static final class Failure {
+        final Loggable loggable;
+        final Exception cause;
+
+        Failure(final Loggable loggable, final Exception cause) {
+            this.loggable = loggable;
+            this.cause = cause;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread thread;
+
+        Worker(final int index) {
+            this.thread = ThreadUtils.newInstanceThread(database, "recovery.redo-" + index, this);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(final Runnable task) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(task);
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Runnable task;
+                try {
+                    task = queue.take();
+                } catch (final InterruptedException e) {
+                    // NOTE: the thread is only stopped by close(), otherwise the caller could wait forever
+                    LOG.warn("Ignoring interrupt of redo thread: {}", thread.getName());
+                    continue;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                task.run();
+            }
+        }
+    }
+}
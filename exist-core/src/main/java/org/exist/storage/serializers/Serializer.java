@@ -192,10 +192,39 @@ public abstract class Serializer implements XMLReader {
 
     protected boolean documentStarted = false;
 
+    private @Nullable ItemListener itemListener = null;
+
+    /**
+     * Receives a notification after each item of a sequence has been
+     * serialized, e.g. to flush the output written so far.
+     */
+    @FunctionalInterface
+    public interface ItemListener {
+
+        /**
+         * Called after an item has been serialized.
+         *
+         * @param count the number of items serialized so far
+         *
+         * @throws SAXException to abort the serialization
+         */
+        void itemSerialized(int count) throws SAXException;
+    }
+
     public void setHttpContext(final XQueryContext.HttpContext httpContext) {
         this.httpContext = httpContext;
     }
 
+    /**
+     * Set a listener which is notified after each item serialized by
+     * {@link #toSAX(Sequence, int, int, boolean, boolean, long, long)}.
+     *
+     * @param itemListener the listener, or null to remove it
+     */
+    public void setItemListener(@Nullable final ItemListener itemListener) {
+        this.itemListener = itemListener;
+    }
+
 
     public Serializer(final DBBroker broker, final Configuration config) {
         this(broker, config, null);
@@ -454,6 +483,7 @@ public abstract class Serializer implements XMLReader {
         this.user = null;
         this.httpContext = null;
         this.documentStarted = false;
+        this.itemListener = null;
     }
 
     public String serialize(final DocumentImpl doc) throws SAXException {
@@ -990,6 +1020,9 @@ public abstract class Serializer implements XMLReader {
                 continue;
             }
             itemToSAX(item, typed, wrap);
+            if (itemListener != null) {
+                itemListener.itemSerialized(i - start + 1);
+            }
         }
 
         if (wrap) {
@@ -116,6 +116,28 @@ public class DataGuide {
         return temp.getMaxDepth();
     }
 
+    /**
+     * Get the number of elements with the given name, in any path.
+     *
+     * @param qname the name of the elements
+     * @return the number of elements
+     */
+    public long getNodeCount(QName qname) {
+        return root.getNodeCount(qname);
+    }
+
+    /**
+     * Get the number of elements with the given name, which are
+     * children of an element with the given parent name.
+     *
+     * @param parent the name of the parent elements
+     * @param qname the name of the child elements
+     * @return the number of child elements
+     */
+    public long getChildCount(QName parent, QName qname) {
+        return root.getChildCount(parent, qname);
+    }
+
     public String toString() {
         final List<StringBuilder> paths = new ArrayList<>();
         root.dump(new StringBuilder(), paths);
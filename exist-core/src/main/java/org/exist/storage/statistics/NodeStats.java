@@ -137,6 +137,30 @@ class NodeStats {
         }
     }
 
+    protected long getNodeCount(QName name) {
+        long count = qname != null && qname.equals(name) ? nodeCount : 0;
+        if (children != null) {
+            for (NodeStats child : children) {
+                count += child.getNodeCount(name);
+            }
+        }
+        return count;
+    }
+
+    protected long getChildCount(QName parentName, QName name) {
+        long count = 0;
+        if (children != null) {
+            final boolean isParent = qname != null && qname.equals(parentName);
+            for (NodeStats child : children) {
+                if (isParent && child.qname.equals(name)) {
+                    count += child.nodeCount;
+                }
+                count += child.getChildCount(parentName, name);
+            }
+        }
+        return count;
+    }
+
     protected void write(ByteBuffer buffer, SymbolTable symbols) {
         buffer.putShort(symbols.getNSSymbol(qname.getNamespaceURI()));
         buffer.putShort(symbols.getSymbol(qname.getLocalPart()));
@@ -23,9 +23,17 @@ package org.exist.storage.structural;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.backup.RawDataBackup;
@@ -35,13 +43,16 @@ import org.exist.indexing.IndexWorker;
 import org.exist.indexing.RawBackupSupport;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.DBBroker;
+import org.exist.storage.btree.BTree;
 import org.exist.storage.btree.DBException;
+import org.exist.storage.btree.ExternalSorter;
 import org.exist.storage.index.BTreeStore;
 import org.exist.storage.lock.LockManager;
 import org.exist.storage.lock.ManagedLock;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.FileUtils;
 import org.exist.util.LockException;
+import org.exist.xquery.TerminatedException;
 import org.w3c.dom.Element;
 
 public class NativeStructuralIndex extends AbstractIndex implements RawBackupSupport {
@@ -50,12 +61,36 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
 
     public final static String ID = NativeStructuralIndex.class.getName();
     public static final String FILE_NAME = "structure.dbx";
-    public final static short FILE_FORMAT_VERSION_ID = 3;
+
+    /**
+     * The file which exists while the index is bulk loaded. If it is still present
+     * when the index is opened, a bulk load was interrupted and the index is incomplete.
+     */
+    public static final String BULK_LOAD_MARKER_FILE_NAME = "structure.dbx.bulkload";
+    public final static short FILE_FORMAT_VERSION_ID = 4;
+    public final static short LEGACY_FILE_FORMAT_VERSION_ID = 3;
 
     public static final byte STRUCTURAL_INDEX_ID = 1;
 
+    /** The maximum number of bytes of keys to sort in memory during a bulk load */
+    private static final long BULK_LOAD_MEMORY = 32 * 1024 * 1024;
+
     /** The datastore for this node index */
-    protected BTreeStore btree;
+    protected volatile BTreeStore btree;
+
+    /**
+     * The keys which have been added since {@link #beginBulkLoad(boolean)},
+     * or null if the index is not bulk loaded. Guarded by the lock of the btree.
+     */
+    ExternalSorter bulkLoad = null;
+
+    /** The ids of the documents whose keys are in {@link #bulkLoad}. Guarded by the lock of the btree. */
+    final Set<Integer> bulkLoadedDocs = new HashSet<>();
+
+    private volatile boolean bulkLoading = false;
+
+    /** True if a bulk load of the index was interrupted, so that the database must be reindexed */
+    private boolean reindexRequired = false;
 
     protected LockManager lockManager;
     protected SymbolTable symbols;
@@ -75,8 +110,12 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
     public void open() throws DatabaseConfigurationException {
         final Path file = getDataDir().resolve(FILE_NAME);
         LOG.debug("Creating '{}'...", FileUtils.fileName(file));
+        reindexRequired = Files.exists(getBulkLoadMarker());
+        if (reindexRequired) {
+            LOG.error("A bulk load of '{}' was interrupted, the database must be reindexed", FileUtils.fileName(file));
+        }
         try {
-            btree = new BTreeStore(pool, STRUCTURAL_INDEX_ID, FILE_FORMAT_VERSION_ID, false,
+            btree = new BTreeStore(pool, STRUCTURAL_INDEX_ID, FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID, false,
                     file, pool.getCacheManager());
         } catch (final DBException e) {
             LOG.error("Failed to initialize structural index: {}", e.getMessage(), e);
@@ -86,6 +125,7 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
 
     @Override
     public void close() throws DBException {
+        endBulkLoad();
         btree.close();
         btree = null;
     }
@@ -108,7 +148,152 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
 
     @Override
     public void remove() throws DBException {
+        endBulkLoad();
+        btree.closeAndRemove();
+        try {
+            Files.deleteIfExists(getBulkLoadMarker());
+        } catch (final IOException e) {
+            throw new DBException("Unable to remove " + BULK_LOAD_MARKER_FILE_NAME + ": " + e.getMessage());
+        }
+        reindexRequired = false;
+    }
+
+    /**
+     * Determine whether the index is incomplete, because a bulk load of it
+     * was interrupted when the database was last running.
+     *
+     * @return true if the database must be reindexed
+     */
+    public boolean isReindexRequired() {
+        return reindexRequired;
+    }
+
+    private Path getBulkLoadMarker() {
+        return getDataDir().resolve(BULK_LOAD_MARKER_FILE_NAME);
+    }
+
+    /**
+     * Start to bulk load the index. Until {@link #endBulkLoad()} is called, the keys of
+     * the documents which are indexed are sorted rather than added to the btree, and
+     * the btree is then built from them bottom-up, see {@link BTree.BulkLoader}.
+     *
+     * Any other access to the index ends the bulk load first, except for the removal
+     * of a document whose keys are not being bulk loaded.
+     *
+     * Neither the truncation nor the bulk loaded keys are journalled. Instead a marker
+     * file is written before the index is modified, and only removed once the btree has
+     * been built and synced. If the database stops before then, the marker is found
+     * when the index is next opened, and the database is reindexed on startup.
+     *
+     * @param truncate true to remove all keys from the index first, i.e. when
+     *     all of the documents in the database are about to be reindexed
+     *
+     * @return true if the index is bulk loaded, false if the bulk load could not be started
+     */
+    public boolean beginBulkLoad(final boolean truncate) {
+        if (btree == null) {
+            return false;
+        }
+        try(final ManagedLock<ReentrantLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+            if (bulkLoad != null) {
+                return true;
+            }
+            try (final FileChannel marker = FileChannel.open(getBulkLoadMarker(), CREATE, WRITE)) {
+                marker.force(true);
+            }
+            if (truncate) {
+                truncate();
+            }
+            bulkLoad = new ExternalSorter(BULK_LOAD_MEMORY);
+            bulkLoading = true;
+            LOG.info("Bulk loading {}", FileUtils.fileName(btree.getFile()));
+            return true;
+        } catch (final LockException e) {
+            LOG.warn("Failed to lock structural index: {}", e.getMessage(), e);
+        } catch (final IOException e) {
+            LOG.error("Failed to write {}: {}", BULK_LOAD_MARKER_FILE_NAME, e.getMessage(), e);
+        } catch (final DBException e) {
+            LOG.error("Failed to truncate structural index: {}", e.getMessage(), e);
+        }
+        return false;
+    }
+
+    /**
+     * End a bulk load of the index, see {@link #beginBulkLoad(boolean)}, by building the btree
+     * from the keys which were added to it and the keys which it already contained.
+     * Does nothing if the index is not bulk loaded.
+     */
+    public void endBulkLoad() {
+        if (!bulkLoading) {
+            return;
+        }
+        try(final ManagedLock<ReentrantLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+            final ExternalSorter sorter = bulkLoad;
+            if (sorter == null) {
+                return;
+            }
+            bulkLoad = null;
+            bulkLoadedDocs.clear();
+            bulkLoading = false;
+
+            try (sorter) {
+                // the keys of the btree belong to other documents than the sorted keys
+                final long[] existing = { 0 };
+                btree.query(null, (value, pointer) -> {
+                    try {
+                        sorter.add(value, pointer);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    existing[0]++;
+                    return true;
+                });
+                if (existing[0] > 0) {
+                    truncate();
+                }
+
+                final BTree.BulkLoader loader = btree.newBulkLoader();
+                sorter.drainTo(loader);
+                LOG.info("Bulk loaded {} keys into {}", loader.finish(), FileUtils.fileName(btree.getFile()));
+            }
+
+            // the btree is complete and durable, so it no longer needs to be rebuilt after a crash
+            Files.deleteIfExists(getBulkLoadMarker());
+        } catch (final LockException e) {
+            LOG.warn("Failed to lock structural index: {}", e.getMessage(), e);
+        } catch (final IOException | UncheckedIOException | DBException | TerminatedException e) {
+            LOG.error("Failed to bulk load structural index, the database must be reindexed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * End a bulk load of the index, see {@link #beginBulkLoad(boolean)}, if the keys
+     * of a document are being bulk loaded.
+     *
+     * @param docId the id of the document
+     */
+    void endBulkLoad(final int docId) {
+        if (!bulkLoading) {
+            return;
+        }
+        try(final ManagedLock<ReentrantLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+            if (!bulkLoadedDocs.contains(docId)) {
+                return;
+            }
+        } catch (final LockException e) {
+            LOG.warn("Failed to lock structural index: {}", e.getMessage(), e);
+        }
+        endBulkLoad();
+    }
+
+    /**
+     * Remove all keys from the btree, by replacing its file. The caller must hold the lock of the btree.
+     */
+    private void truncate() throws DBException {
+        final Path file = btree.getFile();
         btree.closeAndRemove();
+        btree = new BTreeStore(pool, STRUCTURAL_INDEX_ID, FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID, false,
+                file, pool.getCacheManager());
     }
 
     @Override
@@ -123,6 +308,7 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
 
 	@Override
 	public void backupToArchive(final RawDataBackup backup) throws IOException {
+        endBulkLoad();
         // do not use try-with-resources here, closing the OutputStream will close the entire backup
 //        try(final OutputStream os = backup.newEntry(FileUtils.fileName(btree.getFile()))) {
         try {
@@ -25,6 +25,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.dom.TypedQNameComparator;
 import org.exist.dom.persistent.AttrImpl;
+import org.exist.dom.persistent.ColumnarNodeSet;
 import org.exist.dom.persistent.NodeProxy;
 import org.exist.dom.QName;
 import org.exist.dom.persistent.ElementImpl;
@@ -51,6 +52,7 @@ import org.exist.util.ByteConversion;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.LockException;
 import org.exist.util.Occurrences;
+import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.*;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -69,6 +71,9 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     private final static Logger LOG = LogManager.getLogger(NativeStructuralIndexWorker.class);
 
+    /** The offset of the node id within a key */
+    private final static int NODE_ID_OFFSET = 9;
+
     private NativeStructuralIndex index;
     private ReindexMode mode = ReindexMode.STORE;
     private DocumentImpl document;
@@ -108,7 +113,8 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public NodeSet findElementsByTagName(byte type, DocumentSet docs, QName qname, NodeSelector selector, Expression parent) {
-        final NewArrayNodeSet result = new NewArrayNodeSet();
+        index.endBulkLoad();
+        final ColumnarNodeSet result = new ColumnarNodeSet();
         final FindElementsCallback callback = new FindElementsCallback(type, qname, result, docs, selector, parent);
 
         // for each document id range, scan the index to find matches
@@ -192,6 +198,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public NodeSet findDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet, int contextId, Expression parent) {
+        index.endBulkLoad();
         final NewArrayNodeSet result = new NewArrayNodeSet();
         final FindDescendantsCallback callback = new FindDescendantsCallback(type, axis, qname, contextId, result, parent);
         try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
@@ -224,8 +231,9 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     public NodeSet findAncestorsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
                                           int contextId) {
+        index.endBulkLoad();
         final NewArrayNodeSet result = new NewArrayNodeSet();
-        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+        try {
             for (final NodeProxy descendant : contextSet) {
                 NodeId parentId;
                 if (axis == Constants.ANCESTOR_SELF_AXIS || axis == Constants.SELF_AXIS)
@@ -235,7 +243,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 final DocumentImpl doc = descendant.getOwnerDocument();
                 while (parentId != NodeId.DOCUMENT_NODE) {
                     final byte[] key = computeKey(type, qname, doc.getDocId(), parentId);
-                    final long address = index.btree.findValue(new Value(key));
+                    final long address = index.btree.findValueOptimistic(new Value(key));
                     if (address != -1) {
                         final NodeProxy storedNode = new NodeProxy(null, doc, parentId,
                             type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, address);
@@ -265,6 +273,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     public NodeSet scanByType(byte type, int axis, NodeTest test, boolean useSelfAsContext, DocumentSet docs, 
     		NodeSet contextSet, int contextId) {
+        index.endBulkLoad();
         final NewArrayNodeSet result = new NewArrayNodeSet();
         final FindDescendantsCallback callback = new FindDescendantsCallback(type, axis, null, contextId, useSelfAsContext, result, null);
         for (final NodeProxy ancestor : contextSet) {
@@ -303,11 +312,11 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         byte type;
         QName qname;
         DocumentSet docs;
-        NewArrayNodeSet result;
+        ColumnarNodeSet result;
         NodeSelector selector;
         Expression parent;
 
-        FindElementsCallback(byte type, QName qname, NewArrayNodeSet result, DocumentSet docs, NodeSelector selector, Expression parent) {
+        FindElementsCallback(byte type, QName qname, ColumnarNodeSet result, DocumentSet docs, NodeSelector selector, Expression parent) {
             this.type = type;
             this.result = result;
             this.docs = docs;
@@ -325,17 +334,14 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 parent.getContext().proceed(parent);
             }
             final byte[] key = value.getData();
-            final NodeId nodeId = readNodeId(key, pointer);
             final DocumentImpl doc = docs.getDoc(readDocId(key));
             if (doc != null) {
                 if (selector == null) {
-                    final NodeProxy storedNode = new NodeProxy(null, doc, nodeId,
-                        type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer);
-                    if (qname != null) {
-                        storedNode.setQName(qname);
-                    }
-                    result.add(storedNode);
+                    // add the node id as it is stored in the key, without creating a NodeId or NodeProxy
+                    result.add(doc, key, NODE_ID_OFFSET, readNodeIdUnits(key, pointer),
+                        type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer, qname);
                 } else {
+                    final NodeId nodeId = readNodeId(key, pointer);
                     final NodeProxy storedNode = selector.match(doc, nodeId);
                     if (storedNode != null) {
                         storedNode.setNodeType(type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE);
@@ -488,6 +494,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         if (pending.size() == 0) {
             return;
         }
+        index.endBulkLoad(document.getDocId());
 
         try {
             for (final Map.Entry<QName,List<NodeProxy>> entry: pending.entrySet()) {
@@ -513,6 +520,8 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     protected void removeDocument(DocumentImpl docToRemove) {
         if (index.btree == null)
             {return;}
+        // the keys of other documents may remain sorted, the btree does not contain them
+        index.endBulkLoad(docToRemove.getDocId());
         final List<QName> qnames = getQNamesForDoc(docToRemove);
         for (final QName qname : qnames) {
             final byte[] fromKey = computeKey(qname.getNameType(), qname, docToRemove.getDocId());
@@ -565,6 +574,12 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     @Override
     public void removeCollection(Collection collection, DBBroker broker, boolean reindex) throws PermissionDeniedException {
+        if (reindex && collection.getURI().equals(XmldbURI.ROOT_COLLECTION_URI)) {
+            // every document is about to be reindexed, see NativeBroker#reindexCollection
+            if (index.beginBulkLoad(true)) {
+                return;
+            }
+        }
         try {
             for (final Iterator<DocumentImpl> i = collection.iterator(broker); i.hasNext(); ) {
                 final DocumentImpl doc = i.next();
@@ -590,6 +605,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
      * @return the matching occurrences
      */
     public Occurrences[] scanIndex(XQueryContext context, DocumentSet docs, NodeSet contextSet, Map hints) {
+        index.endBulkLoad();
         final Map<String, Occurrences> occurrences = new TreeMap<>();
         for (final Iterator<DocumentImpl> i = docs.getDocumentIterator(); i.hasNext(); ) {
             final DocumentImpl doc = i.next();
@@ -640,6 +656,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public BTree getStorage() {
+        index.endBulkLoad();
         return index.btree;
     }
 
@@ -667,12 +684,22 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 final QName qname = entry.getKey();
                 try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
                     final List<NodeProxy> nodes = entry.getValue();
+                    final Value docKey = new Value(computeDocKey(qname.getNameType(), document.getDocId(), qname));
+                    // if the btree contains keys of the qname of the document, they are replaced in place
+                    if (index.bulkLoad != null && index.btree.findValue(docKey) == -1) {
+                        for (final NodeProxy proxy : nodes) {
+                            final byte[] key = computeKey(qname.getNameType(), qname, document.getDocId(), proxy.getNodeId());
+                            index.bulkLoad.add(new Value(key), computeValue(proxy));
+                        }
+                        index.bulkLoad.add(docKey, 0);
+                        index.bulkLoadedDocs.add(document.getDocId());
+                        continue;
+                    }
                     for (final NodeProxy proxy : nodes) {
                         final NodeId nodeId = proxy.getNodeId();
                         final byte[] key = computeKey(qname.getNameType(), qname, document.getDocId(), nodeId);
                         index.btree.addValue(new Value(key), computeValue(proxy));
                     }
-                    final Value docKey = new Value(computeDocKey(qname.getNameType(), document.getDocId(), qname));
                     if (index.btree.findValue(docKey) == -1) {
                         index.btree.addValue(docKey, 0);
                     }
@@ -760,13 +787,16 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     private NodeId readNodeId(byte[] key, long value) {
+        return index.getBrokerPool().getNodeFactory().createFromData(readNodeIdUnits(key, value), key, NODE_ID_OFFSET);
+    }
+
+    private static int readNodeIdUnits(byte[] key, long value) {
         // extra number of bits of the node id is encoded in the long address
         short bits = (short)((value >>> 24) & 0xFFL);
         if (bits == 0)
             {bits = 8;}
         // compute total number of bits for node id
-        final int units = (key.length - 10) * 8 + bits;
-        return index.getBrokerPool().getNodeFactory().createFromData(units, key, 9);
+        return (key.length - 10) * 8 + bits;
     }
 
     private QName readQName(byte[] key) {
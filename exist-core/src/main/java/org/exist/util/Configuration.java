@@ -59,6 +59,9 @@ import org.exist.storage.DefaultCacheManager;
 import org.exist.storage.IndexSpec;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.XQueryPool;
+import org.exist.storage.btree.PageIO;
+import org.exist.storage.cache.Cache;
+import org.exist.storage.dom.RecordCompression;
 import org.exist.storage.serializers.CustomMatchListenerFactory;
 import org.exist.storage.serializers.Serializer;
 import org.exist.validation.GrammarPool;
@@ -73,6 +76,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.HashMap;
@@ -124,11 +129,15 @@ import static org.exist.storage.BrokerPoolConstants.PROPERTY_DATA_DIR;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_MAX_CONNECTIONS;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_MIN_CONNECTIONS;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_NODES_BUFFER;
+import static org.exist.storage.BrokerPoolConstants.PROPERTY_DOM_COMPRESSION;
+import static org.exist.storage.BrokerPoolConstants.PROPERTY_PAGE_IO;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_PAGE_SIZE;
+import static org.exist.storage.BrokerPoolConstants.PROPERTY_FILE_PAGE_SIZES;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_RECOVERY_CHECK;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_RECOVERY_ENABLED;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_RECOVERY_FORCE_RESTART;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_RECOVERY_GROUP_COMMIT;
+import static org.exist.storage.BrokerPoolConstants.PROPERTY_RECOVERY_REDO_THREADS;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_SHUTDOWN_DELAY;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_STARTUP_TRIGGERS;
 import static org.exist.storage.BrokerPoolConstants.PROPERTY_SYNC_PERIOD;
@@ -136,6 +145,7 @@ import static org.exist.storage.BrokerPoolConstants.RECOVERY_ENABLED_ATTRIBUTE;
 import static org.exist.storage.BrokerPoolConstants.RECOVERY_FORCE_RESTART_ATTRIBUTE;
 import static org.exist.storage.BrokerPoolConstants.RECOVERY_GROUP_COMMIT_ATTRIBUTE;
 import static org.exist.storage.BrokerPoolConstants.RECOVERY_POST_RECOVERY_CHECK;
+import static org.exist.storage.BrokerPoolConstants.RECOVERY_REDO_THREADS_ATTRIBUTE;
 import static org.exist.storage.BrokerPoolConstants.SHUTDOWN_DELAY_ATTRIBUTE;
 import static org.exist.storage.BrokerPoolConstants.SYNC_PERIOD_ATTRIBUTE;
 import static org.exist.storage.DBBroker.POSIX_CHOWN_RESTRICTED_ATTRIBUTE;
@@ -148,16 +158,41 @@ import static org.exist.storage.DBBroker.PreserveType;
 import static org.exist.storage.DBBroker.XUPDATE_CONSISTENCY_CHECKS_ATTRIBUTE;
 import static org.exist.storage.DBBroker.XUPDATE_FRAGMENTATION_FACTOR_ATTRIBUTE;
 import static org.exist.storage.DefaultCacheManager.CACHE_CHECK_MAX_SIZE_ATTRIBUTE;
+import static org.exist.storage.DefaultCacheManager.CACHE_POLICY_ATTRIBUTE;
 import static org.exist.storage.DefaultCacheManager.CACHE_SIZE_ATTRIBUTE;
 import static org.exist.storage.DefaultCacheManager.DEFAULT_CACHE_CHECK_MAX_SIZE_STRING;
+import static org.exist.storage.DefaultCacheManager.OFF_HEAP_CACHE_SIZE_ATTRIBUTE;
 import static org.exist.storage.DefaultCacheManager.PROPERTY_CACHE_CHECK_MAX_SIZE;
+import static org.exist.storage.DefaultCacheManager.PROPERTY_CACHE_POLICY;
 import static org.exist.storage.DefaultCacheManager.PROPERTY_CACHE_SIZE;
+import static org.exist.storage.DefaultCacheManager.PROPERTY_OFF_HEAP_CACHE_SIZE;
 import static org.exist.storage.DefaultCacheManager.SHRINK_THRESHOLD_ATTRIBUTE;
 import static org.exist.storage.DefaultCacheManager.SHRINK_THRESHOLD_PROPERTY;
 import static org.exist.storage.NativeBroker.INDEX_DEPTH_ATTRIBUTE;
 import static org.exist.storage.NativeBroker.PROPERTY_INDEX_DEPTH;
 import static org.exist.storage.NativeValueIndex.INDEX_CASE_SENSITIVE_ATTRIBUTE;
 import static org.exist.storage.NativeValueIndex.PROPERTY_INDEX_CASE_SENSITIVE;
+import static org.exist.storage.ParallelQueryPool.DEFAULT_PARALLEL_EVALUATION;
+import static org.exist.storage.ParallelQueryPool.DEFAULT_PARALLEL_PARTITION_SIZE;
+import static org.exist.storage.ParallelQueryPool.DEFAULT_PARALLEL_THREADS;
+import static org.exist.storage.ParallelQueryPool.PARALLEL_EVALUATION_ATTRIBUTE;
+import static org.exist.storage.ParallelQueryPool.PARALLEL_PARTITION_SIZE_ATTRIBUTE;
+import static org.exist.storage.ParallelQueryPool.PARALLEL_THREADS_ATTRIBUTE;
+import static org.exist.storage.ParallelQueryPool.PROPERTY_PARALLEL_EVALUATION;
+import static org.exist.storage.ParallelQueryPool.PROPERTY_PARALLEL_PARTITION_SIZE;
+import static org.exist.storage.ParallelQueryPool.PROPERTY_PARALLEL_THREADS;
+import static org.exist.storage.CursorManager.CURSOR_BUDGET_ATTRIBUTE;
+import static org.exist.storage.CursorManager.CURSOR_TIMEOUT_ATTRIBUTE;
+import static org.exist.storage.CursorManager.DEFAULT_CURSOR_BUDGET;
+import static org.exist.storage.CursorManager.DEFAULT_CURSOR_TIMEOUT;
+import static org.exist.storage.CursorManager.PROPERTY_CURSOR_BUDGET;
+import static org.exist.storage.CursorManager.PROPERTY_CURSOR_TIMEOUT;
+import static org.exist.storage.XQueryResultCache.DEFAULT_RESULT_CACHE_SIZE;
+import static org.exist.storage.XQueryResultCache.DEFAULT_RESULT_CACHE_TTL;
+import static org.exist.storage.XQueryResultCache.PROPERTY_RESULT_CACHE_SIZE;
+import static org.exist.storage.XQueryResultCache.PROPERTY_RESULT_CACHE_TTL;
+import static org.exist.storage.XQueryResultCache.RESULT_CACHE_SIZE_ATTRIBUTE;
+import static org.exist.storage.XQueryResultCache.RESULT_CACHE_TTL_ATTRIBUTE;
 import static org.exist.storage.XQueryPool.MAX_STACK_SIZE_ATTRIBUTE;
 import static org.exist.storage.XQueryPool.POOL_SIZE_ATTTRIBUTE;
 import static org.exist.storage.XQueryPool.PROPERTY_MAX_STACK_SIZE;
@@ -201,6 +236,9 @@ import static org.exist.util.XMLReaderPool.XmlParser.XML_PARSER_FEATURES_ELEMENT
 import static org.exist.util.XMLReaderPool.XmlParser.XML_PARSER_FEATURES_PROPERTY;
 import static org.exist.util.io.ContentFilePool.PROPERTY_IN_MEMORY_SIZE;
 import static org.exist.util.io.VirtualTempPath.DEFAULT_IN_MEMORY_SIZE;
+import static org.exist.xquery.ExpressionCompiler.COMPILE_THRESHOLD_ATTRIBUTE;
+import static org.exist.xquery.ExpressionCompiler.DEFAULT_COMPILE_THRESHOLD;
+import static org.exist.xquery.ExpressionCompiler.PROPERTY_COMPILE_THRESHOLD;
 import static org.exist.xquery.FunctionFactory.DISABLE_DEPRECATED_FUNCTIONS_ATTRIBUTE;
 import static org.exist.xquery.FunctionFactory.DISABLE_DEPRECATED_FUNCTIONS_BY_DEFAULT;
 import static org.exist.xquery.FunctionFactory.ENABLE_JAVA_BINDING_ATTRIBUTE;
@@ -445,6 +483,42 @@ public class Configuration implements ErrorHandler {
         return null;
     }
 
+    @Nullable
+    private static PageIO.Type asPageIOType(@Nullable final String value) {
+        if (value != null) {
+            final PageIO.Type type = PageIO.Type.fromString(value);
+            if (type == null) {
+                LOG.warn("Cannot convert {} value to a page I/O type, expected one of: {}", value, Arrays.toString(PageIO.Type.values()));
+            }
+            return type;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static RecordCompression asRecordCompression(@Nullable final String value) {
+        if (value != null) {
+            final RecordCompression compression = RecordCompression.fromString(value);
+            if (compression == null) {
+                LOG.warn("Cannot convert {} value to a record compression, expected one of: {}", value, Arrays.toString(RecordCompression.values()));
+            }
+            return compression;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Cache.Policy asCachePolicy(@Nullable final String value) {
+        if (value != null) {
+            final Cache.Policy policy = Cache.Policy.fromString(value);
+            if (policy == null) {
+                LOG.warn("Cannot convert {} value to a cache policy, expected one of: lru, 2q", value);
+            }
+            return policy;
+        }
+        return null;
+    }
+
     @Nullable
     private static Long asLong(@Nullable final String value) {
         if (value != null) {
@@ -526,6 +600,14 @@ public class Configuration implements ErrorHandler {
         configureProperty(xquery, XQUERY_BACKWARD_COMPATIBLE_ATTRIBUTE, PROPERTY_XQUERY_BACKWARD_COMPATIBLE);
         configureProperty(xquery, XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL_ATTRIBUTE, PROPERTY_XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL, Configuration::asBoolean, XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL_DEFAULT);
         configureProperty(xquery, PerformanceStats.CONFIG_ATTR_TRACE, PerformanceStats.CONFIG_PROPERTY_TRACE);
+        configureProperty(xquery, PARALLEL_EVALUATION_ATTRIBUTE, PROPERTY_PARALLEL_EVALUATION, Configuration::asBoolean, DEFAULT_PARALLEL_EVALUATION);
+        configureProperty(xquery, PARALLEL_THREADS_ATTRIBUTE, PROPERTY_PARALLEL_THREADS, Configuration::asInteger, DEFAULT_PARALLEL_THREADS);
+        configureProperty(xquery, PARALLEL_PARTITION_SIZE_ATTRIBUTE, PROPERTY_PARALLEL_PARTITION_SIZE, Configuration::asInteger, DEFAULT_PARALLEL_PARTITION_SIZE);
+        configureProperty(xquery, COMPILE_THRESHOLD_ATTRIBUTE, PROPERTY_COMPILE_THRESHOLD, Configuration::asInteger, DEFAULT_COMPILE_THRESHOLD);
+        configureProperty(xquery, RESULT_CACHE_SIZE_ATTRIBUTE, PROPERTY_RESULT_CACHE_SIZE, Configuration::asInteger, DEFAULT_RESULT_CACHE_SIZE);
+        configureProperty(xquery, RESULT_CACHE_TTL_ATTRIBUTE, PROPERTY_RESULT_CACHE_TTL, Configuration::asLong, DEFAULT_RESULT_CACHE_TTL);
+        configureProperty(xquery, CURSOR_BUDGET_ATTRIBUTE, PROPERTY_CURSOR_BUDGET, Configuration::asLong, DEFAULT_CURSOR_BUDGET);
+        configureProperty(xquery, CURSOR_TIMEOUT_ATTRIBUTE, PROPERTY_CURSOR_TIMEOUT, Configuration::asLong, DEFAULT_CURSOR_TIMEOUT);
 
         // built-in-modules
         final Map<String, Class<?>> classMap = new HashMap<>();
@@ -946,6 +1028,21 @@ public class Configuration implements ErrorHandler {
             LOG.warn(CANNOT_CONVERT_VALUE_TO_INTEGER, SHRINK_THRESHOLD_PROPERTY, cacheShrinkThreshold, nfe);
         }
 
+        configureProperty(con, CACHE_POLICY_ATTRIBUTE, PROPERTY_CACHE_POLICY, Configuration::asCachePolicy, null);
+
+        String offHeapCacheMem = getConfigAttributeValue(con, OFF_HEAP_CACHE_SIZE_ATTRIBUTE);
+        if (offHeapCacheMem != null) {
+            if (offHeapCacheMem.endsWith("M") || offHeapCacheMem.endsWith("m")) {
+                offHeapCacheMem = offHeapCacheMem.substring(0, offHeapCacheMem.length() - 1);
+            }
+
+            try {
+                setProperty(PROPERTY_OFF_HEAP_CACHE_SIZE, Integer.valueOf(offHeapCacheMem));
+            } catch (final NumberFormatException nfe) {
+                LOG.warn(CANNOT_CONVERT_VALUE_TO_INTEGER, PROPERTY_OFF_HEAP_CACHE_SIZE, offHeapCacheMem, nfe);
+            }
+        }
+
         String collectionCache = getConfigAttributeValue(con, CollectionCache.CACHE_SIZE_ATTRIBUTE);
         if (collectionCache != null) {
             collectionCache = collectionCache.toLowerCase();
@@ -976,6 +1073,12 @@ public class Configuration implements ErrorHandler {
 
         configureProperty(con, NativeBroker.PAGE_SIZE_ATTRIBUTE, PROPERTY_PAGE_SIZE, Configuration::asInteger, null);
 
+        configureProperty(con, BrokerPoolConstants.PAGE_IO_ATTRIBUTE, PROPERTY_PAGE_IO, Configuration::asPageIOType, null);
+
+        configureProperty(con, BrokerPoolConstants.DOM_COMPRESSION_ATTRIBUTE, PROPERTY_DOM_COMPRESSION, Configuration::asRecordCompression, null);
+
+        configureFilePageSizes(con);
+
         //Not clear : rather looks like a buffers count
         configureProperty(con, BrokerPoolConstants.COLLECTION_CACHE_SIZE_ATTRIBUTE, PROPERTY_COLLECTION_CACHE_SIZE, Configuration::asInteger, null);
 
@@ -1016,6 +1119,40 @@ public class Configuration implements ErrorHandler {
         configureElement(con, BrokerPoolConstants.CONFIGURATION_RECOVERY_ELEMENT_NAME, element -> configureRecovery(dbHome, element));
     }
 
+    private void configureFilePageSizes(final Element con) {
+        final Map<String, Integer> filePageSizes = new HashMap<>();
+        for (Node child = con.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE || !BrokerPoolConstants.CONFIGURATION_FILE_ELEMENT_NAME.equals(child.getLocalName())) {
+                continue;
+            }
+
+            final Element file = (Element) child;
+            final String name = getConfigAttributeValue(file, BrokerPoolConstants.FILE_NAME_ATTRIBUTE);
+            final String pageSize = getConfigAttributeValue(file, NativeBroker.PAGE_SIZE_ATTRIBUTE);
+            if (name == null || pageSize == null) {
+                LOG.warn("Ignoring <{}> element without {} and {} attributes", BrokerPoolConstants.CONFIGURATION_FILE_ELEMENT_NAME,
+                        BrokerPoolConstants.FILE_NAME_ATTRIBUTE, NativeBroker.PAGE_SIZE_ATTRIBUTE);
+                continue;
+            }
+
+            try {
+                final int size = Integer.parseInt(pageSize);
+                if (size < BrokerPoolConstants.MIN_PAGE_SIZE || size > BrokerPoolConstants.MAX_PAGE_SIZE || Integer.bitCount(size) != 1) {
+                    LOG.warn("Ignoring page size {} for {}, it must be a power of two between {} and {}", size, name,
+                            BrokerPoolConstants.MIN_PAGE_SIZE, BrokerPoolConstants.MAX_PAGE_SIZE);
+                    continue;
+                }
+                filePageSizes.put(name, size);
+            } catch (final NumberFormatException nfe) {
+                LOG.warn(CANNOT_CONVERT_VALUE_TO_INTEGER, PROPERTY_FILE_PAGE_SIZES, pageSize, nfe);
+            }
+        }
+
+        if (!filePageSizes.isEmpty()) {
+            setProperty(PROPERTY_FILE_PAGE_SIZES, Collections.unmodifiableMap(filePageSizes));
+        }
+    }
+
     private void configureRecovery(final Optional<Path> dbHome, final Element recovery) throws DatabaseConfigurationException {
         configureProperty(recovery, RECOVERY_ENABLED_ATTRIBUTE, PROPERTY_RECOVERY_ENABLED, Configuration::asBoolean, TRUE);
         configureProperty(recovery, RECOVERY_SYNC_ON_COMMIT_ATTRIBUTE, PROPERTY_RECOVERY_SYNC_ON_COMMIT, Configuration::asBoolean, TRUE);
@@ -1048,6 +1185,7 @@ public class Configuration implements ErrorHandler {
 
         configureProperty(recovery, RECOVERY_FORCE_RESTART_ATTRIBUTE, PROPERTY_RECOVERY_FORCE_RESTART, Configuration::asBoolean, FALSE);
         configureProperty(recovery, RECOVERY_POST_RECOVERY_CHECK, PROPERTY_RECOVERY_CHECK, Configuration::asBoolean, FALSE);
+        configureProperty(recovery, RECOVERY_REDO_THREADS_ATTRIBUTE, PROPERTY_RECOVERY_REDO_THREADS, Configuration::asInteger, null);
     }
 
     /**
@@ -1068,6 +1206,7 @@ public class Configuration implements ErrorHandler {
     private void configureXQueryPool(final Element queryPool) {
         configureProperty(queryPool, MAX_STACK_SIZE_ATTRIBUTE, PROPERTY_MAX_STACK_SIZE, Configuration::asInteger, null);
         configureProperty(queryPool, POOL_SIZE_ATTTRIBUTE, XQueryPool.PROPERTY_POOL_SIZE, Configuration::asInteger, null);
+        configureProperty(queryPool, XQueryPool.MODULE_CACHE_SIZE_ATTRIBUTE, XQueryPool.PROPERTY_MODULE_CACHE_SIZE, Configuration::asInteger, null);
     }
 
     private void configureStartup(final Element startup) throws DatabaseConfigurationException {
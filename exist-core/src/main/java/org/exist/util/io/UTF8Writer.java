@@ -0,0 +1,183 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.util.io;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A writer which encodes characters as UTF-8 straight into a byte buffer,
+ * which is written to an output stream when it is full or flushed.
+ *
+ * Unlike {@link java.io.OutputStreamWriter}, it is not synchronized and does
+ * not go through a {@link java.nio.charset.CharsetEncoder}, so that writing
+ * single characters, as the serializers do, is cheap. The byte buffers are
+ * taken from a pool and returned to it when the writer is closed. Malformed
+ * surrogates are replaced with '?', as by {@link java.io.OutputStreamWriter}.
+ */
+@NotThreadSafe
+public class UTF8Writer extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final ArrayBlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(64);
+
+    private final OutputStream os;
+    @Nullable private byte[] buf;
+    private int count = 0;
+
+    /**
+     * A high surrogate written without its low surrogate, or 0.
+     */
+    private char highSurrogate = 0;
+
+    public UTF8Writer(final OutputStream os) {
+        this.os = os;
+        final byte[] pooled = BUFFERS.poll();
+        this.buf = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        ensureOpen();
+        if (c < 0x80 && highSurrogate == 0) {
+            if (count == BUFFER_SIZE) {
+                flushBuffer();
+            }
+            buf[count++] = (byte) c;
+        } else {
+            encode((char) c);
+        }
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            final char c = cbuf[i];
+            if (c < 0x80 && highSurrogate == 0) {
+                if (count == BUFFER_SIZE) {
+                    flushBuffer();
+                }
+                buf[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80 && highSurrogate == 0) {
+                if (count == BUFFER_SIZE) {
+                    flushBuffer();
+                }
+                buf[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    private void encode(final char c) throws IOException {
+        if (count > BUFFER_SIZE - 4) {
+            flushBuffer();
+        }
+
+        if (highSurrogate != 0) {
+            final char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int cp = Character.toCodePoint(high, c);
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            buf[count++] = '?';
+            if (count > BUFFER_SIZE - 4) {
+                flushBuffer();
+            }
+        }
+
+        if (c < 0x80) {
+            buf[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            os.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buf == null) {
+            throw new IOException("Writer closed");
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        os.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        try {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                write('?');
+            }
+            flushBuffer();
+            os.close();
+        } finally {
+            BUFFERS.offer(buf);
+            buf = null;
+        }
+    }
+}
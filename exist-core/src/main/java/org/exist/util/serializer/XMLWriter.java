@@ -72,6 +72,14 @@ public class XMLWriter implements SerializerWriter {
 
     private final char[] charref = new char[10];
 
+    /**
+     * Buffer through which character sequences other than
+     * strings are passed to the writer in bulk.
+     */
+    private final char[] charBuf = new char[512];
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private static final boolean[] textSpecialChars;
 
     private static final boolean[] attrSpecialChars;
@@ -145,6 +153,15 @@ public class XMLWriter implements SerializerWriter {
         this.xdmSerialization = outputProperties.getProperty(EXistOutputKeys.XDM_SERIALIZATION, "no").equals("yes");
     }
 
+    /**
+     * The names of the open elements are only needed to find out whether
+     * an element is one of the cdata-section-elements of an XDM serialization,
+     * so they are not parsed and kept otherwise.
+     */
+    private boolean isTrackingElementNames() {
+        return xdmSerialization && !cdataSectionElements.get().isEmpty();
+    }
+
     private Set<QName> parseCdataSectionElementNames() {
         final String s = outputProperties.getProperty(OutputKeys.CDATA_SECTION_ELEMENTS);
         if (s == null || s.isEmpty()) {
@@ -223,10 +240,12 @@ public class XMLWriter implements SerializerWriter {
             writer.write('<');
             writer.write(qname);
             tagIsOpen = true;
-            try {
-                elementName.push(QName.parse(namespaceUri, qname));
-            } catch (final QName.IllegalQNameException e) {
-                throw new TransformerException(e.getMessage(), e);
+            if (isTrackingElementNames()) {
+                try {
+                    elementName.push(QName.parse(namespaceUri, qname));
+                } catch (final QName.IllegalQNameException e) {
+                    throw new TransformerException(e.getMessage(), e);
+                }
             }
         } catch(final IOException ioe) {
             throw new TransformerException(ioe.getMessage(), ioe);
@@ -254,7 +273,9 @@ public class XMLWriter implements SerializerWriter {
             
             writer.write(qname.getLocalPart());
             tagIsOpen = true;
-            elementName.push(qname);
+            if (isTrackingElementNames()) {
+                elementName.push(qname);
+            }
         } catch(final IOException ioe) {
             throw new TransformerException(ioe.getMessage(), ioe);
         }
@@ -269,7 +290,7 @@ public class XMLWriter implements SerializerWriter {
                 writer.write(qname);
                 writer.write('>');
             }
-            elementName.pop();
+            elementName.poll();
         } catch(final IOException ioe) {
             throw new TransformerException(ioe.getMessage(), ioe);
         }
@@ -288,7 +309,7 @@ public class XMLWriter implements SerializerWriter {
                 writer.write(qname.getLocalPart());
                 writer.write('>');
             }
-            elementName.pop();
+            elementName.poll();
         } catch(final IOException ioe) {
             throw new TransformerException(ioe.getMessage(), ioe);
         }
@@ -657,8 +678,18 @@ public class XMLWriter implements SerializerWriter {
     }
 
     private void writeCharSeq(final CharSequence ch, final int start, final int end) throws IOException {
-        for(int i = start; i < end; i++) {
-            writer.write(ch.charAt(i));
+        if (ch instanceof String str) {
+            writer.write(str, start, end - start);
+            return;
+        }
+        int pos = start;
+        while (pos < end) {
+            final int len = Math.min(charBuf.length, end - pos);
+            for (int i = 0; i < len; i++) {
+                charBuf[i] = ch.charAt(pos + i);
+            }
+            writer.write(charBuf, 0, len);
+            pos += len;
         }
     }
 
@@ -667,10 +698,13 @@ public class XMLWriter implements SerializerWriter {
         charref[o++] = '&';
         charref[o++] = '#';
         charref[o++] = 'x';
-        final String code = Integer.toHexString(charval);
-        final int len = code.length();
-        for(int k = 0; k < len; k++) {
-            charref[o++] = code.charAt(k);
+        boolean leading = true;
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            final int digit = (charval >> shift) & 0xF;
+            if (digit != 0 || !leading || shift == 0) {
+                charref[o++] = HEX_DIGITS[digit];
+                leading = false;
+            }
         }
         charref[o++] = ';';
         writer.write(charref, 0, o);
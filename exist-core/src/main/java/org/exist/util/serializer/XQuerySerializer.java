@@ -31,6 +31,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
 
+import javax.annotation.Nullable;
 import javax.xml.transform.OutputKeys;
 import java.io.Writer;
 import java.util.Properties;
@@ -46,6 +47,7 @@ public class XQuerySerializer {
     private final Properties outputProperties;
     private final DBBroker broker;
     private final Writer writer;
+    private @Nullable Serializer.ItemListener itemListener = null;
 
     public XQuerySerializer(DBBroker broker, Properties outputProperties, Writer writer) {
         super();
@@ -57,6 +59,16 @@ public class XQuerySerializer {
         outputProperties.setProperty(EXistOutputKeys.XDM_SERIALIZATION, "yes");
     }
 
+    /**
+     * Set a listener which is notified after each item of a sequence
+     * serialized with the xml method.
+     *
+     * @param itemListener the listener, or null to remove it
+     */
+    public void setItemListener(@Nullable final Serializer.ItemListener itemListener) {
+        this.itemListener = itemListener;
+    }
+
     public void serialize(final Sequence sequence) throws SAXException, XPathException {
         serialize(sequence, 1, sequence.getItemCount(), false, false, 0, 0);
     }
@@ -91,6 +103,7 @@ public class XQuerySerializer {
             sax.setOutput(writer, outputProperties);
             serializer.setProperties(outputProperties);
             serializer.setSAXHandlers(sax, sax);
+            serializer.setItemListener(itemListener);
             serializer.toSAX(sequence, start, howmany, wrap, typed, compilationTime, executionTime);
         } catch (SAXNotSupportedException | SAXNotRecognizedException e) {
             throw new SAXException(e.getMessage(), e);
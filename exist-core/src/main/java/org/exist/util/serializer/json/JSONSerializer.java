@@ -43,10 +43,18 @@ import java.util.Properties;
  * to JSON. The JSON serializer differs from other serialization methods because it maps XQuery
  * data items to JSON.
  *
+ * Maps, arrays and atomic values are streamed to the writer by a Jackson generator; integers
+ * which fit into a long are written as numbers without being formatted to a string first.
+ *
  * @author Wolf
  */
 public class JSONSerializer {
 
+    /**
+     * Jackson factories are thread-safe once configured, and recycle their buffers.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final DBBroker broker;
     private final Properties outputProperties;
 
@@ -57,9 +65,8 @@ public class JSONSerializer {
     }
 
     public void serialize(Sequence sequence, Writer writer) throws SAXException {
-        JsonFactory factory = new JsonFactory();
         try {
-            JsonGenerator generator = factory.createGenerator(writer);
+            JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
             generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
             if ("yes".equals(outputProperties.getProperty(OutputKeys.INDENT, "no"))) {
                 generator.useDefaultPrettyPrinter();
@@ -94,15 +101,18 @@ public class JSONSerializer {
     }
 
     private void serializeItem(Item item, JsonGenerator generator) throws IOException, XPathException, SAXException {
-        if (item.getType() == Type.ARRAY_ITEM) {
+        final int type = item.getType();
+        if (type == Type.ARRAY_ITEM) {
             serializeArray((ArrayType) item, generator);
-        } else if (item.getType() == Type.MAP_ITEM) {
+        } else if (type == Type.MAP_ITEM) {
             serializeMap((MapType) item, generator);
-        } else if (Type.subTypeOf(item.getType(), Type.ANY_ATOMIC_TYPE)) {
-            if (Type.subTypeOfUnion(item.getType(), Type.NUMERIC)) {
+        } else if (Type.subTypeOf(type, Type.ANY_ATOMIC_TYPE)) {
+            if (item instanceof IntegerValue integer && integer.isLong()) {
+                generator.writeNumber(integer.getLong());
+            } else if (Type.subTypeOfUnion(type, Type.NUMERIC)) {
                 generator.writeNumber(item.getStringValue());
             } else {
-                switch (item.getType()) {
+                switch (type) {
                     case Type.BOOLEAN:
                         generator.writeBoolean(((AtomicValue)item).effectiveBooleanValue());
                         break;
@@ -111,7 +121,7 @@ public class JSONSerializer {
                         break;
                 }
             }
-        } else if (Type.subTypeOf(item.getType(), Type.NODE)) {
+        } else if (Type.subTypeOf(type, Type.NODE)) {
             serializeNode(item, generator);
         }
     }
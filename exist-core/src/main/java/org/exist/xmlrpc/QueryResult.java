@@ -23,10 +23,13 @@ package org.exist.xmlrpc;
 
 import java.io.IOException;
 
+import org.exist.storage.CursorManager;
+import org.exist.storage.ResultCursor;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.value.Sequence;
 
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,6 +39,9 @@ import org.exist.xquery.value.BinaryValue;
  * Simple container for the results of a query. Used to cache
  * query results that may be retrieved later by the client.
  *
+ * Once the result is cached, its items are held by a cursor
+ * of the {@link CursorManager}.
+ *
  * @author wolf
  * @author jmfernandez
  */
@@ -46,6 +52,8 @@ public class QueryResult extends AbstractCachedResult {
     protected Properties serialization = null;
     // set upon failure
     protected XPathException exception = null;
+    @Nullable private CursorManager cursorManager = null;
+    @Nullable private ResultCursor cursor = null;
 
     public QueryResult(final Sequence result, final Properties outputProperties) {
         this(result, outputProperties, 0);
@@ -69,16 +77,50 @@ public class QueryResult extends AbstractCachedResult {
         return exception;
     }
 
+    /**
+     * Move the result into a cursor.
+     *
+     * @param cursorManager the cursor manager which opened the cursor
+     * @param cursor the cursor over the result
+     */
+    void setCursor(final CursorManager cursorManager, final ResultCursor cursor) {
+        this.cursorManager = cursorManager;
+        this.cursor = cursor;
+        this.result = null;
+    }
+
+    /**
+     * Returns true if the cursor holding the result has been closed,
+     * e.g. because it has not been accessed for some time.
+     *
+     * @return true if the result has been released
+     */
+    boolean isReleased() {
+        return cursor != null && cursor.isClosed();
+    }
+
     /**
      * @return Returns the result.
      */
     @Override
     public Sequence getResult() {
-        return result;
+        return cursor != null ? cursor.getSequence() : result;
+    }
+
+    @Override
+    public void touch() {
+        super.touch();
+        if (cursorManager != null && cursor != null) {
+            cursorManager.get(cursor.getId());
+        }
     }
 
     @Override
     protected void doClose() {
+        if (cursorManager != null && cursor != null) {
+            cursorManager.close(cursor.getId());
+            cursor = null;
+        }
         if (result != null) {
 
             //cleanup any binary values
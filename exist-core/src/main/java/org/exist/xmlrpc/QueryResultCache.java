@@ -26,6 +26,8 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import net.jcip.annotations.ThreadSafe;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.security.Subject;
+import org.exist.storage.CursorManager;
 
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +35,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Used by {@link XmldbRequestProcessorFactory} to cache query results. Each query result
- * is identified by a unique integer id.
+ * is identified by a unique integer id. The items of the results of queries are held by
+ * cursors of the {@link CursorManager}, which bounds the memory they use.
  *
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
@@ -45,8 +48,10 @@ public class QueryResultCache {
 
     private final AtomicInteger cacheIdCounter = new AtomicInteger();
     private final Cache<Integer, AbstractCachedResult> cache;
+    private final CursorManager cursorManager;
 
-    public QueryResultCache() {
+    public QueryResultCache(final CursorManager cursorManager) {
+        this.cursorManager = cursorManager;
         this.cache = Caffeine.newBuilder()
                 .expireAfterAccess(TIMEOUT, TimeUnit.MILLISECONDS)
                 .removalListener((key, value, cause) -> {
@@ -64,6 +69,21 @@ public class QueryResultCache {
         return cacheId;
     }
 
+    /**
+     * Cache the result of a query, whose items are moved into a cursor.
+     *
+     * @param qr the result of the query
+     * @param owner the user who executed the query
+     *
+     * @return the id of the cached result
+     */
+    public int add(final QueryResult qr, final Subject owner) {
+        if (qr.result != null) {
+            qr.setCursor(cursorManager, cursorManager.open(owner, null, qr.result, false));
+        }
+        return add(qr);
+    }
+
     public AbstractCachedResult get(final int cacheId) {
         if (cacheId < 0 || cacheId >= cacheIdCounter.get()) {
             return null;
@@ -73,7 +93,15 @@ public class QueryResultCache {
 
     public QueryResult getResult(final int cacheId) {
         final AbstractCachedResult acr = get(cacheId);
-        return (acr != null && acr instanceof QueryResult result) ? result : null;
+        if (acr instanceof QueryResult result) {
+            if (result.isReleased()) {
+                // the cursor has been closed by the cursor manager
+                cache.invalidate(cacheId);
+                return null;
+            }
+            return result;
+        }
+        return null;
     }
 
     public SerializedResult getSerializedResult(final int cacheId) {
@@ -421,7 +421,7 @@ public class RpcConnection implements RpcAPI {
                     throw new EXistException(result.getException());
                 }
                 result.queryTime = System.currentTimeMillis() - startTime;
-                return factory.resultSets.add(result);
+                return factory.resultSets.add(result, user);
             } catch (final XPathException e) {
                 throw new EXistException(e);
             }
@@ -1054,10 +1054,11 @@ public class RpcConnection implements RpcAPI {
             throw new EXistException("result set unknown or timed out");
         }
         qr.touch();
-        if (qr.result == null) {
+        final Sequence result = qr.getResult();
+        if (result == null) {
             return 0;
         }
-        return qr.result.getItemCount();
+        return result.getItemCount();
     }
 
     @Override
@@ -1831,7 +1832,7 @@ public class RpcConnection implements RpcAPI {
 
         queryResult.result = resultSeq;
         queryResult.queryTime = (System.currentTimeMillis() - startTime);
-        final int id = factory.resultSets.add(queryResult);
+        final int id = factory.resultSets.add(queryResult, user);
         ret.put("id", id);
         ret.put("hash", queryResult.hashCode());
         ret.put("results", result);
@@ -1944,7 +1945,7 @@ public class RpcConnection implements RpcAPI {
 
         queryResult.result = resultSeq;
         queryResult.queryTime = (System.currentTimeMillis() - startTime);
-        final int id = factory.resultSets.add(queryResult);
+        final int id = factory.resultSets.add(queryResult, user);
         ret.put("id", id);
         ret.put("hash", queryResult.hashCode());
         ret.put("results", result);
@@ -2239,7 +2240,7 @@ public class RpcConnection implements RpcAPI {
                 throw new EXistException("result set unknown or timed out");
             }
             qr.touch();
-            final Item item = qr.result.itemAt(num);
+            final Item item = qr.getResult().itemAt(num);
             if (item == null) {
                 throw new EXistException("index out of range");
             }
@@ -2275,7 +2276,7 @@ public class RpcConnection implements RpcAPI {
                 throw new EXistException("result set unknown or timed out: " + resultId);
             }
             qr.touch();
-            final Item item = qr.result.itemAt(num);
+            final Item item = qr.getResult().itemAt(num);
             if (item == null) {
                 throw new EXistException("index out of range");
             }
@@ -2335,6 +2336,7 @@ public class RpcConnection implements RpcAPI {
                 throw new EXistException("result set unknown or timed out");
             }
             qr.touch();
+            final Sequence results = qr.getResult();
 
             final SAXSerializer handler = (SAXSerializer) SerializerPool.getInstance().borrowObject(SAXSerializer.class);
             try (final StringWriter writer = new StringWriter()) {
@@ -2345,12 +2347,12 @@ public class RpcConnection implements RpcAPI {
                 handler.startPrefixMapping("exist", Namespaces.EXIST_NS);
                 handler.startPrefixMapping("xs", Namespaces.SCHEMA_NS);
                 final AttributesImpl attribs = new AttributesImpl();
-                attribs.addAttribute("", "hitCount", "hitCount", "CDATA", Integer.toString(qr.result.getItemCount()));
+                attribs.addAttribute("", "hitCount", "hitCount", "CDATA", Integer.toString(results.getItemCount()));
                 handler.startElement(Namespaces.EXIST_NS, "result", "exist:result", attribs);
                 Item current;
                 char[] value;
                 try {
-                    for (final SequenceIterator i = qr.result.iterate(); i.hasNext(); ) {
+                    for (final SequenceIterator i = results.iterate(); i.hasNext(); ) {
                         current = i.nextItem();
 
                         if (Type.subTypeOf(current.getType(), Type.NODE)) {
@@ -2391,6 +2393,7 @@ public class RpcConnection implements RpcAPI {
                 throw new EXistException("result set unknown or timed out");
             }
             qr.touch();
+            final Sequence results = qr.getResult();
             for (final Map.Entry<Object, Object> entry : qr.serialization.entrySet()) {
                 parameters.put(entry.getKey().toString(), entry.getValue().toString());
             }
@@ -2419,7 +2422,7 @@ public class RpcConnection implements RpcAPI {
                             "hitCount",
                             "hitCount",
                             "CDATA",
-                            Integer.toString(qr.result.getItemCount()));
+                            Integer.toString(results.getItemCount()));
                     handler.startElement(
                             Namespaces.EXIST_NS,
                             "result",
@@ -2428,7 +2431,7 @@ public class RpcConnection implements RpcAPI {
                     Item current;
                     char[] value;
                     try {
-                        for (final SequenceIterator i = qr.result.iterate(); i.hasNext(); ) {
+                        for (final SequenceIterator i = results.iterate(); i.hasNext(); ) {
                             current = i.nextItem();
                             if (Type.subTypeOf(current.getType(), Type.NODE)) {
                                 ((NodeValue) current).toSAX(broker, handler, null);
@@ -2948,18 +2951,26 @@ public class RpcConnection implements RpcAPI {
         });
     }
 
-    public Map<String, Object> summary(final int resultId) throws EXistException, XPathException {
+    public Map<String, Object> summary(final int resultId) throws EXistException, PermissionDeniedException, XPathException {
         final QueryResult qr = factory.resultSets.getResult(resultId);
         if (qr == null) {
             throw new EXistException("result set unknown or timed out");
         }
         qr.touch();
-        if (qr.result == null) {
-            return summaryToMap(qr.queryTime, null, null, null);
-        }
+        // the items of a spilled result are read with the broker of the current user
+        return withDb((broker, transaction) -> {
+            final Sequence results = qr.getResult();
+            if (results == null) {
+                return summaryToMap(qr.queryTime, null, null, null);
+            }
 
-        final Tuple2<java.util.Collection<NodeCount>, java.util.Collection<DoctypeCount>> summary = summarise(qr.result);
-        return summaryToMap(qr.queryTime, qr.result, summary._1, summary._2);
+            try {
+                final Tuple2<java.util.Collection<NodeCount>, java.util.Collection<DoctypeCount>> summary = summarise(results);
+                return summaryToMap(qr.queryTime, results, summary._1, summary._2);
+            } catch (final XPathException e) {
+                throw new EXistException(e);
+            }
+        });
     }
 
     private Tuple2<java.util.Collection<NodeCount>, java.util.Collection<DoctypeCount>> summarise(final Sequence results) throws XPathException {
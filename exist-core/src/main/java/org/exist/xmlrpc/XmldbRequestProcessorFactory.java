@@ -58,7 +58,7 @@ public class XmldbRequestProcessorFactory implements RequestProcessorFactoryFact
     private final boolean useDefaultUser;
     private final BrokerPool brokerPool;
     private final ContentFilePool contentFilePool;
-    protected final QueryResultCache resultSets = new QueryResultCache();
+    protected final QueryResultCache resultSets;
 
     protected final AtomicLazyVal<ExecutorService> restoreExecutorService;
     protected final Map<UUID, Tuple2<RpcConnection.BufferingRestoreListener, Future<Void>>> restoreTasks = new ConcurrentHashMap<>();
@@ -74,6 +74,7 @@ public class XmldbRequestProcessorFactory implements RequestProcessorFactoryFact
             this.databaseId = databaseId;
         }
         this.brokerPool = BrokerPool.getInstance(this.databaseId);
+        this.resultSets = new QueryResultCache(brokerPool.getCursorManager());
         this.contentFilePool = new ContentFilePool(TemporaryFileManager.getInstance(), brokerPool.getId(),  brokerPool.getConfiguration());
         this.restoreExecutorService = new AtomicLazyVal<>(() -> Executors.newCachedThreadPool(new NamedThreadFactory(brokerPool, "rpc-db-restore")));
     }
@@ -0,0 +1,131 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import javax.annotation.Nullable;
+
+/**
+ * Marks an expression which sorts its result, and which only needs to keep the
+ * first items of the sorted result if the expression consuming it selects
+ * nothing after a fixed position, e.g. <code>subsequence($sorted, 1, 20)</code>.
+ *
+ * Instead of sorting all items, the expression then keeps the best items seen so
+ * far in a buffer of bounded size (top-k), which takes <code>O(n log k)</code> time
+ * and <code>O(k)</code> memory for the sorted items.
+ */
+public interface BoundedSort {
+
+    long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * Set the number of items from the start of the sorted result which are used
+     * by the following evaluations of this expression. The consumer must restore the
+     * previous limit after each evaluation, see {@link #withLimit(long, Evaluation)}.
+     *
+     * @param limit the number of items, or {@link #UNBOUNDED}
+     *
+     * @return the previous limit
+     */
+    long setLimit(long limit);
+
+    /**
+     * Evaluate with a limit on the number of sorted items.
+     *
+     * @param limit the number of items which are used
+     * @param evaluation the evaluation of the expression
+     * @param <T> the type of the result
+     *
+     * @return the result of the evaluation
+     *
+     * @throws XPathException if the evaluation fails
+     */
+    default <T> T withLimit(final long limit, final Evaluation<T> evaluation) throws XPathException {
+        final long previous = setLimit(limit);
+        try {
+            return evaluation.eval();
+        } finally {
+            setLimit(previous);
+        }
+    }
+
+    @FunctionalInterface
+    interface Evaluation<T> {
+        T eval() throws XPathException;
+    }
+
+    /**
+     * Find the sort whose result an expression returns unchanged.
+     *
+     * @param expr the expression, e.g. a function argument
+     *
+     * @return the sort, or null if the expression does not return the result of a sort
+     */
+    static @Nullable BoundedSort find(Expression expr) {
+        while (true) {
+            if (expr instanceof DynamicCardinalityCheck check
+                    && check.getRequiredCardinality() == Cardinality.ZERO_OR_MORE) {
+                expr = check.getSubExpression(0);
+            } else if (expr instanceof InternalFunctionCall call) {
+                expr = call.getFunction();
+            } else {
+                break;
+            }
+        }
+        if (expr instanceof FLWORClause clause && !(expr instanceof BoundedSort)) {
+            return clause.getPreviousClause() == null ? findOrderBy(clause) : null;
+        }
+        return expr instanceof BoundedSort sort ? sort : null;
+    }
+
+    /**
+     * The items returned by a FLWOR expression are sorted by its "order by" clause,
+     * provided there is only one such clause and it is not followed by clauses which
+     * group or number the tuples.
+     */
+    private static @Nullable BoundedSort findOrderBy(final FLWORClause first) {
+        OrderByClause orderBy = null;
+        Expression expr = first;
+        while (expr instanceof FLWORClause clause) {
+            switch (clause.getType()) {
+                case FOR:
+                case LET:
+                case WHERE:
+                    break;
+                case COUNT:
+                    if (orderBy != null) {
+                        return null;
+                    }
+                    break;
+                case ORDERBY:
+                    if (orderBy != null) {
+                        return null;
+                    }
+                    orderBy = (OrderByClause) clause;
+                    break;
+                default:
+                    return null;
+            }
+            expr = clause.getReturnExpression();
+        }
+        return orderBy;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.dom.QName;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.storage.statistics.IndexStatistics;
+import org.exist.xquery.functions.fn.FunBoolean;
+import org.exist.xquery.functions.fn.FunEmpty;
+import org.exist.xquery.functions.fn.FunExists;
+import org.exist.xquery.functions.fn.FunNot;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+
+/**
+ * Estimates the cost and the selectivity of predicates, so that the {@link Optimizer}
+ * can evaluate the cheap and selective predicates of a step first, and the
+ * {@link org.exist.xquery.pragmas.Optimize} pragma can start with the index lookup
+ * which returns the fewest nodes.
+ *
+ * The cost of a predicate is the estimated work of evaluating it for one context node,
+ * and its selectivity is the estimated fraction of the context nodes it keeps. A sequence
+ * of independent filters is cheapest when ordered by increasing
+ * <code>cost / (1 - selectivity)</code>, see {@link Estimate#rank()}.
+ *
+ * The number of elements below a context node is estimated from the data guide of
+ * {@link IndexStatistics}, if the index-stats module is configured. All other
+ * estimates are fixed guesses.
+ */
+public class CostModel {
+
+    static final double DEFAULT_SELECTIVITY = 0.5;
+    static final double EQUALITY_SELECTIVITY = 0.1;
+    static final double RANGE_SELECTIVITY = 1.0 / 3;
+    static final double INDEX_SELECTIVITY = 0.1;
+
+    static final double STEP_COST = 1;
+    static final double DESCENDANT_STEP_COST = 10;
+    static final double COMPARISON_COST = 1;
+    static final double FUNCTION_COST = 2;
+    static final double INDEX_FUNCTION_COST = 0.5;
+    static final double USER_FUNCTION_COST = 100;
+
+    @Nullable private final IndexStatistics statistics;
+
+    public CostModel(final XQueryContext context) {
+        final DBBroker broker = context.getBroker();
+        this.statistics = broker == null ? null
+                : (IndexStatistics) broker.getBrokerPool().getIndexManager().getIndexById(IndexStatistics.ID);
+    }
+
+    /**
+     * The estimated cost and selectivity of an expression.
+     *
+     * @param cost the work of evaluating the expression for one context node
+     * @param selectivity the fraction of the context nodes kept by the expression
+     */
+    public record Estimate(double cost, double selectivity) {
+
+        /**
+         * Filters with a lower rank should be evaluated first.
+         *
+         * @return the cost of the filter per context node it removes
+         */
+        public double rank() {
+            return selectivity >= 1 ? Double.POSITIVE_INFINITY : cost / (1 - selectivity);
+        }
+    }
+
+    /**
+     * Estimate a predicate of a location step.
+     *
+     * @param predicate the predicate
+     * @param contextName the name of the nodes selected by the step, or null if unknown
+     * @return the estimate
+     */
+    public Estimate estimate(final Predicate predicate, @Nullable final QName contextName) {
+        final Expression inner = predicate.getSubExpressionCount() == 1 ? predicate.getSubExpression(0) : predicate;
+        return new Estimate(cost(inner, contextName), selectivity(inner, contextName));
+    }
+
+    /**
+     * Estimate the number of nodes an index lookup returns for a comparison.
+     *
+     * @param qname the name of the compared nodes
+     * @param relation the comparison
+     * @return the estimated number of nodes, or -1 if unknown
+     */
+    public long estimateCardinality(final QName qname, final Constants.Comparison relation) {
+        if (statistics == null || qname.getNameType() != ElementValue.ELEMENT) {
+            return -1;
+        }
+        return (long) (statistics.getNodeCount(qname) * selectivity(relation));
+    }
+
+    private double cost(final Expression expr, @Nullable final QName contextName) {
+        if (expr instanceof LiteralValue || expr instanceof VariableReference) {
+            return 0;
+        }
+        if (expr instanceof LocationStep step) {
+            final double fanout = Math.max(1, fanout(step, contextName));
+            double cost = (isDescendantAxis(step.getAxis()) ? DESCENDANT_STEP_COST : STEP_COST) * fanout;
+            if (step.getPredicates() != null) {
+                for (final Predicate predicate : step.getPredicates()) {
+                    cost += fanout * cost(predicate, stepName(step));
+                }
+            }
+            return cost;
+        }
+        if (expr instanceof InternalFunctionCall call) {
+            return cost(call.getFunction(), contextName);
+        }
+        if (expr instanceof Function function) {
+            double cost;
+            if (function instanceof UserDefinedFunction || function instanceof FunctionCall) {
+                cost = USER_FUNCTION_COST;
+            } else if (function instanceof Optimizable) {
+                cost = INDEX_FUNCTION_COST;
+            } else {
+                cost = FUNCTION_COST;
+            }
+            for (int i = 0; i < function.getArgumentCount(); i++) {
+                cost += cost(function.getArgument(i), contextName);
+            }
+            return cost;
+        }
+        if (expr instanceof GeneralComparison comparison) {
+            return COMPARISON_COST + cost(comparison.getLeft(), contextName) + cost(comparison.getRight(), contextName);
+        }
+        if (expr instanceof PathExpr path && !(expr instanceof BinaryOp)) {
+            // a relative path: every step is evaluated for each node selected by the previous one
+            double cost = 0;
+            double multiplier = 1;
+            QName name = contextName;
+            for (int i = 0; i < path.getSubExpressionCount(); i++) {
+                final Expression step = path.getSubExpression(i);
+                cost += multiplier * cost(step, name);
+                if (step instanceof LocationStep locationStep) {
+                    multiplier *= Math.max(1, fanout(locationStep, name));
+                    name = stepName(locationStep);
+                } else {
+                    name = null;
+                }
+            }
+            return cost;
+        }
+        double cost = 0;
+        for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+            cost += cost(expr.getSubExpression(i), contextName);
+        }
+        return cost;
+    }
+
+    private double selectivity(final Expression expr, @Nullable final QName contextName) {
+        if (expr instanceof OpAnd and) {
+            return selectivity(and.getLeft(), contextName) * selectivity(and.getRight(), contextName);
+        }
+        if (expr instanceof OpOr or) {
+            final double left = selectivity(or.getLeft(), contextName);
+            final double right = selectivity(or.getRight(), contextName);
+            return left + right - left * right;
+        }
+        if (expr instanceof GeneralComparison comparison) {
+            return selectivity(comparison.getRelation());
+        }
+        if (expr instanceof InternalFunctionCall call) {
+            return selectivity(call.getFunction(), contextName);
+        }
+        if (expr instanceof FunNot || expr instanceof FunEmpty) {
+            return 1 - selectivity(((Function) expr).getArgument(0), contextName);
+        }
+        if (expr instanceof FunBoolean || expr instanceof FunExists) {
+            return selectivity(((Function) expr).getArgument(0), contextName);
+        }
+        if (expr instanceof Function) {
+            return expr instanceof Optimizable ? INDEX_SELECTIVITY : DEFAULT_SELECTIVITY;
+        }
+        if (expr instanceof LocationStep step) {
+            // the fraction of the context nodes having such a node is at most the number of these nodes per context node
+            final double fanout = fanout(step, contextName);
+            return fanout < 0 ? DEFAULT_SELECTIVITY : Math.min(1, fanout);
+        }
+        if (expr.getSubExpressionCount() == 1) {
+            return selectivity(expr.getSubExpression(0), contextName);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    private static double selectivity(final Constants.Comparison relation) {
+        return switch (relation) {
+            case EQ, IN -> EQUALITY_SELECTIVITY;
+            case NEQ -> 1 - EQUALITY_SELECTIVITY;
+            default -> RANGE_SELECTIVITY;
+        };
+    }
+
+    /**
+     * Estimate the number of nodes selected by a step for each context node.
+     *
+     * @return the estimated number of nodes, or -1 if unknown
+     */
+    private double fanout(final LocationStep step, @Nullable final QName contextName) {
+        final QName name = stepName(step);
+        if (statistics == null || contextName == null || name == null) {
+            return -1;
+        }
+        final long contextCount = statistics.getNodeCount(contextName);
+        if (contextCount == 0) {
+            return -1;
+        }
+        return switch (step.getAxis()) {
+            case Constants.CHILD_AXIS -> (double) statistics.getChildCount(contextName, name) / contextCount;
+            case Constants.DESCENDANT_AXIS, Constants.DESCENDANT_SELF_AXIS ->
+                    (double) statistics.getNodeCount(name) / contextCount;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Get the name of the elements selected by a step.
+     *
+     * @return the name, or null if the step may select other nodes than elements of one name
+     */
+    static @Nullable QName stepName(final LocationStep step) {
+        final NodeTest test = step.getTest();
+        if (test.isWildcardTest() || test.getType() != Type.ELEMENT) {
+            return null;
+        }
+        final QName name = test.getName();
+        return name == null || name.getNameType() != ElementValue.ELEMENT ? null : name;
+    }
+
+    private static boolean isDescendantAxis(final int axis) {
+        return axis == Constants.DESCENDANT_AXIS || axis == Constants.DESCENDANT_SELF_AXIS
+                || axis == Constants.DESCENDANT_ATTRIBUTE_AXIS;
+    }
+}
@@ -76,6 +76,12 @@ public interface Expression extends Materializable {
      */
     public final static int UNORDERED = 1024;
 
+    /**
+     * Indicates that the path steps of the expression may be evaluated
+     * in parallel across the documents of their context.
+     */
+    public final static int PARALLEL_EVALUATION = 2048;
+
     /**
      * Indicates that no context id is supplied to an expression.
      */
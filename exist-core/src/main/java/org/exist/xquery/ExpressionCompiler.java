@@ -0,0 +1,504 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.dom.QName;
+import org.exist.xquery.Constants.ArithmeticOperator;
+import org.exist.xquery.Constants.Comparison;
+import org.exist.xquery.Constants.StringTruncationOperator;
+import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.BooleanValue;
+import org.exist.xquery.value.DoubleValue;
+import org.exist.xquery.value.IntegerValue;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.Type;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates JVM bytecode for expressions which compute a single number or
+ * boolean from atomic operands, i.e. arithmetic, value and general comparisons
+ * and the logical operators applied to variables and literals.
+ *
+ * The generated code is specialized for the types of the operands observed
+ * when the expression became hot: it computes with primitive longs, doubles
+ * and booleans, and only boxes the final result. xs:integer operands are
+ * computed as longs; an overflow throws an {@link ArithmeticException}, upon
+ * which the caller evaluates the expression tree instead.
+ *
+ * See {@link TieredExpression} for the expressions which switch to the
+ * generated code.
+ */
+public final class ExpressionCompiler {
+
+    private static final Logger LOG = LogManager.getLogger(ExpressionCompiler.class);
+
+    public static final String COMPILE_THRESHOLD_ATTRIBUTE = "compile-threshold";
+    public static final String PROPERTY_COMPILE_THRESHOLD = "xquery.compile-threshold";
+
+    /**
+     * The number of evaluations after which an expression is compiled,
+     * 0 disables compilation.
+     */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    private static final String KERNEL_CLASS = "org/exist/xquery/CompiledKernel";
+    private static final String KERNEL_INTERFACE = internalName(Kernel.class);
+    private static final String ITEM_ARRAY = "[" + descriptor(Item.class);
+    private static final String INTEGER_VALUE = internalName(IntegerValue.class);
+    private static final String DOUBLE_VALUE = internalName(DoubleValue.class);
+    private static final String BOOLEAN_VALUE = internalName(BooleanValue.class);
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * The code generated for an expression.
+     */
+    public interface Kernel {
+
+        /**
+         * Compute the value of the expression.
+         *
+         * @param values the values of the operands of the expression, which
+         *     must be of the types for which the kernel was generated
+         *
+         * @return the result of the expression
+         *
+         * @throws ArithmeticException if an integer operation overflows or divides by zero
+         */
+        Sequence eval(Item[] values);
+    }
+
+    /**
+     * The primitive type of the value computed by a node of a {@link Template}.
+     */
+    enum Kind {
+        LONG,
+        DOUBLE,
+        BOOLEAN;
+
+        boolean isNumeric() {
+            return this != BOOLEAN;
+        }
+
+        /**
+         * Get the kind of an operand value for which code can be generated.
+         *
+         * @param item the operand value
+         *
+         * @return the kind of the value, or null if the value is not supported
+         */
+        static @Nullable Kind of(final Item item) {
+            if (item instanceof IntegerValue integer) {
+                return integer.getType() == Type.INTEGER && integer.isLong() ? LONG : null;
+            } else if (item instanceof DoubleValue) {
+                return DOUBLE;
+            } else if (item instanceof BooleanValue) {
+                return BOOLEAN;
+            }
+            return null;
+        }
+    }
+
+    interface Node {
+    }
+
+    record Operand(int index) implements Node {
+    }
+
+    record Constant(Kind kind, AtomicValue value) implements Node {
+    }
+
+    record Arithmetic(ArithmeticOperator operator, Node left, Node right) implements Node {
+    }
+
+    record Negate(Node operand) implements Node {
+    }
+
+    record Compare(Comparison relation, Node left, Node right) implements Node {
+    }
+
+    record Logical(boolean and, Node left, Node right) implements Node {
+    }
+
+    /**
+     * The shape of a compilable expression: its operators, and the operand
+     * expressions which are evaluated by the caller.
+     *
+     * @param root the root operator
+     * @param operands the operand expressions
+     */
+    record Template(Node root, List<Expression> operands) {
+    }
+
+    /**
+     * Get the template of an expression, if code can be generated for it.
+     *
+     * @param expr the expression
+     *
+     * @return the template, or null if the expression is not an operator
+     *     on atomic operands
+     */
+    static @Nullable Template template(final Expression expr) {
+        final List<Expression> operands = new ArrayList<>();
+        final Node root = node(unwrap(expr), operands, new HashMap<>());
+        if (root == null || root instanceof Operand || root instanceof Constant) {
+            return null;
+        }
+        return new Template(root, operands);
+    }
+
+    private static @Nullable Node node(final Expression expr, final List<Expression> operands, final Map<QName, Operand> variables) {
+        if (expr instanceof VariableReference ref) {
+            return variables.computeIfAbsent(ref.getName(), name -> operand(expr, operands));
+        }
+        if (expr instanceof LiteralValue literal) {
+            final AtomicValue value = literal.getValue();
+            final Kind kind = Kind.of(value);
+            return kind != null ? new Constant(kind, value) : null;
+        }
+        if (expr instanceof Atomize || expr instanceof DynamicCardinalityCheck || expr instanceof UntypedValueCheck) {
+            // the check is evaluated together with the operand
+            final Expression checked = unwrap(expr.getSubExpression(0));
+            return checked instanceof VariableReference || checked instanceof LiteralValue ? operand(expr, operands) : null;
+        }
+        if (expr instanceof UnaryExpr unary) {
+            if (unary.getLength() != 1) {
+                return null;
+            }
+            final Node operand = node(unwrap(unary.getExpression(0)), operands, variables);
+            if (operand == null) {
+                return null;
+            }
+            return unary.getMode() == ArithmeticOperator.SUBTRACTION ? new Negate(operand) : operand;
+        }
+        if (expr instanceof OpNumeric numeric) {
+            final Node left = node(unwrap(numeric.getLeft()), operands, variables);
+            final Node right = left != null ? node(unwrap(numeric.getRight()), operands, variables) : null;
+            return right != null ? new Arithmetic(numeric.operator, left, right) : null;
+        }
+        if (expr instanceof GeneralComparison comparison) {
+            if (comparison.getRelation() == Comparison.IN
+                    || comparison.getTruncation() != StringTruncationOperator.NONE
+                    || comparison.collationArg != null
+                    || Type.subTypeOf(comparison.getLeft().returnsType(), Type.NODE)) {
+                return null;
+            }
+            final Node left = node(unwrap(comparison.getLeft()), operands, variables);
+            final Node right = left != null ? node(unwrap(comparison.getRight()), operands, variables) : null;
+            return right != null ? new Compare(comparison.getRelation(), left, right) : null;
+        }
+        if (expr instanceof OpAnd || expr instanceof OpOr) {
+            final LogicalOp logical = (LogicalOp) expr;
+            final Node left = node(unwrap(logical.getLeft()), operands, variables);
+            final Node right = left != null ? node(unwrap(logical.getRight()), operands, variables) : null;
+            return right != null ? new Logical(expr instanceof OpAnd, left, right) : null;
+        }
+        return null;
+    }
+
+    private static Operand operand(final Expression expr, final List<Expression> operands) {
+        operands.add(expr);
+        return new Operand(operands.size() - 1);
+    }
+
+    private static Expression unwrap(Expression expr) {
+        while (expr instanceof PathExpr path && path.getClass() == PathExpr.class && path.getLength() == 1) {
+            expr = path.getExpression(0);
+        }
+        return expr;
+    }
+
+    /**
+     * Get the kind of value computed by a node, given the kinds of the operands.
+     *
+     * @param node the node
+     * @param kinds the kinds of the operands of the template
+     *
+     * @return the kind of the value, or null if no code can be generated for
+     *     the node and operands
+     */
+    static @Nullable Kind kind(final Node node, final Kind[] kinds) {
+        if (node instanceof Operand operand) {
+            return kinds[operand.index()];
+        }
+        if (node instanceof Constant constant) {
+            return constant.kind();
+        }
+        if (node instanceof Negate negate) {
+            final Kind kind = kind(negate.operand(), kinds);
+            return kind != null && kind.isNumeric() ? kind : null;
+        }
+        if (node instanceof Arithmetic arithmetic) {
+            final Kind left = kind(arithmetic.left(), kinds);
+            final Kind right = kind(arithmetic.right(), kinds);
+            if (left == null || right == null || !left.isNumeric() || !right.isNumeric()) {
+                return null;
+            }
+            if (left == Kind.LONG && right == Kind.LONG) {
+                // xs:integer div xs:integer is an xs:decimal
+                return arithmetic.operator() == ArithmeticOperator.DIVISION ? null : Kind.LONG;
+            }
+            return arithmetic.operator() == ArithmeticOperator.DIVISION_INTEGER ? null : Kind.DOUBLE;
+        }
+        if (node instanceof Compare compare) {
+            final Kind left = kind(compare.left(), kinds);
+            final Kind right = kind(compare.right(), kinds);
+            return left != null && right != null && left.isNumeric() && right.isNumeric() ? Kind.BOOLEAN : null;
+        }
+        if (node instanceof Logical logical) {
+            return kind(logical.left(), kinds) == Kind.BOOLEAN && kind(logical.right(), kinds) == Kind.BOOLEAN ? Kind.BOOLEAN : null;
+        }
+        return null;
+    }
+
+    /**
+     * Generate the code of a template for the given kinds of operands.
+     *
+     * @param template the template
+     * @param kinds the kinds of the operands of the template
+     *
+     * @return the generated code, or null if no code can be generated for the
+     *     given kinds of operands
+     */
+    static @Nullable Kernel compile(final Template template, final Kind[] kinds) {
+        final Kind result = kind(template.root(), kinds);
+        if (result == null) {
+            return null;
+        }
+
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, KERNEL_CLASS, null,
+                "java/lang/Object", new String[] { KERNEL_INTERFACE });
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "eval", "(" + ITEM_ARRAY + ")" + descriptor(Sequence.class), null, null);
+        mv.visitCode();
+        emit(mv, template.root(), kinds);
+        switch (result) {
+            case LONG -> {
+                mv.visitVarInsn(Opcodes.LSTORE, 2);
+                mv.visitTypeInsn(Opcodes.NEW, INTEGER_VALUE);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitVarInsn(Opcodes.LLOAD, 2);
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, INTEGER_VALUE, "<init>", "(J)V", false);
+            }
+            case DOUBLE -> {
+                mv.visitVarInsn(Opcodes.DSTORE, 2);
+                mv.visitTypeInsn(Opcodes.NEW, DOUBLE_VALUE);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitVarInsn(Opcodes.DLOAD, 2);
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, DOUBLE_VALUE, "<init>", "(D)V", false);
+            }
+            case BOOLEAN -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, BOOLEAN_VALUE, "valueOf",
+                    "(Z)" + descriptor(BooleanValue.class), false);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        try {
+            // hidden classes are unloaded together with the compiled query
+            final Class<?> kernelClass = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true).lookupClass();
+            return (Kernel) kernelClass.getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            LOG.warn("Failed to generate code for expression: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Emit the code which pushes the value of a node onto the operand stack.
+     */
+    private static void emit(final MethodVisitor mv, final Node node, final Kind[] kinds) {
+        if (node instanceof Operand operand) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            pushInt(mv, operand.index());
+            mv.visitInsn(Opcodes.AALOAD);
+            switch (kinds[operand.index()]) {
+                case LONG -> {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, INTEGER_VALUE);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INTEGER_VALUE, "getLong", "()J", false);
+                }
+                case DOUBLE -> {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, DOUBLE_VALUE);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, DOUBLE_VALUE, "getValue", "()D", false);
+                }
+                case BOOLEAN -> {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, BOOLEAN_VALUE);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BOOLEAN_VALUE, "getValue", "()Z", false);
+                }
+            }
+
+        } else if (node instanceof Constant constant) {
+            switch (constant.kind()) {
+                case LONG -> mv.visitLdcInsn(((IntegerValue) constant.value()).getLong());
+                case DOUBLE -> mv.visitLdcInsn(((DoubleValue) constant.value()).getValue());
+                case BOOLEAN -> mv.visitInsn(((BooleanValue) constant.value()).getValue() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            }
+
+        } else if (node instanceof Negate negate) {
+            emit(mv, negate.operand(), kinds);
+            if (kind(negate.operand(), kinds) == Kind.LONG) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "negateExact", "(J)J", false);
+            } else {
+                mv.visitInsn(Opcodes.DNEG);
+            }
+
+        } else if (node instanceof Arithmetic arithmetic) {
+            final Kind kind = kind(arithmetic, kinds);
+            emit(mv, arithmetic.left(), kinds, kind);
+            emit(mv, arithmetic.right(), kinds, kind);
+            if (kind == Kind.LONG) {
+                switch (arithmetic.operator()) {
+                    case ADDITION -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "addExact", "(JJ)J", false);
+                    case SUBTRACTION -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "subtractExact", "(JJ)J", false);
+                    case MULTIPLICATION -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "multiplyExact", "(JJ)J", false);
+                    // a zero divisor throws an ArithmeticException, and the interpreter raises err:FOAR0001
+                    case DIVISION_INTEGER -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, internalName(ExpressionCompiler.class), "divideExact", "(JJ)J", false);
+                    case MODULUS -> mv.visitInsn(Opcodes.LREM);
+                    default -> throw new IllegalStateException("Unsupported operator: " + arithmetic.operator());
+                }
+            } else {
+                switch (arithmetic.operator()) {
+                    case ADDITION -> mv.visitInsn(Opcodes.DADD);
+                    case SUBTRACTION -> mv.visitInsn(Opcodes.DSUB);
+                    case MULTIPLICATION -> mv.visitInsn(Opcodes.DMUL);
+                    case DIVISION -> mv.visitInsn(Opcodes.DDIV);
+                    case MODULUS -> mv.visitInsn(Opcodes.DREM);
+                    default -> throw new IllegalStateException("Unsupported operator: " + arithmetic.operator());
+                }
+            }
+
+        } else if (node instanceof Compare compare) {
+            final Kind left = kind(compare.left(), kinds);
+            final Kind right = kind(compare.right(), kinds);
+            final Kind kind = left == Kind.DOUBLE || right == Kind.DOUBLE ? Kind.DOUBLE : Kind.LONG;
+            emit(mv, compare.left(), kinds, kind);
+            emit(mv, compare.right(), kinds, kind);
+            final Comparison relation = compare.relation();
+            if (kind == Kind.LONG) {
+                mv.visitInsn(Opcodes.LCMP);
+            } else {
+                // NaN must fail every comparison but !=, so it compares as greater for < and <=, and as less otherwise
+                mv.visitInsn(relation == Comparison.LT || relation == Comparison.LTEQ ? Opcodes.DCMPG : Opcodes.DCMPL);
+            }
+            final Label isFalse = new Label();
+            final Label end = new Label();
+            mv.visitJumpInsn(switch (relation) {
+                case EQ -> Opcodes.IFNE;
+                case NEQ -> Opcodes.IFEQ;
+                case LT -> Opcodes.IFGE;
+                case LTEQ -> Opcodes.IFGT;
+                case GT -> Opcodes.IFLE;
+                case GTEQ -> Opcodes.IFLT;
+                default -> throw new IllegalStateException("Unsupported comparison: " + relation);
+            }, isFalse);
+            mv.visitInsn(Opcodes.ICONST_1);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(isFalse);
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitLabel(end);
+
+        } else if (node instanceof Logical logical) {
+            // short-circuit: the right operand is only evaluated if it decides the result
+            final int shortCircuit = logical.and() ? Opcodes.IFEQ : Opcodes.IFNE;
+            final Label decided = new Label();
+            final Label end = new Label();
+            emit(mv, logical.left(), kinds);
+            mv.visitJumpInsn(shortCircuit, decided);
+            emit(mv, logical.right(), kinds);
+            mv.visitJumpInsn(shortCircuit, decided);
+            mv.visitInsn(logical.and() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(decided);
+            mv.visitInsn(logical.and() ? Opcodes.ICONST_0 : Opcodes.ICONST_1);
+            mv.visitLabel(end);
+        }
+    }
+
+    /**
+     * Emit the code which pushes the value of a numeric node, promoted to the given kind.
+     */
+    private static void emit(final MethodVisitor mv, final Node node, final Kind[] kinds, final Kind promoted) {
+        emit(mv, node, kinds);
+        if (promoted == Kind.DOUBLE && kind(node, kinds) == Kind.LONG) {
+            mv.visitInsn(Opcodes.L2D);
+        }
+    }
+
+    /**
+     * Integer division of longs, called by the generated code.
+     *
+     * @param x the dividend
+     * @param y the divisor
+     *
+     * @return the quotient, truncated towards zero
+     *
+     * @throws ArithmeticException if the divisor is zero, or the quotient overflows a long
+     */
+    static long divideExact(final long x, final long y) {
+        if (x == Long.MIN_VALUE && y == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        return x / y;
+    }
+
+    private static void pushInt(final MethodVisitor mv, final int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    private static String internalName(final Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    private static String descriptor(final Class<?> clazz) {
+        return "L" + internalName(clazz) + ";";
+    }
+}
@@ -98,8 +98,13 @@ public class FilteredExpression extends AbstractExpression {
             contextSequence = contextItem.toSequence();
         }
 
+        final long position = getConstantPosition();
+        if (position > 0 && Pipelinable.isPipelined(expression)) {
+            return selectItemAt(position, contextSequence, contextItem);
+        }
+
         final Sequence result;
-        final Sequence seq = expression.eval(contextSequence, contextItem);
+        final Sequence seq = evalExpression(position, contextSequence, contextItem);
         if (seq.isEmpty()) {
             result = Sequence.EMPTY_SEQUENCE;
         } else {
@@ -144,6 +149,54 @@ public class FilteredExpression extends AbstractExpression {
         return result;
     }
 
+    /**
+     * Get the position selected by a single predicate like [1].
+     *
+     * @return the position, or -1 if the predicate is not a constant integer
+     */
+    private long getConstantPosition() {
+        if (abbreviated || predicates.size() != 1) {
+            return -1;
+        }
+        final Predicate pred = predicates.get(0);
+        if (pred.getSubExpressionCount() == 1 && pred.getSubExpression(0) instanceof LiteralValue literal
+                && literal.getValue() instanceof IntegerValue value) {
+            return value.getLong();
+        }
+        return -1;
+    }
+
+    /**
+     * Evaluate the expression. If it sorts its result, only the items up to the
+     * selected position need to be sorted.
+     */
+    private Sequence evalExpression(final long position, final Sequence contextSequence, final Item contextItem)
+            throws XPathException {
+        final BoundedSort sort = position > 0 ? BoundedSort.find(expression) : null;
+        if (sort != null) {
+            return sort.withLimit(position, () -> expression.eval(contextSequence, contextItem));
+        }
+        return expression.eval(contextSequence, contextItem);
+    }
+
+    /**
+     * Compute the items of the expression only up to the selected one.
+     */
+    private Sequence selectItemAt(final long position, final Sequence contextSequence, final Item contextItem)
+            throws XPathException {
+        try (final ItemStream items = Pipelinable.iterate(expression, contextSequence, contextItem)) {
+            for (long i = 1; ; i++) {
+                final Item item = items.next();
+                if (item == null) {
+                    return Sequence.EMPTY_SEQUENCE;
+                }
+                if (i == position) {
+                    return item.toSequence();
+                }
+            }
+        }
+    }
+
     private Sequence processPredicate(@Nullable Sequence contextSequence, Sequence seq) throws XPathException {
         int line = -1;
         int column = -1;
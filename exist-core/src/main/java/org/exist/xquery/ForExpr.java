@@ -26,6 +26,7 @@ import org.exist.dom.persistent.NodeSet;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.*;
 
+import javax.annotation.Nullable;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -34,11 +35,13 @@ import java.util.Set;
  * 
  * @author <a href="mailto:wolfgang@exist-db.org">Wolfgang Meier</a>
  */
-public class ForExpr extends BindingExpression {
+public class ForExpr extends BindingExpression implements Pipelinable {
 
     private QName positionalVariable = null;
     private boolean allowEmpty = false;
     private boolean isOuterFor = true;
+    @Nullable private HashJoin join = null;
+    private boolean pipelined = false;
 
     public ForExpr(XQueryContext context, boolean allowingEmpty) {
         super(context);
@@ -87,6 +90,10 @@ public class ForExpr extends BindingExpression {
             final AnalyzeContextInfo newContextInfo = new AnalyzeContextInfo(contextInfo);
             newContextInfo.addFlag(SINGLE_STEP_EXECUTION);
             returnExpr.analyze(newContextInfo);
+
+            join = positionalVariable == null && !allowEmpty ? HashJoin.create(this, context) : null;
+            pipelined = getPreviousClause() == null && sequenceType == null && !allowEmpty && join == null
+                    && isPipelinedChain(returnExpr);
         } finally {
             // restore the local variable stack
             context.popLocalVariables(mark);
@@ -121,7 +128,7 @@ public class ForExpr extends BindingExpression {
         Sequence resultSequence = new ValueSequence(unordered);
         try {
             // Evaluate the "in" expression
-            in = inputSequence.eval(contextSequence, null);
+            in = join != null ? join.eval(contextSequence) : inputSequence.eval(contextSequence, null);
             clearContext(getExpressionId(), in);
             // Declare the iteration variable
             var = createVariable(varName);
@@ -150,7 +157,7 @@ public class ForExpr extends BindingExpression {
             // calling the where expression for each item in the input sequence)
             // This is possible if the input sequence is a node set and has no
             // dependencies on the current context item.
-            if (isOuterFor) {
+            if (isOuterFor && join == null) {
                 if (returnExpr instanceof WhereClause) {
                     if (at == null) {
                         in = ((WhereClause) returnExpr).preEval(in);
@@ -174,6 +181,11 @@ public class ForExpr extends BindingExpression {
                                 ", got " + in.getCardinality().getHumanDescription());
             }
 
+            // Only loop through the items whose join key matches the key of the outer tuple
+            if (join != null && !in.isEmpty()) {
+                in = join.select(var);
+            }
+
             // Loop through each variable binding
             int p = 0;
             if (in.isEmpty() && allowEmpty) {
@@ -251,6 +263,127 @@ public class ForExpr extends BindingExpression {
         var.destroy(context, resultSequence);
     }
 
+    /**
+     * The tuples can be produced one at a time, if none of the following clauses needs
+     * to see all of them, as "order by", "group by" and window clauses do.
+     */
+    private static boolean isPipelinedChain(Expression expr) {
+        while (expr instanceof FLWORClause clause) {
+            switch (clause.getType()) {
+                case FOR:
+                case LET:
+                case WHERE:
+                case COUNT:
+                    break;
+                default:
+                    return false;
+            }
+            expr = clause.getReturnExpression();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Evaluate the return expression for one input item at a time, when the consumer
+     * asks for more items. Only the outermost "for" clause of a FLWOR expression is
+     * pipelined, the clauses nested into it are evaluated for each of its items.
+     */
+    @Override
+    public ItemStream iterate(final Sequence contextSequence, final Item contextItem) throws XPathException {
+        if (!pipelined) {
+            return ItemStream.of(eval(contextSequence, contextItem));
+        }
+        context.expressionStart(this);
+        // Save the local variable stack, which is restored when the stream is closed
+        final LocalVariable mark = context.markLocalVariables(false);
+        try {
+            Sequence in = inputSequence.eval(contextSequence, null);
+            clearContext(getExpressionId(), in);
+            final LocalVariable var = createVariable(varName);
+            context.declareVariableBinding(var);
+            registerUpdateListener(in);
+            LocalVariable at = null;
+            if (positionalVariable != null) {
+                at = new LocalVariable(positionalVariable);
+                at.setSequenceType(POSITIONAL_VAR_TYPE);
+                context.declareVariableBinding(at);
+            }
+            var.setValue(in);
+            if (in instanceof NodeSet) {
+                var.setContextDocs(in.getDocumentSet());
+            } else {
+                var.setContextDocs(null);
+            }
+            if (returnExpr instanceof WhereClause) {
+                if (at == null) {
+                    in = ((WhereClause) returnExpr).preEval(in);
+                }
+            } else if (returnExpr instanceof FLWORClause) {
+                in = ((FLWORClause) returnExpr).preEval(in);
+            }
+            return new ForItemStream(mark, var, at, in);
+        } catch (final XPathException | RuntimeException e) {
+            context.popLocalVariables(mark);
+            context.expressionEnd(this);
+            throw e;
+        }
+    }
+
+    private class ForItemStream implements ItemStream {
+        private final LocalVariable mark;
+        private final LocalVariable var;
+        @Nullable private final LocalVariable at;
+        private final Sequence in;
+        private final SequenceIterator items;
+        private SequenceIterator results = SequenceIterator.EMPTY_ITERATOR;
+        private Sequence lastResult = Sequence.EMPTY_SEQUENCE;
+        private int p = 0;
+        private boolean closed = false;
+
+        ForItemStream(final LocalVariable mark, final LocalVariable var, @Nullable final LocalVariable at,
+                final Sequence in) throws XPathException {
+            this.mark = mark;
+            this.var = var;
+            this.at = at;
+            this.in = in;
+            this.items = in.iterate();
+        }
+
+        @Override
+        public @Nullable Item next() throws XPathException {
+            while (!results.hasNext()) {
+                if (closed || !items.hasNext()) {
+                    return null;
+                }
+                final Sequence result = new ValueSequence(unordered);
+                processItem(var, items.nextItem(), in, result, at, p++);
+                lastResult = result;
+                results = result.iterate();
+            }
+            return results.nextItem();
+        }
+
+        @Override
+        public void close() throws XPathException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                clearContext(getExpressionId(), in);
+            } finally {
+                context.popLocalVariables(mark, lastResult);
+                context.expressionEnd(ForExpr.this);
+            }
+            postEval(Sequence.EMPTY_SEQUENCE);
+        }
+    }
+
     private boolean callPostEval() {
         FLWORClause prev = getPreviousClause();
         while (prev != null) {
@@ -271,9 +404,25 @@ public class ForExpr extends BindingExpression {
     public Sequence preEval(Sequence seq) throws XPathException {
         // if preEval gets called, we know we're inside another FOR
         isOuterFor = false;
+        if (join != null) {
+            // the "where" clause compares the variable of this clause, which is not bound yet,
+            // so only the clauses following it are prepared
+            if (((FLWORClause) returnExpr).getReturnExpression() instanceof FLWORClause next) {
+                next.preEval(seq);
+            }
+            return seq;
+        }
         return super.preEval(seq);
     }
 
+    @Override
+    public void resetState(final boolean postOptimization) {
+        super.resetState(postOptimization);
+        if (join != null) {
+            join.reset();
+        }
+    }
+
     @Override
     public void dump(ExpressionDumper dumper) {
         dumper.display("for ", line);
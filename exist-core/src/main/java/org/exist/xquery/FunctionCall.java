@@ -22,12 +22,17 @@
 package org.exist.xquery;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.exist.Namespaces;
 import org.exist.dom.persistent.DocumentSet;
 import org.exist.dom.QName;
 import org.exist.dom.persistent.VirtualNodeSet;
+import org.exist.source.Source;
+import org.exist.storage.XQueryResultCache;
+import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.util.Error;
 import org.exist.xquery.value.*;
 
@@ -54,6 +59,10 @@ public class FunctionCall extends Function {
 	
     private boolean recursive = false;
 
+    // true if the results of the function are cached, see XQueryResultCache
+    private boolean cached = false;
+    private Set<XmldbURI> cacheCollections = null;
+
     protected VariableReference varDeps[];
 
     public FunctionCall(final XQueryContext context, final QName name, final List<Expression> arguments) {
@@ -84,6 +93,8 @@ public class FunctionCall extends Function {
         this.recursive = other.recursive;
         this.functionDef = other.functionDef;
         this.expression = other.expression;
+        this.cached = other.cached;
+        this.cacheCollections = other.cacheCollections;
     }
 
     private void setFunction(final UserDefinedFunction functionDef) {
@@ -133,6 +144,16 @@ public class FunctionCall extends Function {
                 context.functionEnd();
             }
 
+            final Annotation[] annotations = functionDef.getSignature().getAnnotations();
+            if (annotations != null) {
+                for (final Annotation annotation : annotations) {
+                    if (XQueryResultCache.CACHE_ANNOTATION.equals(annotation.getName())) {
+                        cached = true;
+                        cacheCollections = XQueryResultCache.collections(annotation.getValue());
+                    }
+                }
+            }
+
             varDeps = new VariableReference[getArgumentCount()];
             for (int i = 0; i < getArgumentCount(); i++) {
                 final Expression arg = getArgument(i);
@@ -204,7 +225,12 @@ public class FunctionCall extends Function {
             }
         }
         
-        final Sequence result = evalFunction(contextSequence, contextItem, seq, contextDocs);
+        final Sequence result;
+        if (cached && !isRecursive()) {
+            result = evalCached(contextSequence, contextItem, seq, contextDocs);
+        } else {
+            result = evalFunction(contextSequence, contextItem, seq, contextDocs);
+        }
         try {
             //Don't check deferred calls : it would result in a stack overflow
             //TODO : find a solution or... is it already here ?
@@ -235,6 +261,40 @@ public class FunctionCall extends Function {
         return result;
     }
 
+    /**
+     * Get the result of a function annotated with <code>%exist:cache</code>
+     * from the {@link XQueryResultCache}, or evaluate the function and cache
+     * its result.
+     */
+    private Sequence evalCached(final Sequence contextSequence, final Item contextItem, final Sequence[] seq,
+            final DocumentSet[] contextDocs) throws XPathException {
+        final XQueryResultCache cache = context.getBroker().getBrokerPool().getXQueryResultCache();
+        final Source source = functionDef.getSource();
+        if (cache == null || !cache.isEnabled() || source == null || context.isProfilingEnabled()) {
+            return evalFunction(contextSequence, contextItem, seq, contextDocs);
+        }
+
+        final Set<XmldbURI> collections = cacheCollections == null ? new HashSet<>() : new HashSet<>(cacheCollections);
+        final XQueryResultCache.Key key = XQueryResultCache.key(context, source, functionDef.getSignature().getName(), seq, collections);
+        if (key == null) {
+            return evalFunction(contextSequence, contextItem, seq, contextDocs);
+        }
+
+        final Sequence cachedResult = cache.get(key);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        final long generation = cache.getGeneration();
+        final long globalVariableReads = context.getGlobalVariableReads();
+        final Sequence result = evalFunction(contextSequence, contextItem, seq, contextDocs);
+        // the values of global and external variables are not part of the key
+        if (!(result instanceof DeferredFunctionCall) && context.getGlobalVariableReads() == globalVariableReads) {
+            cache.put(key, result, cacheCollections == null ? null : collections, generation);
+        }
+        return result;
+    }
+
     /**
      * Evaluate the function.
      *
@@ -308,6 +308,14 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
         return( this.relation );
     }
 
+    @Override
+    public long estimateCardinality(final Sequence contextSequence) {
+        if (contextQName == null) {
+            return -1;
+        }
+        return new CostModel(context).estimateCardinality(contextQName, relation);
+    }
+
     public StringTruncationOperator getTruncation() {
         return truncation;
     }
@@ -0,0 +1,509 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.NodeHandle;
+import org.exist.numbering.NodeId;
+import org.exist.storage.UpdateListener;
+import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.NumericValue;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+import org.exist.xquery.value.ValueSequence;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates an equi-join between two "for" clauses of a FLWOR expression as a hash join.
+ *
+ * <pre>
+ * for $a in //order, $b in //customer
+ * where $a/@cid = $b/@id
+ * return ...
+ * </pre>
+ *
+ * The input sequence of the inner "for" clause (<code>//customer</code>) is evaluated once
+ * for each evaluation of the FLWOR expression instead of once for each tuple of the outer
+ * clauses. The join key (<code>$b/@id</code>) of every item in it is put into a hash table, and
+ * the inner clause then only iterates over the items whose key matches the key of the
+ * current outer tuple (<code>$a/@cid</code>). The "where" clause is still evaluated for each of
+ * these items, so the hash table only needs to return a superset of the matches.
+ *
+ * The join is used if the input sequence of the inner clause does not depend on the variables
+ * of the preceding clauses, and the "where" clause is, or is a conjunction containing, a
+ * general or value comparison for equality between an expression on the variable of the
+ * inner clause and an expression on variables of the preceding clauses only. Neither
+ * expression may depend on the context item, e.g. <code>$b/@id = @cid</code> is not joined,
+ * as the keys are evaluated outside of the "where" clause.
+ */
+class HashJoin {
+
+    private static final Logger LOG = LogManager.getLogger(HashJoin.class);
+
+    private final ForExpr forExpr;
+    private final Expression buildKey;
+    private final Expression probeKey;
+
+    /** identifies the evaluation of the FLWOR expression for which the input has been cached */
+    @Nullable private LocalVariable cachedRun = null;
+    @Nullable private Sequence input = null;
+    @Nullable private Item[] items = null;
+    @Nullable private Map<Object, IntArrayList> table = null;
+    /** items with a key which cannot be hashed, these are candidates for every outer tuple */
+    @Nullable private IntArrayList unhashed = null;
+    /** the kinds of keys in the table, comparing a probe key with some of them is a type error */
+    private boolean stringKeys = false;
+    private boolean numericKeys = false;
+    private boolean nonNumericUntypedKeys = false;
+
+    private UpdateListener listener = null;
+
+    private HashJoin(final ForExpr forExpr, final Expression buildKey, final Expression probeKey) {
+        this.forExpr = forExpr;
+        this.buildKey = buildKey;
+        this.probeKey = probeKey;
+    }
+
+    /**
+     * Check if the given "for" clause can be evaluated as the inner side of a hash join.
+     * Must be called after the clause has been analyzed.
+     *
+     * @param forExpr the "for" clause
+     * @param context the query context
+     * @return the join, or null if the clause cannot be evaluated as a hash join
+     */
+    static @Nullable HashJoin create(final ForExpr forExpr, final XQueryContext context) {
+        if (!(forExpr.getReturnExpression() instanceof WhereClause where)
+                || forExpr.getPreviousClause() == null
+                || context.getDefaultCollator() != null) {
+            return null;
+        }
+
+        // the variables bound by the preceding clauses of the FLWOR expression
+        final Set<QName> outerVariables = new HashSet<>();
+        for (FLWORClause clause = forExpr.getPreviousClause(); clause != null; clause = clause.getPreviousClause()) {
+            if (clause.getType() != FLWORClause.ClauseType.FOR && clause.getType() != FLWORClause.ClauseType.LET) {
+                return null;
+            }
+            outerVariables.add(((BindingExpression) clause).getVariable());
+            outerVariables.addAll(clause.getTupleStreamVariables());
+        }
+
+        final Set<QName> inputVariables = new HashSet<>();
+        if (!collectVariables(forExpr.getInputSequence(), inputVariables)) {
+            return null;
+        }
+        for (final QName variable : inputVariables) {
+            if (outerVariables.contains(variable)) {
+                return null;
+            }
+        }
+
+        final GeneralComparison comparison = findEquality(unwrap(where.getWhereExpr()), forExpr.getVariable());
+        if (comparison == null) {
+            return null;
+        }
+        final Expression left = unwrap(comparison.getLeft());
+        final Expression right = unwrap(comparison.getRight());
+        if (isKeyOf(left, forExpr.getVariable(), true)) {
+            return new HashJoin(forExpr, left, right);
+        }
+        return new HashJoin(forExpr, right, left);
+    }
+
+    /**
+     * Find a comparison for equality between a key of the given variable and
+     * a key of other variables.
+     */
+    private static @Nullable GeneralComparison findEquality(final Expression expr, final QName variable) {
+        if (expr instanceof OpAnd and) {
+            final GeneralComparison comparison = findEquality(unwrap(and.getLeft()), variable);
+            return comparison != null ? comparison : findEquality(unwrap(and.getRight()), variable);
+        }
+        if (expr instanceof GeneralComparison comparison
+                && comparison.getRelation() == Constants.Comparison.EQ
+                && comparison.getTruncation() == Constants.StringTruncationOperator.NONE
+                && comparison.collationArg == null) {
+            final Expression left = unwrap(comparison.getLeft());
+            final Expression right = unwrap(comparison.getRight());
+            if ((isKeyOf(left, variable, true) && isKeyOf(right, variable, false))
+                    || (isKeyOf(right, variable, true) && isKeyOf(left, variable, false))) {
+                return comparison;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if an expression only references the given variable (build side),
+     * or only other variables (probe side), and not the context item.
+     */
+    private static boolean isKeyOf(final Expression expr, final QName variable, final boolean build) {
+        final Set<QName> variables = new HashSet<>();
+        if (!collectVariables(expr, variables) || dependsOnContext(expr)) {
+            return false;
+        }
+        return build ? variables.size() == 1 && variables.contains(variable) : !variables.contains(variable);
+    }
+
+    /**
+     * Collect the names of the variables referenced by an expression.
+     *
+     * @return false if the expression contains expressions which are not known
+     *     to expose all their subexpressions
+     */
+    private static boolean collectVariables(final Expression expr, final Set<QName> variables) {
+        if (expr instanceof VariableReference ref) {
+            variables.add(ref.getName());
+            return true;
+        }
+        if (expr instanceof LiteralValue) {
+            return true;
+        }
+        if (expr instanceof DebuggableExpression debuggable) {
+            return collectVariables(debuggable.getFirst(), variables);
+        }
+        if (expr instanceof InternalFunctionCall call) {
+            return collectVariables(call.getFunction(), variables);
+        }
+        if (expr instanceof LocationStep || expr instanceof RootNode) {
+            final Step step = (Step) expr;
+            if (step.getPredicates() != null) {
+                for (final Predicate predicate : step.getPredicates()) {
+                    if (!collectVariables(predicate, variables)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if (expr instanceof FunctionCall) {
+            // the body of a user defined function is not inspected
+            return false;
+        }
+        if (expr instanceof PathExpr || expr instanceof Atomize || expr instanceof DynamicCardinalityCheck
+                || expr instanceof DynamicTypeCheck || expr instanceof UntypedValueCheck
+                || expr instanceof TieredExpression) {
+            for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+                if (!collectVariables(expr.getSubExpression(i), variables)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if an expression is evaluated relative to the context item or sequence, i.e. if it
+     * starts with a relative path, or with a function call which may use the context, such as
+     * <code>name()</code>. Only the first step of a path is checked, the other steps are
+     * evaluated relative to the preceding step.
+     */
+    private static boolean dependsOnContext(final Expression expr) {
+        final Expression head = unwrap(expr);
+        if (head instanceof LocationStep || head instanceof RootNode) {
+            return true;
+        }
+        if (head instanceof InternalFunctionCall call) {
+            return dependsOnContext(call.getFunction());
+        }
+        if (head instanceof Function function) {
+            final int deps = function.getDependencies();
+            if (Dependency.dependsOn(deps, Dependency.CONTEXT_ITEM) || Dependency.dependsOn(deps, Dependency.CONTEXT_SET)) {
+                return true;
+            }
+            for (int i = 0; i < function.getArgumentCount(); i++) {
+                if (dependsOnContext(function.getArgument(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (head instanceof PathExpr || head instanceof DynamicTypeCheck || head instanceof UntypedValueCheck) {
+            return head.getSubExpressionCount() > 0 && dependsOnContext(head.getSubExpression(0));
+        }
+        return false;
+    }
+
+    private static Expression unwrap(Expression expr) {
+        while (true) {
+            if (expr instanceof DebuggableExpression debuggable) {
+                expr = debuggable.getFirst();
+            } else if (expr instanceof PathExpr path && path.getClass() == PathExpr.class && path.getSubExpressionCount() == 1) {
+                expr = path.getSubExpression(0);
+            } else if (expr instanceof TieredExpression tiered) {
+                expr = tiered.getExpression();
+            } else if (expr instanceof Atomize || expr instanceof DynamicCardinalityCheck) {
+                // the keys are atomized anyway, and the cardinality is checked by the "where" clause
+                expr = expr.getSubExpression(0);
+            } else {
+                return expr;
+            }
+        }
+    }
+
+    /**
+     * Get the input sequence of the inner "for" clause. The sequence is only evaluated
+     * once for each evaluation of the FLWOR expression.
+     *
+     * @param contextSequence the context sequence
+     * @return the input sequence
+     * @throws XPathException if the input sequence cannot be evaluated
+     */
+    Sequence eval(final Sequence contextSequence) throws XPathException {
+        final LocalVariable run = firstClause().getStartVariable();
+        if (input == null || run == null || run != cachedRun) {
+            reset();
+            input = forExpr.getInputSequence().eval(contextSequence, null);
+            cachedRun = run;
+            registerUpdateListener();
+        }
+        return input;
+    }
+
+    /**
+     * Select the items of the input sequence whose key matches the key of the current
+     * outer tuple.
+     *
+     * @param var the variable of the inner "for" clause
+     * @return the candidates, in the order of the input sequence
+     * @throws XPathException if a key cannot be evaluated
+     */
+    Sequence select(final LocalVariable var) throws XPathException {
+        if (table == null) {
+            build(var);
+        }
+
+        final IntArrayList positions = new IntArrayList();
+        for (final SequenceIterator i = Atomize.atomize(probeKey.eval(null, null)).iterate(); i.hasNext(); ) {
+            final AtomicValue value = i.nextItem().atomize();
+            if (!isHashable(value) || mayRaiseTypeError(value)) {
+                return input;
+            }
+            final Object key = stringKey(value);
+            if (key != null) {
+                addAll(positions, table.get(key));
+            }
+            final Object numericKey = numericKey(value);
+            if (numericKey != null) {
+                addAll(positions, table.get(numericKey));
+            }
+        }
+        addAll(positions, unhashed);
+        if (positions.isEmpty()) {
+            return Sequence.EMPTY_SEQUENCE;
+        }
+
+        final int[] sorted = positions.toIntArray();
+        Arrays.sort(sorted);
+        final ValueSequence candidates = new ValueSequence(sorted.length);
+        int last = -1;
+        for (final int position : sorted) {
+            if (position != last) {
+                candidates.add(items[position]);
+                last = position;
+            }
+        }
+        return candidates;
+    }
+
+    private void build(final LocalVariable var) throws XPathException {
+        final long start = System.currentTimeMillis();
+        items = new Item[input.getItemCount()];
+        table = new Object2ObjectOpenHashMap<>();
+        unhashed = new IntArrayList();
+        stringKeys = false;
+        numericKeys = false;
+        nonNumericUntypedKeys = false;
+        int position = 0;
+        for (final SequenceIterator i = input.iterate(); i.hasNext(); position++) {
+            forExpr.context.proceed(forExpr);
+            final Item item = i.nextItem();
+            items[position] = item;
+            var.setValue(item.toSequence());
+            for (final SequenceIterator keys = Atomize.atomize(buildKey.eval(null, null)).iterate(); keys.hasNext(); ) {
+                final AtomicValue value = keys.nextItem().atomize();
+                if (!isHashable(value)) {
+                    add(unhashed, position);
+                    continue;
+                }
+                final Object key = stringKey(value);
+                if (key != null) {
+                    add(table.computeIfAbsent(key, k -> new IntArrayList(1)), position);
+                }
+                final Object numericKey = numericKey(value);
+                if (numericKey != null) {
+                    add(table.computeIfAbsent(numericKey, k -> new IntArrayList(1)), position);
+                }
+                if (value.getType() == Type.UNTYPED_ATOMIC) {
+                    nonNumericUntypedKeys |= numericKey == null;
+                } else if (key != null) {
+                    stringKeys = true;
+                } else {
+                    numericKeys = true;
+                }
+            }
+        }
+        var.setValue(input);
+        if (forExpr.context.getProfiler().traceFunctions()) {
+            forExpr.context.getProfiler().traceOptimization(forExpr.context, PerformanceStats.OptimizationType.HASH_JOIN,
+                    forExpr);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Hash join on {}: {} items, {} keys, built in {} ms", forExpr.getVariable(), items.length,
+                    table.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Only strings, untyped values and numbers are hashed. Values of any other type are
+     * compared by evaluating the "where" clause on every item.
+     */
+    private static boolean isHashable(final AtomicValue value) {
+        final int type = value.getType();
+        return type == Type.UNTYPED_ATOMIC || type == Type.ANY_URI || Type.subTypeOf(type, Type.STRING)
+                || Type.subTypeOfUnion(type, Type.NUMERIC);
+    }
+
+    /**
+     * A string cannot be compared with a number, and an untyped value which is not a number
+     * cannot be cast to one. The "where" clause must raise the error for such a probe key,
+     * so it is evaluated on every item.
+     */
+    private boolean mayRaiseTypeError(final AtomicValue value) throws XPathException {
+        if (Type.subTypeOfUnion(value.getType(), Type.NUMERIC)) {
+            return stringKeys || nonNumericUntypedKeys;
+        }
+        if (value.getType() == Type.UNTYPED_ATOMIC) {
+            return numericKeys && numericKey(value) == null;
+        }
+        return numericKeys;
+    }
+
+    private static @Nullable Object stringKey(final AtomicValue value) throws XPathException {
+        return Type.subTypeOfUnion(value.getType(), Type.NUMERIC) ? null : value.getStringValue();
+    }
+
+    /**
+     * Numbers, and untyped values which may be compared to numbers, are hashed by their
+     * value rounded to a float, so that all numbers which compare as equal after type
+     * promotion have the same key.
+     */
+    private static @Nullable Object numericKey(final AtomicValue value) throws XPathException {
+        final double number;
+        if (value instanceof NumericValue numeric) {
+            number = numeric.getDouble();
+        } else if (value.getType() == Type.UNTYPED_ATOMIC && mayBeNumeric(value.getStringValue())) {
+            try {
+                number = ((NumericValue) value.convertTo(Type.DOUBLE)).getDouble();
+            } catch (final XPathException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        if (Double.isNaN(number)) {
+            return null;
+        }
+        final float key = (float) number;
+        return key == 0 ? 0f : key;
+    }
+
+    private static boolean mayBeNumeric(final String value) {
+        final String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        final char c = trimmed.charAt(0);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'I';
+    }
+
+    private static void add(final IntArrayList positions, final int position) {
+        if (positions.isEmpty() || positions.getInt(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+
+    private static void addAll(final IntArrayList positions, @Nullable final IntArrayList other) {
+        if (other != null) {
+            positions.addAll(other);
+        }
+    }
+
+    private FLWORClause firstClause() {
+        FLWORClause clause = forExpr;
+        while (clause.getPreviousClause() != null) {
+            clause = clause.getPreviousClause();
+        }
+        return clause;
+    }
+
+    void reset() {
+        cachedRun = null;
+        input = null;
+        items = null;
+        table = null;
+        unhashed = null;
+    }
+
+    private void registerUpdateListener() {
+        if (listener == null) {
+            listener = new UpdateListener() {
+                @Override
+                public void documentUpdated(final DocumentImpl document, final int event) {
+                    reset();
+                }
+
+                @Override
+                public void nodeMoved(final NodeId oldNodeId, final NodeHandle newNode) {
+                    // no-op
+                }
+
+                @Override
+                public void unsubscribe() {
+                    HashJoin.this.listener = null;
+                }
+
+                @Override
+                public void debug() {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("UpdateListener: Line: {}; hash join on ${}", forExpr.getLine(), forExpr.getVariable());
+                    }
+                }
+            };
+            forExpr.context.registerUpdateListener(listener);
+        }
+    }
+}
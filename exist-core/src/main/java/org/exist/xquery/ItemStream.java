@@ -0,0 +1,81 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * A stream of items which are produced on demand by a {@link Pipelinable} expression.
+ *
+ * A consumer pulls items until it has seen enough of them and must then close the
+ * stream, which releases the state held by the producer, e.g. the variables declared
+ * by a FLWOR expression. A stream should be closed by the same expression which opened
+ * it, and no other variable binding expression may be evaluated while it is open.
+ *
+ * @see Pipelinable#iterate(Expression, Sequence, Item)
+ */
+public interface ItemStream extends AutoCloseable {
+
+    /**
+     * Produce the next item.
+     *
+     * @return the next item, or null if there are no more items
+     *
+     * @throws XPathException if an error occurs whilst producing the item
+     */
+    @Nullable Item next() throws XPathException;
+
+    /**
+     * Stop producing items. Calling this method more than once has no effect.
+     *
+     * @throws XPathException if an error occurs whilst releasing the state of the producer
+     */
+    @Override
+    void close() throws XPathException;
+
+    /**
+     * Stream the items of a sequence which has already been evaluated.
+     *
+     * @param sequence the sequence
+     *
+     * @return a stream over the items of the sequence
+     *
+     * @throws XPathException if the sequence cannot be iterated
+     */
+    static ItemStream of(final Sequence sequence) throws XPathException {
+        final SequenceIterator iterator = sequence.iterate();
+        return new ItemStream() {
+            @Override
+            public @Nullable Item next() {
+                return iterator.hasNext() ? iterator.nextItem() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -28,6 +28,7 @@ import org.exist.dom.memtree.NodeImpl;
 import org.exist.numbering.NodeId;
 import org.exist.stax.*;
 import org.exist.storage.ElementValue;
+import org.exist.storage.ParallelQueryPool;
 import org.exist.storage.UpdateListener;
 import org.exist.xquery.value.*;
 import org.w3c.dom.Node;
@@ -65,6 +66,7 @@ public class LocationStep extends Step {
     protected boolean optimized = false;
 //    private boolean inUpdate = false;
     private boolean useDirectChildSelect = false;
+    private boolean parallelEvaluation = false;
     private boolean applyPredicate = true;
 
     // Cache for the current NodeTest type
@@ -251,6 +253,9 @@ public class LocationStep extends Step {
         if ((contextInfo.getFlags() & USE_TREE_TRAVERSAL) > 0) {
             useDirectChildSelect = true;
         }
+        if ((contextInfo.getFlags() & PARALLEL_EVALUATION) > 0 || context.parallelEvaluationEnabled()) {
+            parallelEvaluation = true;
+        }
         // Mark ".", which is expanded as self::node() by the parser
         // even though it may *also* be relevant with atomic sequences
         if (this.axis == Constants.SELF_AXIS
@@ -612,11 +617,8 @@ public class LocationStep extends Step {
                     registerUpdateListener();
                 }
                 return switch (axis) {
-                    case Constants.ATTRIBUTE_AXIS ->
-                            currentSet.selectParentChild(contextSet, NodeSet.DESCENDANT, contextId);
-                    case Constants.DESCENDANT_ATTRIBUTE_AXIS ->
-                            currentSet.selectAncestorDescendant(contextSet, NodeSet.DESCENDANT, false, contextId,
-                                    true);
+                    case Constants.ATTRIBUTE_AXIS -> selectDescendants(contextSet, true, false, contextId);
+                    case Constants.DESCENDANT_ATTRIBUTE_AXIS -> selectDescendants(contextSet, false, false, contextId);
                     default -> throw new IllegalArgumentException("Unsupported axis specified");
                 };
             }
@@ -628,7 +630,10 @@ public class LocationStep extends Step {
                         "OPTIMIZATION",
                         "Using structural index '" + index.toString() + "'");
             }
-            if (!contextSet.getProcessInReverseOrder()) {
+            if (useParallelJoin(contextSet, contextId)) {
+                return joinInParallel(index.findElementsByTagName(ElementValue.ATTRIBUTE, docs, test.getName(), null,
+                        this), contextSet, axis == Constants.ATTRIBUTE_AXIS, false);
+            } else if (!contextSet.getProcessInReverseOrder()) {
                 return index.findDescendantsByTagName(ElementValue.ATTRIBUTE, test.getName(), axis, docs, contextSet,
                         contextId, this);
             } else {
@@ -693,7 +698,7 @@ public class LocationStep extends Step {
                     currentDocs = docs;
                     registerUpdateListener();
                 }
-                return currentSet.selectParentChild(contextSet, NodeSet.DESCENDANT, contextId);
+                return selectDescendants(contextSet, true, false, contextId);
             }
         } else {
             final DocumentSet docs = getDocumentSet(contextSet);
@@ -703,7 +708,10 @@ public class LocationStep extends Step {
                         "OPTIMIZATION",
                         "Using structural index '" + index.toString() + "'");
             }
-            if (!contextSet.getProcessInReverseOrder() && !(contextSet instanceof VirtualNodeSet) &&
+            if (useParallelJoin(contextSet, contextId)) {
+                return joinInParallel(index.findElementsByTagName(ElementValue.ELEMENT, docs, test.getName(), null,
+                        this), contextSet, true, false);
+            } else if (!contextSet.getProcessInReverseOrder() && !(contextSet instanceof VirtualNodeSet) &&
                     contextSet.getLength() < INDEX_SCAN_THRESHOLD) {
                 return index.findDescendantsByTagName(ElementValue.ELEMENT,
                         test.getName(), axis, docs, contextSet,
@@ -758,12 +766,8 @@ public class LocationStep extends Step {
                 }
 
                 return switch (axis) {
-                    case Constants.DESCENDANT_SELF_AXIS ->
-                            currentSet.selectAncestorDescendant(contextSet, NodeSet.DESCENDANT, true, contextId,
-                                    true);
-                    case Constants.DESCENDANT_AXIS ->
-                            currentSet.selectAncestorDescendant(contextSet, NodeSet.DESCENDANT, false, contextId,
-                                    true);
+                    case Constants.DESCENDANT_SELF_AXIS -> selectDescendants(contextSet, false, true, contextId);
+                    case Constants.DESCENDANT_AXIS -> selectDescendants(contextSet, false, false, contextId);
                     default -> throw new IllegalArgumentException("Unsupported axis specified");
                 };
             }
@@ -775,7 +779,10 @@ public class LocationStep extends Step {
                         "OPTIMIZATION",
                         "Using structural index '" + index.toString() + "'");
             }
-            if (!contextSet.getProcessInReverseOrder()
+            if (useParallelJoin(contextSet, contextId)) {
+                return joinInParallel(index.findElementsByTagName(ElementValue.ELEMENT, docs, test.getName(), null,
+                        this), contextSet, false, axis == Constants.DESCENDANT_SELF_AXIS);
+            } else if (!contextSet.getProcessInReverseOrder()
                     && (contextSet instanceof VirtualNodeSet || contextSet.getLength() < INDEX_SCAN_THRESHOLD)) {
                 return index.findDescendantsByTagName(ElementValue.ELEMENT, test.getName(), axis, docs, contextSet,
                         contextId, this);
@@ -1186,6 +1193,74 @@ public class LocationStep extends Step {
         return this.parent;
     }
 
+    /**
+     * Select the nodes of the preloaded set which are children or descendants
+     * of the nodes of the context set.
+     *
+     * @param contextSet the context set
+     * @param childOnly only select children
+     * @param includeSelf include the self axis
+     * @param contextId the context id
+     *
+     * @return the selected nodes
+     */
+    private NodeSet selectDescendants(final NodeSet contextSet, final boolean childOnly, final boolean includeSelf,
+            final int contextId) throws XPathException {
+        if (!(currentSet instanceof VirtualNodeSet) && useParallelJoin(contextSet, contextId)) {
+            return joinInParallel(currentSet, contextSet, childOnly, includeSelf);
+        }
+        if (childOnly) {
+            return currentSet.selectParentChild(contextSet, NodeSet.DESCENDANT, contextId);
+        }
+        return currentSet.selectAncestorDescendant(contextSet, NodeSet.DESCENDANT, includeSelf, contextId, true);
+    }
+
+    /**
+     * Parallel evaluation joins the nodes of the context set with all the nodes
+     * matching the node test in the documents of the context set. It is used if
+     * it is enabled, and the context set spans enough documents to be partitioned.
+     * The nodes are then selected without tracking a context, so a context id
+     * requires the evaluation to stay on the calling thread.
+     *
+     * @param contextSet the context set
+     * @param contextId the context id
+     *
+     * @return true if the step should be evaluated in parallel
+     */
+    private boolean useParallelJoin(final NodeSet contextSet, final int contextId) {
+        if (!parallelEvaluation || contextId != Expression.NO_CONTEXT_ID || contextSet instanceof VirtualNodeSet
+                || contextSet.getProcessInReverseOrder()) {
+            return false;
+        }
+        final ParallelQueryPool parallelQueryPool = context.getBroker().getBrokerPool().getParallelQueryPool();
+        return parallelQueryPool.getPool() != null
+                && contextSet.getDocumentSet().getDocumentCount() >= parallelQueryPool.getPartitionSize() << 1;
+    }
+
+    /**
+     * Select the candidate nodes which are children or descendants of the nodes
+     * of the context set, joining the documents in partitions on the
+     * {@link ParallelQueryPool}. The candidates must have been read from
+     * the indexes by the calling thread.
+     *
+     * @param candidates the candidate nodes
+     * @param contextSet the context set
+     * @param childOnly only select children
+     * @param includeSelf include the self axis
+     *
+     * @return the selected nodes
+     */
+    private NodeSet joinInParallel(final NodeSet candidates, final NodeSet contextSet, final boolean childOnly,
+            final boolean includeSelf) throws XPathException {
+        final ParallelQueryPool parallelQueryPool = context.getBroker().getBrokerPool().getParallelQueryPool();
+        if (context.getProfiler().isEnabled()) {
+            context.getProfiler().message(this, Profiler.OPTIMIZATIONS, "OPTIMIZATION",
+                    "Joining " + contextSet.getDocumentSet().getDocumentCount() + " documents in parallel");
+        }
+        return NodeSetHelper.selectDescendants(candidates, contextSet, childOnly, includeSelf,
+                parallelQueryPool.getPool(), parallelQueryPool.getPartitionSize(), context.getWatchDog(), this);
+    }
+
     /**
      * Register the update listener
      */
@@ -332,6 +332,16 @@ public class ModuleContext extends XQueryContext {
         return parentContext.getProfiler();
     }
 
+    @Override
+    public void globalVariableRead() {
+        parentContext.globalVariableRead();
+    }
+
+    @Override
+    public long getGlobalVariableReads() {
+        return parentContext.getGlobalVariableReads();
+    }
+
     @Override
     public XMLGregorianCalendar getCalendar() {
         return parentContext.getCalendar();
@@ -46,4 +46,15 @@ public interface Optimizable extends Expression {
     NodeSet preSelect(Sequence contextSequence, boolean useContext) throws XPathException;
 
     int getOptimizeAxis();
+
+    /**
+     * Estimate the number of nodes {@link #preSelect(Sequence, boolean)} would
+     * return, so that the most selective index lookup can be done first.
+     *
+     * @param contextSequence the context sequence
+     * @return the estimated number of nodes, or -1 if unknown
+     */
+    default long estimateCardinality(final Sequence contextSequence) {
+        return -1;
+    }
 }
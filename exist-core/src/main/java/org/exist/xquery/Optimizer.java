@@ -21,6 +21,7 @@
  */
 package org.exist.xquery;
 
+import org.exist.dom.QName;
 import org.exist.storage.DBBroker;
 import org.exist.xquery.functions.array.ArrayConstructor;
 import org.exist.xquery.pragmas.Optimize;
@@ -50,6 +51,10 @@ import static org.apache.commons.lang3.ArrayUtils.isNotEmpty;
  *
  * <pre>declare option exist:optimize "enable=yes|no";</pre>
  *
+ * The optimizer also wraps the arithmetic, comparison and logical expressions in FLWOR
+ * and conditional expressions and function bodies into a {@link TieredExpression}, which
+ * compiles them to bytecode once they are hot.
+ *
  */
 public class Optimizer extends DefaultExpressionVisitor {
 
@@ -58,6 +63,7 @@ public class Optimizer extends DefaultExpressionVisitor {
     private final XQueryContext context;
     private final List<QueryRewriter> rewriters;
     private final FindOptimizable findOptimizable = new FindOptimizable();
+    private final CostModel costModel;
 
     private int predicates = 0;
 
@@ -67,6 +73,7 @@ public class Optimizer extends DefaultExpressionVisitor {
         this.context = context;
         final DBBroker broker = context.getBroker();
         this.rewriters = broker != null ? broker.getIndexController().getQueryRewriters(context) : Collections.emptyList();
+        this.costModel = new CostModel(context);
     }
 
     public boolean hasOptimized() {
@@ -77,6 +84,8 @@ public class Optimizer extends DefaultExpressionVisitor {
     public void visitLocationStep(final LocationStep locationStep) {
         super.visitLocationStep(locationStep);
 
+        orderPredicates(locationStep);
+
         // check query rewriters if they want to rewrite the location step
         Pragma optimizePragma = null;
         try {  // Keep try-catch out of loop
@@ -98,8 +107,12 @@ public class Optimizer extends DefaultExpressionVisitor {
         if (preds != null) {
             // walk through the predicates attached to the current location step.
             // try to find a predicate containing an expression which is an instance
-            // of Optimizable.
+            // of Optimizable. Predicates following a positional one must not be
+            // used for a pre-selection, as it would change the positions.
             for (final Predicate pred : preds) {
+                if (pred.isPositional()) {
+                    break;
+                }
                 pred.accept(findOptimizable);
                 @Nullable final Optimizable[] list = findOptimizable.getOptimizables();
                 if (canOptimize(list)) {
@@ -212,12 +225,102 @@ public class Optimizer extends DefaultExpressionVisitor {
         }
     }
 
+    /**
+     * Sort the predicates of a step by the {@link CostModel.Estimate#rank() rank}
+     * estimated by the {@link CostModel}, so that cheap and selective filters are
+     * evaluated first and the expensive ones see fewer context nodes.
+     *
+     * Only predicates which filter the context nodes independently of each other are
+     * moved. Positional predicates, predicates depending on the context position and
+     * predicates guarding against type errors, e.g. with <code>castable as</code>, keep
+     * their place, and no predicate is moved across them.
+     *
+     * @param step the location step
+     */
+    private void orderPredicates(final LocationStep step) {
+        @Nullable final Predicate[] preds = step.getPredicates();
+        if (preds == null || preds.length < 2) {
+            return;
+        }
+
+        final QName contextName = CostModel.stepName(step);
+        final Map<Predicate, Double> ranks = new IdentityHashMap<>();
+        for (final Predicate pred : preds) {
+            if (isReorderable(pred)) {
+                ranks.put(pred, costModel.estimate(pred, contextName).rank());
+            }
+        }
+
+        boolean reordered = false;
+        int start = 0;
+        while (start < preds.length) {
+            if (!ranks.containsKey(preds[start])) {
+                start++;
+                continue;
+            }
+            int end = start + 1;
+            while (end < preds.length && ranks.containsKey(preds[end])) {
+                end++;
+            }
+            if (end - start > 1) {
+                final Predicate[] run = Arrays.copyOfRange(preds, start, end);
+                // stable: predicates of equal rank keep the order in which they were written
+                Arrays.sort(run, Comparator.comparingDouble(ranks::get));
+                for (int i = 0; i < run.length; i++) {
+                    if (preds[start + i] != run[i]) {
+                        preds[start + i] = run[i];
+                        reordered = true;
+                    }
+                }
+            }
+            start = end;
+        }
+
+        if (reordered) {
+            hasOptimized = true;
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reordered predicates: {}", ExpressionDumper.dump(step));
+            }
+        }
+    }
+
+    private boolean isReorderable(final Predicate pred) {
+        return !pred.isPositional() && !hasGuard(pred.getSubExpression(0));
+    }
+
+    /**
+     * Check if an expression tests the type of a value, which a later predicate
+     * may rely on.
+     *
+     * @param expr the expression
+     * @return true if the expression contains a type test
+     */
+    private static boolean hasGuard(final Expression expr) {
+        if (expr instanceof CastableExpression || expr instanceof InstanceOfExpression
+                || expr instanceof TreatAsExpression) {
+            return true;
+        }
+        if (expr instanceof InternalFunctionCall call) {
+            return hasGuard(call.getFunction());
+        }
+        // the body of a called function is not a sub-expression
+        for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+            if (hasGuard(expr.getSubExpression(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean hasOptimizable(final List<Predicate> preds) {
         // walk through the predicates attached to the current location step.
         // try to find a predicate containing an expression which is an instance
-        // of Optimizable.
+        // of Optimizable, up to the first positional predicate.
         boolean optimizable = false;
         for (final Predicate pred : preds) {
+            if (pred.isPositional()) {
+                break;
+            }
             pred.accept(findOptimizable);
             @Nullable final Optimizable[] list = findOptimizable.getOptimizables();
             if (canOptimize(list)) {
@@ -350,6 +453,63 @@ public class Optimizer extends DefaultExpressionVisitor {
         }
     }
 
+    @Override
+    public void visitUserFunction(final UserDefinedFunction function) {
+        super.visitUserFunction(function);
+        final TieredExpression tiered = TieredExpression.wrap(context, function.getFunctionBody());
+        if (tiered != null) {
+            function.setFunctionBody(tiered);
+        }
+    }
+
+    @Override
+    public void visitForExpression(final ForExpr forExpr) {
+        super.visitForExpression(forExpr);
+        tier(forExpr, forExpr.getReturnExpression());
+    }
+
+    @Override
+    public void visitLetExpression(final LetExpr letExpr) {
+        super.visitLetExpression(letExpr);
+        tier(letExpr, letExpr.getInputSequence());
+        tier(letExpr, letExpr.getReturnExpression());
+    }
+
+    @Override
+    public void visitWhereClause(final WhereClause where) {
+        super.visitWhereClause(where);
+        tier(where, where.getWhereExpr());
+    }
+
+    @Override
+    public void visitConditional(final ConditionalExpression conditional) {
+        super.visitConditional(conditional);
+        tier(conditional, conditional.getTestExpr());
+        tier(conditional, conditional.getThenExpr());
+        tier(conditional, conditional.getElseExpr());
+    }
+
+    /**
+     * Wrap an arithmetic, comparison or logical expression into a {@link TieredExpression},
+     * which compiles it to bytecode once it is hot.
+     *
+     * @param parent the parent expression
+     * @param expr the expression to wrap
+     */
+    private void tier(final Expression parent, final Expression expr) {
+        if (expr instanceof DebuggableExpression debuggable) {
+            tier(debuggable, debuggable.getFirst());
+        } else if (parent instanceof RewritableExpression rewritableParentExpression) {
+            final TieredExpression tiered = TieredExpression.wrap(context, expr);
+            if (tiered != null) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Tiered expression: {}", ExpressionDumper.dump(expr));
+                }
+                rewritableParentExpression.replace(expr, tiered);
+            }
+        }
+    }
+
     private boolean canOptimize(@Nullable final Optimizable[] list) {
         if (list == null || list.length == 0) {
             return false;
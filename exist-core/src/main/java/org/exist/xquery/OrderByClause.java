@@ -32,9 +32,10 @@ import java.util.*;
 /**
  * Represents an "order by" clause within a FLWOR expression.
  */
-public class OrderByClause extends AbstractFLWORClause {
+public class OrderByClause extends AbstractFLWORClause implements BoundedSort {
 
     private final List<OrderSpec> orderSpecs;
+    private long limit = UNBOUNDED;
 
     /*  OrderByClause needs to keep state between calls to eval and postEval. We thus need
         to track state in a stack to avoid overwrites if we're called recursively. */
@@ -54,6 +55,13 @@ public class OrderByClause extends AbstractFLWORClause {
         return ClauseType.ORDERBY;
     }
 
+    @Override
+    public long setLimit(final long limit) {
+        final long previous = this.limit;
+        this.limit = limit;
+        return previous;
+    }
+
     @Override
     public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
         contextInfo.setParent(this);
@@ -75,7 +83,7 @@ public class OrderByClause extends AbstractFLWORClause {
         final Sequence result = getReturnExpression().eval(contextSequence, contextItem);
 
         if (orderedResult == null) {
-            orderedResult = new OrderedValueSequence(orderSpecs, result != null ? result.getItemCount() : 100);
+            orderedResult = new OrderedValueSequence(orderSpecs, result != null ? result.getItemCount() : 100, limit);
         }
 
         if (result != null) {
@@ -37,7 +37,8 @@ public interface PerformanceStats {
     String RANGE_IDX_TYPE = "range";
 
     enum OptimizationType {
-        POSITIONAL_PREDICATE
+        POSITIONAL_PREDICATE,
+        HASH_JOIN
     }
 
     enum IndexOptimizationLevel {
@@ -0,0 +1,107 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+
+import javax.annotation.Nullable;
+
+/**
+ * Marks an expression which can produce its result one item at a time as per the
+ * Pipelining (iterator) query execution model, instead of materializing it
+ * completely, see {@link Materializable}.
+ *
+ * Consumers which only need the first items of a sequence, e.g. <code>fn:head</code>,
+ * <code>fn:exists</code> or <code>fn:subsequence</code>, stop pulling once they have
+ * seen enough of them, so that the remaining items are never computed.
+ *
+ * @see ItemStream
+ */
+public interface Pipelinable {
+
+    /**
+     * Whether this expression produces its items on demand. This may only be
+     * known after the expression has been analyzed.
+     *
+     * @return true if {@link #iterate(Sequence, Item)} evaluates lazily
+     */
+    boolean isPipelined();
+
+    /**
+     * Open a stream over the result of this expression. The parameters have the
+     * same meaning as for {@link Materializable#eval(Sequence, Item)}.
+     *
+     * @param contextSequence the current context sequence, or null
+     * @param contextItem the current context item, or null
+     *
+     * @return the stream, which must be closed by the caller
+     *
+     * @throws XPathException if an error occurs whilst opening the stream
+     */
+    ItemStream iterate(@Nullable Sequence contextSequence, @Nullable Item contextItem) throws XPathException;
+
+    /**
+     * Open a stream over the result of an expression, which is evaluated lazily if
+     * the expression supports it, or materialized otherwise.
+     *
+     * @param expr the expression, e.g. a function argument
+     * @param contextSequence the current context sequence, or null
+     * @param contextItem the current context item, or null
+     *
+     * @return the stream, which must be closed by the caller
+     *
+     * @throws XPathException if an error occurs whilst evaluating the expression
+     */
+    static ItemStream iterate(final Expression expr, @Nullable final Sequence contextSequence,
+            @Nullable final Item contextItem) throws XPathException {
+        if (isPipelined(expr)) {
+            return ((Pipelinable) unwrap(expr)).iterate(contextSequence, contextItem);
+        }
+        return ItemStream.of(expr.eval(contextSequence, contextItem));
+    }
+
+    /**
+     * Whether the result of an expression would be produced on demand by
+     * {@link #iterate(Expression, Sequence, Item)}. Expressions are always materialized
+     * while the profiler is enabled, so that the profile covers all of their work.
+     *
+     * @param expr the expression
+     *
+     * @return true if the expression is evaluated lazily
+     */
+    static boolean isPipelined(final Expression expr) {
+        return unwrap(expr) instanceof Pipelinable pipelinable && pipelinable.isPipelined()
+                && !expr.getContext().getProfiler().isEnabled();
+    }
+
+    /**
+     * Skip the checks of function arguments which do not check anything.
+     */
+    private static Expression unwrap(Expression expr) {
+        while (expr instanceof DynamicCardinalityCheck check
+                && check.getRequiredCardinality() == Cardinality.ZERO_OR_MORE) {
+            expr = check.getSubExpression(0);
+        }
+        return expr;
+    }
+}
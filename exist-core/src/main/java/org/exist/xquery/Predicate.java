@@ -29,6 +29,8 @@ import org.exist.dom.persistent.NewArrayNodeSet;
 import org.exist.dom.persistent.NodeProxy;
 import org.exist.dom.persistent.NodeSet;
 import org.exist.dom.persistent.VirtualNodeSet;
+import org.exist.xquery.functions.fn.FunLast;
+import org.exist.xquery.functions.fn.FunPosition;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.Item;
 import org.exist.xquery.value.NumericValue;
@@ -628,6 +630,45 @@ public class Predicate extends PathExpr {
         return executionMode;
     }
 
+    /**
+     * Check if the predicate may select the context items by their position,
+     * i.e. if it is evaluated positionally, depends on the context position, or
+     * may return a number at runtime.
+     *
+     * The context items seen by such a predicate must not be filtered in advance.
+     *
+     * @return true if the predicate may be positional
+     */
+    public boolean isPositional() {
+        if (getSubExpressionCount() != 1 || executionMode == POSITIONAL) {
+            return true;
+        }
+        final Expression inner = getSubExpression(0);
+        final int type = inner.returnsType();
+        if (!(Type.subTypeOf(type, Type.NODE) || Type.subTypeOf(type, Type.BOOLEAN))
+                || Dependency.dependsOn(inner, Dependency.CONTEXT_POSITION)) {
+            return true;
+        }
+        // comparisons do not report the dependency on the context position of their operands
+        return callsPositionFunction(inner);
+    }
+
+    private static boolean callsPositionFunction(final Expression expr) {
+        if (expr instanceof FunPosition || expr instanceof FunLast) {
+            return true;
+        }
+        if (expr instanceof InternalFunctionCall call) {
+            return callsPositionFunction(call.getFunction());
+        }
+        // the predicates of nested steps have their own context position
+        for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+            if (callsPositionFunction(expr.getSubExpression(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void resetState(final boolean postOptimization) {
         super.resetState(postOptimization);
@@ -27,14 +27,17 @@ import org.exist.dom.persistent.NodeSet;
 import org.exist.xquery.value.AbstractSequence;
 import org.exist.xquery.value.IntegerValue;
 import org.exist.xquery.value.Item;
+import org.exist.xquery.value.LongSequence;
 import org.exist.xquery.value.MemoryNodeSet;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceIterator;
 import org.exist.xquery.value.Type;
 
 import java.math.BigInteger;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
-public class RangeSequence extends AbstractSequence {
+public class RangeSequence extends AbstractSequence implements LongSequence {
 
     private final static Logger LOG = LogManager.getLogger(AbstractSequence.class);
 
@@ -74,38 +77,95 @@ public class RangeSequence extends AbstractSequence {
         return new ReverseRangeSequenceIterator(start.getLong(), end.getLong());
     }
 
+    @Override
+    public PrimitiveIterator.OfLong longIterator() {
+        final long end = this.end.getLong();
+        return new PrimitiveIterator.OfLong() {
+            private long current = start.getLong();
+            private boolean done = current > end;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public long nextLong() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                // stops before the increment, which overflows at the largest long
+                done = current == end;
+                return current++;
+            }
+        };
+    }
+
+    /**
+     * Computes the sum of the range as (start + end) * count / 2,
+     * without iterating over the range.
+     *
+     * @return the sum of the range
+     */
+    @Override
+    public IntegerValue sum() {
+        if (start.compareTo(end) > 0) {
+            return new IntegerValue(0);
+        }
+        final BigInteger first = start.toBigInteger();
+        final BigInteger last = end.toBigInteger();
+        final BigInteger count = last.subtract(first).add(BigInteger.ONE);
+        return new IntegerValue(first.add(last).multiply(count).shiftRight(1));
+    }
+
+    @Override
+    public long min() {
+        return start.getLong();
+    }
+
+    @Override
+    public long max() {
+        return end.getLong();
+    }
+
     private static class RangeSequenceIterator implements SequenceIterator {
         private long current;
         private final long end;
+        private boolean done;
 
         private RangeSequenceIterator(final long start, final long end) {
             this.current = start;
             this.end = end;
+            this.done = start > end;
         }
 
         @Override
         public Item nextItem() {
-            if (current <= end) {
-                return new IntegerValue(current++);
-            } else {
+            if (done) {
                 return null;
             }
+            // stops before the increment, which overflows at the largest long
+            done = current == end;
+            return new IntegerValue(current++);
         }
 
         @Override
         public boolean hasNext() {
-            return current <= end;
+            return !done;
         }
 
         @Override
         public long skippable() {
-            return end - current + 1;
+            return done ? 0 : end - current + 1;
         }
 
         @Override
         public long skip(final long n) {
-            final long skip = Math.min(n, end - current + 1);
-            current += skip;
+            final long skip = Math.min(n, skippable());
+            if (skip > 0) {
+                current += skip - 1;
+                nextItem();
+            }
             return skip;
         }
     }
@@ -113,35 +173,41 @@ public class RangeSequence extends AbstractSequence {
     private static class ReverseRangeSequenceIterator implements SequenceIterator {
         private final long start;
         private long current;
+        private boolean done;
 
         private ReverseRangeSequenceIterator(final long start, final long end) {
             this.start = start;
             this.current = end;
+            this.done = start > end;
         }
 
         @Override
         public Item nextItem() {
-            if (current >= start) {
-                return new IntegerValue(current--);
-            } else {
+            if (done) {
                 return null;
             }
+            // stops before the decrement, which overflows at the smallest long
+            done = current == start;
+            return new IntegerValue(current--);
         }
 
         @Override
         public boolean hasNext() {
-            return current >= start;
+            return !done;
         }
 
         @Override
         public long skippable() {
-            return current - start + 1;
+            return done ? 0 : current - start + 1;
         }
 
         @Override
         public long skip(final long n) {
-            final long skip = Math.min(n, current - start + 1);
-            current -= skip;
+            final long skip = Math.min(n, skippable());
+            if (skip > 0) {
+                current -= skip - 1;
+                nextItem();
+            }
             return skip;
         }
     }
@@ -210,6 +276,15 @@ public class RangeSequence extends AbstractSequence {
     public void removeDuplicates() {
     }
 
+    @Override
+    public void clearContext(final int contextId) {
+        // ignore, the sequence has no nodes
+    }
+
+    @Override
+    public void setSelfAsContext(final int contextId) {
+    }
+
     @Override
     public boolean containsReference(final Item item) {
         return start == item || end == item;
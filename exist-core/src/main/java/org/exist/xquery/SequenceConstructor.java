@@ -24,16 +24,21 @@ package org.exist.xquery;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.Item;
 import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
 import org.exist.xquery.value.Type;
 import org.exist.xquery.value.ValueSequence;
 
+import javax.annotation.Nullable;
+
 /**
  * An XQuery sequence constructor ",". For example, ($a, $b) constructs a new
  * sequence containing items $a and $b.
  * 
  * @author wolf
  */
-public class SequenceConstructor extends PathExpr {
+public class SequenceConstructor extends PathExpr implements Pipelinable {
+
+    private boolean pipelined = false;
 
     public SequenceConstructor(final XQueryContext context) {
         super(context);
@@ -46,6 +51,7 @@ public class SequenceConstructor extends PathExpr {
         unordered = (contextInfo.getFlags() & UNORDERED) > 0;
         contextId = contextInfo.getContextId();
         int staticType = Type.ANY_TYPE;
+        boolean pipelined = true;
         for (final Expression expr : steps) {
             //Create a new context info because each sequence expression could modify it (add/remove flags...)
             final AnalyzeContextInfo info = new AnalyzeContextInfo(contextInfo);
@@ -55,7 +61,9 @@ public class SequenceConstructor extends PathExpr {
             } else if (staticType != Type.ITEM && staticType != info.getStaticReturnType()) {
                 staticType = Type.ITEM;
             }
+            pipelined &= mayBeSkipped(expr);
         }
+        this.pipelined = pipelined;
         contextInfo.setStaticReturnType(staticType);
     }
 
@@ -93,6 +101,59 @@ public class SequenceConstructor extends PathExpr {
         return result;
     }
 
+    /**
+     * Whether an operand may be left unevaluated once the consumer has seen enough items.
+     * Function calls may have side effects, which queries rely on, e.g. the
+     * <code>(&lt;ok/&gt;, $setUp())[1]</code> of XQSuite, so only operands which compute
+     * their items on demand themselves or which merely yield a value are skipped.
+     */
+    private static boolean mayBeSkipped(Expression expr) {
+        while (expr.getClass() == PathExpr.class && expr.getSubExpressionCount() == 1) {
+            expr = expr.getSubExpression(0);
+        }
+        return expr instanceof LiteralValue || expr instanceof VariableReference
+                || (expr instanceof Pipelinable pipelinable && pipelinable.isPipelined());
+    }
+
+    @Override
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Evaluate the next operand only when the items of the previous ones have been consumed.
+     */
+    @Override
+    public ItemStream iterate(@Nullable final Sequence contextSequence, @Nullable final Item contextItem) {
+        return new ItemStream() {
+            private int step = 0;
+            private SequenceIterator items = SequenceIterator.EMPTY_ITERATOR;
+
+            @Override
+            public @Nullable Item next() throws XPathException {
+                while (!items.hasNext()) {
+                    if (step >= steps.size()) {
+                        return null;
+                    }
+                    context.pushDocumentContext();
+                    try {
+                        final Sequence temp = steps.get(step++).eval(contextSequence, contextItem);
+                        items = temp == null ? SequenceIterator.EMPTY_ITERATOR : temp.iterate();
+                    } finally {
+                        context.popDocumentContext();
+                    }
+                }
+                return items.nextItem();
+            }
+
+            @Override
+            public void close() {
+                step = steps.size();
+                items = SequenceIterator.EMPTY_ITERATOR;
+            }
+        };
+    }
+
     @Override
     public void dump(final ExpressionDumper dumper) {
         dumper.display("(");
@@ -0,0 +1,241 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.dom.persistent.DocumentSet;
+import org.exist.xquery.ExpressionCompiler.Kernel;
+import org.exist.xquery.ExpressionCompiler.Kind;
+import org.exist.xquery.ExpressionCompiler.Template;
+import org.exist.xquery.util.ExpressionDumper;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates an arithmetic, comparison or logical expression by interpreting its
+ * expression tree until it has been evaluated {@link XQueryContext#getCompileThreshold()}
+ * times, and then by bytecode generated by the {@link ExpressionCompiler} for the
+ * types of the operands seen at that time.
+ *
+ * The operands, i.e. the variables of the expression, are still evaluated by the
+ * interpreter. If their values do not have the types for which the code was generated,
+ * or an integer operation overflows, the expression tree is interpreted instead.
+ *
+ * The {@link Optimizer} wraps the conditions, the bindings and the return expressions
+ * of FLWOR and conditional expressions, and the bodies of user defined functions.
+ */
+public class TieredExpression extends AbstractExpression {
+
+    private static final Logger LOG = LogManager.getLogger(TieredExpression.class);
+
+    private final Expression expression;
+    private final Template template;
+    private final int threshold;
+
+    private int evaluations = 0;
+    private boolean failed = false;
+    private @Nullable Kind[] kinds = null;
+    private @Nullable Kernel kernel = null;
+
+    private TieredExpression(final XQueryContext context, final Expression expression, final Template template, final int threshold) {
+        super(context);
+        this.expression = expression;
+        this.template = template;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Wrap an expression, if code can be generated for it.
+     *
+     * @param context the context of the query
+     * @param expression the expression
+     *
+     * @return the wrapped expression, or null if no code can be generated
+     *     for the expression or compilation is disabled
+     */
+    static @Nullable TieredExpression wrap(final XQueryContext context, final Expression expression) {
+        final int threshold = context.getCompileThreshold();
+        if (threshold <= 0 || expression instanceof TieredExpression) {
+            return null;
+        }
+        final Template template = ExpressionCompiler.template(expression);
+        return template != null ? new TieredExpression(context, expression, template, threshold) : null;
+    }
+
+    @Override
+    public void analyze(final AnalyzeContextInfo contextInfo) throws XPathException {
+        expression.analyze(contextInfo);
+    }
+
+    @Override
+    public Sequence eval(final Sequence contextSequence, final Item contextItem) throws XPathException {
+        if (kernel == null) {
+            if (failed || context.getProfiler().isEnabled() || ++evaluations < threshold) {
+                return expression.eval(contextSequence, contextItem);
+            }
+            compile(contextSequence, contextItem);
+            if (kernel == null) {
+                return expression.eval(contextSequence, contextItem);
+            }
+        }
+
+        final Item[] values = operands(contextSequence, contextItem);
+        if (values != null) {
+            try {
+                return kernel.eval(values);
+            } catch (final ArithmeticException e) {
+                // overflow or division by zero: the interpreter computes the result or raises the error
+            }
+        }
+        return expression.eval(contextSequence, contextItem);
+    }
+
+    private void compile(final Sequence contextSequence, final Item contextItem) {
+        failed = true;
+        final Kind[] operandKinds = new Kind[template.operands().size()];
+        try {
+            for (int i = 0; i < operandKinds.length; i++) {
+                final Sequence value = template.operands().get(i).eval(contextSequence, contextItem);
+                if (!value.hasOne() || (operandKinds[i] = Kind.of(value.itemAt(0))) == null) {
+                    return;
+                }
+            }
+        } catch (final XPathException e) {
+            return;
+        }
+        kernel = ExpressionCompiler.compile(template, operandKinds);
+        if (kernel != null) {
+            kinds = operandKinds;
+            failed = false;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} line {}: compiled {}", getSource(), getLine(), ExpressionDumper.dump(expression));
+            }
+        }
+    }
+
+    /**
+     * Evaluate the operands of the expression.
+     *
+     * @return the values of the operands, or null if they do not have the
+     *     types for which the code was generated, or cannot be evaluated
+     */
+    private @Nullable Item[] operands(final Sequence contextSequence, final Item contextItem) {
+        final Item[] values = new Item[kinds.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                final Sequence value = template.operands().get(i).eval(contextSequence, contextItem);
+                if (!value.hasOne()) {
+                    return null;
+                }
+                values[i] = value.itemAt(0);
+                if (Kind.of(values[i]) != kinds[i]) {
+                    return null;
+                }
+            }
+        } catch (final XPathException e) {
+            // the interpreter may not evaluate the operand, e.g. the right operand of "and", or raises the error
+            return null;
+        }
+        return values;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns true once the expression is evaluated by generated code.
+     *
+     * @return true if the expression has been compiled
+     */
+    public boolean isCompiled() {
+        return kernel != null;
+    }
+
+    @Override
+    public void dump(final ExpressionDumper dumper) {
+        expression.dump(dumper);
+    }
+
+    @Override
+    public void accept(final ExpressionVisitor visitor) {
+        expression.accept(visitor);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    @Override
+    public int returnsType() {
+        return expression.returnsType();
+    }
+
+    @Override
+    public Cardinality getCardinality() {
+        return expression.getCardinality();
+    }
+
+    @Override
+    public int getDependencies() {
+        return expression.getDependencies();
+    }
+
+    @Override
+    public void setContextDocSet(final DocumentSet contextSet) {
+        super.setContextDocSet(contextSet);
+        expression.setContextDocSet(contextSet);
+    }
+
+    @Override
+    public void resetState(final boolean postOptimization) {
+        super.resetState(postOptimization);
+        expression.resetState(postOptimization);
+    }
+
+    @Override
+    public int getLine() {
+        return expression.getLine();
+    }
+
+    @Override
+    public int getColumn() {
+        return expression.getColumn();
+    }
+
+    @Override
+    public int getSubExpressionCount() {
+        return 1;
+    }
+
+    @Override
+    public Expression getSubExpression(final int index) {
+        if (index == 0) {
+            return expression;
+        }
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSubExpressionCount());
+    }
+}
@@ -90,6 +90,9 @@ public class VariableReference extends AbstractExpression {
         if (var == null) {
             throw new XPathException(this, ErrorCodes.XPST0008, "Variable '$" + qname + "' is not declared.");
         }
+        if (!(var instanceof LocalVariable)) {
+            context.globalVariableRead();
+        }
         final Sequence seq = var.getValue();
         if (seq == null) {
             throw new XPathException(this, ErrorCodes.XPDY0002, "undefined value for variable '$" + qname + "'");
@@ -82,6 +82,7 @@ import org.exist.source.*;
 import org.exist.stax.ExtendedXMLStreamReader;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.DBBroker;
+import org.exist.storage.ParallelQueryPool;
 import org.exist.storage.UpdateListener;
 import org.exist.storage.lock.Lock.LockMode;
 import org.exist.storage.lock.LockedDocumentMap;
@@ -213,6 +214,9 @@ public class XQueryContext implements BinaryValueManager, Context {
 
     private final Map<String, Sequence> cachedUriCollectionResults = new HashMap<>();
 
+    // The number of reads of global variables, see {@link #globalVariableRead()}
+    private long globalVariableReads = 0;
+
     /**
      * the watchdog object assigned to this query.
      */
@@ -383,6 +387,10 @@ public class XQueryContext implements BinaryValueManager, Context {
 
     private boolean enableOptimizer = true;
 
+    private boolean parallelEvaluation = ParallelQueryPool.DEFAULT_PARALLEL_EVALUATION;
+
+    private int compileThreshold = ExpressionCompiler.DEFAULT_COMPILE_THRESHOLD;
+
     private boolean raiseErrorOnFailedRetrieval = XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL_DEFAULT;
 
     private boolean isShared = false;
@@ -690,6 +698,8 @@ public class XQueryContext implements BinaryValueManager, Context {
         ctx.defaultCollator = this.defaultCollator;
         ctx.backwardsCompatible = this.backwardsCompatible;
         ctx.enableOptimizer = this.enableOptimizer;
+        ctx.parallelEvaluation = this.parallelEvaluation;
+        ctx.compileThreshold = this.compileThreshold;
         ctx.stripWhitespace = this.stripWhitespace;
         ctx.preserveNamespaces = this.preserveNamespaces;
         ctx.inheritNamespaces = this.inheritNamespaces;
@@ -2292,6 +2302,25 @@ public class XQueryContext implements BinaryValueManager, Context {
         return watchdog;
     }
 
+    /**
+     * Called when the value of a global or external variable is read,
+     * see {@link #getGlobalVariableReads()}.
+     */
+    public void globalVariableRead() {
+        globalVariableReads++;
+    }
+
+    /**
+     * Get the number of reads of global and external variables by this query so far.
+     * A function whose result is cached must not read them, as they are not part of
+     * the key of the result.
+     *
+     * @return the number of reads
+     */
+    public long getGlobalVariableReads() {
+        return globalVariableReads;
+    }
+
     private static final MemTreeBuilder NULL_DOCUMENT_BUILDER = new MemTreeBuilder((Expression) null);
 
     @Override
@@ -2735,12 +2764,7 @@ public class XQueryContext implements BinaryValueManager, Context {
             LOG.debug("Loading module from {}", location);
         }
 
-        try (final Reader reader = source.getReader()) {
-            if (reader == null) {
-                throw moduleLoadException("failed to load module: '" + namespaceURI + "' from: " +
-                        "'" + source + "', location: '" + location + "'. Source not found. ", location);
-            }
-
+        try {
             if (namespaceURI == null) {
                 final QName qname = source.isModule();
                 if (qname == null) {
@@ -2757,22 +2781,16 @@ public class XQueryContext implements BinaryValueManager, Context {
 
             final XQueryContext modContext = new ModuleContext(this, namespaceURI, prefix, location);
             modExternal.setContext(modContext);
-            final XQueryLexer lexer = new XQueryLexer(modContext, reader);
-            final XQueryParser parser = new XQueryParser(lexer);
             final XQueryTreeParser astParser = new XQueryTreeParser(modContext, modExternal);
 
             try {
-                parser.xpath();
-
-                if (parser.foundErrors()) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug(parser.getErrorMessage());
-                    }
-                    throw new XPathException(rootExpression, ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + parser.getErrorMessage());
+                // the syntax tree may be shared with other queries importing the same module
+                final AST ast = getBroker().getBrokerPool().getXQueryPool().parseModule(source, reader -> parseModule(modContext, reader, location));
+                if (ast == null) {
+                    throw moduleLoadException("failed to load module: '" + namespaceURI + "' from: " +
+                            "'" + source + "', location: '" + location + "'. Source not found. ", location);
                 }
 
-                final AST ast = parser.getAST();
-
                 final PathExpr path = new PathExpr(modContext);
                 astParser.xpath(ast, path);
 
@@ -2798,8 +2816,6 @@ public class XQueryContext implements BinaryValueManager, Context {
                 return modExternal;
             } catch (final RecognitionException e) {
                 throw new XPathException(e.getLine(), e.getColumn(), ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage());
-            } catch (final TokenStreamException e) {
-                throw new XPathException(rootExpression, ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage(), e);
             } catch (final XPathException e) {
                 e.prependMessage("Error while loading module " + location + ": ");
                 throw e;
@@ -2809,6 +2825,36 @@ public class XQueryContext implements BinaryValueManager, Context {
         }
     }
 
+    /**
+     * Parse the source of an XQuery Module into a syntax tree.
+     *
+     * @param modContext the context of the module
+     * @param reader     the source of the module
+     * @param location   the location of the module
+     * @return the syntax tree
+     * @throws XPathException if the module could not be parsed (XPST0003)
+     */
+    private AST parseModule(final XQueryContext modContext, final Reader reader, final String location) throws XPathException {
+        final XQueryLexer lexer = new XQueryLexer(modContext, reader);
+        final XQueryParser parser = new XQueryParser(lexer);
+        try {
+            parser.xpath();
+
+            if (parser.foundErrors()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(parser.getErrorMessage());
+                }
+                throw new XPathException(rootExpression, ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + parser.getErrorMessage());
+            }
+
+            return parser.getAST();
+        } catch (final RecognitionException e) {
+            throw new XPathException(e.getLine(), e.getColumn(), ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage());
+        } catch (final TokenStreamException e) {
+            throw new XPathException(rootExpression, ErrorCodes.XPST0003, "error found while loading module from " + location + ": " + e.getMessage(), e);
+        }
+    }
+
     private void declareModuleVars(final Module module) {
         final String moduleNS = module.getNamespaceURI();
 
@@ -2984,6 +3030,27 @@ public class XQueryContext implements BinaryValueManager, Context {
         return enableOptimizer;
     }
 
+    /**
+     * Returns true if the path steps of every query are evaluated in parallel
+     * across the documents of their context. Parallel evaluation may also be
+     * enabled for an expression with the <code>exist:parallel</code> pragma.
+     *
+     * @return true if parallel evaluation is enabled
+     */
+    public boolean parallelEvaluationEnabled() {
+        return parallelEvaluation;
+    }
+
+    /**
+     * Returns the number of evaluations after which arithmetic and comparison
+     * expressions are compiled to bytecode, see {@link TieredExpression}.
+     *
+     * @return the threshold, or 0 if compilation is disabled
+     */
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
     @Override
     public void addOption(final String name, final String value) throws XPathException {
         if (staticOptions == null) {
@@ -3096,6 +3163,7 @@ public class XQueryContext implements BinaryValueManager, Context {
             case ProfilePragma.PROFILING_PRAGMA_LOCAL_NAME -> new ProfilePragma(rootExpression, qname, sanitizedContents);
             case ForceIndexUse.FORCE_INDEX_USE_PRAGMA_LOCAL_NAME -> new ForceIndexUse(rootExpression, qname, sanitizedContents);
             case NoIndexPragma.NO_INDEX_PRAGMA_LOCAL_NAME -> new NoIndexPragma(rootExpression, qname, sanitizedContents);
+            case ParallelPragma.PARALLEL_PRAGMA_LOCAL_NAME -> new ParallelPragma(rootExpression, qname, sanitizedContents);
             default -> null;
         };
     }
@@ -3142,6 +3210,14 @@ public class XQueryContext implements BinaryValueManager, Context {
         final String queryRewritingOption = config.getProperty(PROPERTY_ENABLE_QUERY_REWRITING, "no");
         this.enableOptimizer = "yes".equals(queryRewritingOption);
 
+        // Switch: parallel evaluation of path steps
+        this.parallelEvaluation = config.getProperty(ParallelQueryPool.PROPERTY_PARALLEL_EVALUATION,
+                ParallelQueryPool.DEFAULT_PARALLEL_EVALUATION);
+
+        // Switch: compilation of hot expressions
+        this.compileThreshold = config.getProperty(ExpressionCompiler.PROPERTY_COMPILE_THRESHOLD,
+                ExpressionCompiler.DEFAULT_COMPILE_THRESHOLD);
+
         // Switch: Backward compatibility
         final String backwardsCompatOption = config.getProperty(PROPERTY_XQUERY_BACKWARD_COMPATIBLE, "yes");
         this.backwardsCompatible = "yes".equals(backwardsCompatOption);
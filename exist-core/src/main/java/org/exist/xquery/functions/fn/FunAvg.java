@@ -40,6 +40,7 @@ import org.exist.xquery.value.FunctionReturnSequenceType;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.IntegerValue;
 import org.exist.xquery.value.Item;
+import org.exist.xquery.value.LongSequence;
 import org.exist.xquery.value.NumericValue;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceIterator;
@@ -89,6 +90,9 @@ public class FunAvg extends Function {
         final Sequence inner = getArgument(0).eval(contextSequence, contextItem);
         if (inner.isEmpty()) {
             result = Sequence.EMPTY_SEQUENCE;
+        } else if (inner instanceof LongSequence longs) {
+            //xs:integer values in the range of a long are added up without creating an item for each
+            result = longs.sum().div(new IntegerValue(this, inner.getItemCountLong()));
         } else {
             final SequenceIterator iter = inner.iterate();
             Item item = iter.nextItem();
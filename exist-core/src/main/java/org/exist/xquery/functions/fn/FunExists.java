@@ -26,6 +26,8 @@ import org.exist.xquery.Cardinality;
 import org.exist.xquery.Dependency;
 import org.exist.xquery.Function;
 import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.ItemStream;
+import org.exist.xquery.Pipelinable;
 import org.exist.xquery.Profiler;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQueryContext;
@@ -74,8 +76,16 @@ public class FunExists extends Function {
         //if(contextItem != null)
 			//contextSequence = contextItem.toSequence();
         
-		final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
-		final Sequence result = seq.isEmpty() ? BooleanValue.FALSE : BooleanValue.TRUE;
+		final boolean empty;
+		if (Pipelinable.isPipelined(getArgument(0))) {
+			// only compute the first item of the argument
+			try (final ItemStream items = Pipelinable.iterate(getArgument(0), contextSequence, contextItem)) {
+				empty = items.next() == null;
+			}
+		} else {
+			empty = getArgument(0).eval(contextSequence, contextItem).isEmpty();
+		}
+		final Sequence result = empty ? BooleanValue.FALSE : BooleanValue.TRUE;
         
         if (context.getProfiler().isEnabled()) 
             {context.getProfiler().end(this, "", result);} 
@@ -24,14 +24,18 @@ package org.exist.xquery.functions.fn;
 import org.exist.dom.QName;
 import org.exist.xquery.AnalyzeContextInfo;
 import org.exist.xquery.BasicFunction;
+import org.exist.xquery.BoundedSort;
 import org.exist.xquery.Cardinality;
 import org.exist.xquery.ErrorCodes;
 import org.exist.xquery.Function;
 import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.ItemStream;
+import org.exist.xquery.Pipelinable;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQueryContext;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.FunctionReturnSequenceType;
+import org.exist.xquery.value.Item;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceType;
 import org.exist.xquery.value.Type;
@@ -69,6 +73,26 @@ public class FunHeadTail extends BasicFunction {
 		}
 	}
 	
+	@Override
+	public Sequence eval(final Sequence contextSequence, final Item contextItem) throws XPathException {
+		if (isCalledAs("head") && Pipelinable.isPipelined(getArgument(0))) {
+			// only compute the first item of the argument
+			try (final ItemStream items = Pipelinable.iterate(getArgument(0),
+					contextItem != null ? contextItem.toSequence() : contextSequence, contextItem)) {
+				final Item first = items.next();
+				return first == null ? Sequence.EMPTY_SEQUENCE : first.toSequence();
+			}
+		}
+		if (isCalledAs("head")) {
+			// only the first item of a sorted argument needs to be sorted
+			final BoundedSort sort = BoundedSort.find(getArgument(0));
+			if (sort != null) {
+				return sort.withLimit(1, () -> super.eval(contextSequence, contextItem));
+			}
+		}
+		return super.eval(contextSequence, contextItem);
+	}
+
 	@Override
 	public Sequence eval(Sequence[] args, Sequence contextSequence)
 			throws XPathException {
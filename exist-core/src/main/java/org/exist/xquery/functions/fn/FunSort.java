@@ -22,6 +22,8 @@
 package org.exist.xquery.functions.fn;
 
 import com.ibm.icu.text.Collator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
 import org.exist.dom.QName;
 import org.exist.xquery.*;
 import org.exist.xquery.value.FunctionParameterSequenceType;
@@ -37,14 +39,12 @@ import org.exist.xquery.value.ValueSequence;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 
 /**
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
-public class FunSort extends BasicFunction {
+public class FunSort extends BasicFunction implements BoundedSort {
 
   public final static FunctionSignature[] signatures = {
     new FunctionSignature(
@@ -78,6 +78,8 @@ public class FunSort extends BasicFunction {
 
   AnalyzeContextInfo cachedContextInfo;
 
+  private long limit = UNBOUNDED;
+
   public FunSort(final XQueryContext context, final FunctionSignature signature) {
     super(context, signature);
   }
@@ -93,6 +95,13 @@ public class FunSort extends BasicFunction {
     super.analyze(cachedContextInfo);
   }
 
+  @Override
+  public long setLimit(final long limit) {
+    final long previous = this.limit;
+    this.limit = limit;
+    return previous;
+  }
+
   @Override
   public Sequence eval(final Sequence[] args, final Sequence contextSequence) throws XPathException {
     final Sequence seq = args[0];
@@ -118,33 +127,51 @@ public class FunSort extends BasicFunction {
   }
 
   private Sequence sort(final Sequence seq, final List<Sequence> keys, final Collator collator) throws XPathException {
-    // prepare
     final int size = seq.getItemCount();
-    final Integer[] order = new Integer[size];
-    for (int i = 0; i < size; i++) {
-      order[i] = i;
-    }
-
-    // sort
     final FnSortComparator fnSortComparator = new FnSortComparator(keys, collator);
+    final int[] order;
+    final int length;
     try {
-      Arrays.sort(order, fnSortComparator);
+      if (limit <= size / 2) {
+        // only the first items are used: keep the best of them in a buffer twice their size,
+        // and sort and cut it down whenever it is full
+        final int k = (int) limit;
+        order = new int[2 * k];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+          if (count == order.length) {
+            IntArrays.mergeSort(order, 0, count, fnSortComparator);
+            count = k;
+          }
+          order[count++] = i;
+        }
+        IntArrays.mergeSort(order, 0, count, fnSortComparator);
+        length = Math.min(count, k);
+      } else {
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+          order[i] = i;
+        }
+        // a stable sort, which keeps items with equal keys in the order of the input
+        IntArrays.mergeSort(order, fnSortComparator);
+        length = (int) Math.min(limit, size);
+      }
     } catch (final FnSortComparator.SortCompareException e) {
       throw (XPathException) e.getCause();
     }
 
     // form the final sequence
-    final ValueSequence result = new ValueSequence(seq.getItemCount());
+    final ValueSequence result = new ValueSequence(length);
     result.keepUnOrdered(true);
 
-    for(int i = 0; i < size; i++) {
+    for(int i = 0; i < length; i++) {
       result.add(seq.itemAt(order[i]));
     }
 
     return result;
   }
 
-  private static class FnSortComparator implements Comparator<Integer> {
+  private static class FnSortComparator implements IntComparator {
     private final List<Sequence> keys;
     @Nullable private final Collator collator;
 
@@ -154,7 +181,7 @@ public class FunSort extends BasicFunction {
     }
 
     @Override
-    public int compare(final Integer i1, final Integer i2) {
+    public int compare(final int i1, final int i2) {
       final Sequence seq1 = keys.get(i1);
       final Sequence seq2 = keys.get(i2);
 
@@ -28,6 +28,7 @@ import org.exist.xquery.*;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.FunctionReturnSequenceType;
 import org.exist.xquery.value.IntegerValue;
+import org.exist.xquery.value.LongArraySequence;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceType;
 import org.exist.xquery.value.Type;
@@ -61,7 +62,7 @@ public class FunStringToCodepoints extends BasicFunction {
         if (args[0].isEmpty())
 			{result =  Sequence.EMPTY_SEQUENCE;}
         else {
-    		result = getCodePoints(this, args[0].getStringValue());
+    		result = new LongArraySequence(this, args[0].getStringValue().codePoints().asLongStream().toArray());
         }
         
         if (context.getProfiler().isEnabled()) 
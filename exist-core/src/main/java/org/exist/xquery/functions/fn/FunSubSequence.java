@@ -108,6 +108,16 @@ public class FunSubSequence extends Function {
             }
         }
 
+        if (getArgumentCount() == 3 && Pipelinable.isPipelined(getArgument(0))) {
+            return pipelinedSubsequence(contextSequence, contextItem);
+        }
+        if (getArgumentCount() == 3) {
+            final BoundedSort sort = BoundedSort.find(getArgument(0));
+            if (sort != null) {
+                return sortedSubsequence(sort, contextSequence, contextItem);
+            }
+        }
+
         final Sequence result;
         final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
         if (seq.isEmpty()) {
@@ -126,6 +136,50 @@ public class FunSubSequence extends Function {
         return result;
     }
 
+    /**
+     * Pull the items of the source sequence only up to the end of the subsequence.
+     */
+    private Sequence pipelinedSubsequence(final Sequence contextSequence, final Item contextItem) throws XPathException {
+        final long startArg = ((DoubleValue) getArgument(1).eval(contextSequence, contextItem).convertTo(Type.DOUBLE)).getLong();
+        final long lengthArg = ((DoubleValue) getArgument(2).eval(contextSequence, contextItem).convertTo(Type.DOUBLE)).getLong();
+        final long fromInclusive = Math.max(1, startArg);
+        final long toExclusive = startArg + lengthArg;
+        if (fromInclusive >= toExclusive) {
+            return Sequence.EMPTY_SEQUENCE;
+        }
+
+        final ValueSequence result = new ValueSequence();
+        try (final ItemStream items = Pipelinable.iterate(getArgument(0), contextSequence, contextItem)) {
+            for (long position = 1; position < toExclusive; position++) {
+                final Item item = items.next();
+                if (item == null) {
+                    break;
+                }
+                if (position >= fromInclusive) {
+                    result.add(item);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort the items of the source sequence only up to the end of the subsequence.
+     */
+    private Sequence sortedSubsequence(final BoundedSort sort, final Sequence contextSequence, final Item contextItem)
+            throws XPathException {
+        final DoubleValue start = (DoubleValue) getArgument(1).eval(contextSequence, contextItem).convertTo(Type.DOUBLE);
+        final DoubleValue length = (DoubleValue) getArgument(2).eval(contextSequence, contextItem).convertTo(Type.DOUBLE);
+        final long toExclusive = start.getLong() + length.getLong();
+        final Sequence seq;
+        if (toExclusive > 1) {
+            seq = sort.withLimit(toExclusive - 1, () -> getArgument(0).eval(contextSequence, contextItem));
+        } else {
+            seq = getArgument(0).eval(contextSequence, contextItem);
+        }
+        return seq.isEmpty() ? Sequence.EMPTY_SEQUENCE : subsequence(seq, start, length);
+    }
+
     /**
      * Creates a Subsequence from a sequence
      *
@@ -29,9 +29,9 @@ import org.exist.util.PatternFactory;
 import org.exist.xquery.*;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.StringArraySequence;
 import org.exist.xquery.value.StringValue;
 import org.exist.xquery.value.Type;
-import org.exist.xquery.value.ValueSequence;
 
 import static org.exist.xquery.FunctionDSL.*;
 import static org.exist.xquery.regex.RegexUtil.*;
@@ -111,11 +111,7 @@ public class FunTokenize extends BasicFunction {
                     }
 
                     final String[] tokens = pat.split(string, -1);
-                    result = new ValueSequence();
-
-                    for (final String token : tokens) {
-                        result.add(new StringValue(this, token));
-                    }
+                    result = new StringArraySequence(this, tokens);
 
                 } catch (final PatternSyntaxException e) {
                     throw new XPathException(this, ErrorCodes.FORX0001, "Invalid regular expression: " + e.getMessage(), new StringValue(this, pattern), e);
@@ -24,6 +24,7 @@ package org.exist.xquery.functions.fn;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import io.lacuna.bifurcan.IMap;
 import org.exist.Namespaces;
 import org.exist.dom.QName;
 import org.exist.dom.memtree.MemTreeBuilder;
@@ -36,8 +37,11 @@ import org.exist.xquery.functions.array.ArrayType;
 import org.exist.xquery.functions.map.MapType;
 import org.exist.xquery.value.*;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.exist.xquery.FunctionDSL.*;
 import static org.exist.xquery.functions.fn.FnModule.functionSignatures;
@@ -110,6 +114,13 @@ public class JSON extends BasicFunction {
     public static final String OPTION_UNESCAPE = "unescape";
     public static final QName KEY = new QName("key",null);
 
+    /**
+     * Jackson factories are thread-safe once configured, and recycle their buffers
+     * and symbol tables between parsers, so they are shared rather than created per call.
+     */
+    private static final JsonFactory STRICT_JSON_FACTORY = createJsonFactory(false);
+    private static final JsonFactory LIBERAL_JSON_FACTORY = createJsonFactory(true);
+
     public JSON(XQueryContext context, FunctionSignature signature) {
         super(context, signature);
     }
@@ -136,7 +147,7 @@ public class JSON extends BasicFunction {
             }
         }
 
-        JsonFactory factory = createJsonFactory(liberal);
+        final JsonFactory factory = liberal ? LIBERAL_JSON_FACTORY : STRICT_JSON_FACTORY;
 
         if (isCalledAs(FS_PARSE_JSON_NAME)) {
             return parse(args[0], handleDuplicates, factory);
@@ -192,7 +203,6 @@ public class JSON extends BasicFunction {
             context.pushDocumentContext();
             final MemTreeBuilder builder = context.getDocumentBuilder();
             builder.startDocument();
-            factory.configure(JsonParser.Feature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER, false);
             jsonToXml(builder, parser);
             return builder.getDocument() == null ? Sequence.EMPTY_SEQUENCE : builder.getDocument();
         }  catch (IOException e) {
@@ -233,6 +243,10 @@ public class JSON extends BasicFunction {
     /**
      * Generate an XDM from the tokens delivered by the JSON parser.
      *
+     * Objects and arrays are collected into a mutable map or list while they are read
+     * and only then turned into a {@link MapType} or {@link ArrayType}, rather than
+     * being copied for each entry added.
+     *
      * @param context the XQueryContext
      * @param parser parser to use
      * @param handleDuplicates string indicating how to handle duplicate property names
@@ -241,71 +255,73 @@ public class JSON extends BasicFunction {
      * @throws XPathException in case of dynamic error
      */
     public static Item readValue(XQueryContext context, JsonParser parser, String handleDuplicates) throws IOException, XPathException {
-        return readValue(context, parser, null, handleDuplicates);
+        JsonToken token;
+        Item next = null;
+        while ((token = parser.nextToken()) != null) {
+            next = readValue(context, parser, token, handleDuplicates);
+        }
+        return next;
     }
 
-    private static Item readValue(XQueryContext context, JsonParser parser, Item parent, String handleDuplicates) throws IOException, XPathException {
+    private static @Nullable Item readValue(XQueryContext context, JsonParser parser, JsonToken token, String handleDuplicates) throws IOException, XPathException {
+        switch (token) {
+            case START_OBJECT:
+                return readObject(context, parser, handleDuplicates);
+            case START_ARRAY:
+                return readArray(context, parser, handleDuplicates);
+            case VALUE_FALSE:
+                return BooleanValue.FALSE;
+            case VALUE_TRUE:
+                return BooleanValue.TRUE;
+            case VALUE_NUMBER_FLOAT:
+            case VALUE_NUMBER_INT:
+                // according to spec, all numbers are converted to double; parsing the text,
+                // rather than the int Jackson reads for an integer token, keeps the sign of -0
+                return new DoubleValue(Double.parseDouble(parser.getText()));
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return new StringValue(parser.getText());
+            default:
+                throw new XPathException((Expression) null, ErrorCodes.FOJS0001, "Invalid JSON: unexpected " + token);
+        }
+    }
+
+    private static MapType readObject(XQueryContext context, JsonParser parser, String handleDuplicates) throws IOException, XPathException {
+        final IMap<AtomicValue, Sequence> map = MapType.newLinearMap(null);
         JsonToken token;
-        Item next = null;
-        while ((token = parser.nextValue()) != null) {
-            if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
-                return parent;
-            }
-            switch (token) {
-                case START_OBJECT:
-                    next = new MapType(null, context, null);
-                    readValue(context, parser, next, handleDuplicates);
-                    break;
-                case START_ARRAY:
-                    next = new ArrayType(null, context, Sequence.EMPTY_SEQUENCE);
-                    readValue(context, parser, next, handleDuplicates);
-                    break;
-                case VALUE_FALSE:
-                    next = BooleanValue.FALSE;
-                    break;
-                case VALUE_TRUE:
-                    next = BooleanValue.TRUE;
-                    break;
-                case VALUE_NUMBER_FLOAT:
-                case VALUE_NUMBER_INT:
-                    // according to spec, all numbers are converted to double
-                    next = new StringValue(parser.getText()).convertTo(Type.DOUBLE);
-                    break;
-                case VALUE_NULL:
-                    next = null;
-                    break;
-                default:
-                    next = new StringValue(parser.getText());
-                    break;
+        while ((token = parser.nextValue()) != JsonToken.END_OBJECT) {
+            if (token == null) {
+                throw new XPathException((Expression) null, ErrorCodes.FOJS0001, "Invalid JSON object");
             }
-            if (parent != null) {
-                switch (parent.getType()) {
-                    case Type.ARRAY_ITEM:
-                        ((ArrayType)parent).add(next == null ? Sequence.EMPTY_SEQUENCE : next.toSequence());
-                        break;
-                    case Type.MAP_ITEM:
-                        final String currentName = parser.getCurrentName();
-                        if (currentName == null) {
-                            throw new XPathException(next, ErrorCodes.FOJS0001, "Invalid JSON object");
-                        }
-                        final StringValue name = new StringValue(currentName);
-                        final MapType map = (MapType) parent;
-                        if (map.contains(name)) {
-                            // handle duplicate keys
-                            if (handleDuplicates.equals(OPTION_DUPLICATES_REJECT)) {
-                                throw new XPathException(map.getExpression(), ErrorCodes.FOJS0003, "Duplicate key: " + currentName);
-                            }
-                            if (handleDuplicates.equals(OPTION_DUPLICATES_USE_LAST)) {
-                                map.add(name, next == null ? Sequence.EMPTY_SEQUENCE : next.toSequence());
-                            }
-                        } else {
-                            map.add(name, next == null ? Sequence.EMPTY_SEQUENCE : next.toSequence());
-                        }
-                        break;
+            final String currentName = parser.getCurrentName();
+            final Item next = readValue(context, parser, token, handleDuplicates);
+            final StringValue name = new StringValue(currentName);
+            if (map.contains(name)) {
+                // handle duplicate keys
+                if (handleDuplicates.equals(OPTION_DUPLICATES_REJECT)) {
+                    throw new XPathException((Expression) null, ErrorCodes.FOJS0003, "Duplicate key: " + currentName);
+                }
+                if (!handleDuplicates.equals(OPTION_DUPLICATES_USE_LAST)) {
+                    continue;
                 }
             }
+            map.put(name, next == null ? Sequence.EMPTY_SEQUENCE : next.toSequence());
         }
-        return next;
+        return new MapType(context, map.forked(), map.size() == 0 ? null : Type.STRING);
+    }
+
+    private static ArrayType readArray(XQueryContext context, JsonParser parser, String handleDuplicates) throws IOException, XPathException {
+        final List<Sequence> members = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new XPathException((Expression) null, ErrorCodes.FOJS0001, "Invalid JSON array");
+            }
+            final Item next = readValue(context, parser, token, handleDuplicates);
+            members.add(next == null ? Sequence.EMPTY_SEQUENCE : next.toSequence());
+        }
+        return new ArrayType(context, members);
     }
 
     /**
@@ -36,6 +36,8 @@ import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.Type;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -128,8 +130,9 @@ public class Optimize extends AbstractPragma {
             cachedTimestamp = originalContext == null ? 0 : originalContext.getState();
             cachedOptimize = true;
             NodeSet result = null;
-            for (int current = 0; current < optimizables.length; current++) {
-                final NodeSet selection = optimizables[current].preSelect(contextSequence, current > 0);
+            final Optimizable[] ordered = orderBySelectivity(contextSequence);
+            for (int current = 0; current < ordered.length; current++) {
+                final NodeSet selection = ordered[current].preSelect(contextSequence, current > 0);
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("exist:optimize: pre-selection: {}", selection.getLength());
                 }
@@ -147,12 +150,12 @@ public class Optimize extends AbstractPragma {
 //                    selector = new AncestorSelector(selection, contextId, true, false);
                     final StructuralIndex index = context.getBroker().getStructuralIndex();
                     final QName ancestorQN = contextStep.getTest().getName();
-                    if (optimizables[current].optimizeOnSelf()) {
+                    if (ordered[current].optimizeOnSelf()) {
                         ancestors = index.findAncestorsByTagName(ancestorQN.getNameType(), ancestorQN, Constants.SELF_AXIS,
                                 selection.getDocumentSet(), selection, contextId);
                     } else {
                         ancestors = index.findAncestorsByTagName(ancestorQN.getNameType(), ancestorQN,
-                                optimizables[current].optimizeOnChild() ? Constants.PARENT_AXIS : Constants.ANCESTOR_SELF_AXIS,
+                                ordered[current].optimizeOnChild() ? Constants.PARENT_AXIS : Constants.ANCESTOR_SELF_AXIS,
                                 selection.getDocumentSet(), selection, contextId);
                     }
                     if (LOG.isTraceEnabled()) {
@@ -216,6 +219,10 @@ public class Optimize extends AbstractPragma {
                 @Nullable final Predicate[] predicates = locationStep.getPredicates();
                 if (predicates != null) {
                     for (final Predicate pred : predicates) {
+                        // a pre-selection must not change the positions seen by a positional predicate
+                        if (pred.isPositional()) {
+                            break;
+                        }
                         pred.accept(this);
                     }
                 }
@@ -230,6 +237,9 @@ public class Optimize extends AbstractPragma {
 
                 final List<Predicate> predicates = filtered.getPredicates();
                 for (final Predicate pred : predicates) {
+                    if (pred.isPositional()) {
+                        break;
+                    }
                     pred.accept(this);
                 }
             }
@@ -277,6 +287,37 @@ public class Optimize extends AbstractPragma {
     public void after(final XQueryContext context, @Nullable final Expression expression) throws XPathException {
     }
 
+    /**
+     * Order the optimizables by their {@link Optimizable#estimateCardinality(Sequence) estimated}
+     * number of matches, so that the following lookups are restricted to the nodes
+     * selected by the most selective one. Optimizables without an estimate come last.
+     *
+     * If the pragma encloses a location step, the first optimizable keeps its place,
+     * as the ancestors of its matches are found by the name of the step.
+     *
+     * @param contextSequence the context sequence
+     * @return the ordered optimizables
+     */
+    private Optimizable[] orderBySelectivity(final Sequence contextSequence) {
+        final int from = contextStep == null ? 0 : 1;
+        if (optimizables.length - from < 2) {
+            return optimizables;
+        }
+        final long[] estimates = new long[optimizables.length];
+        final Integer[] order = new Integer[optimizables.length];
+        for (int i = 0; i < optimizables.length; i++) {
+            final long estimate = i < from ? -1 : optimizables[i].estimateCardinality(contextSequence);
+            estimates[i] = estimate < 0 ? Long.MAX_VALUE : estimate;
+            order[i] = i;
+        }
+        Arrays.sort(order, from, order.length, Comparator.comparingLong(i -> estimates[i]));
+        final Optimizable[] ordered = new Optimizable[optimizables.length];
+        for (int i = 0; i < order.length; i++) {
+            ordered[i] = optimizables[order[i]];
+        }
+        return ordered;
+    }
+
     private void addOptimizable(final Optimizable optimizable) {
         final int axis = optimizable.getOptimizeAxis();
         if (!(axis == Constants.CHILD_AXIS || axis == Constants.SELF_AXIS || axis == Constants.DESCENDANT_AXIS ||
@@ -0,0 +1,52 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.pragmas;
+
+import org.exist.xquery.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.Namespaces;
+import org.exist.dom.QName;
+
+/**
+ * Enables the parallel evaluation of the path steps of the enclosed
+ * expression across the documents of their context, see
+ * {@link org.exist.storage.ParallelQueryPool}.
+ */
+public class ParallelPragma extends AbstractPragma {
+    public static final String PARALLEL_PRAGMA_LOCAL_NAME = "parallel";
+    public static final QName PARALLEL_PRAGMA = new QName(PARALLEL_PRAGMA_LOCAL_NAME, Namespaces.EXIST_NS, "exist");
+
+    private static final Logger LOG = LogManager.getLogger(ParallelPragma.class);
+
+    public ParallelPragma(final Expression expression, final QName qname, final String contents) {
+        super(expression, qname, contents);
+    }
+
+    @Override
+    public void analyze(final AnalyzeContextInfo contextInfo) throws XPathException {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Switching parallel evaluation on ...");
+        }
+        contextInfo.addFlag(Expression.PARALLEL_EVALUATION);
+    }
+}
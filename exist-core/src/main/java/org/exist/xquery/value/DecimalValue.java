@@ -295,7 +295,7 @@ public class DecimalValue extends NumericValue {
     protected @Nullable IntSupplier createComparisonWith(final NumericValue other) {
         final IntSupplier comparison;
         if (other instanceof IntegerValue) {
-            comparison = () -> value.compareTo(new BigDecimal(((IntegerValue)other).value));
+            comparison = () -> value.compareTo(new BigDecimal(((IntegerValue)other).toBigInteger()));
         } else if (other instanceof DecimalValue) {
             comparison = () -> value.compareTo(((DecimalValue)other).value);
         } else if (other instanceof DoubleValue) {
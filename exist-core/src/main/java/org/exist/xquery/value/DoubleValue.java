@@ -162,7 +162,7 @@ public class DoubleValue extends NumericValue {
         } else if (other.isNegativeInfinity()) {
             comparison = () -> Constants.SUPERIOR;
         } else if (other instanceof IntegerValue iv) {
-            comparison = () -> BigDecimal.valueOf(value).compareTo(new BigDecimal(iv.value));
+            comparison = () -> BigDecimal.valueOf(value).compareTo(iv.isLong() ? BigDecimal.valueOf(iv.getLong()) : new BigDecimal(iv.toBigInteger()));
         } else if (other instanceof DecimalValue dv) {
             comparison = () -> BigDecimal.valueOf(value).compareTo(dv.value);
         } else if (other instanceof DoubleValue dv) {
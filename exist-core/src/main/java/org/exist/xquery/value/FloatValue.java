@@ -165,7 +165,7 @@ public class FloatValue extends NumericValue {
         } else if (other.isNegativeInfinity()) {
             comparison = () -> Constants.SUPERIOR;
         } else if (other instanceof IntegerValue iv) {
-            comparison = () -> BigDecimal.valueOf(value).compareTo(new BigDecimal(iv.value));
+            comparison = () -> BigDecimal.valueOf(value).compareTo(iv.isLong() ? BigDecimal.valueOf(iv.getLong()) : new BigDecimal(iv.toBigInteger()));
         } else if (other instanceof DecimalValue dv) {
             final BigDecimal promoted = new BigDecimal(Float.toString(value));
             comparison = () -> promoted.compareTo(dv.value);
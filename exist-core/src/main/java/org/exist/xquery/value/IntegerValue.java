@@ -49,31 +49,25 @@ public class IntegerValue extends NumericValue {
 
     public static final IntegerValue ZERO = new IntegerValue(0);
 
-    private static final BigInteger ZERO_BIGINTEGER = new BigInteger("0");
-    private static final BigInteger ONE_BIGINTEGER = new BigInteger("1");
-    private static final BigInteger MINUS_ONE_BIGINTEGER = new BigInteger("-1");
-
-    private static final BigInteger LARGEST_LONG = new BigInteger("9223372036854775807");
-    private static final BigInteger SMALLEST_LONG = new BigInteger("-9223372036854775808");
 
     private static final BigInteger LARGEST_UNSIGNED_LONG = new BigInteger("18446744073709551615");
 
-    private static final BigInteger LARGEST_INT = new BigInteger("2147483647");
-    private static final BigInteger SMALLEST_INT = new BigInteger("-2147483648");
-
-    private static final BigInteger LARGEST_UNSIGNED_INT = new BigInteger("4294967295");
-
-    private static final BigInteger LARGEST_SHORT = new BigInteger("32767");
-    private static final BigInteger SMALLEST_SHORT = new BigInteger("-32768");
+    private static final long LARGEST_UNSIGNED_INT = 4294967295L;
+    private static final long LARGEST_UNSIGNED_SHORT = 65535L;
+    private static final long LARGEST_UNSIGNED_BYTE = 255L;
 
-    private static final BigInteger LARGEST_UNSIGNED_SHORT = new BigInteger("65535");
-
-    private static final BigInteger LARGEST_BYTE = new BigInteger("127");
-    private static final BigInteger SMALLEST_BYTE = new BigInteger("-128");
+    /**
+     * The value, if it is in the range of a long.
+     */
+    private final long longValue;
 
-    private static final BigInteger LARGEST_UNSIGNED_BYTE = new BigInteger("255");
+    /**
+     * The value, if it is not in the range of a long, null otherwise.
+     * Arithmetic on two longs only promotes to a {@link BigInteger}
+     * when the result overflows.
+     */
+    private final @Nullable BigInteger bigValue;
 
-    final BigInteger value;
     private final int type;
 
     public IntegerValue(final long value) {
@@ -82,7 +76,8 @@ public class IntegerValue extends NumericValue {
 
     public IntegerValue(final Expression expression, final long value) {
         super(expression);
-        this.value = BigInteger.valueOf(value);
+        this.longValue = value;
+        this.bigValue = null;
         this.type = Type.INTEGER;
     }
 
@@ -92,7 +87,8 @@ public class IntegerValue extends NumericValue {
 
     public IntegerValue(final Expression expression, final BigInteger integer) {
         super(expression);
-        this.value = integer;
+        this.longValue = integer.longValue();
+        this.bigValue = fitsLong(integer) ? null : integer;
         this.type = Type.INTEGER;
     }
 
@@ -101,7 +97,11 @@ public class IntegerValue extends NumericValue {
     }
 
     public IntegerValue(final Expression expression, final long value, final int type) throws XPathException {
-        this(expression, BigInteger.valueOf(value), type);
+        super(expression);
+        this.longValue = value;
+        this.bigValue = null;
+        this.type = type;
+        checkType(value);
     }
 
     public IntegerValue(final BigInteger value, final int requiredType) throws XPathException {
@@ -109,22 +109,11 @@ public class IntegerValue extends NumericValue {
     }
 
     public IntegerValue(final Expression expression, final BigInteger value, final int requiredType) throws XPathException {
-        this(expression, value, requiredType, true);
-    }
-
-    private IntegerValue(final BigInteger value, final int requiredType, final boolean checkType) throws XPathException {
-        this(null, value, requiredType, checkType);
-    }
-
-    private IntegerValue(final Expression expression, final BigInteger value, final int requiredType, boolean checkType) throws XPathException {
         super(expression);
-        this.value = value;
+        this.longValue = value.longValue();
+        this.bigValue = fitsLong(value) ? null : value;
         this.type = requiredType;
-
-        if (checkType && !checkType()) {
-            throw new XPathException(getExpression(), ErrorCodes.FORG0001, "can not convert '" +
-                    value + "' to " + Type.getTypeName(type));
-        }
+        checkType(value);
     }
 
     public IntegerValue(final String stringValue) throws XPathException {
@@ -141,71 +130,79 @@ public class IntegerValue extends NumericValue {
 
     public IntegerValue(final Expression expression, final String stringValue, final int requiredType) throws XPathException {
         super(expression);
+        final String trimmed = StringValue.trimWhitespace(stringValue);
+        long parsedLong;
+        BigInteger parsedBig;
         try {
-            this.value = new BigInteger(StringValue.trimWhitespace(stringValue));
-            this.type = requiredType;
-            if (!(checkType())) {
+            parsedLong = Long.parseLong(trimmed);
+            parsedBig = null;
+        } catch (final NumberFormatException e) {
+            // not a long, so either out of its range or not an integer at all
+            try {
+                final BigInteger big = new BigInteger(trimmed);
+                parsedLong = big.longValue();
+                parsedBig = fitsLong(big) ? null : big;
+            } catch (final NumberFormatException e2) {
                 throw new XPathException(getExpression(), ErrorCodes.FORG0001, "can not convert '" +
-                        stringValue + "' to " + Type.getTypeName(type));
+                        stringValue + "' to " + Type.getTypeName(requiredType));
             }
-        } catch (final NumberFormatException e) {
+        }
+        this.longValue = parsedLong;
+        this.bigValue = parsedBig;
+        this.type = requiredType;
+        if (!(bigValue == null ? checkType(type, longValue) : checkType(type, bigValue))) {
             throw new XPathException(getExpression(), ErrorCodes.FORG0001, "can not convert '" +
-                    stringValue + "' to " + Type.getTypeName(requiredType));
+                    stringValue + "' to " + Type.getTypeName(type));
         }
     }
 
-    private boolean checkType() throws XPathException {
-        switch (type) {
-
-            case Type.LONG:
-                // jmv: add test since now long is not the default implementation anymore:
-                return value.compareTo(SMALLEST_LONG) >= 0 &&
-                        value.compareTo(LARGEST_LONG) <= 0;
-
-            case Type.UNSIGNED_LONG:
-                return value.compareTo(ZERO_BIGINTEGER) >= 0 &&
-                        value.compareTo(LARGEST_UNSIGNED_LONG) <= 0;
-
-            case Type.INTEGER:
-            case Type.DECIMAL:
-                return true;
-
-            case Type.POSITIVE_INTEGER:
-                return value.compareTo(ZERO_BIGINTEGER) == 1; // >0
-            case Type.NON_NEGATIVE_INTEGER:
-                return value.compareTo(MINUS_ONE_BIGINTEGER) == 1; // > -1
-
-            case Type.NEGATIVE_INTEGER:
-                return value.compareTo(ZERO_BIGINTEGER) == -1; // <0
-            case Type.NON_POSITIVE_INTEGER:
-                return value.compareTo(ONE_BIGINTEGER) == -1; // <1
-
-            case Type.INT:
-                return value.compareTo(SMALLEST_INT) >= 0 &&
-                        value.compareTo(LARGEST_INT) <= 0;
-
-            case Type.UNSIGNED_INT:
-                return value.compareTo(ZERO_BIGINTEGER) >= 0 &&
-                        value.compareTo(LARGEST_UNSIGNED_INT) <= 0;
-
-            case Type.SHORT:
-                return value.compareTo(SMALLEST_SHORT) >= 0 &&
-                        value.compareTo(LARGEST_SHORT) <= 0;
-
-            case Type.UNSIGNED_SHORT:
-                return value.compareTo(ZERO_BIGINTEGER) >= 0 &&
-                        value.compareTo(LARGEST_UNSIGNED_SHORT) <= 0;
+    private static boolean fitsLong(final BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
 
-            case Type.BYTE:
-                return value.compareTo(SMALLEST_BYTE) >= 0 &&
-                        value.compareTo(LARGEST_BYTE) <= 0;
+    private void checkType(final long value) throws XPathException {
+        if (!checkType(type, value)) {
+            throw new XPathException(getExpression(), ErrorCodes.FORG0001, "can not convert '" +
+                    value + "' to " + Type.getTypeName(type));
+        }
+    }
 
-            case Type.UNSIGNED_BYTE:
-                return value.compareTo(ZERO_BIGINTEGER) >= 0 &&
-                        value.compareTo(LARGEST_UNSIGNED_BYTE) <= 0;
+    private void checkType(final BigInteger value) throws XPathException {
+        if (!(bigValue == null ? checkType(type, longValue) : checkType(type, value))) {
+            throw new XPathException(getExpression(), ErrorCodes.FORG0001, "can not convert '" +
+                    value + "' to " + Type.getTypeName(type));
         }
+    }
 
-        throw new XPathException(getExpression(), "Unknown type: " + Type.getTypeName(type));
+    private boolean checkType(final int type, final long value) throws XPathException {
+        return switch (type) {
+            case Type.LONG, Type.INTEGER, Type.DECIMAL -> true;
+            case Type.UNSIGNED_LONG, Type.NON_NEGATIVE_INTEGER -> value >= 0;
+            case Type.POSITIVE_INTEGER -> value > 0;
+            case Type.NEGATIVE_INTEGER -> value < 0;
+            case Type.NON_POSITIVE_INTEGER -> value <= 0;
+            case Type.INT -> value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+            case Type.UNSIGNED_INT -> value >= 0 && value <= LARGEST_UNSIGNED_INT;
+            case Type.SHORT -> value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+            case Type.UNSIGNED_SHORT -> value >= 0 && value <= LARGEST_UNSIGNED_SHORT;
+            case Type.BYTE -> value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+            case Type.UNSIGNED_BYTE -> value >= 0 && value <= LARGEST_UNSIGNED_BYTE;
+            default -> throw new XPathException(getExpression(), "Unknown type: " + Type.getTypeName(type));
+        };
+    }
+
+    /**
+     * Check the range of a value which does not fit into a long.
+     */
+    private boolean checkType(final int type, final BigInteger value) throws XPathException {
+        return switch (type) {
+            case Type.INTEGER, Type.DECIMAL -> true;
+            case Type.UNSIGNED_LONG -> value.signum() >= 0 && value.compareTo(LARGEST_UNSIGNED_LONG) <= 0;
+            case Type.POSITIVE_INTEGER, Type.NON_NEGATIVE_INTEGER -> value.signum() > 0;
+            case Type.NEGATIVE_INTEGER, Type.NON_POSITIVE_INTEGER -> value.signum() < 0;
+            case Type.LONG, Type.INT, Type.UNSIGNED_INT, Type.SHORT, Type.UNSIGNED_SHORT, Type.BYTE, Type.UNSIGNED_BYTE -> false;
+            default -> throw new XPathException(getExpression(), "Unknown type: " + Type.getTypeName(type));
+        };
     }
 
     @Override
@@ -224,13 +221,39 @@ public class IntegerValue extends NumericValue {
     }
 
     public long getValue() {
-        return value.longValue();
+        return longValue;
+    }
+
+    /**
+     * Returns true if the value is in the range of a long,
+     * i.e. {@link #getLong()} returns the exact value.
+     *
+     * @return true if the value fits into a long
+     */
+    public boolean isLong() {
+        return bigValue == null;
+    }
+
+    /**
+     * Get the value as a {@link BigInteger}.
+     *
+     * @return the value
+     */
+    public BigInteger toBigInteger() {
+        return bigValue != null ? bigValue : BigInteger.valueOf(longValue);
+    }
+
+    private BigDecimal toBigDecimal() {
+        return bigValue != null ? new BigDecimal(bigValue) : BigDecimal.valueOf(longValue);
+    }
+
+    private int signum() {
+        return bigValue != null ? bigValue.signum() : Long.signum(longValue);
     }
 
     @Override
     public String getStringValue() {
-        return // Long.toString(value);
-                value.toString();
+        return bigValue != null ? bigValue.toString() : Long.toString(longValue);
     }
 
     @Override
@@ -245,37 +268,43 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public boolean isZero() {
-        return value.signum() == 0;
-        //return value.compareTo(ZERO_BIGINTEGER) == Constants.EQUAL;
+        return signum() == 0;
     }
 
     @Override
     public boolean isNegative() {
-        return value.signum() < 0;
+        return signum() < 0;
     }
 
     @Override
     public boolean isPositive() {
-        return value.signum() > 0;
+        return signum() > 0;
     }
 
     @Override
     protected @Nullable IntSupplier createComparisonWith(final NumericValue other) {
         final IntSupplier comparison;
         if (other instanceof IntegerValue) {
-            comparison = () -> value.compareTo(((IntegerValue)other).value);
+            comparison = () -> compareTo((IntegerValue) other);
         } else if (other instanceof DecimalValue) {
-            comparison = () -> new BigDecimal(value).compareTo(((DecimalValue)other).value);
+            comparison = () -> toBigDecimal().compareTo(((DecimalValue)other).value);
         } else if (other instanceof DoubleValue) {
-            comparison = () -> new BigDecimal(value).compareTo(BigDecimal.valueOf(((DoubleValue)other).value));
+            comparison = () -> toBigDecimal().compareTo(BigDecimal.valueOf(((DoubleValue)other).value));
         } else if (other instanceof FloatValue) {
-            comparison = () -> new BigDecimal(value).compareTo(BigDecimal.valueOf(((FloatValue)other).value));
+            comparison = () -> toBigDecimal().compareTo(BigDecimal.valueOf(((FloatValue)other).value));
         } else {
             return null;
         }
         return comparison;
     }
 
+    private int compareTo(final IntegerValue other) {
+        if (bigValue == null && other.bigValue == null) {
+            return Long.compare(longValue, other.longValue);
+        }
+        return toBigInteger().compareTo(other.toBigInteger());
+    }
+
     @Override
     public AtomicValue convertTo(final int requiredType) throws XPathException {
         if (this.type == requiredType || requiredType == Type.NUMERIC) {
@@ -287,7 +316,7 @@ public class IntegerValue extends NumericValue {
             case Type.ITEM:
                 return this;
             case Type.DECIMAL:
-                return new DecimalValue(getExpression(), new BigDecimal(value));
+                return new DecimalValue(getExpression(), toBigDecimal());
             case Type.UNTYPED_ATOMIC:
                 return new UntypedAtomicValue(getExpression(), getStringValue());
             case Type.LONG:
@@ -303,21 +332,23 @@ public class IntegerValue extends NumericValue {
             case Type.UNSIGNED_SHORT:
             case Type.UNSIGNED_BYTE:
             case Type.POSITIVE_INTEGER:
-                return new IntegerValue(getExpression(), value, requiredType);
+                return bigValue != null
+                        ? new IntegerValue(getExpression(), bigValue, requiredType)
+                        : new IntegerValue(getExpression(), longValue, requiredType);
             case Type.DOUBLE:
-                return new DoubleValue(getExpression(), value.doubleValue());
+                return new DoubleValue(getExpression(), getDouble());
             case Type.FLOAT:
-                return new FloatValue(getExpression(), value.floatValue());
+                return new FloatValue(getExpression(), bigValue != null ? bigValue.floatValue() : (float) longValue);
             case Type.STRING:
                 return new StringValue(getExpression(), getStringValue());
             case Type.BOOLEAN:
-                return (value.compareTo(ZERO_BIGINTEGER) == 0) ? BooleanValue.FALSE : BooleanValue.TRUE;
+                return isZero() ? BooleanValue.FALSE : BooleanValue.TRUE;
             default:
                 throw new XPathException(getExpression(), ErrorCodes.FORG0001,
                         "cannot convert '"
                                 + Type.getTypeName(this.getType())
                                 + " ("
-                                + value
+                                + getStringValue()
                                 + ")' into "
                                 + Type.getTypeName(requiredType));
         }
@@ -325,17 +356,17 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public int getInt() {
-        return value.intValue();
+        return (int) getLong();
     }
 
     @Override
     public long getLong() {
-        return value.longValue();
+        return bigValue != null ? bigValue.longValue() : longValue;
     }
 
     @Override
     public double getDouble() {
-        return value.doubleValue();
+        return bigValue != null ? bigValue.doubleValue() : (double) longValue;
     }
 
     @Override
@@ -375,10 +406,16 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public ComputableValue minus(final ComputableValue other) throws XPathException {
-        if (Type.subTypeOf(other.getType(), Type.INTEGER))
-        // return new IntegerValue(value - ((IntegerValue) other).value, type);
-        {
-            return new IntegerValue(getExpression(), value.subtract(((IntegerValue) other).value), type);
+        if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
+            final IntegerValue o = (IntegerValue) other;
+            if (bigValue == null && o.bigValue == null) {
+                final long result = longValue - o.longValue;
+                // overflow if the operands have different signs and the sign of the result differs from this
+                if (((longValue ^ o.longValue) & (longValue ^ result)) >= 0) {
+                    return new IntegerValue(getExpression(), result, type);
+                }
+            }
+            return new IntegerValue(getExpression(), toBigInteger().subtract(o.toBigInteger()), type);
         } else {
             return ((ComputableValue) convertTo(other.getType())).minus(other);
         }
@@ -386,10 +423,16 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public ComputableValue plus(final ComputableValue other) throws XPathException {
-        if (Type.subTypeOf(other.getType(), Type.INTEGER))
-        // return new IntegerValue(value + ((IntegerValue) other).value, type);
-        {
-            return new IntegerValue(getExpression(), value.add(((IntegerValue) other).value), type);
+        if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
+            final IntegerValue o = (IntegerValue) other;
+            if (bigValue == null && o.bigValue == null) {
+                final long result = longValue + o.longValue;
+                // overflow if both operands have a sign different from the result
+                if (((longValue ^ result) & (o.longValue ^ result)) >= 0) {
+                    return new IntegerValue(getExpression(), result, type);
+                }
+            }
+            return new IntegerValue(getExpression(), toBigInteger().add(o.toBigInteger()), type);
         } else {
             return ((ComputableValue) convertTo(other.getType())).plus(other);
         }
@@ -398,7 +441,16 @@ public class IntegerValue extends NumericValue {
     @Override
     public ComputableValue mult(final ComputableValue other) throws XPathException {
         if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
-            return new IntegerValue(getExpression(), value.multiply(((IntegerValue) other).value), type);
+            final IntegerValue o = (IntegerValue) other;
+            if (bigValue == null && o.bigValue == null) {
+                final long high = Math.multiplyHigh(longValue, o.longValue);
+                final long result = longValue * o.longValue;
+                // no overflow if the high half is only the sign extension of the low half
+                if (high == (result >> (Long.SIZE - 1))) {
+                    return new IntegerValue(getExpression(), result, type);
+                }
+            }
+            return new IntegerValue(getExpression(), toBigInteger().multiply(o.toBigInteger()), type);
         } else if (Type.subTypeOf(other.getType(), Type.DURATION)) {
             return other.mult(this);
         } else {
@@ -418,8 +470,8 @@ public class IntegerValue extends NumericValue {
                 throw new XPathException(getExpression(), ErrorCodes.FOAR0001, "division by zero");
             }
             //http://www.w3.org/TR/xpath20/#mapping : numeric; but xs:decimal if both operands are xs:integer
-            final BigDecimal d = new BigDecimal(value);
-            final BigDecimal od = new BigDecimal(((IntegerValue) other).value);
+            final BigDecimal d = toBigDecimal();
+            final BigDecimal od = ((IntegerValue) other).toBigDecimal();
             final int scale = Math.max(18, Math.max(d.scale(), od.scale()));
             return new DecimalValue(getExpression(), d.divide(od, scale, RoundingMode.HALF_DOWN));
         } else {
@@ -435,8 +487,15 @@ public class IntegerValue extends NumericValue {
         {
             throw new XPathException(getExpression(), ErrorCodes.FOAR0001, "division by zero");
         }
+        if (other instanceof IntegerValue o) {
+            if (bigValue == null && o.bigValue == null && !(longValue == Long.MIN_VALUE && o.longValue == -1)) {
+                // truncates towards zero, as the conversion of the decimal quotient below
+                return new IntegerValue(getExpression(), longValue / o.longValue);
+            }
+            return new IntegerValue(getExpression(), toBigInteger().divide(o.toBigInteger()));
+        }
         final ComputableValue result = div(other);
-        return new IntegerValue(getExpression(), ((IntegerValue) result.convertTo(Type.INTEGER)).getLong());
+        return new IntegerValue(getExpression(), ((IntegerValue) result.convertTo(Type.INTEGER)).toBigInteger());
     }
 
     @Override
@@ -446,9 +505,11 @@ public class IntegerValue extends NumericValue {
                 throw new XPathException(getExpression(), ErrorCodes.FOAR0001, "division by zero");
             }
 
-            // long ov = ((IntegerValue) other).value.longValue();
-            final BigInteger ov = ((IntegerValue) other).value;
-            return new IntegerValue(getExpression(), value.remainder(ov), type);
+            final IntegerValue o = (IntegerValue) other;
+            if (bigValue == null && o.bigValue == null) {
+                return new IntegerValue(getExpression(), longValue % o.longValue, type);
+            }
+            return new IntegerValue(getExpression(), toBigInteger().remainder(o.toBigInteger()), type);
         } else {
             return ((NumericValue) convertTo(other.getType())).mod(other);
         }
@@ -456,18 +517,25 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public NumericValue negate() {
-        return new IntegerValue(getExpression(), value.negate());
+        if (bigValue == null && longValue != Long.MIN_VALUE) {
+            return new IntegerValue(getExpression(), -longValue);
+        }
+        return new IntegerValue(getExpression(), toBigInteger().negate());
     }
 
     @Override
     public NumericValue abs() throws XPathException {
-        return new IntegerValue(getExpression(), value.abs(), type);
+        if (bigValue == null && longValue != Long.MIN_VALUE) {
+            return new IntegerValue(getExpression(), Math.abs(longValue), type);
+        }
+        return new IntegerValue(getExpression(), toBigInteger().abs(), type);
     }
 
     @Override
     public AtomicValue max(final Collator collator, final AtomicValue other) throws XPathException {
         if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
-            return new IntegerValue(getExpression(), value.max(((IntegerValue) other).value));
+            final IntegerValue o = (IntegerValue) other;
+            return integer(compareTo(o) >= 0 ? this : o);
         } else {
             return convertTo(other.getType()).max(collator, other);
         }
@@ -476,12 +544,17 @@ public class IntegerValue extends NumericValue {
     @Override
     public AtomicValue min(final Collator collator, final AtomicValue other) throws XPathException {
         if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
-            return new IntegerValue(getExpression(), value.min(((IntegerValue) other).value));
+            final IntegerValue o = (IntegerValue) other;
+            return integer(compareTo(o) <= 0 ? this : o);
         } else {
             return convertTo(other.getType()).min(collator, other);
         }
     }
 
+    private IntegerValue integer(final IntegerValue value) {
+        return value.bigValue != null ? new IntegerValue(getExpression(), value.bigValue) : new IntegerValue(getExpression(), value.longValue);
+    }
+
     @Override
     public int conversionPreference(final Class<?> javaClass) {
         if (javaClass.isAssignableFrom(IntegerValue.class)) {
@@ -524,16 +597,16 @@ public class IntegerValue extends NumericValue {
         if (target.isAssignableFrom(IntegerValue.class)) {
             return (T) this;
         } else if (target == Long.class || target == long.class) {
-            return (T) Long.valueOf(value.longValue());
+            return (T) Long.valueOf(getLong());
         } else if (target == Integer.class || target == int.class) {
             final IntegerValue v = (IntegerValue) convertTo(Type.INT);
-            return (T) Integer.valueOf(v.value.intValue());
+            return (T) Integer.valueOf(v.getInt());
         } else if (target == Short.class || target == short.class) {
             final IntegerValue v = (IntegerValue) convertTo(Type.SHORT);
-            return (T) Short.valueOf(v.value.shortValue());
+            return (T) Short.valueOf((short) v.getLong());
         } else if (target == Byte.class || target == byte.class) {
             final IntegerValue v = (IntegerValue) convertTo(Type.BYTE);
-            return (T) Byte.valueOf(v.value.byteValue());
+            return (T) Byte.valueOf((byte) v.getLong());
         } else if (target == Double.class || target == double.class) {
             final DoubleValue v = (DoubleValue) convertTo(Type.DOUBLE);
             return (T) Double.valueOf(v.getValue());
@@ -547,11 +620,11 @@ public class IntegerValue extends NumericValue {
         } else if (target == ByteBuffer.class) {
             return (T) ByteBuffer.wrap(serialize());
         } else if (target == String.class) {
-            return (T) value.toString();
+            return (T) getStringValue();
         } else if (target == BigInteger.class) {
-            return (T) new BigInteger(value.toByteArray());
+            return (T) toBigInteger();
         } else if (target == Object.class) {
-            return (T) value;
+            return (T) toBigInteger();
         }
 
         throw new XPathException(getExpression(), "cannot convert value of type " + Type.getTypeName(getType()) +
@@ -562,7 +635,7 @@ public class IntegerValue extends NumericValue {
     public int compareTo(final Object o) {
         final AtomicValue other = (AtomicValue) o;
         if (Type.subTypeOf(other.getType(), Type.INTEGER)) {
-            return value.compareTo(((IntegerValue) other).value);
+            return compareTo((IntegerValue) other);
         } else {
             return getType() > other.getType() ? 1 : -1;
         }
@@ -570,7 +643,15 @@ public class IntegerValue extends NumericValue {
 
     @Override
     public int hashCode() {
-        return value.hashCode();
+        if (bigValue != null) {
+            return bigValue.hashCode();
+        }
+        // the same as BigInteger#hashCode(), over the 32 bit words of the magnitude
+        final long magnitude = Math.abs(longValue);  // Long.MIN_VALUE stays negative, but has the right bits
+        final int high = (int) (magnitude >>> 32);
+        final int low = (int) magnitude;
+        final int hashCode = high == 0 ? low : 31 * high + low;
+        return hashCode * Long.signum(longValue);
     }
 
     //TODO(AR) this is not a very good serialization method, the size of the IntegerValue is unbounded and may not fit in 8 bytes.
@@ -583,7 +664,7 @@ public class IntegerValue extends NumericValue {
      */
     public byte[] serialize() {
         final byte[] buf = new byte[8];
-        final long l = value.longValue() - Long.MIN_VALUE;
+        final long l = getLong() - Long.MIN_VALUE;
         ByteConversion.longToByte(l, buf, 0);
         return buf;
     }
@@ -597,7 +678,7 @@ public class IntegerValue extends NumericValue {
      * @param buf the ByteBuffer to serialize to.
      */
     public void serialize(final ByteBuffer buf) throws IOException {
-        final long l = value.longValue() - Long.MIN_VALUE;
+        final long l = getLong() - Long.MIN_VALUE;
         ByteConversion.longToByte(l, buf);
     }
 
@@ -0,0 +1,206 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.value;
+
+import org.exist.dom.persistent.NodeSet;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+
+import javax.annotation.Nullable;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable sequence of xs:integer values which is backed by an
+ * array of longs. The {@link IntegerValue} items are only created
+ * when the sequence is iterated or an item is requested.
+ */
+public class LongArraySequence extends AbstractSequence implements LongSequence {
+
+    private final @Nullable Expression expression;
+    private final long[] values;
+    private final int size;
+
+    /**
+     * @param expression the expression which created the sequence, or null
+     * @param values the values of the sequence
+     * @param size the number of values used from the array
+     */
+    public LongArraySequence(@Nullable final Expression expression, final long[] values, final int size) {
+        if (size < 0 || size > values.length) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", Length: " + values.length);
+        }
+        this.expression = expression;
+        this.values = values;
+        this.size = size;
+    }
+
+    public LongArraySequence(@Nullable final Expression expression, final long[] values) {
+        this(expression, values, values.length);
+    }
+
+    @Override
+    public void add(final Item item) throws XPathException {
+        throw new XPathException(expression, "Internal error: adding to an immutable sequence");
+    }
+
+    @Override
+    public void addAll(final Sequence other) throws XPathException {
+        throw new XPathException(expression, "Internal error: adding to an immutable sequence");
+    }
+
+    @Override
+    public int getItemType() {
+        return Type.INTEGER;
+    }
+
+    @Override
+    public SequenceIterator iterate() {
+        return new LongArraySequenceIterator();
+    }
+
+    @Override
+    public SequenceIterator unorderedIterator() {
+        return new LongArraySequenceIterator();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (position >= size) {
+                    throw new NoSuchElementException();
+                }
+                return values[position++];
+            }
+        };
+    }
+
+    private class LongArraySequenceIterator implements SequenceIterator {
+        private int position = 0;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public Item nextItem() {
+            if (position < size) {
+                return new IntegerValue(expression, values[position++]);
+            }
+            return null;
+        }
+
+        @Override
+        public long skippable() {
+            return size - position;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skip = (int) Math.min(n, size - position);
+            position += skip;
+            return skip;
+        }
+    }
+
+    @Override
+    public long getItemCountLong() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean hasOne() {
+        return size == 1;
+    }
+
+    @Override
+    public boolean hasMany() {
+        return size > 1;
+    }
+
+    @Override
+    public Item itemAt(final int pos) {
+        if (pos >= 0 && pos < size) {
+            return new IntegerValue(expression, values[pos]);
+        }
+        return null;
+    }
+
+    @Override
+    public NodeSet toNodeSet() throws XPathException {
+        throw new XPathException(expression, "Type error: the sequence cannot be converted into" +
+                " a node set. Item type is xs:integer");
+    }
+
+    @Override
+    public MemoryNodeSet toMemNodeSet() throws XPathException {
+        throw new XPathException(expression, "Type error: the sequence cannot be converted into" +
+                " a memory node set. Item type is xs:integer");
+    }
+
+    @Override
+    public void removeDuplicates() {
+    }
+
+    @Override
+    public void clearContext(final int contextId) {
+        // ignore, the sequence has no nodes
+    }
+
+    @Override
+    public void setSelfAsContext(final int contextId) {
+    }
+
+    @Override
+    public boolean containsReference(final Item item) {
+        // the items are created on demand, so no item is ever part of the sequence
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Item item) {
+        if (item instanceof IntegerValue integer && integer.isLong()) {
+            final long value = integer.getLong();
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
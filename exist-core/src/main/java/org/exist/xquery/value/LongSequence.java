@@ -0,0 +1,97 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.value;
+
+import java.math.BigInteger;
+import java.util.PrimitiveIterator;
+
+/**
+ * A sequence of xs:integer values which are all in the range of a long,
+ * and which can be read as primitive longs without creating an
+ * {@link IntegerValue} for every item.
+ *
+ * The aggregate functions fn:sum, fn:avg, fn:min and fn:max compute
+ * their result directly on the longs of such a sequence.
+ */
+public interface LongSequence extends Sequence {
+
+    /**
+     * Iterate over the values of the sequence in order.
+     *
+     * @return an iterator over the values
+     */
+    PrimitiveIterator.OfLong longIterator();
+
+    /**
+     * Returns the sum of the values. The sum is promoted
+     * to a {@link BigInteger} if it overflows a long.
+     *
+     * @return the sum, or zero if the sequence is empty
+     */
+    default IntegerValue sum() {
+        long sum = 0;
+        BigInteger overflow = BigInteger.ZERO;
+        for (final PrimitiveIterator.OfLong i = longIterator(); i.hasNext(); ) {
+            final long value = i.nextLong();
+            final long result = sum + value;
+            if (((sum ^ result) & (value ^ result)) < 0) {
+                // carry the partial sum over to the BigInteger and start again
+                overflow = overflow.add(BigInteger.valueOf(sum));
+                sum = value;
+            } else {
+                sum = result;
+            }
+        }
+        if (overflow.signum() == 0) {
+            return new IntegerValue(sum);
+        }
+        return new IntegerValue(overflow.add(BigInteger.valueOf(sum)));
+    }
+
+    /**
+     * Returns the smallest value.
+     *
+     * @return the smallest value, must not be called on an empty sequence
+     */
+    default long min() {
+        final PrimitiveIterator.OfLong i = longIterator();
+        long min = i.nextLong();
+        while (i.hasNext()) {
+            min = Math.min(min, i.nextLong());
+        }
+        return min;
+    }
+
+    /**
+     * Returns the largest value.
+     *
+     * @return the largest value, must not be called on an empty sequence
+     */
+    default long max() {
+        final PrimitiveIterator.OfLong i = longIterator();
+        long max = i.nextLong();
+        while (i.hasNext()) {
+            max = Math.max(max, i.nextLong());
+        }
+        return max;
+    }
+}
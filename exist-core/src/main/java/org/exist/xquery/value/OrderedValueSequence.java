@@ -27,6 +27,7 @@ import org.exist.dom.persistent.AVLTreeNodeSet;
 import org.exist.dom.persistent.NodeProxy;
 import org.exist.dom.persistent.NodeSet;
 import org.exist.numbering.NodeId;
+import org.exist.xquery.BoundedSort;
 import org.exist.xquery.Constants;
 import org.exist.xquery.ErrorCodes;
 import org.exist.xquery.Expression;
@@ -52,14 +53,24 @@ import java.util.stream.IntStream;
  * all order expressions are evaluated once for each item in the sequence
  * <b>while</b> items are added.
  *
+ * If only the first items of the sorted sequence are used, see {@link BoundedSort},
+ * the sequence keeps about twice as many items as needed: whenever the buffer
+ * is full, it is sorted and all but the first items are dropped.
+ *
  * @author wolf
  */
 public class OrderedValueSequence extends AbstractSequence {
 
     private final List<OrderSpec> orderSpecs;
     private final List<BitSet> encounteredPrimitiveTypesForOrderSpecs;
+    private final long limit;
+    private final int capacity;
+    /** the number of items at which the buffer is truncated */
+    private int threshold;
+    private boolean truncatable = true;
     private Entry[] items;
     private int count = 0;
+    private int position = 0;
     private int state = 0;
 
     // used to keep track of the type of added items.
@@ -67,12 +78,25 @@ public class OrderedValueSequence extends AbstractSequence {
     private Sequence contextSequence;
 
     public OrderedValueSequence(final List<OrderSpec> orderSpecs, final int size) {
+        this(orderSpecs, size, BoundedSort.UNBOUNDED);
+    }
+
+    /**
+     * @param orderSpecs the order specs of the "order by" clause
+     * @param size the expected number of items
+     * @param limit the number of items from the start of the sorted sequence which are kept,
+     *              or {@link BoundedSort#UNBOUNDED}
+     */
+    public OrderedValueSequence(final List<OrderSpec> orderSpecs, final int size, final long limit) {
         this.orderSpecs = orderSpecs;
         this.encounteredPrimitiveTypesForOrderSpecs = new ArrayList<>(orderSpecs.size());
         for (int i = 0; i < orderSpecs.size(); i++) {
             this.encounteredPrimitiveTypesForOrderSpecs.add(new BitSet(Type.ARRAY_ITEM + 1));
         }
-        this.items = new Entry[size == 0 ? 1 : size];
+        this.limit = Math.max(1, limit);
+        this.capacity = (int) Math.min(2 * Math.min(this.limit, Integer.MAX_VALUE), Integer.MAX_VALUE - 8);
+        this.threshold = capacity;
+        this.items = new Entry[Math.min(size == 0 ? 1 : size, capacity)];
     }
 
     @Override
@@ -102,6 +126,9 @@ public class OrderedValueSequence extends AbstractSequence {
 
     @Override
     public void add(final Item item) throws XPathException {
+        if (truncatable && count >= threshold && count > limit) {
+            truncate();
+        }
         if (hasOne) {
             hasOne = false;
         }
@@ -112,11 +139,19 @@ public class OrderedValueSequence extends AbstractSequence {
         if (count == 0 && items.length == 1) {
             items = new Entry[2];
         } else if (count == items.length) {
-            final Entry newItems[] = new Entry[count * 2];
+            final Entry newItems[] = new Entry[(int) Math.min(count * 2L, truncatable ? threshold : Integer.MAX_VALUE - 8)];
             System.arraycopy(items, 0, newItems, 0, count);
             items = newItems;
         }
-        items[count] = Entry.create(encounteredPrimitiveTypesForOrderSpecs, orderSpecs, item, count++, contextSequence);
+        items[count++] = Entry.create(encounteredPrimitiveTypesForOrderSpecs, orderSpecs, item, position++, contextSequence);
+        if (truncatable) {
+            for (final BitSet encounteredPrimitiveTypesForOrderSpec : encounteredPrimitiveTypesForOrderSpecs) {
+                if (isCoercedToFloatingPoint(encounteredPrimitiveTypesForOrderSpec)) {
+                    truncatable = false;
+                    break;
+                }
+            }
+        }
         checkItemType(item.getType());
         setHasChanged();
     }
@@ -212,9 +247,64 @@ public class OrderedValueSequence extends AbstractSequence {
 //		FastQSort.sort(items, 0, count - 1);
 
         Arrays.parallelSort(items, 0, count);
+        if (count > limit) {
+            Arrays.fill(items, (int) limit, count, null);
+            count = (int) limit;
+            hasOne = count == 1;
+        }
         Arrays.stream(items, 0, count).parallel().forEach(Entry::clear);
     }
 
+    /**
+     * Drop all items but the first {@link #limit} ones in sort order.
+     *
+     * The values are compared before they are coerced to a common type by
+     * {@link #coerceTypesForOrderBy()}. Coercion does not change the order
+     * of two values, but may make them equal, e.g. two decimals which are
+     * cast to the same double, and equal values are ordered by their position.
+     * While the values of each order spec are of a single primitive type, a
+     * later value may still cause them to be coerced, so an item is only dropped
+     * if it would still come after the first items once they are coerced. Once the
+     * decimals of an order spec are coerced, see {@link #isCoercedToFloatingPoint(BitSet)},
+     * the sequence is no longer truncated.
+     */
+    private void truncate() {
+        Arrays.sort(items, 0, count);
+
+        // the greatest of the first items, if the decimals are cast to xs:float or xs:double
+        Entry bound = items[0];
+        for (int i = 1; i < limit; i++) {
+            if (items[i].compareValues(bound, true) > Constants.EQUAL) {
+                bound = items[i];
+            }
+        }
+
+        int end = (int) limit;
+        for (int i = end; i < count; i++) {
+            if (items[i].compareValues(bound, true) <= Constants.EQUAL) {
+                items[end++] = items[i];
+            }
+        }
+        Arrays.fill(items, end, count, null);
+        count = end;
+        hasOne = count == 1;
+        threshold = (int) Math.max(capacity, Math.min(2L * count, Integer.MAX_VALUE - 8));
+    }
+
+    /**
+     * Whether decimals, which may lose precision, are cast to xs:float or xs:double
+     * by {@link #coerceTypesForOrderBy()}. Floats are exactly representable as doubles,
+     * and strings and URIs are compared alike.
+     *
+     * @param encounteredPrimitiveTypesForOrderSpec the primitive types of the values of an order spec
+     *
+     * @return true if the values include decimals as well as floats or doubles
+     */
+    private static boolean isCoercedToFloatingPoint(final BitSet encounteredPrimitiveTypesForOrderSpec) {
+        return encounteredPrimitiveTypesForOrderSpec.get(Type.DECIMAL)
+                && (encounteredPrimitiveTypesForOrderSpec.get(Type.FLOAT) || encounteredPrimitiveTypesForOrderSpec.get(Type.DOUBLE));
+    }
+
     @Override
     public Item itemAt(final int pos) {
         if (items != null && pos > -1 && pos < count) {
@@ -479,6 +569,24 @@ public class OrderedValueSequence extends AbstractSequence {
 
         @Override
         public int compareTo(final Entry other) {
+            int cmp = compareValues(other, false);
+            // if the sort keys are equal, we need to order by the original position in the result sequence
+            if (cmp == Constants.EQUAL) {
+                cmp = (pos > other.pos ? Constants.SUPERIOR : (pos == other.pos ? Constants.EQUAL : Constants.INFERIOR));
+            }
+            return cmp;
+        }
+
+        /**
+         * Compare the sort keys of two entries, ignoring their position.
+         *
+         * @param other the entry to compare with
+         * @param coerced true to consider decimals as equal if a cast to xs:float or
+         *     xs:double makes them equal, see {@link OrderedValueSequence#coerceTypesForOrderBy()}
+         *
+         * @return the result of the comparison
+         */
+        int compareValues(final Entry other, final boolean coerced) {
             int cmp = 0;
             for (int i = 0; i < values.size(); i++) {
                 try {
@@ -516,6 +624,10 @@ public class OrderedValueSequence extends AbstractSequence {
                         } else {
                             cmp = Constants.INFERIOR;
                         }
+                    } else if (coerced && Type.subTypeOf(a.getType(), Type.DECIMAL) && Type.subTypeOf(b.getType(), Type.DECIMAL)
+                            && (a.convertTo(Type.FLOAT).compareTo(null, b.convertTo(Type.FLOAT)) == Constants.EQUAL
+                                || a.convertTo(Type.DOUBLE).compareTo(null, b.convertTo(Type.DOUBLE)) == Constants.EQUAL)) {
+                        cmp = Constants.EQUAL;
                     } else {
                         cmp = a.compareTo(orderSpecs.get(i).getCollator(), b);
                     }
@@ -528,10 +640,6 @@ public class OrderedValueSequence extends AbstractSequence {
                 } catch (final XPathException e) {
                 }
             }
-            // if the sort keys are equal, we need to order by the original position in the result sequence
-            if (cmp == Constants.EQUAL) {
-                cmp = (pos > other.pos ? Constants.SUPERIOR : (pos == other.pos ? Constants.EQUAL : Constants.INFERIOR));
-            }
             return cmp;
         }
 
@@ -0,0 +1,176 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.value;
+
+import org.exist.dom.persistent.NodeSet;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable sequence of xs:string values which is backed by an
+ * array of strings. The {@link StringValue} items are only created
+ * when the sequence is iterated or an item is requested, so that e.g.
+ * counting the sequence or selecting a single item of it does not
+ * create an item for every string.
+ */
+public class StringArraySequence extends AbstractSequence {
+
+    private final @Nullable Expression expression;
+    private final String[] values;
+
+    /**
+     * @param expression the expression which created the sequence, or null
+     * @param values the values of the sequence
+     */
+    public StringArraySequence(@Nullable final Expression expression, final String[] values) {
+        this.expression = expression;
+        this.values = values;
+    }
+
+    @Override
+    public void add(final Item item) throws XPathException {
+        throw new XPathException(expression, "Internal error: adding to an immutable sequence");
+    }
+
+    @Override
+    public void addAll(final Sequence other) throws XPathException {
+        throw new XPathException(expression, "Internal error: adding to an immutable sequence");
+    }
+
+    @Override
+    public int getItemType() {
+        return Type.STRING;
+    }
+
+    @Override
+    public SequenceIterator iterate() {
+        return new StringArraySequenceIterator();
+    }
+
+    @Override
+    public SequenceIterator unorderedIterator() {
+        return new StringArraySequenceIterator();
+    }
+
+    private class StringArraySequenceIterator implements SequenceIterator {
+        private int position = 0;
+
+        @Override
+        public boolean hasNext() {
+            return position < values.length;
+        }
+
+        @Override
+        public Item nextItem() {
+            if (position < values.length) {
+                return new StringValue(expression, values[position++]);
+            }
+            return null;
+        }
+
+        @Override
+        public long skippable() {
+            return values.length - position;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skip = (int) Math.min(n, values.length - position);
+            position += skip;
+            return skip;
+        }
+    }
+
+    @Override
+    public long getItemCountLong() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    @Override
+    public boolean hasOne() {
+        return values.length == 1;
+    }
+
+    @Override
+    public boolean hasMany() {
+        return values.length > 1;
+    }
+
+    @Override
+    public Item itemAt(final int pos) {
+        if (pos >= 0 && pos < values.length) {
+            return new StringValue(expression, values[pos]);
+        }
+        return null;
+    }
+
+    @Override
+    public NodeSet toNodeSet() throws XPathException {
+        throw new XPathException(expression, "Type error: the sequence cannot be converted into" +
+                " a node set. Item type is xs:string");
+    }
+
+    @Override
+    public MemoryNodeSet toMemNodeSet() throws XPathException {
+        throw new XPathException(expression, "Type error: the sequence cannot be converted into" +
+                " a memory node set. Item type is xs:string");
+    }
+
+    @Override
+    public void removeDuplicates() {
+    }
+
+    @Override
+    public void clearContext(final int contextId) {
+        // ignore, the sequence has no nodes
+    }
+
+    @Override
+    public void setSelfAsContext(final int contextId) {
+    }
+
+    @Override
+    public boolean containsReference(final Item item) {
+        // the items are created on demand, so no item is ever part of the sequence
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Item item) {
+        if (item instanceof StringValue string) {
+            final String value = string.getStringValue();
+            for (final String s : values) {
+                if (s.equals(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
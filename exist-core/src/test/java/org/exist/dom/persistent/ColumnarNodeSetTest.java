@@ -0,0 +1,244 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import org.exist.numbering.DLN;
+import org.exist.numbering.NodeId;
+import org.exist.xquery.Expression;
+import org.exist.xquery.TerminatedException;
+import org.exist.xquery.XQueryWatchDog;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ColumnarNodeSet} gives the same results as {@link NewArrayNodeSet}.
+ */
+public class ColumnarNodeSetTest {
+
+    private DocumentImpl doc1;
+    private DocumentImpl doc2;
+    private final List<NodeId> tree = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        doc1 = mockDocument(1);
+        doc2 = mockDocument(2);
+
+        // a random tree, with some deep and some wide levels
+        final Random random = new Random(42);
+        tree.add(new DLN());
+        for (int i = 0; i < 2000; i++) {
+            final NodeId parent = tree.get(random.nextInt(tree.size()));
+            tree.add(parent.getChild(1 + random.nextInt(random.nextBoolean() ? 8 : 300)));
+        }
+    }
+
+    @Test
+    public void sortAndRemoveDuplicates() {
+        final ColumnarNodeSet set = new ColumnarNodeSet();
+        final List<NodeId> ids = new ArrayList<>(tree);
+        Collections.shuffle(ids, new Random(1));
+        for (final NodeId id : ids) {
+            set.add(doc2, id, Node.ELEMENT_NODE, 0);
+            set.add(doc1, id, Node.ELEMENT_NODE, 0);
+        }
+        set.add(new NodeProxy(null, doc1, tree.get(0), Node.ELEMENT_NODE));
+
+        final NewArrayNodeSet expected = new NewArrayNodeSet();
+        for (final NodeId id : tree) {
+            expected.add(new NodeProxy(null, doc1, id, Node.ELEMENT_NODE));
+            expected.add(new NodeProxy(null, doc2, id, Node.ELEMENT_NODE));
+        }
+
+        assertEquals(expected.getLength(), set.getLength());
+        assertEquals(toList(expected), toList(set));
+        assertEquals(2, set.getDocumentCount());
+        for (final NodeId id : tree) {
+            assertEquals(id, set.get(doc1, id).getNodeId());
+            assertTrue(set.contains(new NodeProxy(null, doc2, id)));
+        }
+        assertNull(set.get(doc1, new DLN("2")));
+    }
+
+    @Test
+    public void selectParentChild() {
+        for (final int mode : new int[] { NodeSet.DESCENDANT, NodeSet.ANCESTOR }) {
+            final Random random = new Random(mode);
+            final NodeSet[] columnar = { new ColumnarNodeSet(), new ColumnarNodeSet() };
+            final NodeSet[] array = { new NewArrayNodeSet(), new NewArrayNodeSet() };
+            fill(random, columnar, array);
+
+            assertEquals(toList(array[0].selectParentChild(array[1], mode, Expression.NO_CONTEXT_ID)),
+                    toList(columnar[0].selectParentChild(columnar[1], mode, Expression.NO_CONTEXT_ID)));
+        }
+    }
+
+    @Test
+    public void selectAncestorDescendant() {
+        for (final int mode : new int[] { NodeSet.DESCENDANT, NodeSet.ANCESTOR }) {
+            for (final boolean includeSelf : new boolean[] { false, true }) {
+                final Random random = new Random(mode);
+                final NodeSet[] columnar = { new ColumnarNodeSet(), new ColumnarNodeSet() };
+                final NodeSet[] array = { new NewArrayNodeSet(), new NewArrayNodeSet() };
+                fill(random, columnar, array);
+
+                assertEquals(toList(array[0].selectAncestorDescendant(array[1], mode, includeSelf, Expression.NO_CONTEXT_ID, true)),
+                        toList(columnar[0].selectAncestorDescendant(columnar[1], mode, includeSelf, Expression.NO_CONTEXT_ID, true)));
+            }
+        }
+    }
+
+    @Test
+    public void selectFromDocumentNode() {
+        final ColumnarNodeSet descendants = new ColumnarNodeSet();
+        for (final NodeId id : tree) {
+            descendants.add(doc1, id, Node.ELEMENT_NODE, 0);
+        }
+        final NodeSet documents = descendants.docsToNodeSet();
+
+        final NodeSet children = descendants.selectParentChild(documents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+        assertEquals(1, children.getLength());
+        assertEquals(tree.get(0), ((NodeProxy) children.itemAt(0)).getNodeId());
+
+        assertEquals(descendants.getLength(), descendants.selectAncestorDescendant(documents, NodeSet.DESCENDANT, false,
+                Expression.NO_CONTEXT_ID, true).getLength());
+    }
+
+    @Test
+    public void selectWithContext() {
+        final Random random = new Random(7);
+        final NodeSet[] columnar = { new ColumnarNodeSet(), new ColumnarNodeSet() };
+        final NodeSet[] array = { new NewArrayNodeSet(), new NewArrayNodeSet() };
+        fill(random, columnar, array);
+
+        final NodeSet expected = array[0].selectParentChild(array[1], NodeSet.DESCENDANT, 1);
+        final NodeSet actual = columnar[0].selectParentChild(columnar[1], NodeSet.DESCENDANT, 1);
+        assertEquals(toList(expected), toList(actual));
+        for (final NodeProxy node : actual) {
+            assertNotNull(node.getContext());
+            assertEquals(1, node.getContext().getContextId());
+            assertTrue(node.getNodeId().isChildOf(node.getContext().getNode().getNodeId()));
+        }
+    }
+
+    @Test
+    public void selectInParallel() throws TerminatedException {
+        final List<DocumentImpl> docs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            docs.add(mockDocument(10 + i));
+        }
+        final Random random = new Random(11);
+        final ColumnarNodeSet descendants = new ColumnarNodeSet();
+        final NewArrayNodeSet ancestors = new NewArrayNodeSet();
+        for (final NodeId id : tree.subList(0, 200)) {
+            for (final DocumentImpl doc : docs) {
+                if (random.nextInt(4) == 0) {
+                    descendants.add(doc, id, Node.ELEMENT_NODE, 0);
+                }
+                if (random.nextInt(8) == 0) {
+                    ancestors.add(new NodeProxy(null, doc, id, Node.ELEMENT_NODE));
+                }
+            }
+        }
+
+        final XQueryWatchDog watchDog = createNiceMock(XQueryWatchDog.class);
+        replay(watchDog);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (final boolean childOnly : new boolean[] { false, true }) {
+                final NodeSet expected = childOnly
+                        ? descendants.selectParentChild(ancestors, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID)
+                        : descendants.selectAncestorDescendant(ancestors, NodeSet.DESCENDANT, true,
+                                Expression.NO_CONTEXT_ID, true);
+                final NodeSet actual = NodeSetHelper.selectDescendants(descendants, ancestors, childOnly, !childOnly,
+                        pool, 4, watchDog, null);
+                assertEquals(toList(expected), toList(actual));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = TerminatedException.class)
+    public void terminateParallelSelect() throws TerminatedException {
+        final ColumnarNodeSet descendants = new ColumnarNodeSet();
+        final ColumnarNodeSet ancestors = new ColumnarNodeSet();
+        for (int i = 0; i < 20; i++) {
+            final DocumentImpl doc = mockDocument(10 + i);
+            descendants.add(doc, tree.get(1), Node.ELEMENT_NODE, 0);
+            ancestors.add(doc, tree.get(0), Node.ELEMENT_NODE, 0);
+        }
+
+        final XQueryWatchDog watchDog = createMock(XQueryWatchDog.class);
+        watchDog.proceed(null);
+        expectLastCall().andThrow(new TerminatedException("The query has been killed by the server.")).anyTimes();
+        replay(watchDog);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            NodeSetHelper.selectDescendants(descendants, ancestors, false, false, pool, 2, watchDog, null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Adds the same random selections of the tree to both kinds of node set.
+     */
+    private void fill(final Random random, final NodeSet[] columnar, final NodeSet[] array) {
+        for (int i = 0; i < columnar.length; i++) {
+            for (final NodeId id : tree) {
+                if (random.nextInt(3) == 0) {
+                    final DocumentImpl doc = random.nextBoolean() ? doc1 : doc2;
+                    ((ColumnarNodeSet) columnar[i]).add(doc, id, Node.ELEMENT_NODE, 0);
+                    array[i].add(new NodeProxy(null, doc, id, Node.ELEMENT_NODE));
+                }
+            }
+        }
+    }
+
+    private static List<String> toList(final NodeSet set) {
+        final List<String> list = new ArrayList<>();
+        for (final NodeProxy node : set) {
+            list.add(node.getOwnerDocument().getDocId() + ":" + node.getNodeId());
+        }
+        return list;
+    }
+
+    private static DocumentImpl mockDocument(final int docId) {
+        final DocumentImpl doc = createMock(DocumentImpl.class);
+        expect(doc.getDocId()).andReturn(docId).anyTimes();
+        expect(doc.getExpression()).andReturn(null).anyTimes();
+        expect(doc.getResourceType()).andReturn(DocumentImpl.XML_FILE).anyTimes();
+        replay(doc);
+        return doc;
+    }
+}
@@ -701,6 +701,97 @@ try {
         }
     }
 
+    @Test
+    public void queryGetFlush() throws IOException, SAXException, ParserConfigurationException {
+        final String uri = getCollectionUri()
+                + "?_howmany=1000&_flush=100&_query="
+                + URLEncoder.encode("(1 to 1000) ! <item>{.}</item>", UTF_8.displayName());
+        final HttpURLConnection connect = getConnection(uri);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+
+            // the response has been committed before the results were complete
+            assertEquals("chunked", connect.getHeaderField("Transfer-Encoding"));
+
+            final String data = readResponse(connect.getInputStream());
+            assertEquals(1000, parseResponse(data));
+            assertTrue(data.contains("<item>1000</item>"));
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetFlushNotAnInt() throws IOException {
+        final String uri = getCollectionUri()
+                + "?_flush=many&_query="
+                + URLEncoder.encode("1", UTF_8.displayName());
+        final HttpURLConnection connect = getConnection(uri);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.BAD_REQUEST_400, r);
+        } finally {
+            connect.disconnect();
+        }
+    }
+
+    @Test
+    public void queryGetCachedPages() throws IOException, SAXException, ParserConfigurationException {
+        final String query = URLEncoder.encode("(1 to 5) ! <item>{ util:uuid() }</item>", UTF_8.displayName());
+        final String firstPage;
+        final String sessionId;
+        HttpURLConnection connect = getConnection(getCollectionUri() + "?_cache=yes&_howmany=2&_query=" + query);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+            sessionId = connect.getHeaderField("X-Session-Id");
+            assertNotNull(sessionId);
+
+            firstPage = readResponse(connect.getInputStream());
+            assertEquals(5, parseResponse(firstPage));
+        } finally {
+            connect.disconnect();
+        }
+
+        // the second page is read from the cursor, so the uuids are those of the first execution
+        final String session = URLEncoder.encode(sessionId, UTF_8.displayName());
+        connect = getConnection(getCollectionUri() + "?_session=" + session + "&_start=1&_howmany=2&_query=" + query);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+            final String page = readResponse(connect.getInputStream());
+            assertEquals(5, parseResponse(page));
+            assertEquals(firstPage.substring(firstPage.indexOf("<item>"), firstPage.lastIndexOf("</item>")),
+                    page.substring(page.indexOf("<item>"), page.lastIndexOf("</item>")));
+        } finally {
+            connect.disconnect();
+        }
+
+        connect = getConnection(getCollectionUri() + "?_release=" + session);
+        try {
+            connect.setRequestMethod("GET");
+            connect.connect();
+
+            final int r = connect.getResponseCode();
+            assertEquals("Server returned response code " + r, HttpStatus.OK_200, r);
+        } finally {
+            connect.disconnect();
+        }
+    }
+
     @Test
     public void queryGetXQueryError() throws IOException {
         String uri = getCollectionUri()
@@ -0,0 +1,206 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.http.servlets;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.storage.BrokerPool;
+import org.exist.test.ExistEmbeddedServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests serving requests asynchronously, see {@link AbstractExistHttpServlet#ASYNC_THREADS_PARAM}.
+ */
+public class AbstractExistHttpServletTest {
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Test
+    public void rejectedRequestIsServedOnContainerThread() throws Exception {
+        final Map<HttpServletRequest, Thread> servedOn = new ConcurrentHashMap<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(3);
+
+        final HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+        final AsyncContext[] asyncContexts = { asyncContext(completed), asyncContext(completed), asyncContext(completed) };
+        final HttpServletRequest[] requests = { request(response, asyncContexts[0]), request(response, asyncContexts[1]), request(response, asyncContexts[2]) };
+        replay(response);
+
+        final TestServlet servlet = new TestServlet((request, resp) -> {
+            servedOn.put(request, Thread.currentThread());
+            if (request != requests[2]) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        servlet.init(servletConfig(1, 1));
+
+        // the first request occupies the only thread, the second one the only place in the queue
+        servlet.service(requests[0], response);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        servlet.service(requests[1], response);
+
+        // the third request is rejected by the thread pool, and so is served before service returns
+        servlet.service(requests[2], response);
+        assertSame(Thread.currentThread(), servedOn.get(requests[2]));
+        verify(asyncContexts[2]);
+
+        release.countDown();
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), servedOn.get(requests[0]));
+        assertNotSame(Thread.currentThread(), servedOn.get(requests[1]));
+        verify(asyncContexts);
+    }
+
+    @Test
+    public void failedRequestIsCompleted() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        final HttpServletResponse response = createMock(HttpServletResponse.class);
+        expect(response.isCommitted()).andReturn(false);
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "query failed");
+        final AsyncContext asyncContext = asyncContext(completed);
+        final HttpServletRequest request = request(response, asyncContext);
+        replay(response);
+
+        final TestServlet servlet = new TestServlet((req, resp) -> {
+            throw new ServletException("query failed");
+        });
+        servlet.init(servletConfig(1, 1));
+
+        servlet.service(request, response);
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        verify(response, asyncContext);
+    }
+
+    @Test
+    public void destroyWaitsForRequestsInProgress() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicBoolean operational = new AtomicBoolean();
+
+        final HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+        final AsyncContext asyncContext = asyncContext(completed);
+        final HttpServletRequest request = request(response, asyncContext);
+        replay(response);
+
+        final TestServlet servlet = new TestServlet((req, resp) -> {
+            started.countDown();
+            try {
+                Thread.sleep(500);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            operational.set(pool.isOperational());
+        });
+        servlet.init(servletConfig(1, 1));
+
+        servlet.service(request, response);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        servlet.destroy();
+
+        // the request finished before the database was stopped
+        assertEquals(0, completed.getCount());
+        assertTrue(operational.get());
+        verify(asyncContext);
+    }
+
+    private static ServletConfig servletConfig(final int threads, final int queueSize) {
+        final ServletConfig config = createNiceMock(ServletConfig.class);
+        expect(config.getServletName()).andReturn("test").anyTimes();
+        expect(config.getInitParameter(AbstractExistHttpServlet.ASYNC_THREADS_PARAM)).andReturn(String.valueOf(threads)).anyTimes();
+        expect(config.getInitParameter(AbstractExistHttpServlet.ASYNC_QUEUE_SIZE_PARAM)).andReturn(String.valueOf(queueSize)).anyTimes();
+        replay(config);
+        return config;
+    }
+
+    private static HttpServletRequest request(final HttpServletResponse response, final AsyncContext asyncContext) {
+        final HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+        expect(request.getMethod()).andReturn("GET").anyTimes();
+        expect(request.getDispatcherType()).andReturn(DispatcherType.REQUEST).anyTimes();
+        expect(request.isAsyncSupported()).andReturn(true).anyTimes();
+        expect(request.startAsync(request, response)).andReturn(asyncContext);
+        replay(request);
+        return request;
+    }
+
+    private static AsyncContext asyncContext(final CountDownLatch completed) {
+        final AsyncContext asyncContext = createMock(AsyncContext.class);
+        asyncContext.setTimeout(0);
+        asyncContext.complete();
+        expectLastCall().andAnswer(() -> {
+            completed.countDown();
+            return null;
+        });
+        replay(asyncContext);
+        return asyncContext;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    private static class TestServlet extends AbstractExistHttpServlet {
+        private static final Logger LOG = LogManager.getLogger(TestServlet.class);
+
+        private final Handler handler;
+
+        TestServlet(final Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public Logger getLog() {
+            return LOG;
+        }
+
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+            handler.handle(request, response);
+        }
+    }
+}
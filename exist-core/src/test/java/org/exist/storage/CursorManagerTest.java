@@ -0,0 +1,168 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.security.PermissionDeniedException;
+import org.exist.security.Subject;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CursorManagerTest {
+
+    private static final long BUDGET = 10;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(CursorManager.PROPERTY_CURSOR_BUDGET, BUDGET)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void spillLeastRecentlyUsedCursor() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final CursorManager cursorManager = pool.getCursorManager();
+        final Subject admin = pool.getSecurityManager().getSystemSubject();
+        try (final DBBroker broker = pool.get(Optional.of(admin))) {
+            final Sequence atomics = query(broker,
+                    "(1 to 5, 'a', xs:date('2024-01-31'), 2.5, xs:double('INF'), xs:untypedAtomic('u'))");
+            final Sequence nodes = query(broker,
+                    "xmldb:store('/db', 'cursors.xml', <a>{ (1 to 300) ! <b>{ . }</b> }</a>)," +
+                    "(doc('/db/cursors.xml'), doc('/db/cursors.xml')//b)");
+
+            final ResultCursor first = cursorManager.open(admin, "atomics", atomics, true);
+            assertFalse(first.isSpilled());
+
+            final ResultCursor second = cursorManager.open(admin, "nodes", nodes, true);
+            assertTrue(first.isSpilled());
+            assertTrue(second.isSpilled());
+            assertEquals(0, cursorManager.getItemsInMemory());
+
+            assertSameItems(atomics, cursorManager.get(first.getId()).getSequence());
+            assertSameItems(nodes, cursorManager.get(second.getId()).getSequence());
+
+            cursorManager.close(first.getId());
+            cursorManager.close(second.getId());
+            assertNull(cursorManager.get(first.getId()));
+            assertNull(cursorManager.get(second.getId()));
+        }
+    }
+
+    @Test
+    public void keepOpenedCursorOfInMemoryNodes() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final CursorManager cursorManager = pool.getCursorManager();
+        final Subject admin = pool.getSecurityManager().getSystemSubject();
+        try (final DBBroker broker = pool.get(Optional.of(admin))) {
+            final Sequence nodes = query(broker, "(1 to 20) ! <a/>");
+            final ResultCursor cursor = cursorManager.open(admin, null, nodes, true);
+            assertFalse(cursor.isClosed());
+            assertFalse(cursor.isSpilled());
+            assertSameItems(nodes, cursorManager.get(cursor.getId()).getSequence());
+            assertEquals(20, cursorManager.getItemsInMemory());
+
+            cursorManager.close(cursor.getId());
+            assertEquals(0, cursorManager.getItemsInMemory());
+        }
+    }
+
+    @Test
+    public void evictOlderCursorOfInMemoryNodes() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final CursorManager cursorManager = pool.getCursorManager();
+        final Subject admin = pool.getSecurityManager().getSystemSubject();
+        try (final DBBroker broker = pool.get(Optional.of(admin))) {
+            final ResultCursor first = cursorManager.open(admin, null, query(broker, "(1 to 8) ! <a/>"), true);
+            final ResultCursor second = cursorManager.open(admin, null, query(broker, "1 to 5"), true);
+            assertTrue(first.isClosed());
+            assertNull(cursorManager.get(first.getId()));
+            assertNotNull(cursorManager.get(second.getId()));
+            assertEquals(5, cursorManager.getItemsInMemory());
+
+            cursorManager.close(second.getId());
+            assertEquals(0, cursorManager.getItemsInMemory());
+        }
+    }
+
+    @Test
+    public void keepUnevictableCursorOfInMemoryNodes() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final CursorManager cursorManager = pool.getCursorManager();
+        final Subject admin = pool.getSecurityManager().getSystemSubject();
+        try (final DBBroker broker = pool.get(Optional.of(admin))) {
+            final Sequence nodes = query(broker, "(1 to 8) ! <a/>");
+            final ResultCursor first = cursorManager.open(admin, null, nodes, false);
+            final ResultCursor second = cursorManager.open(admin, null, query(broker, "1 to 5"), false);
+            assertFalse(first.isClosed());
+            assertSameItems(nodes, cursorManager.get(first.getId()).getSequence());
+
+            // the cursor of in-memory nodes stays in memory, the others are spilled
+            final ResultCursor third = cursorManager.open(admin, null, query(broker, "1 to 3"), false);
+            assertFalse(first.isClosed());
+            assertTrue(second.isSpilled());
+            assertTrue(third.isSpilled());
+            assertEquals(8, cursorManager.getItemsInMemory());
+
+            cursorManager.close(first.getId());
+            cursorManager.close(second.getId());
+            cursorManager.close(third.getId());
+            assertEquals(0, cursorManager.getItemsInMemory());
+        }
+    }
+
+    private static Sequence query(final DBBroker broker, final String query) throws PermissionDeniedException, XPathException {
+        return broker.getBrokerPool().getXQueryService().execute(broker, query, null);
+    }
+
+    private static void assertSameItems(final Sequence expected, final Sequence actual) throws XPathException {
+        assertNotNull(actual);
+        assertEquals(expected.getItemCount(), actual.getItemCount());
+        for (int i = 0; i < expected.getItemCount(); i++) {
+            final Item expectedItem = expected.itemAt(i);
+            final Item actualItem = actual.itemAt(i);
+            assertEquals(expectedItem.getType(), actualItem.getType());
+            if (expectedItem instanceof NodeProxy expectedNode) {
+                final NodeProxy actualNode = (NodeProxy) actualItem;
+                assertEquals(expectedNode.getOwnerDocument().getURI(), actualNode.getOwnerDocument().getURI());
+                assertEquals(expectedNode.getNodeId(), actualNode.getNodeId());
+            } else {
+                assertEquals(expectedItem.getStringValue(), actualItem.getStringValue());
+            }
+        }
+    }
+}
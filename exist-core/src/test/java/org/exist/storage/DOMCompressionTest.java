@@ -0,0 +1,169 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.dom.persistent.IStoredNode;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.dom.DOMFile;
+import org.exist.storage.dom.RecordCompression;
+import org.exist.storage.lock.ManagedLock;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.*;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Test storing, querying and updating documents, the text nodes of which are compressed.
+ */
+public class DOMCompressionTest {
+
+    private static final String DEFLATE_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "   <storage compression=\"deflate\"/>" +
+            "</collection>";
+
+    private static final int PARAGRAPHS = 200;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_DOM_COMPRESSION, RecordCompression.LZ4)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void lz4() throws Exception {
+        storeQueryAndUpdate(XmldbURI.create("lz4"), null, RecordCompression.LZ4);
+    }
+
+    @Test
+    public void deflatePerCollection() throws Exception {
+        storeQueryAndUpdate(XmldbURI.create("deflate"), DEFLATE_CONFIG, RecordCompression.DEFLATE);
+    }
+
+    private void storeQueryAndUpdate(final XmldbURI name, final String config, final RecordCompression expected) throws EXistException, PermissionDeniedException,
+            IOException, SAXException, LockException, XPathException, CollectionConfigurationException, DatabaseConfigurationException {
+        final XmldbURI collectionUri = TestConstants.TEST_COLLECTION_URI.append(name);
+        final String doc = "doc('" + collectionUri.append("test.xml") + "')";
+
+        BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            final Collection collection = broker.getOrCreateCollection(transaction, collectionUri);
+            broker.saveCollection(transaction, collection);
+            if (config != null) {
+                pool.getConfigurationManager().addConfiguration(transaction, broker, collection, config);
+            }
+            broker.storeDocument(transaction, XmldbURI.create("test.xml"), new StringInputSource(createDocument()), MimeType.XML_TYPE, collection);
+            transact.commit(transaction);
+        }
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            assertQuery(broker, doc);
+
+            final XQuery xquery = pool.getXQueryService();
+            xquery.execute(broker, "update insert <p n='new'>" + paragraph(PARAGRAPHS) + "</p> following " + doc + "//p[@n = '17']", null);
+            assertEquals(paragraph(PARAGRAPHS), xquery.execute(broker, "string(" + doc + "//p[@n = '17']/following-sibling::p[1])", null).getStringValue());
+
+            // stored and inserted nodes are compressed as configured for the collection
+            assertCompression(broker, expected, doc + "//p[@n = '17']/text()");
+            assertCompression(broker, expected, doc + "//p[@n = '17']/comment()");
+            assertCompression(broker, expected, doc + "//p[@n = 'new']/text()");
+        }
+
+        // the compressed nodes must be readable after a restart
+        existEmbeddedServer.restart(false);
+        pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            assertQuery(broker, doc);
+            final XQuery xquery = pool.getXQueryService();
+            assertEquals(paragraph(PARAGRAPHS), xquery.execute(broker, "string(" + doc + "//p[@n = 'new'])", null).getStringValue());
+        }
+    }
+
+    private static void assertQuery(final DBBroker broker, final String doc) throws EXistException, XPathException, PermissionDeniedException {
+        final XQuery xquery = broker.getBrokerPool().getXQueryService();
+        Sequence result = xquery.execute(broker, "count(" + doc + "//p)", null);
+        assertTrue(Integer.parseInt(result.getStringValue()) >= PARAGRAPHS);
+
+        for (final int i : new int[] { 0, 17, PARAGRAPHS - 1 }) {
+            result = xquery.execute(broker, "string(" + doc + "//p[@n = '" + i + "'])", null);
+            assertEquals(paragraph(i), result.getStringValue());
+            result = xquery.execute(broker, "serialize(" + doc + "//p[@n = '" + i + "'])", null);
+            assertEquals("<p n=\"" + i + "\">" + paragraph(i) + "<!--" + paragraph(i) + "--></p>", result.getStringValue());
+        }
+        result = xquery.execute(broker, doc + "//p[contains(., 'paragraph 42 ')]", null);
+        assertEquals(1, result.getItemCount());
+        // the string value of the root element collects the text of all paragraphs
+        result = xquery.execute(broker, "string-length(string(" + doc + "/doc)) > " + PARAGRAPHS * 200, null);
+        assertEquals("true", result.getStringValue());
+    }
+
+    private static void assertCompression(final DBBroker broker, final RecordCompression expected, final String query)
+            throws EXistException, XPathException, PermissionDeniedException, LockException {
+        final Sequence result = broker.getBrokerPool().getXQueryService().execute(broker, query, null);
+        assertEquals(1, result.getItemCount());
+        final IStoredNode<?> node = (IStoredNode<?>) ((NodeProxy) result.itemAt(0)).getNode();
+        final DOMFile domDb = ((NativeBroker) broker).getDOMFile();
+        try (final ManagedLock<ReentrantLock> domLock = broker.getBrokerPool().getLockManager().acquireBtreeReadLock(domDb.getLockName())) {
+            assertEquals(expected, domDb.getCompression(node.getInternalAddress()));
+        }
+    }
+
+    private static String createDocument() {
+        final StringBuilder builder = new StringBuilder("<doc>");
+        for (int i = 0; i < PARAGRAPHS; i++) {
+            builder.append("<p n=\"").append(i).append("\">").append(paragraph(i))
+                    .append("<!--").append(paragraph(i)).append("--></p>");
+        }
+        return builder.append("</doc>").toString();
+    }
+
+    private static String paragraph(final int i) {
+        final StringBuilder builder = new StringBuilder("paragraph ").append(i).append(' ');
+        for (int j = 0; j < 10; j++) {
+            builder.append("the king and the lord of the manor did witness the letter ").append(j).append(". ");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.util.io.InputStreamUtil;
+import org.exist.xmldb.XmldbURI;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerFactory;
+import javax.management.MBeanServerNotification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.exist.samples.Samples.SAMPLES;
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests recovery when the journal is redone by several threads.
+ */
+public class ParallelRecoveryTest {
+
+    @Rule
+    public ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(BrokerPool.PROPERTY_RECOVERY_REDO_THREADS, 4)
+                    .build(),
+            true,
+            true);
+
+    @After
+    public void cleanup() {
+        // restore the flag in-case of a test failure
+        BrokerPool.FORCE_CORRUPTION = false;
+    }
+
+    @Test
+    public void redoAndUndo() throws Exception {
+        final String[] sampleNames = SAMPLES.getShakespeareXmlSampleNames();
+        store(existEmbeddedServer.getBrokerPool(), sampleNames);
+
+        // flush journal
+        existEmbeddedServer.getBrokerPool().getJournalManager().get().flush(true, false);
+
+        // record the registrations of the MBean which reports the progress of the recovery
+        // the server which the JMX agent of the database registers its MBeans with
+        final MBeanServer server = MBeanServerFactory.findMBeanServer(null).get(0);
+        final List<String> notifications = new CopyOnWriteArrayList<>();
+        final NotificationListener listener = (notification, handback) -> {
+            if (notification instanceof MBeanServerNotification
+                    && "Recovery".equals(((MBeanServerNotification) notification).getMBeanName().getKeyProperty("type"))) {
+                notifications.add(notification.getType());
+            }
+        };
+        server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, listener, null, null);
+
+        // restart with no Journal checkpoint, forces recovery to run at startup
+        BrokerPool.FORCE_CORRUPTION = true;
+        try {
+            existEmbeddedServer.restart();
+        } finally {
+            BrokerPool.FORCE_CORRUPTION = false;
+            server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, listener);
+        }
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            // the removal of the first document was not committed, so it must have been undone
+            for (final String sampleName : sampleNames) {
+                try (final LockedDocument lockedDoc = broker.getXMLResource(TestConstants.TEST_COLLECTION_URI.append(sampleName), LockMode.READ_LOCK)) {
+                    assertNotNull("Document " + sampleName + " should exist", lockedDoc);
+                }
+            }
+            assertEquals(String.valueOf(sampleNames.length), pool.getXQueryService().execute(broker, "count(collection('" + TestConstants.TEST_COLLECTION_URI + "')/PLAY)", null).getStringValue());
+        }
+
+        // the progress was only reported while the recovery ran
+        assertEquals(List.of(MBeanServerNotification.REGISTRATION_NOTIFICATION, MBeanServerNotification.UNREGISTRATION_NOTIFICATION), notifications);
+        assertFalse(server.isRegistered(new ObjectName("org.exist.management." + pool.getId() + ":type=Recovery")));
+    }
+
+    private void store(final BrokerPool pool, final String[] sampleNames) throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Collection test;
+            try (final Txn transaction = transact.beginTransaction()) {
+                test = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI);
+                broker.saveCollection(transaction, test);
+                for (final String sampleName : sampleNames) {
+                    final String sample;
+                    try (final InputStream is = SAMPLES.getShakespeareSample(sampleName)) {
+                        sample = InputStreamUtil.readString(is, UTF_8);
+                    }
+                    broker.storeDocument(transaction, XmldbURI.create(sampleName), new StringInputSource(sample), MimeType.XML_TYPE, test);
+                }
+                transact.commit(transaction);
+            }
+
+            // the following transaction will not be committed. It will thus be rolled back by recovery
+            final Txn transaction = transact.beginTransaction();
+            test.removeXMLResource(transaction, broker, XmldbURI.create(sampleNames[0]));
+        }
+    }
+}
@@ -25,14 +25,18 @@ package org.exist.storage;
 import org.exist.EXistException;
 import org.exist.collections.Collection;
 import org.exist.collections.triggers.TriggerException;
+import org.exist.indexing.StructuralIndex;
 import org.exist.security.PermissionDeniedException;
 import org.exist.storage.lock.Lock;
+import org.exist.storage.structural.NativeStructuralIndex;
 import org.exist.storage.txn.Txn;
 import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.LockException;
 import org.exist.util.MimeType;
 import org.exist.util.StringInputSource;
 import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -43,9 +47,12 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 public class ReindexTest {
@@ -91,6 +98,46 @@ public class ReindexTest {
         reindexElementChildren_checkNodes();
     }
 
+    @Test
+    public void reindexRoot() throws EXistException, PermissionDeniedException, IOException, LockException, SAXException, XPathException {
+        reindex(XmldbURI.ROOT_COLLECTION_URI);
+
+        reindexDocumentChildNodes_checkNodes();
+        reindexElementChildren_checkNodes();
+
+        // the structural index is bulk loaded, and must accept updates afterwards
+        assertEquals("1", query("count(collection('" + ELEMENT_WITH_CHILD_NODES_COLLECTION + "')//nn)"));
+        storeDocument(ELEMENT_WITH_CHILD_NODES_COLLECTION, XmldbURI.create("other.xml"), "<n><nn a='1'/></n>");
+        assertEquals("2", query("count(collection('" + ELEMENT_WITH_CHILD_NODES_COLLECTION + "')//nn)"));
+        assertEquals("1", query("count(collection('" + ELEMENT_WITH_CHILD_NODES_COLLECTION + "')//nn/@a)"));
+    }
+
+    @Test
+    public void reindexAfterInterruptedBulkLoad() throws EXistException, PermissionDeniedException, IOException, LockException, XPathException, DatabaseConfigurationException {
+        // simulate a crash after the structural index was truncated for a bulk load
+        existEmbeddedServer.stopDb(false);
+        final Path dataDir = existEmbeddedServer.getTemporaryStorage().get();
+        Files.delete(dataDir.resolve(NativeStructuralIndex.FILE_NAME));
+        Files.createFile(dataDir.resolve(NativeStructuralIndex.BULK_LOAD_MARKER_FILE_NAME));
+
+        // the database is reindexed when it starts
+        existEmbeddedServer.startDb();
+        assertFalse(Files.exists(dataDir.resolve(NativeStructuralIndex.BULK_LOAD_MARKER_FILE_NAME)));
+        assertFalse(((NativeStructuralIndex) existEmbeddedServer.getBrokerPool().getIndexManager().getIndexByName(StructuralIndex.STRUCTURAL_INDEX_ID)).isReindexRequired());
+
+        reindexDocumentChildNodes_checkNodes();
+        reindexElementChildren_checkNodes();
+        assertEquals("1", query("count(collection('" + DOCUMENT_WITH_CHILD_NODES_COLLECTION + "')/n)"));
+        assertEquals("1", query("count(collection('" + ELEMENT_WITH_CHILD_NODES_COLLECTION + "')/n/nn)"));
+    }
+
+    private static String query(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try(final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            return pool.getXQueryService().execute(broker, query, null).itemAt(0).getStringValue();
+        }
+    }
+
     private void reindexDocumentChildNodes_checkNodes() throws EXistException, PermissionDeniedException {
         final BrokerPool pool = existEmbeddedServer.getBrokerPool();
         try(final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
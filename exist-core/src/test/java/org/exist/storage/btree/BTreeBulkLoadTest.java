@@ -0,0 +1,181 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.BrokerPool;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.FileUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for building a B+tree bottom-up with {@link BTree.BulkLoader}.
+ */
+public class BTreeBulkLoadTest {
+
+    private final static byte BTREE_TEST_FILE_ID = 0x7F;
+    private final static short BTREE_TEST_FILE_VERSION = Short.MIN_VALUE;
+    private static final int COUNT = 50000;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file = null;
+
+    @Test
+    public void bulkLoad() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            final BTree.BulkLoader loader = btree.newBulkLoader();
+            for (int i = 0; i < COUNT; i++) {
+                loader.add(key(i), i);
+            }
+            assertEquals(COUNT, loader.finish());
+
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, btree.findValue(key(i)));
+            }
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValue(new Value("A")));
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValue(new Value("L")));
+
+            // a range query must visit every leaf in order
+            final List<Long> pointers = new ArrayList<>();
+            btree.query(new IndexQuery(IndexQuery.TRUNC_RIGHT, new Value("K")), (value, pointer) -> pointers.add(pointer));
+            assertEquals(COUNT, pointers.size());
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, pointers.get(i).longValue());
+            }
+
+            // the tree must accept normal updates afterwards
+            btree.addValue(new Value("K00000010_"), -1);
+            btree.removeValue(key(20));
+            assertEquals(-1, btree.findValue(new Value("K00000010_")));
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValue(key(20)));
+            assertEquals(30, btree.findValue(key(30)));
+        }
+    }
+
+    @Test
+    public void bulkLoadReplacesDuplicates() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            final BTree.BulkLoader loader = btree.newBulkLoader();
+            loader.add(key(1), 1);
+            loader.add(key(2), 2);
+            loader.add(key(2), 3);
+            assertEquals(2, loader.finish());
+
+            assertEquals(1, btree.findValue(key(1)));
+            assertEquals(3, btree.findValue(key(2)));
+        }
+    }
+
+    @Test
+    public void bulkLoadRejectsUnorderedKeys() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+
+            final BTree.BulkLoader loader = btree.newBulkLoader();
+            loader.add(key(2), 2);
+            try {
+                loader.add(key(1), 1);
+                fail("Expected BTreeException");
+            } catch (final BTreeException e) {
+                // expected
+            }
+            loader.finish();
+        }
+    }
+
+    @Test(expected = BTreeException.class)
+    public void bulkLoadRequiresEmptyTree() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+            btree.addValue(key(1), 1);
+            btree.newBulkLoader();
+        }
+    }
+
+    @Test
+    public void externalSort() throws Exception {
+        final List<Integer> order = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file);
+                final ExternalSorter sorter = new ExternalSorter(64 * 1024)) {
+            btree.create((short) -1);
+
+            for (final int i : order) {
+                sorter.add(key(i), -1);
+            }
+            // the pairs which were added last replace the earlier ones
+            for (final int i : order) {
+                sorter.add(key(i), i);
+            }
+            assertTrue(sorter.getRunCount() > 1);
+
+            final BTree.BulkLoader loader = btree.newBulkLoader();
+            sorter.drainTo(loader);
+            assertEquals(COUNT, loader.finish());
+
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, btree.findValue(key(i)));
+            }
+        }
+    }
+
+    private static Value key(final int i) {
+        return new Value(String.format("K%08d", i));
+    }
+
+    @Before
+    public void initialize() throws IOException {
+        file = temporaryFolder.newFile("bulk.dbx").toPath();
+    }
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(file);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.BrokerPool;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.FileUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the front coded storage of the keys of B+tree pages.
+ */
+public class BTreeFrontCodingTest {
+
+    private final static byte BTREE_TEST_FILE_ID = 0x7F;
+    private final static short BTREE_TEST_FILE_VERSION = Short.MIN_VALUE;
+    private static final int COUNT = 5000;
+    private static final int PREFIX_LEN = 300;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file = null;
+
+    @Test
+    public void longCommonPrefixes() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+            final long initialPages = btree.getFileHeader().getTotalCount();
+            for (int i = 0; i < COUNT; i++) {
+                btree.addValue(key(i), i);
+            }
+            btree.flush();
+
+            // the shared prefixes, which are longer than a legacy leaf page could compress, are stored once per page
+            final long size = (btree.getFileHeader().getTotalCount() - initialPages) * btree.getFileHeader().getPageSize();
+            assertTrue("Size of pages: " + size, size < (long) COUNT * PREFIX_LEN / 4);
+        }
+
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            assertTrue(btree.open(BTREE_TEST_FILE_VERSION));
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, btree.findValue(key(i)));
+            }
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValue(key(COUNT)));
+
+            // remove every other key, and check the neighbours of each removed key
+            for (int i = 0; i < COUNT; i += 2) {
+                assertEquals(i, btree.removeValue(key(i)));
+            }
+            for (int i = 1; i < COUNT; i += 2) {
+                assertEquals(i, btree.findValue(key(i)));
+                assertEquals(BTree.KEY_NOT_FOUND, btree.findValue(key(i - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void upgradeLegacyVersion() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final short legacyVersion = BTREE_TEST_FILE_VERSION + 1;
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, legacyVersion, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+            for (int i = 0; i < COUNT; i++) {
+                btree.addValue(key(i), i);
+            }
+        }
+
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            assertTrue(btree.open(BTREE_TEST_FILE_VERSION, legacyVersion));
+            assertEquals(BTREE_TEST_FILE_VERSION, btree.getFileHeader().getVersion());
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, btree.findValue(key(i)));
+            }
+        }
+
+        // the upgraded file is refused by a version which only reads the legacy format
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, legacyVersion, false, pool.getCacheManager(), file)) {
+            btree.open(legacyVersion);
+            fail("Opened a file of a newer version");
+        } catch (final DBException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("db requires version: " + legacyVersion));
+        }
+    }
+
+    @Test
+    public void varInt() {
+        final byte[] data = new byte[5];
+        for (final int value : new int[] { 0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE }) {
+            Arrays.fill(data, (byte) 0);
+            final int len = BTree.writeVarInt(value, data, 0);
+            assertEquals(len, BTree.getVarIntLen(value));
+            assertEquals(value, BTree.readVarInt(data, 0));
+        }
+    }
+
+    private static Value key(final int i) {
+        final char[] prefix = new char[PREFIX_LEN];
+        Arrays.fill(prefix, 'P');
+        return new Value(new String(prefix) + String.format("%08d", i));
+    }
+
+    @Before
+    public void initialize() throws IOException {
+        file = temporaryFolder.newFile("frontcoding.dbx").toPath();
+    }
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(file);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DefaultCacheManager;
+import org.exist.storage.cache.Cache;
+import org.exist.storage.lock.ManagedLock;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.FileUtils;
+import org.exist.util.LockException;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for lookups in the B+tree which do not hold the lock of the file.
+ * With the LRU cache policy, the lookups fall back to the read lock of the file.
+ */
+@RunWith(Parameterized.class)
+public class BTreeOptimisticReadTest {
+
+    private final static byte BTREE_TEST_FILE_ID = 0x7F;
+    private final static short BTREE_TEST_FILE_VERSION = Short.MIN_VALUE;
+    private static final int COUNT = 5000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Cache.Policy> data() {
+        return Arrays.asList(Cache.Policy.TWO_QUEUE, Cache.Policy.LRU);
+    }
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file = null;
+
+    public BTreeOptimisticReadTest(final Cache.Policy cachePolicy) {
+        this.existEmbeddedServer = new ExistEmbeddedServer(
+                propertiesBuilder()
+                        .put(DefaultCacheManager.PROPERTY_CACHE_POLICY, cachePolicy)
+                        .build(),
+                true,
+                true);
+    }
+
+    @Test
+    public void findValue() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = newBTree(pool)) {
+            btree.create((short) -1);
+            for (int i = 1; i <= COUNT; i++) {
+                btree.addValue(new Value("K" + i), i);
+            }
+
+            for (int i = 1; i <= COUNT; i++) {
+                assertEquals(i, btree.findValueOptimistic(new Value("K" + i)));
+            }
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValueOptimistic(new Value("K0")));
+            assertEquals(BTree.KEY_NOT_FOUND, btree.findValueOptimistic(new Value("L")));
+        }
+    }
+
+    @Test
+    public void findValueWhilstWriting() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final BTree btree = newBTree(pool)) {
+            btree.create((short) -1);
+            for (int i = 1; i <= COUNT; i++) {
+                btree.addValue(new Value("K" + i), i);
+            }
+
+            final List<Thread> threads = new ArrayList<>();
+            final List<Throwable> errors = new ArrayList<>();
+
+            // a writer which causes splits of the pages that the readers traverse
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 1; i <= COUNT; i++) {
+                        try (final ManagedLock<ReentrantLock> btreeLock = pool.getLockManager().acquireBtreeWriteLock(btree.getLockName())) {
+                            btree.addValue(new Value("K" + i + "_"), -i);
+                        }
+                    }
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int round = 0; round < 4; round++) {
+                            for (int i = 1; i <= COUNT; i++) {
+                                assertEquals(i, btree.findValueOptimistic(new Value("K" + i)));
+                            }
+                        }
+                    } catch (final IOException | BTreeException | LockException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+
+            for (final Thread thread : threads) {
+                thread.setUncaughtExceptionHandler((th, e) -> {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                });
+                thread.start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(errors.toString(), errors.isEmpty());
+
+            for (int i = 1; i <= COUNT; i++) {
+                assertEquals(-i, btree.findValueOptimistic(new Value("K" + i + "_")));
+            }
+        }
+    }
+
+    private BTree newBTree(final BrokerPool pool) throws DBException {
+        return new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file) {
+            @Override
+            public String getLockName() {
+                return FileUtils.fileName(file);
+            }
+        };
+    }
+
+    @Before
+    public void initialize() throws IOException {
+        file = temporaryFolder.newFile("optimistic.dbx").toPath();
+    }
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(file);
+    }
+}
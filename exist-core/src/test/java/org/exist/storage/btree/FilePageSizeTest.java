@@ -0,0 +1,124 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DefaultCacheManager;
+import org.exist.test.ExistEmbeddedServer;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.exist.storage.BrokerPoolConstants.PROPERTY_FILE_PAGE_SIZES;
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for files which are created with a page size configured for them.
+ */
+public class FilePageSizeTest {
+
+    private final static byte BTREE_TEST_FILE_ID = 0x7F;
+    private final static short BTREE_TEST_FILE_VERSION = Short.MIN_VALUE;
+    private static final int COUNT = 20000;
+    private static final int LARGE_PAGE_SIZE = 16384;
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(PROPERTY_FILE_PAGE_SIZES, Collections.singletonMap("large.dbx", LARGE_PAGE_SIZE))
+                    .build(),
+            true,
+            true);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void configuredPageSize() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        assertEquals(LARGE_PAGE_SIZE, pool.getPageSize("large.dbx"));
+        assertEquals(pool.getPageSize(), pool.getPageSize("other.dbx"));
+
+        final DefaultCacheManager cacheManager = pool.getCacheManager();
+        final long cacheSize = cacheManager.getCurrentSize();
+        final Path file = temporaryFolder.getRoot().toPath().resolve("large.dbx");
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, cacheManager, file)) {
+            btree.create((short) -1);
+            assertEquals(LARGE_PAGE_SIZE, btree.getFileHeader().getPageSize());
+            // the cache of the file is accounted for with the size of its pages
+            assertEquals(cacheSize + (long) cacheManager.getDefaultInitialSize() * LARGE_PAGE_SIZE, cacheManager.getCurrentSize());
+            for (int i = 0; i < COUNT; i++) {
+                btree.addValue(key(i), i);
+            }
+        }
+
+        // an existing file keeps the page size it was created with
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            assertTrue(btree.open(BTREE_TEST_FILE_VERSION));
+            assertEquals(LARGE_PAGE_SIZE, btree.getFileHeader().getPageSize());
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(i, btree.findValue(key(i)));
+            }
+        }
+    }
+
+    @Test
+    public void openedFilePageSize() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final Path large = temporaryFolder.getRoot().toPath().resolve("large.dbx");
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), large)) {
+            btree.create((short) -1);
+            btree.addValue(key(0), 0);
+        }
+
+        // the file is opened under a name which has no page size configured
+        final Path renamed = Files.move(large, large.resolveSibling("renamed.dbx"));
+        final DefaultCacheManager cacheManager = pool.getCacheManager();
+        final long cacheSize = cacheManager.getCurrentSize();
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, cacheManager, renamed)) {
+            assertTrue(btree.open(BTREE_TEST_FILE_VERSION));
+            assertEquals(LARGE_PAGE_SIZE, btree.getFileHeader().getPageSize());
+            // the cache is accounted for with the page size of the file, not the configured one
+            assertEquals(cacheSize + (long) cacheManager.getDefaultInitialSize() * LARGE_PAGE_SIZE, cacheManager.getCurrentSize());
+            assertEquals(0, btree.findValue(key(0)));
+        }
+        assertEquals(cacheSize, cacheManager.getCurrentSize());
+    }
+
+    @Test
+    public void defaultPageSize() throws Exception {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final Path file = temporaryFolder.getRoot().toPath().resolve("default.dbx");
+        try (final BTree btree = new BTree(pool, BTREE_TEST_FILE_ID, BTREE_TEST_FILE_VERSION, false, pool.getCacheManager(), file)) {
+            btree.create((short) -1);
+            assertEquals(pool.getPageSize(), btree.getFileHeader().getPageSize());
+        }
+    }
+
+    private static Value key(final int i) {
+        return new Value(String.format("K%08d", i));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.cache.OffHeapPageStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageIOTest {
+
+    private static final int PAGE_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(PageIO.Type.class)
+    public void readBeyondEndOfFile(final PageIO.Type type) throws IOException {
+        try (final PageIO pageIO = open(type, "eof.dbx")) {
+            final byte[] buf = new byte[PAGE_SIZE];
+            assertEquals(-1, pageIO.read(0, buf, 0, buf.length));
+
+            pageIO.write(0, page(1), 0, PAGE_SIZE / 2);
+            assertEquals(PAGE_SIZE / 2, pageIO.read(0, buf, 0, buf.length));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageIO.Type.class)
+    public void writeAndReadPages(final PageIO.Type type) throws IOException {
+        // enough pages to grow past the remap threshold of the mapped implementation
+        final int pageCount = (int) (3 * MappedPageIO.REMAP_THRESHOLD / PAGE_SIZE);
+
+        try (final PageIO pageIO = open(type, "pages.dbx")) {
+            assertEquals(type, pageIO.getType());
+
+            for (int i = 0; i < pageCount; i++) {
+                pageIO.write((long) i * PAGE_SIZE, page(i), 0, PAGE_SIZE);
+            }
+            assertEquals((long) pageCount * PAGE_SIZE, pageIO.size());
+
+            // overwrite a page which is now within the mapped region
+            pageIO.write(PAGE_SIZE, page(-1), 0, PAGE_SIZE);
+
+            final byte[] buf = new byte[PAGE_SIZE];
+            for (int i = pageCount - 1; i >= 0; i--) {
+                assertEquals(PAGE_SIZE, pageIO.read((long) i * PAGE_SIZE, buf, 0, PAGE_SIZE));
+                assertArrayEquals(page(i == 1 ? -1 : i), buf);
+            }
+        }
+
+        // reopen and check that the data was persisted
+        try (final PageIO pageIO = open(type, "pages.dbx")) {
+            final byte[] buf = new byte[PAGE_SIZE];
+            for (int i = 0; i < pageCount; i++) {
+                assertEquals(PAGE_SIZE, pageIO.read((long) i * PAGE_SIZE, buf, 0, PAGE_SIZE));
+                assertArrayEquals(page(i == 1 ? -1 : i), buf);
+            }
+        }
+    }
+
+    @Test
+    public void offHeapCaching() throws IOException {
+        final int pageCount = 32;
+        final OffHeapPageStore store = new OffHeapPageStore(8 * PAGE_SIZE, PAGE_SIZE);
+
+        try (final PageIO pageIO = new OffHeapCachingPageIO(open(PageIO.Type.FILE, "cached.dbx"), store)) {
+            for (int i = 0; i < pageCount; i++) {
+                pageIO.write((long) i * PAGE_SIZE, page(i), 0, PAGE_SIZE);
+            }
+
+            // a partial write, i.e. of a page header, must be applied to the cached copy
+            final byte[] header = new byte[16];
+            Arrays.fill(header, (byte) 0x7f);
+            pageIO.write((pageCount - 1L) * PAGE_SIZE, header, 0, header.length);
+
+            final byte[] buf = new byte[PAGE_SIZE];
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < pageCount; i++) {
+                    final byte[] expected = page(i);
+                    if (i == pageCount - 1) {
+                        System.arraycopy(header, 0, expected, 0, header.length);
+                    }
+                    assertEquals(PAGE_SIZE, pageIO.read((long) i * PAGE_SIZE, buf, 0, PAGE_SIZE));
+                    assertArrayEquals(expected, buf);
+
+                    // a partial read, i.e. of a page header
+                    final byte[] partial = new byte[32];
+                    assertEquals(partial.length, pageIO.read((long) i * PAGE_SIZE + 8, partial, 0, partial.length));
+                    assertArrayEquals(Arrays.copyOfRange(expected, 8, 8 + partial.length), partial);
+                }
+            }
+
+            assertTrue(store.getHits() > 0);
+            assertTrue(store.getEvictions() > 0);
+            assertEquals(8L * PAGE_SIZE, store.getCurrentSize());
+        }
+
+        // closing the file releases its pages
+        assertEquals(0, store.getCurrentSize());
+    }
+
+    private PageIO open(final PageIO.Type type, final String fileName) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(tempDir.resolve(fileName).toFile(), "rw");
+        return PageIO.create(type, raf, false);
+    }
+
+    private static byte[] page(final int pageNum) {
+        final byte[] data = new byte[PAGE_SIZE];
+        Arrays.fill(data, (byte) pageNum);
+        data[0] = (byte) (pageNum >>> 8);
+        return data;
+    }
+}
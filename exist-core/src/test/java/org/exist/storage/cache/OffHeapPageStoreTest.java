@@ -0,0 +1,152 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class OffHeapPageStoreTest {
+
+    private static final int PAGE_SIZE = 1024;
+
+    @Test
+    public void putAndRead() {
+        final OffHeapPageStore store = new OffHeapPageStore(16 * PAGE_SIZE, PAGE_SIZE);
+        final int file1 = store.registerFile();
+        final int file2 = store.registerFile();
+
+        store.put(file1, 3, page(1), 0);
+        store.put(file2, 3, page(2), 0);
+
+        final byte[] buf = new byte[PAGE_SIZE];
+        assertTrue(store.read(file1, 3, 0, buf, 0, PAGE_SIZE));
+        assertArrayEquals(page(1), buf);
+        assertTrue(store.read(file2, 3, 0, buf, 0, PAGE_SIZE));
+        assertArrayEquals(page(2), buf);
+        assertFalse(store.read(file1, 4, 0, buf, 0, PAGE_SIZE));
+
+        assertEquals(2, store.getHits());
+        assertEquals(1, store.getFails());
+        assertEquals(2L * PAGE_SIZE, store.getCurrentSize());
+    }
+
+    @Test
+    public void update() {
+        final OffHeapPageStore store = new OffHeapPageStore(16 * PAGE_SIZE, PAGE_SIZE);
+        final int file = store.registerFile();
+        store.put(file, 0, page(1), 0);
+
+        final byte[] data = new byte[] { 9, 9, 9, 9 };
+        store.update(file, 0, 100, data, 0, data.length);
+        // an update of an absent page is ignored
+        store.update(file, 1, 100, data, 0, data.length);
+
+        final byte[] expected = page(1);
+        System.arraycopy(data, 0, expected, 100, data.length);
+
+        final byte[] buf = new byte[PAGE_SIZE];
+        assertTrue(store.read(file, 0, 0, buf, 0, PAGE_SIZE));
+        assertArrayEquals(expected, buf);
+        assertFalse(store.read(file, 1, 0, buf, 0, PAGE_SIZE));
+    }
+
+    @Test
+    public void evictsWithinBudget() {
+        final int frames = 8;
+        final OffHeapPageStore store = new OffHeapPageStore(frames * PAGE_SIZE, PAGE_SIZE);
+        final int file = store.registerFile();
+
+        for (int i = 0; i < frames * 4; i++) {
+            store.put(file, i, page(i), 0);
+        }
+        assertEquals(store.getMaxSize(), store.getCurrentSize());
+        assertEquals(frames * 3, store.getEvictions());
+
+        // every page still held by the store must have the right content
+        final byte[] buf = new byte[PAGE_SIZE];
+        int held = 0;
+        for (int i = 0; i < frames * 4; i++) {
+            if (store.read(file, i, 0, buf, 0, PAGE_SIZE)) {
+                assertArrayEquals(page(i), buf);
+                held++;
+            }
+        }
+        assertEquals(frames, held);
+    }
+
+    @Test
+    public void referencedPagesSurviveEviction() {
+        final int frames = 8;
+        final OffHeapPageStore store = new OffHeapPageStore(frames * PAGE_SIZE, PAGE_SIZE);
+        final int file = store.registerFile();
+        for (int i = 0; i < frames; i++) {
+            store.put(file, i, page(i), 0);
+        }
+
+        // a full sweep of the clock clears all reference bits, the hot page is then referenced again
+        store.put(file, 1000, page(0), 0);
+        final byte[] buf = new byte[PAGE_SIZE];
+        final long hot = 5;
+        assertTrue(store.read(file, hot, 0, buf, 0, PAGE_SIZE));
+
+        for (int i = 1; i < frames - 1; i++) {
+            store.put(file, 1000 + i, page(i), 0);
+        }
+        assertTrue(store.read(file, hot, 0, buf, 0, PAGE_SIZE));
+        assertArrayEquals(page((int) hot), buf);
+    }
+
+    @Test
+    public void deregisterFileReleasesPages() {
+        final OffHeapPageStore store = new OffHeapPageStore(16 * PAGE_SIZE, PAGE_SIZE);
+        final int file1 = store.registerFile();
+        final int file2 = store.registerFile();
+        for (int i = 0; i < 4; i++) {
+            store.put(file1, i, page(i), 0);
+            store.put(file2, i, page(i), 0);
+        }
+
+        store.deregisterFile(file1);
+        assertEquals(4L * PAGE_SIZE, store.getCurrentSize());
+
+        final byte[] buf = new byte[PAGE_SIZE];
+        for (int i = 0; i < 4; i++) {
+            assertFalse(store.read(file1, i, 0, buf, 0, PAGE_SIZE));
+            assertTrue(store.read(file2, i, 0, buf, 0, PAGE_SIZE));
+        }
+
+        // released frames are reused without eviction
+        for (int i = 0; i < 4; i++) {
+            store.put(file1, i, page(i), 0);
+        }
+        assertEquals(0, store.getEvictions());
+    }
+
+    private static byte[] page(final int pageNum) {
+        final byte[] data = new byte[PAGE_SIZE];
+        Arrays.fill(data, (byte) pageNum);
+        return data;
+    }
+}
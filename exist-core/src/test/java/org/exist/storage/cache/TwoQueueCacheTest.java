@@ -0,0 +1,260 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TwoQueueCacheTest {
+
+    @Test
+    public void addAndGet() {
+        // NOTE: small enough to have a single segment, so the capacity is exact
+        final int size = TwoQueueCache.MIN_SEGMENT_SIZE;
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", size, 0.0, 1.0, Cache.CacheType.DATA);
+        for (int i = 0; i < size; i++) {
+            cache.add(new TestCacheable(i, false));
+        }
+        assertEquals(size, cache.getUsedBuffers());
+
+        for (int i = 0; i < size; i++) {
+            assertNotNull(cache.get(i));
+        }
+        assertNull(cache.get(size));
+
+        assertEquals(size, cache.getHits());
+        assertEquals(1, cache.getFails());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void evictsWhenFull() {
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", 64, 0.0, 1.0, Cache.CacheType.DATA);
+        final List<TestCacheable> items = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            final TestCacheable item = new TestCacheable(i, false);
+            items.add(item);
+            cache.add(item);
+        }
+        assertTrue(cache.getUsedBuffers() <= 64);
+        assertEquals(256 - cache.getUsedBuffers(), cache.getEvictions());
+
+        // evicted items must have been synced
+        for (final TestCacheable item : items) {
+            if (cache.get(item.getKey()) == null) {
+                assertTrue(item.synced);
+            }
+        }
+    }
+
+    @Test
+    public void scanDoesNotEvictHotItems() {
+        // NOTE: small enough to have a single segment, so the queue sizes are exact
+        final int size = TwoQueueCache.MIN_SEGMENT_SIZE;
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", size, 0.0, 1.0, Cache.CacheType.DATA);
+
+        // a small working set, which is referenced once...
+        final int hot = (int) (size * TwoQueueCache.OUT_QUEUE_RATIO) - 1;
+        for (int i = 0; i < hot; i++) {
+            cache.add(new TestCacheable(i, false));
+        }
+
+        // ...pushed out of A1in by other items...
+        for (int i = 0; i < size; i++) {
+            cache.add(new TestCacheable(1_000_000 + i, false));
+        }
+
+        // ...and then referenced again, which admits it to Am
+        for (int i = 0; i < hot; i++) {
+            assertNull(cache.get(i));
+            cache.add(new TestCacheable(i, false));
+        }
+
+        // a large scan, which is only ever referenced once
+        for (int i = 0; i < size * 10; i++) {
+            cache.add(new TestCacheable(2_000_000 + i, false));
+        }
+
+        for (int i = 0; i < hot; i++) {
+            assertNotNull(cache.get(i));
+        }
+    }
+
+    @Test
+    public void innerPagesAreKept() {
+        final int size = 64;
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", size, 0.0, 1.0, Cache.CacheType.BTREE);
+        for (int i = 0; i < size / 4; i++) {
+            cache.add(new TestCacheable(i, true));
+        }
+        for (int i = 0; i < size * 10; i++) {
+            cache.add(new TestCacheable(1_000_000 + i, false));
+        }
+        for (int i = 0; i < size / 4; i++) {
+            assertNotNull(cache.get(i));
+        }
+    }
+
+    @Test
+    public void unloadableItemsAreNotEvicted() {
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", 8, 0.0, 1.0, Cache.CacheType.DATA);
+        final TestCacheable pinned = new TestCacheable(0, false);
+        pinned.allowUnload = false;
+        cache.add(pinned);
+        for (int i = 1; i < 100; i++) {
+            cache.add(new TestCacheable(i, false));
+        }
+        assertSame(pinned, cache.get(0));
+    }
+
+    @Test
+    public void resize() {
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", 128, 0.0, 1.0, Cache.CacheType.DATA);
+        for (int i = 0; i < 128; i++) {
+            cache.add(new TestCacheable(i, false));
+        }
+        cache.resize(64);
+        assertEquals(64, cache.getBuffers());
+        assertTrue(cache.getUsedBuffers() <= 64);
+
+        cache.resize(256);
+        assertEquals(256, cache.getBuffers());
+        for (int i = 0; i < 256; i++) {
+            cache.add(new TestCacheable(1000 + i, false));
+        }
+        assertTrue(cache.getUsedBuffers() > 128);
+    }
+
+    @Test
+    public void concurrentAccess() throws InterruptedException {
+        final int size = 512;
+        final Cache<TestCacheable> cache = new TwoQueueCache<>("test", size, 0.0, 1.0, Cache.CacheType.DATA);
+
+        final List<Thread> threads = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t * 10_000;
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    final long key = offset + (i % 1000);
+                    final TestCacheable cached = cache.get(key);
+                    if (cached == null) {
+                        cache.add(new TestCacheable(key, false));
+                    } else {
+                        assertEquals(key, cached.getKey());
+                        cache.add(cached);
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(cache.getUsedBuffers() <= size);
+        assertEquals(8 * 10_000, cache.getHits() + cache.getFails());
+    }
+
+    private static class TestCacheable implements BTreeCacheable {
+        private final long key;
+        private final boolean innerPage;
+        private int refCount;
+        private int timestamp;
+        boolean allowUnload = true;
+        boolean synced = false;
+
+        TestCacheable(final long key, final boolean innerPage) {
+            this.key = key;
+            this.innerPage = innerPage;
+        }
+
+        @Override
+        public long getKey() {
+            return key;
+        }
+
+        @Override
+        public int getReferenceCount() {
+            return refCount;
+        }
+
+        @Override
+        public int incReferenceCount() {
+            return ++refCount;
+        }
+
+        @Override
+        public int decReferenceCount() {
+            return --refCount;
+        }
+
+        @Override
+        public void setReferenceCount(final int count) {
+            this.refCount = count;
+        }
+
+        @Override
+        public void setTimestamp(final int timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public int getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean sync(final boolean syncJournal) {
+            synced = true;
+            return true;
+        }
+
+        @Override
+        public boolean allowUnload() {
+            return allowUnload;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return false;
+        }
+
+        @Override
+        public boolean isInnerPage() {
+            return innerPage;
+        }
+    }
+}
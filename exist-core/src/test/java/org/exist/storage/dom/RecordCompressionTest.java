@@ -0,0 +1,109 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.dom;
+
+import org.exist.storage.Signatures;
+import org.exist.storage.btree.Value;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecordCompressionTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (final RecordCompression compression : new RecordCompression[] { RecordCompression.LZ4, RecordCompression.DEFLATE }) {
+            final byte[] node = node(Signatures.Char, 2000);
+            final byte[] record = compression.compress(node);
+            assertTrue(compression + ": " + record.length, record.length < node.length / 4);
+            assertTrue(RecordCompression.isCompressed(record[0]));
+            assertEquals(compression, RecordCompression.of(record[0]));
+            assertArrayEquals(node, RecordCompression.decompress(record, 0, record.length));
+
+            // a record within a page
+            final byte[] page = new byte[record.length + 20];
+            System.arraycopy(record, 0, page, 10, record.length);
+            assertArrayEquals(node, RecordCompression.decompress(page, 10, record.length));
+
+            final Value value = RecordCompression.decompress(new Value(page, 10, record.length));
+            assertArrayEquals(node, value.getData());
+        }
+    }
+
+    @Test
+    public void characterDataOnly() {
+        for (final int type : new int[] { Signatures.Cdata, Signatures.Comm, Signatures.Proc }) {
+            final byte[] node = node(type, 1000);
+            assertTrue(RecordCompression.isCompressed(RecordCompression.LZ4.compress(node)[0]));
+        }
+        for (final int type : new int[] { Signatures.Elem, Signatures.Attr }) {
+            final byte[] node = node(type, 1000);
+            assertSame(node, RecordCompression.LZ4.compress(node));
+            assertFalse(RecordCompression.isCompressed(node[0]));
+        }
+    }
+
+    @Test
+    public void notWorthCompressing() throws IOException {
+        final byte[] shortNode = node(Signatures.Char, RecordCompression.MIN_LENGTH - 8);
+        assertSame(shortNode, RecordCompression.LZ4.compress(shortNode));
+        assertSame(shortNode, RecordCompression.DEFLATE.compress(shortNode));
+
+        final byte[] node = node(Signatures.Char, 1000);
+        assertSame(node, RecordCompression.NONE.compress(node));
+
+        // random data does not compress
+        final byte[] random = new byte[1000];
+        new Random(42).nextBytes(random);
+        random[0] = (byte) (Signatures.Char << 0x5);
+        assertSame(random, RecordCompression.LZ4.compress(random));
+        assertSame(random, RecordCompression.DEFLATE.compress(random));
+
+        final Value value = new Value(node);
+        assertSame(value, RecordCompression.decompress(value));
+    }
+
+    @Test
+    public void fromString() {
+        assertEquals(RecordCompression.LZ4, RecordCompression.fromString("lz4"));
+        assertEquals(RecordCompression.DEFLATE, RecordCompression.fromString(" Deflate "));
+        assertEquals(RecordCompression.NONE, RecordCompression.fromString("none"));
+        assertNull(RecordCompression.fromString("zip"));
+        assertNull(RecordCompression.fromString(null));
+    }
+
+    private static byte[] node(final int type, final int textLength) {
+        final byte[] text = new byte[textLength];
+        final byte[] words = "the king and the lord of the manor ".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < textLength; i++) {
+            text[i] = words[i % words.length];
+        }
+        final byte[] node = new byte[1 + text.length];
+        node[0] = (byte) (type << 0x5);
+        System.arraycopy(text, 0, node, 1, text.length);
+        return node;
+    }
+}
@@ -26,6 +26,7 @@ import org.easymock.CaptureType;
 import org.exist.EXistException;
 import org.exist.scheduler.Scheduler;
 import org.exist.storage.BrokerPool;
+import org.exist.storage.txn.Checkpoint;
 import org.exist.util.Configuration;
 import org.exist.util.FileUtils;
 import org.exist.util.ReadOnlyException;
@@ -41,6 +42,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -284,6 +286,7 @@ public class JournalTest {
         final Scheduler mockScheduler = createNiceMock(Scheduler.class);
         expect(mockBrokerPool.getConfiguration()).andReturn(mockConfiguration);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, Journal.DEFAULT_SYNC_ON_COMMIT)).andReturn(Journal.DEFAULT_SYNC_ON_COMMIT);
+        expect(mockConfiguration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, Journal.DEFAULT_GROUP_COMMIT)).andReturn(Journal.DEFAULT_GROUP_COMMIT);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
@@ -328,6 +331,7 @@ public class JournalTest {
         final Scheduler mockScheduler = createNiceMock(Scheduler.class);
         expect(mockBrokerPool.getConfiguration()).andReturn(mockConfiguration);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, Journal.DEFAULT_SYNC_ON_COMMIT)).andReturn(Journal.DEFAULT_SYNC_ON_COMMIT);
+        expect(mockConfiguration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, Journal.DEFAULT_GROUP_COMMIT)).andReturn(Journal.DEFAULT_GROUP_COMMIT);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
@@ -370,6 +374,7 @@ public class JournalTest {
         final Scheduler mockScheduler = createNiceMock(Scheduler.class);
         expect(mockBrokerPool.getConfiguration()).andReturn(mockConfiguration);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, Journal.DEFAULT_SYNC_ON_COMMIT)).andReturn(Journal.DEFAULT_SYNC_ON_COMMIT);
+        expect(mockConfiguration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, Journal.DEFAULT_GROUP_COMMIT)).andReturn(Journal.DEFAULT_GROUP_COMMIT);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
@@ -412,6 +417,76 @@ public class JournalTest {
         verify(mockBrokerPool, mockConfiguration);
     }
 
+    @Test
+    public void groupCommit() throws EXistException, IOException, ReadOnlyException, InterruptedException {
+        final int writers = 8;
+        final int commitsPerWriter = 50;
+
+        final BrokerPool mockBrokerPool = createNiceMock(BrokerPool.class);
+        final Configuration mockConfiguration = mock(Configuration.class);
+        final Scheduler mockScheduler = createNiceMock(Scheduler.class);
+        expect(mockBrokerPool.getConfiguration()).andReturn(mockConfiguration);
+        expect(mockBrokerPool.getId()).andReturn("groupCommit").anyTimes();
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, Journal.DEFAULT_SYNC_ON_COMMIT)).andReturn(true);
+        expect(mockConfiguration.getProperty(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, Journal.DEFAULT_GROUP_COMMIT)).andReturn(true);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
+        expect(mockBrokerPool.getScheduler()).andReturn(mockScheduler);
+
+        replay(mockBrokerPool, mockConfiguration);
+
+        final Path tempJournalDir = TEMPORARY_FOLDER.newFolder().toPath();
+        Files.createDirectories(tempJournalDir);
+
+        final Journal journal = new Journal(mockBrokerPool, tempJournalDir);
+        journal.initialize();
+        journal.switchFiles();
+
+        // NOTE: Checkpoint entries are not tracked by the TransactionManager, so no mock is needed
+        final List<Lsn[]> commits = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            final long txnId = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < commitsPerWriter; j++) {
+                    final Checkpoint entry = new Checkpoint(txnId);
+                    try {
+                        journal.writeToLog(entry);
+                    } catch (final JournalException e) {
+                        throw new RuntimeException(e);
+                    }
+                    journal.flushToLog(true);
+
+                    final Lsn[] commit = { entry.getLsn(), journal.lastWrittenLsn() };
+                    synchronized (commits) {
+                        commits.add(commit);
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(writers * commitsPerWriter, commits.size());
+        for (final Lsn[] commit : commits) {
+            // once a commit has returned, its entry must have been written out
+            assertTrue(commit[1].compareTo(commit[0]) >= 0);
+        }
+
+        final Path journalFile = journal.getFile(journal.getCurrentJournalFileNumber());
+        journal.shutdown(writers, false);
+
+        final long entryLen = Journal.LOG_ENTRY_BASE_LEN + new Checkpoint(0).getLogSize();
+        assertEquals(Journal.JOURNAL_HEADER_LEN + (writers * commitsPerWriter * entryLen), Files.size(journalFile));
+
+        verify(mockConfiguration);
+    }
+
     private static Path createTempDirWithFiles(final List<String> fileNames) throws IOException {
         final Path tempFolder = TEMPORARY_FOLDER.newFolder().toPath();
         Files.createDirectories(tempFolder);
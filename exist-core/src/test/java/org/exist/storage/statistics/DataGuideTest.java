@@ -0,0 +1,66 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.statistics;
+
+import org.exist.dom.QName;
+import org.exist.storage.NodePath;
+import org.junit.Test;
+
+import javax.xml.XMLConstants;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataGuideTest {
+
+    private static final QName PLAY = new QName("PLAY", XMLConstants.NULL_NS_URI);
+    private static final QName ACT = new QName("ACT", XMLConstants.NULL_NS_URI);
+    private static final QName SPEECH = new QName("SPEECH", XMLConstants.NULL_NS_URI);
+    private static final QName LINE = new QName("LINE", XMLConstants.NULL_NS_URI);
+
+    @Test
+    public void nodeAndChildCounts() {
+        final DataGuide guide = new DataGuide();
+        add(guide, 1, PLAY);
+        add(guide, 5, PLAY, ACT);
+        add(guide, 20, PLAY, ACT, SPEECH);
+        add(guide, 100, PLAY, ACT, SPEECH, LINE);
+        add(guide, 2, PLAY, SPEECH);
+        add(guide, 6, PLAY, SPEECH, LINE);
+
+        assertEquals(22, guide.getNodeCount(SPEECH));
+        assertEquals(106, guide.getNodeCount(LINE));
+        assertEquals(106, guide.getChildCount(SPEECH, LINE));
+        assertEquals(2, guide.getChildCount(PLAY, SPEECH));
+        assertEquals(0, guide.getChildCount(PLAY, LINE));
+        assertEquals(0, guide.getNodeCount(new QName("SCENE", XMLConstants.NULL_NS_URI)));
+    }
+
+    private static void add(final DataGuide guide, final int count, final QName... components) {
+        final NodePath path = new NodePath();
+        for (final QName component : components) {
+            path.addComponent(component);
+        }
+        for (int i = 0; i < count; i++) {
+            guide.add(path);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.util.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that the {@link UTF8Writer} writes the same bytes as an {@link OutputStreamWriter}.
+ */
+public class UTF8WriterTest {
+
+    @Test
+    public void ascii() throws IOException {
+        assertSameBytes("<a href=\"x\">text &amp; more</a>");
+    }
+
+    @Test
+    public void multiByte() throws IOException {
+        assertSameBytes("café € 中文 😀 end");
+    }
+
+    @Test
+    public void beyondBuffer() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("xé€😀");
+        }
+        assertSameBytes(builder.toString());
+    }
+
+    @Test
+    public void surrogatePairAcrossWrites() throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (final Writer writer = new UTF8Writer(os)) {
+            writer.write('\ud83d');
+            writer.write("\ude00!");
+        }
+        assertArrayEquals("😀!".getBytes(UTF_8), os.toByteArray());
+    }
+
+    @Test
+    public void malformedSurrogates() throws IOException {
+        assertSameBytes("a\ude00b\ud83dc\ud83d");
+    }
+
+    private static void assertSameBytes(final String s) throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (final Writer writer = new OutputStreamWriter(expected, UTF_8)) {
+            writer.write(s);
+        }
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (final Writer writer = new UTF8Writer(actual)) {
+            // mix the ways characters are written
+            final int third = s.length() / 3;
+            writer.write(s, 0, third);
+            writer.write(s.toCharArray(), third, third);
+            for (int i = 2 * third; i < s.length(); i++) {
+                writer.write(s.charAt(i));
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+}
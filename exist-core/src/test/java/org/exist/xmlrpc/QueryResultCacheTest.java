@@ -21,6 +21,7 @@
  */
 package org.exist.xmlrpc;
 
+import org.exist.storage.CursorManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -32,7 +33,7 @@ import static org.awaitility.Awaitility.await;
  * @author <a href="mailto:patrick@reini.net">Patrick Reinhart</a>
  */
 class QueryResultCacheTest {
-    QueryResultCache cache = new QueryResultCache();
+    QueryResultCache cache = new QueryResultCache(new CursorManager());
     TestCachedResult cachedResult = new TestCachedResult();
 
     @BeforeEach
@@ -1576,6 +1576,45 @@ public class ImportModuleTest {
         }
     }
 
+    /**
+     * Imports the same XQuery Library Module from different queries, before and after the module is changed.
+     */
+    @Test
+    public void moduleChangedBetweenQueries() throws EXistException, IOException, PermissionDeniedException, LockException, SAXException, XPathException {
+        final String module1 =
+                "xquery version \"3.1\";\n" +
+                "module namespace impl = \"http://example.com/impl\";\n" +
+                "declare variable $impl:v := \"v1\";\n" +
+                "declare function impl:f1($a as xs:string) as xs:string {\n" +
+                "    $a || \" \" || $impl:v\n" +
+                "};\n";
+
+        final String module2 = module1.replace("\"v1\"", "\"v2\"");
+
+        final String query =
+                "import module namespace impl = \"http://example.com/impl\" at \"xmldb:exist:///db/impl1.xqm\";\n" +
+                "impl:f1(\"query";
+
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+
+            try (final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+                storeModules(broker, transaction, "/db", Tuple("impl1.xqm", module1));
+                transaction.commit();
+            }
+
+            assertEquals("query1 v1", withCompiledQuery(broker, new StringSource(query + "1\")"), compiledXQuery -> executeQuery(broker, compiledXQuery).getStringValue()));
+            assertEquals("query2 v1", withCompiledQuery(broker, new StringSource(query + "2\")"), compiledXQuery -> executeQuery(broker, compiledXQuery).getStringValue()));
+
+            try (final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+                storeModules(broker, transaction, "/db", Tuple("impl1.xqm", module2));
+                transaction.commit();
+            }
+
+            assertEquals("query3 v2", withCompiledQuery(broker, new StringSource(query + "3\")"), compiledXQuery -> executeQuery(broker, compiledXQuery).getStringValue()));
+        }
+    }
+
     private void storeModules(final DBBroker broker, final Txn transaction, final String collectionUri, final Tuple2<String, String>... modules) throws PermissionDeniedException, IOException, SAXException, LockException, EXistException {
         // store modules
         try (final Collection collection = broker.openCollection(XmldbURI.create(collectionUri), Lock.LockMode.WRITE_LOCK)) {
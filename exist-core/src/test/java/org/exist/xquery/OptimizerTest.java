@@ -143,6 +143,27 @@ public class OptimizerTest {
         execute("//SPEECH[true() and true()]", true, MSG_OPT_ERROR, 2628);
     }
 
+    @Test
+    public void reorderPredicates() throws XMLDBException {
+        long r = execute("//SPEECH[count(LINE) > 10][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[count(LINE) > 10][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[LINE[contains(., 'king')]][not(SPEAKER[contains(., 'HAM')])][SPEAKER = 'HORATIO']", false);
+        execute("//SPEECH[LINE[contains(., 'king')]][not(SPEAKER[contains(., 'HAM')])][SPEAKER = 'HORATIO']", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[string-length(LINE[1]) > 20 and SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[string-length(LINE[1]) > 20 and SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+    }
+
+    @Test
+    public void keepPositionalPredicates() throws XMLDBException {
+        long r = execute("//SPEECH[LINE[contains(., 'love')]][2][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[LINE[contains(., 'love')]][2][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[LINE[contains(., 'love')]][position() = last()][SPEAKER = 'HAMLET']", false);
+        execute("//SPEECH[LINE[contains(., 'love')]][position() = last()][SPEAKER = 'HAMLET']", true, MSG_OPT_ERROR, r);
+        r = execute("//SPEECH[SPEAKER castable as xs:integer][xs:integer(SPEAKER) > 0]", false);
+        assertEquals(0, r);
+        execute("//SPEECH[SPEAKER castable as xs:integer][xs:integer(SPEAKER) > 0]", true, MSG_OPT_ERROR, r);
+    }
+
     private long execute(String query, boolean optimize) throws XMLDBException {
         XQueryService service = testCollection.getService(XQueryService.class);
         if (optimize) {
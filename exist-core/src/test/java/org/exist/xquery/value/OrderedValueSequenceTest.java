@@ -22,17 +22,22 @@
 
 package org.exist.xquery.value;
 
+import org.easymock.IExpectationSetters;
 import org.exist.xquery.Expression;
 import org.exist.xquery.OrderSpec;
 import org.exist.xquery.XPathException;
+import org.exist.xquery.XQueryContext;
 import org.junit.Test;
 
+import java.math.BigDecimal;
 import java.util.Arrays;
 
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class OrderedValueSequenceTest {
 
@@ -98,6 +103,42 @@ public class OrderedValueSequenceTest {
         assertEquals(69, count);
     }
 
+    @Test
+    public void bounded_decimals() throws XPathException {
+        // prices with two decimal places, most of which are not exactly representable as a float
+        final int size = 1000;
+        final int limit = 10;
+        final Expression mockSortExpr = createMock(Expression.class);
+        IExpectationSetters<Sequence> expectation = expect(mockSortExpr.eval(null, null));
+        final Item[] itemsByPrice = new Item[size];
+        final Item[] items = new Item[size];
+        for (int i = 0; i < size; i++) {
+            final int cents = (i * 389) % size;
+            expectation = expectation.andReturn(new DecimalValue(BigDecimal.valueOf(cents, 2)));
+            items[i] = createMock(Item.class);
+            expect(items[i].getType()).andReturn(Type.ANY_TYPE).anyTimes();
+            replay(items[i]);
+            itemsByPrice[cents] = items[i];
+        }
+        replay(mockSortExpr);
+        final XQueryContext mockContext = createMock(XQueryContext.class);
+        expect(mockContext.getDefaultCollator()).andReturn(null).anyTimes();
+        replay(mockContext);
+
+        final OrderedValueSequence orderedValueSequence = new OrderedValueSequence(Arrays.asList(new OrderSpec(mockContext, mockSortExpr)), size, limit);
+        for (int i = 0; i < size; i++) {
+            orderedValueSequence.add(items[i]);
+            assertTrue(orderedValueSequence.getItemCountLong() <= 2 * limit);
+        }
+        orderedValueSequence.coerceTypesForOrderBy();
+        orderedValueSequence.sort();
+
+        assertEquals(limit, orderedValueSequence.getItemCount());
+        for (int i = 0; i < limit; i++) {
+            assertSame(itemsByPrice[i], orderedValueSequence.itemAt(i));
+        }
+    }
+
     private static OrderedValueSequence mockOrderedValueSequence(final int size) throws XPathException {
         final Expression mockSortExpr = createMock(Expression.class);
         expect(mockSortExpr.eval(null, null)).andReturn(Sequence.EMPTY_SEQUENCE).anyTimes();
@@ -44,7 +44,8 @@ import java.nio.file.Path;
  */
 public class NGramIndex extends AbstractIndex implements RawBackupSupport {
 
-    public static final short FILE_FORMAT_VERSION_ID = 14;
+    public static final short FILE_FORMAT_VERSION_ID = 15;
+    public static final short LEGACY_FILE_FORMAT_VERSION_ID = 14;
 
     public final static String ID = NGramIndex.class.getName();
 
@@ -72,7 +73,7 @@ public class NGramIndex extends AbstractIndex implements RawBackupSupport {
     @Override
     public void open() throws DatabaseConfigurationException {
         try {
-            db = new BFile(pool, (byte) 0, FILE_FORMAT_VERSION_ID, false, dataFile, pool.getCacheManager(), 1.4, 0.07);
+            db = new BFile(pool, (byte) 0, FILE_FORMAT_VERSION_ID, LEGACY_FILE_FORMAT_VERSION_ID, false, dataFile, pool.getCacheManager(), 1.4, 0.07);
         } catch (DBException e) {
             throw new DatabaseConfigurationException("Failed to create index file: " + dataFile.toAbsolutePath().toString() + ": " +
                 e.getMessage());